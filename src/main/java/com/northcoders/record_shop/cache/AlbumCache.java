@@ -0,0 +1,226 @@
+package com.northcoders.record_shop.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.northcoders.record_shop.dto.CatalogVersion;
+import com.northcoders.record_shop.event.AlbumChangedEvent;
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.model.AlbumNormalizer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Bounded read-through cache in front of the album id lookups and finder results. Caffeine's W-TinyLFU policy decides
+ * what to evict once the size limit is reached, and every entry also expires after the configured TTL.
+ * <p>
+ * Writes are invalidated precisely rather than by clearing everything: the changed album's id entry, every cached list
+ * it currently appears in (tracked in {@code listKeysByAlbumId}), and every list its new values would now belong to.
+ * <p>
+ * The list endpoints tag their responses with the persisted {@link CatalogVersion}, which also moves for writes this
+ * instance never hears about (other instances, the CLI, direct database changes). Each version read is passed to
+ * {@link #observeCatalogVersion(CatalogVersion)}, which drops the cached lists when it changed, so a list served under a
+ * version was never loaded before it.
+ */
+@Component
+public class AlbumCache {
+
+    public record ListKey(String field, Object value) {
+
+        // Artist and name keys hold the normalized value, as the finders look them up, so "OASIS" and "Oasis" share
+        // one entry and a write to either spelling invalidates it.
+        public static ListKey artist(String artist) {
+            return new ListKey("artist", AlbumNormalizer.normalize(artist));
+        }
+
+        public static ListKey releaseYear(int releaseYear) {
+            return new ListKey("releaseYear", releaseYear);
+        }
+
+        public static ListKey genre(Album.AlbumGenres genre) {
+            return new ListKey("genre", genre);
+        }
+
+        public static ListKey name(String name) {
+            return new ListKey("name", AlbumNormalizer.normalize(name));
+        }
+
+        /**
+         * The key for a field name and a value in its string form, as {@link #field()} and {@code value} print.
+         */
+        public static ListKey of(String field, String value) {
+            return switch (field) {
+                case "artist" -> artist(value);
+                case "releaseYear" -> releaseYear(Integer.parseInt(value));
+                case "genre" -> genre(Album.AlbumGenres.valueOf(value));
+                case "name" -> name(value);
+                default -> throw new IllegalArgumentException("Unknown list key field '" + field + "'.");
+            };
+        }
+
+        static List<ListKey> matching(Album album) {
+            return List.of(artist(album.getArtist()), releaseYear(album.getReleaseYear()),
+                    genre(album.getGenre()), name(album.getName()));
+        }
+    }
+
+    private final Cache<Long, Album> albumsById;
+    private final Cache<ListKey, List<Album>> albumLists;
+    private final ConcurrentHashMap<Long, Set<ListKey>> listKeysByAlbumId = new ConcurrentHashMap<>();
+    // Bumped on every invalidation so a list loaded while a write was being applied is not cached stale.
+    private final AtomicLong invalidations = new AtomicLong();
+    // The catalog version the cached lists were loaded under; null until the first one is observed.
+    private String observedCatalogTag;
+    private final AlbumCacheInvalidationBroadcaster broadcaster;
+
+    @Autowired
+    public AlbumCache(@Value("${record-shop.cache.maximum-size:10000}") long maximumSize,
+                      @Value("${record-shop.cache.list-maximum-size:1000}") long listMaximumSize,
+                      @Value("${record-shop.cache.ttl:10m}") Duration ttl,
+                      MeterRegistry meterRegistry,
+                      AlbumCacheInvalidationBroadcaster broadcaster) {
+        this.broadcaster = broadcaster;
+        this.albumsById = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.albumLists = Caffeine.newBuilder()
+                .maximumSize(listMaximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .executor(Runnable::run)
+                .<ListKey, List<Album>>removalListener((key, albums, cause) -> {
+                    if (cause != RemovalCause.REPLACED && key != null && albums != null) forgetListMembership(key, albums);
+                })
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, albumsById, "albums.by-id");
+        CaffeineCacheMetrics.monitor(meterRegistry, albumLists, "albums.lists");
+    }
+
+    /**
+     * Returns the cached album, or loads it; a null from the loader (album not found) is not cached.
+     */
+    public Album getAlbum(Long id, Function<Long, Album> loader) {
+        return albumsById.get(id, loader);
+    }
+
+    public List<Album> getAlbums(ListKey key, Supplier<List<Album>> loader) {
+        List<Album> cached = albumLists.getIfPresent(key);
+        if (cached != null) return cached;
+
+        long invalidationsBeforeLoad = invalidations.get();
+        List<Album> albums = List.copyOf(loader.get());
+        if (albums.isEmpty()) return albums;
+
+        putList(key, albums);
+        // A write that landed during the load may have missed this key; drop it rather than serve stale results.
+        if (invalidations.get() != invalidationsBeforeLoad) albumLists.invalidate(key);
+        return albums;
+    }
+
+    /**
+     * The albums currently cached by id, for saving the cache across a restart.
+     */
+    public List<Album> cachedAlbums() {
+        return List.copyOf(albumsById.asMap().values());
+    }
+
+    /**
+     * The finder lists currently cached, for saving the cache across a restart.
+     */
+    public Map<ListKey, List<Album>> cachedLists() {
+        return Map.copyOf(albumLists.asMap());
+    }
+
+    /**
+     * Fills the cache with entries saved by {@link #cachedAlbums()} and {@link #cachedLists()}; the caller must know
+     * they still match the database. Entries get a fresh TTL.
+     */
+    public void preload(Collection<Album> albums, Map<ListKey, List<Album>> lists) {
+        for (Album album : albums) {
+            albumsById.put(album.getId(), album);
+        }
+        lists.forEach((key, members) -> {
+            if (!members.isEmpty()) putList(key, List.copyOf(members));
+        });
+    }
+
+    /**
+     * Records the catalog version just read from the database, before the lists for a response tagged with it are
+     * looked up. A different version from the last one means the catalog changed, possibly somewhere this instance was
+     * not told about, so every cached list is dropped and reloaded; the albums by id keep their own version checks.
+     *
+     * @return whether the version differs from the one observed before
+     */
+    public synchronized boolean observeCatalogVersion(CatalogVersion catalogVersion) {
+        if (catalogVersion.tag().equals(observedCatalogTag)) return false;
+        boolean changed = observedCatalogTag != null;
+        if (changed) invalidateLists();
+        observedCatalogTag = catalogVersion.tag();
+        return changed;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAlbumChanged(AlbumChangedEvent event) {
+        invalidate(event);
+        broadcaster.broadcast(event);
+    }
+
+    public void applyRemoteInvalidation(AlbumChangedEvent event) {
+        invalidate(event);
+    }
+
+    public void invalidateAll() {
+        albumsById.invalidateAll();
+        invalidateLists();
+    }
+
+    private void invalidateLists() {
+        invalidations.incrementAndGet();
+        albumLists.invalidateAll();
+        listKeysByAlbumId.clear();
+    }
+
+    private void putList(ListKey key, List<Album> albums) {
+        for (Album album : albums) {
+            if (album.getId() == null) continue;
+            listKeysByAlbumId.computeIfAbsent(album.getId(), id -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+        albumLists.put(key, albums);
+    }
+
+    private void invalidate(AlbumChangedEvent event) {
+        invalidations.incrementAndGet();
+        albumsById.invalidate(event.albumId());
+        Set<ListKey> containingLists = listKeysByAlbumId.remove(event.albumId());
+        if (containingLists != null) albumLists.invalidateAll(containingLists);
+        if (!event.isDeletion()) albumLists.invalidateAll(ListKey.matching(event.album()));
+    }
+
+    private void forgetListMembership(ListKey key, List<Album> albums) {
+        // The key may already have been reloaded; its new members registered themselves, so leave them alone.
+        if (albumLists.asMap().containsKey(key)) return;
+        for (Album album : albums) {
+            if (album.getId() == null) continue;
+            listKeysByAlbumId.computeIfPresent(album.getId(), (id, keys) -> {
+                keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+}
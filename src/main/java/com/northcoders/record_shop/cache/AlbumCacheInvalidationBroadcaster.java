@@ -0,0 +1,14 @@
+package com.northcoders.record_shop.cache;
+
+import com.northcoders.record_shop.event.AlbumChangedEvent;
+
+/**
+ * Hook for sharing album cache invalidations between instances. An implementation sends each local change to the other
+ * instances (e.g. over Redis pub/sub or a message topic), and the receiving side passes it to
+ * {@link AlbumCache#applyRemoteInvalidation(AlbumChangedEvent)}. The default does nothing, which is correct for a
+ * single instance.
+ */
+public interface AlbumCacheInvalidationBroadcaster {
+
+    void broadcast(AlbumChangedEvent event);
+}
@@ -0,0 +1,174 @@
+package com.northcoders.record_shop.cache;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.northcoders.record_shop.event.AlbumChangedEvent;
+import com.northcoders.record_shop.model.Album;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the already-serialized JSON (and, on demand, its gzip, CBOR and Smile encodings) of hot responses so the
+ * controller can write bytes instead of running Jackson on every request.
+ * <p>
+ * Single albums are keyed by id and only reused while the album's version is unchanged. Lists are keyed by the identity
+ * of the list instance held in {@link AlbumCache}: any write that affects a list evicts it there, the next lookup
+ * returns a new instance, and the stale encoding is no longer reachable (weak keys let it be collected).
+ */
+@Component
+public class AlbumResponseCache {
+
+    public static final class EncodedResponse {
+        private final Long version;
+        private final byte[] json;
+        private final int gzipMinBytes;
+        private volatile byte[] gzip;
+        private volatile byte[] cbor;
+        private volatile byte[] smile;
+
+        EncodedResponse(Long version, byte[] json, int gzipMinBytes) {
+            this.version = version;
+            this.json = json;
+            this.gzipMinBytes = gzipMinBytes;
+        }
+
+        public byte[] json() {
+            return json;
+        }
+
+        /**
+         * The gzip encoding, computed the first time it is asked for, or null when the body is too small to be worth
+         * compressing.
+         */
+        public byte[] gzip() {
+            if (json.length < gzipMinBytes) return null;
+            byte[] encoded = gzip;
+            if (encoded == null) {
+                encoded = compress(json);
+                gzip = encoded;
+            }
+            return encoded;
+        }
+
+        /**
+         * The CBOR encoding, transcoded from the JSON the first time it is asked for.
+         */
+        public byte[] cbor() {
+            byte[] encoded = cbor;
+            if (encoded == null) {
+                encoded = transcode(json, CBOR_FACTORY);
+                cbor = encoded;
+            }
+            return encoded;
+        }
+
+        /**
+         * The Smile encoding, transcoded from the JSON the first time it is asked for.
+         */
+        public byte[] smile() {
+            byte[] encoded = smile;
+            if (encoded == null) {
+                encoded = transcode(json, SMILE_FACTORY);
+                smile = encoded;
+            }
+            return encoded;
+        }
+    }
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final CBORFactory CBOR_FACTORY = new CBORFactory();
+    private static final SmileFactory SMILE_FACTORY = new SmileFactory();
+
+    private final ObjectMapper objectMapper;
+    private final int gzipMinBytes;
+    private final Cache<Long, EncodedResponse> albumsById;
+    private final Cache<List<Album>, EncodedResponse> albumLists;
+
+    @Autowired
+    public AlbumResponseCache(ObjectMapper objectMapper,
+                              @Value("${record-shop.response-cache.maximum-size:10000}") long maximumSize,
+                              @Value("${record-shop.response-cache.gzip-min-bytes:1024}") int gzipMinBytes,
+                              MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.gzipMinBytes = gzipMinBytes;
+        this.albumsById = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+        this.albumLists = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .weakKeys()
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, albumsById, "albums.response-bytes.by-id");
+        CaffeineCacheMetrics.monitor(meterRegistry, albumLists, "albums.response-bytes.lists");
+    }
+
+    public EncodedResponse album(Album album) {
+        if (album.getId() == null) return encode(null, album);
+        EncodedResponse cached = albumsById.getIfPresent(album.getId());
+        if (cached != null && Objects.equals(cached.version, album.getVersion())) return cached;
+        EncodedResponse encoded = encode(album.getVersion(), album);
+        albumsById.put(album.getId(), encoded);
+        return encoded;
+    }
+
+    public EncodedResponse albumList(List<Album> albums) {
+        return albumLists.get(albums, list -> encode(null, list));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAlbumChanged(AlbumChangedEvent event) {
+        albumsById.invalidate(event.albumId());
+    }
+
+    private EncodedResponse encode(Long version, Object body) {
+        try {
+            return new EncodedResponse(version, objectMapper.writeValueAsBytes(body), gzipMinBytes);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] compress(byte[] json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    // Copies tokens from the cached JSON rather than serializing the albums again: a list entry must not hold on to its
+    // list (the weak key), and the JSON already reflects the ObjectMapper's settings.
+    private static byte[] transcode(byte[] json, JsonFactory target) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length);
+        try (JsonParser parser = JSON_FACTORY.createParser(json);
+             JsonGenerator generator = target.createGenerator(out)) {
+            parser.nextToken();
+            generator.copyCurrentStructure(parser);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -1,4 +1,38 @@
 package com.northcoders.record_shop.cli;
 
-public class AddAlbumCommand {
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.service.AlbumBatchInserter;
+import com.northcoders.record_shop.service.AlbumService;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+public class AddAlbumCommand implements Command {
+    private final Supplier<AlbumService> albumService;
+
+    public AddAlbumCommand(Supplier<AlbumService> albumService) {
+        this.albumService = albumService;
+    }
+
+    @Override
+    public String name() {
+        return "add";
+    }
+
+    @Override
+    public String usage() {
+        return "add --artist=<artist> --name=<name> --genre=<genre> --year=<release year>";
+    }
+
+    @Override
+    public int run(List<String> args) {
+        CLIUtils.Arguments arguments = CLIUtils.parseArguments(args);
+        Album album = new Album(null, arguments.option("artist", null), arguments.intOption("year", 0),
+                CLIUtils.parseGenre(arguments.option("genre", null)), arguments.option("name", null));
+        String error = AlbumBatchInserter.validate(album);
+        if (error != null) throw new IllegalArgumentException(error);
+
+        System.out.println("Added " + CLIUtils.format(albumService.get().addAlbum(album)));
+        return EXIT_OK;
+    }
 }
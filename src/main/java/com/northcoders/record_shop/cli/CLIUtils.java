@@ -1,4 +1,112 @@
 package com.northcoders.record_shop.cli;
 
+import com.northcoders.record_shop.model.Album;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 public class CLIUtils {
+
+    private CLIUtils() {
+    }
+
+    /**
+     * Command arguments split into {@code --key=value} options (a bare {@code --flag} maps to "true") and the
+     * positional arguments around them.
+     */
+    public record Arguments(Map<String, String> options, List<String> positional) {
+
+        public String option(String name, String defaultValue) {
+            return options.getOrDefault(name, defaultValue);
+        }
+
+        public boolean flag(String name) {
+            return Boolean.parseBoolean(options.getOrDefault(name, "false"));
+        }
+
+        public int intOption(String name, int defaultValue) {
+            String value = options.get(name);
+            if (value == null) return defaultValue;
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("--" + name + " must be a whole number, got '" + value + "'.");
+            }
+        }
+
+        public Integer integerOption(String name) {
+            return options.containsKey(name) ? intOption(name, 0) : null;
+        }
+    }
+
+    public static Arguments parseArguments(List<String> args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        List<String> positional = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                int equals = arg.indexOf('=');
+                if (equals < 0) options.put(arg.substring(2), "true");
+                else options.put(arg.substring(2, equals), arg.substring(equals + 1));
+            } else {
+                positional.add(arg);
+            }
+        }
+        return new Arguments(options, positional);
+    }
+
+    public static Album.AlbumGenres parseGenre(String value) {
+        Album.AlbumGenres genre = Album.AlbumGenres.fromName(value == null ? null : value.trim());
+        if (genre == null) throw new IllegalArgumentException("Genre '" + value + "' is not recognized.");
+        return genre;
+    }
+
+    public static long parseId(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Album id must be a number, got '" + value + "'.");
+        }
+    }
+
+    /**
+     * Splits one CSV record into fields. Fields may be quoted, with {@code ""} standing for a quote inside a quoted
+     * field; quoted fields may contain commas but not line breaks, as the importer reads one record per line.
+     */
+    public static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) throw new IllegalArgumentException("Unterminated quoted field.");
+        fields.add(field.toString());
+        return fields;
+    }
+
+    public static String format(Album album) {
+        return String.format("%6d  %-30s %4d  %-16s %s  (version %s)", album.getId(), album.getArtist(),
+                album.getReleaseYear(), album.getGenre(), album.getName(), album.getVersion());
+    }
 }
@@ -1,4 +1,21 @@
 package com.northcoders.record_shop.cli;
 
+import java.util.List;
+
+/**
+ * One CLI sub-command, e.g. {@code search} or {@code import}.
+ */
 public interface Command {
+    int EXIT_OK = 0;
+    int EXIT_FAILED = 1;
+    int EXIT_USAGE = 2;
+
+    String name();
+
+    String usage();
+
+    /**
+     * Runs the command with the arguments that followed its name and returns the process exit code.
+     */
+    int run(List<String> args) throws Exception;
 }
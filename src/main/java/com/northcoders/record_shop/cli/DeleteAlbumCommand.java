@@ -1,4 +1,31 @@
 package com.northcoders.record_shop.cli;
 
-public class DeleteAlbumCommand {
+import com.northcoders.record_shop.service.AlbumService;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+public class DeleteAlbumCommand implements Command {
+    private final Supplier<AlbumService> albumService;
+
+    public DeleteAlbumCommand(Supplier<AlbumService> albumService) {
+        this.albumService = albumService;
+    }
+
+    @Override
+    public String name() {
+        return "delete";
+    }
+
+    @Override
+    public String usage() {
+        return "delete <id>";
+    }
+
+    @Override
+    public int run(List<String> args) {
+        if (args.size() != 1) throw new IllegalArgumentException("Expected exactly one album id.");
+        System.out.println(albumService.get().deleteAlbumById(CLIUtils.parseId(args.get(0))));
+        return EXIT_OK;
+    }
 }
@@ -0,0 +1,320 @@
+package com.northcoders.record_shop.cli;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.repository.ImportCheckpointStore;
+import com.northcoders.record_shop.repository.ImportCheckpointStore.Checkpoint;
+import com.northcoders.record_shop.service.AlbumBatchInserter;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Streams a CSV or NDJSON file of albums into the catalog.
+ * <p>
+ * A reader thread cuts the file into blocks of {@code --batch-size} lines, a pool of {@code --threads} parses and
+ * validates the blocks in parallel, and the calling thread inserts them in file order, one transaction per block. The
+ * queue between them holds at most two blocks per parser thread, so memory stays bounded whatever the file size.
+ * Each transaction also saves a checkpoint with the byte offset after its block, which is what {@code --resume} starts
+ * from after an interruption. Rows that fail to parse or validate are skipped and written to the rejects file.
+ */
+public class ImportCommand implements Command {
+    private static final Future<ParsedBlock> END = CompletableFuture.completedFuture(null);
+
+    record Block(List<String> lines, long firstLineNumber, long endOffset) {
+    }
+
+    record Reject(long lineNumber, String reason, String line) {
+    }
+
+    record ParsedBlock(List<Album> albums, List<Reject> rejects, long lastLineNumber, long endOffset) {
+    }
+
+    /**
+     * Totals of an import; the row counts include rows imported before a resume, the rate only covers this run.
+     */
+    public record Summary(long rowsImported, long rowsRejected, long lastLineNumber, double rowsPerSecond) {
+    }
+
+    @FunctionalInterface
+    interface LineParser {
+        Album parse(String line) throws Exception;
+    }
+
+    private final Supplier<AlbumBatchInserter> albumBatchInserter;
+    private final Supplier<ImportCheckpointStore> checkpointStore;
+    private final Supplier<ObjectMapper> objectMapper;
+
+    public ImportCommand(Supplier<AlbumBatchInserter> albumBatchInserter,
+                         Supplier<ImportCheckpointStore> checkpointStore, Supplier<ObjectMapper> objectMapper) {
+        this.albumBatchInserter = albumBatchInserter;
+        this.checkpointStore = checkpointStore;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public String name() {
+        return "import";
+    }
+
+    @Override
+    public String usage() {
+        return "import <file> [--format=csv|ndjson] [--threads=<n>] [--batch-size=1000] [--rejects=<file>]"
+                + " [--resume | --restart] [--import-id=<id>] [--progress-seconds=5]";
+    }
+
+    @Override
+    public int run(List<String> args) throws Exception {
+        CLIUtils.Arguments arguments = CLIUtils.parseArguments(args);
+        if (arguments.positional().size() != 1) throw new IllegalArgumentException("Expected exactly one file.");
+        Path file = Path.of(arguments.positional().get(0));
+        if (!Files.isRegularFile(file)) throw new IllegalArgumentException("File " + file + " does not exist.");
+
+        String format = arguments.option("format", defaultFormat(file)).toLowerCase(Locale.ROOT);
+        if (!format.equals("csv") && !format.equals("ndjson")) {
+            throw new IllegalArgumentException("Format must be csv or ndjson, got '" + format + "'.");
+        }
+        int threads = Math.max(1, arguments.intOption("threads", Runtime.getRuntime().availableProcessors()));
+        int batchSize = Math.max(1, arguments.intOption("batch-size", 1000));
+        int progressSeconds = Math.max(1, arguments.intOption("progress-seconds", 5));
+        Path rejects = Path.of(arguments.option("rejects", file + ".rejects"));
+        // The size is part of the default id, so a file replaced by a different one is not resumed by accident.
+        String importId = arguments.option("import-id", file.toAbsolutePath().normalize() + ":" + Files.size(file));
+
+        ImportCheckpointStore checkpointStore = this.checkpointStore.get();
+        Optional<Checkpoint> checkpoint = checkpointStore.find(importId);
+        if (checkpoint.isPresent() && arguments.flag("restart")) {
+            checkpointStore.delete(importId);
+            checkpoint = Optional.empty();
+        } else if (checkpoint.isPresent() && checkpoint.get().completed()) {
+            System.err.printf("Import %s already completed (%d rows imported); pass --restart to import it again.%n",
+                    importId, checkpoint.get().rowsImported());
+            return EXIT_FAILED;
+        } else if (checkpoint.isPresent() && !arguments.flag("resume")) {
+            System.err.printf("Import %s stopped after line %d; pass --resume to continue it or --restart to start "
+                    + "over.%n", importId, checkpoint.get().lineNumber());
+            return EXIT_FAILED;
+        }
+        checkpoint.ifPresent(from -> System.out.printf("Resuming %s after line %d (%d rows already imported)%n",
+                importId, from.lineNumber(), from.rowsImported()));
+
+        Summary summary = importFile(file, format, importId, checkpoint.orElse(null), threads, batchSize, rejects,
+                progressSeconds);
+        System.out.printf("Imported %d rows, rejected %d, %d lines read, %.0f rows/s%n", summary.rowsImported(),
+                summary.rowsRejected(), summary.lastLineNumber(), summary.rowsPerSecond());
+        if (summary.rowsRejected() > 0) System.out.println("Rejected rows are listed in " + rejects);
+        return EXIT_OK;
+    }
+
+    Summary importFile(Path file, String format, String importId, Checkpoint from, int threads, int batchSize,
+                       Path rejectsFile, int progressSeconds) throws Exception {
+        AlbumBatchInserter albumBatchInserter = this.albumBatchInserter.get();
+        ImportCheckpointStore checkpointStore = this.checkpointStore.get();
+        ObjectMapper objectMapper = this.objectMapper.get();
+        long startOffset = from == null ? 0 : from.byteOffset();
+        long startLine = from == null ? 0 : from.lineNumber();
+        LineParser parser;
+        if (format.equals("csv")) {
+            try (OffsetLineReader headerReader = new OffsetLineReader(file, 0)) {
+                parser = csvParser(headerReader.readLine());
+                if (from == null) {
+                    startOffset = headerReader.offset();
+                    startLine = 1;
+                }
+            }
+        } else {
+            parser = line -> parseJson(objectMapper, line);
+        }
+
+        long imported = from == null ? 0 : from.rowsImported();
+        long rejected = from == null ? 0 : from.rowsRejected();
+        long lastLine = startLine;
+        long lastOffset = startOffset;
+        long importedThisRun = 0;
+        long start = System.nanoTime();
+        long nextProgress = start + progressSeconds * 1_000_000_000L;
+
+        BlockingQueue<Future<ParsedBlock>> pending = new ArrayBlockingQueue<>(threads * 2);
+        ExecutorService parsers = Executors.newFixedThreadPool(threads);
+        OffsetLineReader reader = new OffsetLineReader(file, startOffset);
+        long firstLine = startLine;
+        Thread readerThread = Thread.ofPlatform().name("import-reader").start(
+                () -> readBlocks(reader, firstLine, batchSize, pending, parsers, parser));
+        try (BufferedWriter rejectsWriter = Files.newBufferedWriter(rejectsFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            while (true) {
+                ParsedBlock block;
+                try {
+                    block = pending.take().get();
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception cause ? cause : e;
+                }
+                if (block == null) break;
+
+                imported += block.albums().size();
+                rejected += block.rejects().size();
+                Checkpoint checkpoint = new Checkpoint(importId, block.endOffset(), block.lastLineNumber(), imported,
+                        rejected, false);
+                albumBatchInserter.insertChunk(block.albums(), () -> checkpointStore.save(checkpoint));
+                importedThisRun += block.albums().size();
+                lastLine = block.lastLineNumber();
+                lastOffset = block.endOffset();
+
+                // Written after the commit, so a resumed import may repeat a block's rejects but never loses any.
+                for (Reject reject : block.rejects()) {
+                    rejectsWriter.write(reject.lineNumber() + "\t" + reject.reason() + "\t" + reject.line());
+                    rejectsWriter.newLine();
+                }
+                if (!block.rejects().isEmpty()) rejectsWriter.flush();
+
+                long now = System.nanoTime();
+                if (now >= nextProgress) {
+                    System.out.printf("line %d: %d imported, %d rejected, %.0f rows/s%n", lastLine, imported,
+                            rejected, rowsPerSecond(importedThisRun, start, now));
+                    nextProgress = now + progressSeconds * 1_000_000_000L;
+                }
+            }
+        } finally {
+            readerThread.interrupt();
+            parsers.shutdownNow();
+            readerThread.join();
+        }
+
+        checkpointStore.save(new Checkpoint(importId, lastOffset, lastLine, imported, rejected, true));
+        return new Summary(imported, rejected, lastLine, rowsPerSecond(importedThisRun, start, System.nanoTime()));
+    }
+
+    /**
+     * Runs on the reader thread: hands each block to the parser pool and queues its future in file order, blocking
+     * while the queue is full. Ends with {@link #END}, or with a failed future if reading fails.
+     */
+    private static void readBlocks(OffsetLineReader reader, long lineNumber, int batchSize,
+                                   BlockingQueue<Future<ParsedBlock>> pending, ExecutorService parsers,
+                                   LineParser parser) {
+        try (reader) {
+            while (true) {
+                List<String> lines = new ArrayList<>(batchSize);
+                String line;
+                while (lines.size() < batchSize && (line = reader.readLine()) != null) {
+                    lines.add(line);
+                }
+                if (lines.isEmpty()) break;
+                Block block = new Block(lines, lineNumber + 1, reader.offset());
+                lineNumber += lines.size();
+                pending.put(parsers.submit(() -> parse(block, parser)));
+            }
+            pending.put(END);
+        } catch (InterruptedException e) {
+            // The import stopped consuming blocks; nothing left to do.
+        } catch (Exception e) {
+            try {
+                pending.put(CompletableFuture.failedFuture(e));
+            } catch (InterruptedException interrupted) {
+                // As above.
+            }
+        }
+    }
+
+    static ParsedBlock parse(Block block, LineParser parser) {
+        List<Album> albums = new ArrayList<>(block.lines().size());
+        List<Reject> rejects = new ArrayList<>();
+        long lineNumber = block.firstLineNumber();
+        for (String line : block.lines()) {
+            if (!line.isBlank()) {
+                try {
+                    Album album = parser.parse(line);
+                    String error = AlbumBatchInserter.validate(album);
+                    if (error == null) albums.add(album);
+                    else rejects.add(new Reject(lineNumber, error, line));
+                } catch (JsonProcessingException e) {
+                    rejects.add(new Reject(lineNumber, e.getOriginalMessage(), line));
+                } catch (Exception e) {
+                    rejects.add(new Reject(lineNumber, e.getMessage(), line));
+                }
+            }
+            lineNumber++;
+        }
+        return new ParsedBlock(albums, rejects, lineNumber - 1, block.endOffset());
+    }
+
+    /**
+     * Builds a parser for the columns named in the header, which may come in any order; {@code year} or
+     * {@code release_year} and {@code title} are accepted for the release year and name.
+     */
+    static LineParser csvParser(String header) {
+        if (header == null) throw new IllegalArgumentException("The CSV file is empty; it needs a header line.");
+        List<String> columns = CLIUtils.parseCsvLine(header.replace("\uFEFF", ""));
+        int artist = -1, releaseYear = -1, genre = -1, name = -1;
+        for (int i = 0; i < columns.size(); i++) {
+            switch (columns.get(i).trim().toLowerCase(Locale.ROOT)) {
+                case "artist" -> artist = i;
+                case "releaseyear", "release_year", "year" -> releaseYear = i;
+                case "genre" -> genre = i;
+                case "name", "title" -> name = i;
+                default -> {
+                }
+            }
+        }
+        if (artist < 0 || releaseYear < 0 || genre < 0 || name < 0) {
+            throw new IllegalArgumentException("The CSV header must name artist, releaseYear, genre and name columns.");
+        }
+        int artistColumn = artist, releaseYearColumn = releaseYear, genreColumn = genre, nameColumn = name;
+        int width = Math.max(Math.max(artist, releaseYear), Math.max(genre, name)) + 1;
+        return line -> {
+            List<String> fields = CLIUtils.parseCsvLine(line);
+            if (fields.size() < width) {
+                throw new IllegalArgumentException("Expected " + width + " fields, found " + fields.size() + ".");
+            }
+            return new Album(null, fields.get(artistColumn).trim(), parseYear(fields.get(releaseYearColumn)),
+                    CLIUtils.parseGenre(fields.get(genreColumn)), fields.get(nameColumn).trim());
+        };
+    }
+
+    /**
+     * Reads the same fields as the REST API's album JSON, but matches the genre case-insensitively like the CSV path.
+     */
+    private static Album parseJson(ObjectMapper objectMapper, String line) throws JsonProcessingException {
+        JsonNode node = objectMapper.readTree(line);
+        if (!node.isObject()) throw new IllegalArgumentException("Expected a JSON object.");
+        JsonNode releaseYear = node.path("releaseYear");
+        if (!releaseYear.isMissingNode() && !releaseYear.canConvertToInt()) {
+            throw new IllegalArgumentException("Release year '" + releaseYear.asText() + "' is not a number.");
+        }
+        return new Album(null, node.path("artist").asText(null), releaseYear.asInt(),
+                CLIUtils.parseGenre(node.path("genre").asText(null)), node.path("name").asText(null));
+    }
+
+    private static int parseYear(String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Release year '" + value + "' is not a number.");
+        }
+    }
+
+    private static String defaultFormat(Path file) {
+        String fileName = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return fileName.endsWith(".ndjson") || fileName.endsWith(".jsonl") ? "ndjson" : "csv";
+    }
+
+    private static double rowsPerSecond(long rows, long startNanos, long nowNanos) {
+        return rows * 1e9 / Math.max(1, nowNanos - startNanos);
+    }
+}
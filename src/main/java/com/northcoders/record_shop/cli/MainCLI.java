@@ -0,0 +1,118 @@
+package com.northcoders.record_shop.cli;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.northcoders.record_shop.RecordShopApplication;
+import com.northcoders.record_shop.exception.ItemNotFoundException;
+import com.northcoders.record_shop.exception.PreconditionFailedException;
+import com.northcoders.record_shop.repository.ImportCheckpointStore;
+import com.northcoders.record_shop.service.AlbumBatchInserter;
+import com.northcoders.record_shop.service.AlbumService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Entry point of the record shop CLI: {@code <command> [arguments]}. The application is started without the web
+ * server, against the database configured as usual, the first time a command needs it; searching a snapshot file does
+ * not start it at all.
+ */
+public class MainCLI {
+
+    public static void main(String[] args) {
+        int exitCode;
+        try (LazyApplication application = new LazyApplication()) {
+            exitCode = run(application, args);
+        }
+        System.exit(exitCode);
+    }
+
+    public static int run(ApplicationContext context, String... args) {
+        return run(() -> context, args);
+    }
+
+    static int run(Supplier<? extends ApplicationContext> context, String... args) {
+        Map<String, Command> commands = commands(context);
+        if (args.length == 0 || args[0].equals("help") || args[0].equals("--help")) {
+            printUsage(commands);
+            return args.length == 0 ? Command.EXIT_USAGE : Command.EXIT_OK;
+        }
+        Command command = commands.get(args[0]);
+        if (command == null) {
+            System.err.println("Unknown command '" + args[0] + "'.");
+            printUsage(commands);
+            return Command.EXIT_USAGE;
+        }
+
+        try {
+            return command.run(List.copyOf(Arrays.asList(args).subList(1, args.length)));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: " + command.usage());
+            return Command.EXIT_USAGE;
+        } catch (ItemNotFoundException | PreconditionFailedException e) {
+            System.err.println(e.getMessage());
+            return Command.EXIT_FAILED;
+        } catch (Exception e) {
+            System.err.println(command.name() + " failed: " + e);
+            return Command.EXIT_FAILED;
+        }
+    }
+
+    /**
+     * Commands look their beans up when they run, so only a command that needs the application starts it.
+     */
+    private static Map<String, Command> commands(Supplier<? extends ApplicationContext> context) {
+        Supplier<AlbumService> albumService = () -> context.get().getBean(AlbumService.class);
+        Map<String, Command> commands = new LinkedHashMap<>();
+        for (Command command : List.of(
+                new SearchCommand(albumService),
+                new AddAlbumCommand(albumService),
+                new UpdateAlbumCommand(albumService),
+                new DeleteAlbumCommand(albumService),
+                new ImportCommand(() -> context.get().getBean(AlbumBatchInserter.class),
+                        () -> context.get().getBean(ImportCheckpointStore.class),
+                        () -> context.get().getBean(ObjectMapper.class)))) {
+            commands.put(command.name(), command);
+        }
+        return commands;
+    }
+
+    private static void printUsage(Map<String, Command> commands) {
+        System.err.println("Usage:");
+        commands.values().forEach(command -> System.err.println("  " + command.usage()));
+    }
+
+    /**
+     * Starts the application on first use and closes it, if started, at the end.
+     */
+    private static class LazyApplication implements Supplier<ApplicationContext>, AutoCloseable {
+        private ConfigurableApplicationContext context;
+
+        @Override
+        public ApplicationContext get() {
+            if (context == null) {
+                context = new SpringApplicationBuilder(RecordShopApplication.class)
+                        .web(WebApplicationType.NONE)
+                        .properties("spring.main.banner-mode=off",
+                                "spring.jpa.show-sql=false",
+                                "logging.level.root=WARN",
+                                "record-shop.demo-data.enabled=false",
+                                "record-shop.indexes.enabled=false")
+                        .run();
+            }
+            return context;
+        }
+
+        @Override
+        public void close() {
+            if (context != null) context.close();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.northcoders.record_shop.cli;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads a UTF-8 file line by line while tracking the byte offset where the next line starts, so a reader can be
+ * reopened at any line boundary it has reported. A trailing {@code \r} is dropped, so CRLF files read the same.
+ */
+class OffsetLineReader implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private byte[] line = new byte[256];
+    private long offset;
+
+    OffsetLineReader(Path file, long startOffset) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.channel.position(startOffset);
+        this.offset = startOffset;
+        this.buffer.flip();
+    }
+
+    /**
+     * Byte offset of the first line not yet returned.
+     */
+    long offset() {
+        return offset;
+    }
+
+    /**
+     * Returns the next line without its terminator, or null at end of file.
+     */
+    String readLine() throws IOException {
+        int length = 0;
+        while (true) {
+            if (!buffer.hasRemaining()) {
+                buffer.clear();
+                int read = channel.read(buffer);
+                buffer.flip();
+                if (read <= 0) {
+                    if (length == 0) return null;
+                    return decode(length);
+                }
+            }
+            byte b = buffer.get();
+            offset++;
+            if (b == '\n') return decode(length);
+            if (length == line.length) line = Arrays.copyOf(line, length * 2);
+            line[length++] = b;
+        }
+    }
+
+    private String decode(int length) {
+        if (length > 0 && line[length - 1] == '\r') length--;
+        return new String(line, 0, length, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
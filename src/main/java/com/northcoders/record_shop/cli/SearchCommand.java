@@ -1,4 +1,80 @@
 package com.northcoders.record_shop.cli;
 
-public class SearchCommand {
+import com.northcoders.record_shop.dto.AlbumSearchCriteria;
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.service.AlbumService;
+import com.northcoders.record_shop.snapshot.AlbumSnapshot;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Searches the catalog database, or with {@code --snapshot} a snapshot file exported from {@code GET /albums/snapshot},
+ * in which case neither the database nor the application is started.
+ */
+public class SearchCommand implements Command {
+    private final Supplier<AlbumService> albumService;
+
+    public SearchCommand(Supplier<AlbumService> albumService) {
+        this.albumService = albumService;
+    }
+
+    @Override
+    public String name() {
+        return "search";
+    }
+
+    @Override
+    public String usage() {
+        return "search [--artist=<artist>] [--name=<name>] [--genre=<genre>] [--from-year=<year>] [--to-year=<year>]"
+                + " [--page=0] [--size=20] [--snapshot=<file>]";
+    }
+
+    @Override
+    public int run(List<String> args) throws IOException {
+        CLIUtils.Arguments arguments = CLIUtils.parseArguments(args);
+        String genre = arguments.option("genre", null);
+        AlbumSearchCriteria criteria = new AlbumSearchCriteria(arguments.option("artist", null),
+                arguments.option("name", null), genre == null ? null : CLIUtils.parseGenre(genre),
+                arguments.integerOption("from-year"), arguments.integerOption("to-year"));
+        int size = Math.min(Math.max(1, arguments.intOption("size", 20)), AlbumService.MAX_PAGE_SIZE);
+        int page = Math.max(0, arguments.intOption("page", 0));
+
+        String snapshotFile = arguments.option("snapshot", null);
+        if (snapshotFile != null) {
+            return searchSnapshot(Path.of(snapshotFile), criteria, page, size);
+        }
+        Page<Album> albums = albumService.get().searchAlbums(criteria, PageRequest.of(page, size, Sort.by("id")));
+        albums.forEach(album -> System.out.println(CLIUtils.format(album)));
+        printTotal(page, size, albums.getTotalElements());
+        return EXIT_OK;
+    }
+
+    private int searchSnapshot(Path file, AlbumSearchCriteria criteria, int page, int size) throws IOException {
+        try (AlbumSnapshot snapshot = AlbumSnapshot.open(file)) {
+            long start = System.nanoTime();
+            int[] found = new int[size];
+            int[] count = new int[1];
+            int total = snapshot.search(criteria, page * size, size, record -> found[count[0]++] = record);
+            long elapsedMicros = (System.nanoTime() - start) / 1000;
+
+            for (int i = 0; i < count[0]; i++) {
+                System.out.println(CLIUtils.format(snapshot.album(found[i])));
+            }
+            printTotal(page, size, total);
+            System.out.printf("Searched %d albums in %d µs (snapshot of catalog %s)%n", snapshot.size(),
+                    elapsedMicros, snapshot.catalogVersion().tag());
+        }
+        return EXIT_OK;
+    }
+
+    private static void printTotal(int page, int size, long total) {
+        long pages = Math.max(1, (total + size - 1) / size);
+        System.out.printf("Page %d of %d, %d album(s) in total%n", page + 1, pages, total);
+    }
 }
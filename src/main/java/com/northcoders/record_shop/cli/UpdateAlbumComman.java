@@ -1,4 +0,0 @@
-package com.northcoders.record_shop.cli;
-
-public class UpdateAlbumComman {
-}
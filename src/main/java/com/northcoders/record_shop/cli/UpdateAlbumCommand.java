@@ -0,0 +1,48 @@
+package com.northcoders.record_shop.cli;
+
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.service.AlbumService;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+public class UpdateAlbumCommand implements Command {
+    private final Supplier<AlbumService> albumService;
+
+    public UpdateAlbumCommand(Supplier<AlbumService> albumService) {
+        this.albumService = albumService;
+    }
+
+    @Override
+    public String name() {
+        return "update";
+    }
+
+    @Override
+    public String usage() {
+        return "update <id> [--artist=<artist>] [--name=<name>] [--genre=<genre>] [--year=<release year>]";
+    }
+
+    /**
+     * Changes only the fields given; the update is conditional on the version read here, so a concurrent change made
+     * in between fails it instead of being overwritten.
+     */
+    @Override
+    public int run(List<String> args) {
+        CLIUtils.Arguments arguments = CLIUtils.parseArguments(args);
+        if (arguments.positional().size() != 1) throw new IllegalArgumentException("Expected exactly one album id.");
+        long id = CLIUtils.parseId(arguments.positional().get(0));
+
+        Album current = albumService.get().getAlbumById(id);
+        Album changed = new Album(null,
+                arguments.option("artist", current.getArtist()),
+                arguments.intOption("year", current.getReleaseYear()),
+                arguments.options().containsKey("genre")
+                        ? CLIUtils.parseGenre(arguments.option("genre", null)) : current.getGenre(),
+                arguments.option("name", current.getName()));
+
+        Album updated = albumService.get().updateAlbumById(id, changed, current.getVersion());
+        System.out.println("Updated " + CLIUtils.format(updated));
+        return EXIT_OK;
+    }
+}
@@ -0,0 +1,17 @@
+package com.northcoders.record_shop.config;
+
+import com.northcoders.record_shop.cache.AlbumCacheInvalidationBroadcaster;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class CacheConfig {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public AlbumCacheInvalidationBroadcaster localOnlyInvalidationBroadcaster() {
+        return event -> {
+        };
+    }
+}
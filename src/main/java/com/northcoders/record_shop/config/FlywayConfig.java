@@ -0,0 +1,16 @@
+package com.northcoders.record_shop.config;
+
+import org.springframework.boot.autoconfigure.flyway.FlywayConfigurationCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class FlywayConfig {
+
+    // Databases created by Hibernate's ddl-auto have the album table but no Flyway history; baselining at 0 lets
+    // V1 (written with IF NOT EXISTS) run against them and every later migration apply normally.
+    @Bean
+    public FlywayConfigurationCustomizer baselineExistingSchema() {
+        return configuration -> configuration.baselineOnMigrate(true).baselineVersion("0");
+    }
+}
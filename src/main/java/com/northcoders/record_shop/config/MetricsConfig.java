@@ -0,0 +1,51 @@
+package com.northcoders.record_shop.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Latency metrics for the three layers of a request: {@code http.server.requests} (one series per endpoint, tagged by
+ * URI template), {@code album.service} (the {@code @Timed} service methods, tagged by method) and
+ * {@code spring.data.repository.invocations} (every repository query, tagged by method). Each gets a percentile
+ * histogram for Prometheus, p50/p95/p99 for {@code /actuator/metrics}, and a bucket per configured SLO.
+ */
+@Configuration
+public class MetricsConfig {
+    static final List<String> LATENCY_TIMERS = List.of(
+            "http.server.requests", "album.service", "spring.data.repository.invocations");
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+
+    @Bean
+    public MeterFilter latencyHistograms(
+            @Value("${record-shop.metrics.slo:5ms,25ms,100ms,250ms,500ms,1s}") Duration[] serviceLevelObjectives) {
+        double[] sloNanos = Arrays.stream(serviceLevelObjectives).mapToDouble(Duration::toNanos).toArray();
+        return new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                if (id.getType() != Meter.Type.TIMER || !LATENCY_TIMERS.contains(id.getName())) return config;
+                return DistributionStatisticConfig.builder()
+                        .percentilesHistogram(true)
+                        .percentiles(0.5, 0.95, 0.99)
+                        .serviceLevelObjectives(sloNanos)
+                        .minimumExpectedValue((double) Duration.ofMillis(1).toNanos())
+                        .maximumExpectedValue((double) Duration.ofSeconds(10).toNanos())
+                        .build()
+                        .merge(config);
+            }
+        };
+    }
+}
@@ -0,0 +1,122 @@
+package com.northcoders.record_shop.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.AbstractEntityManagerFactoryBean;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends reads to read replicas when {@code record-shop.read-replicas.urls} is set.
+ * <p>
+ * The application's DataSource becomes a {@link LazyConnectionDataSourceProxy} over a {@link ReplicaRoutingDataSource},
+ * so the real connection is only chosen on the first statement, once the transaction has been marked read-only or not.
+ * Spring Data runs repository reads ({@code findAll}, {@code findById}, the finders
+ * and the search) in read-only transactions, so {@code getAllAlbums}, {@code getAlbumById} and {@code getAlbumsBy*}
+ * read from the replicas, while every write, and Flyway, stays on the primary.
+ */
+@Configuration
+@ConditionalOnProperty(name = "record-shop.read-replicas.urls")
+public class ReadReplicaConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource routingDataSource(
+            HikariDataSource primaryDataSource, DataSourceProperties properties, MeterRegistry meterRegistry,
+            @Value("${record-shop.read-replicas.urls}") List<String> urls,
+            @Value("${record-shop.read-replicas.username:}") String username,
+            @Value("${record-shop.read-replicas.password:}") String password,
+            @Value("${record-shop.read-replicas.pool-size:10}") int poolSize,
+            @Value("${record-shop.read-replicas.connection-timeout:1s}") Duration connectionTimeout,
+            @Value("${record-shop.read-replicas.retry-after:30s}") Duration retryAfter,
+            @Value("${record-shop.read-replicas.replication-lag:1s}") Duration replicationLag) {
+        Map<String, HikariDataSource> replicas = new LinkedHashMap<>();
+        for (String url : urls) {
+            String name = "replica-" + replicas.size();
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName(name);
+            replica.setJdbcUrl(url.trim());
+            replica.setUsername(username.isEmpty() ? properties.determineUsername() : username);
+            replica.setPassword(password.isEmpty() ? properties.determinePassword() : password);
+            replica.setReadOnly(true);
+            replica.setMaximumPoolSize(poolSize);
+            replica.setConnectionTimeout(connectionTimeout.toMillis());
+            // Start without connecting: a replica that is down at startup is just skipped until it comes back.
+            replica.setInitializationFailTimeout(-1);
+            replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            replicas.put(name, replica);
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas, retryAfter, replicationLag, meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource routingDataSource) {
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    /**
+     * Hibernate normally keeps a session's connection until the session closes, and with open-in-view that is the end
+     * of the request, so a write after a read in the same request would reuse the replica connection. Releasing it after
+     * each transaction lets every transaction be routed on its own.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer connectionPerTransactionCustomizer() {
+        return properties -> properties.put("hibernate.connection.handling_mode",
+                "DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION");
+    }
+
+    /**
+     * The second-level cache may hold albums and query results read from a replica that had not caught up yet, so
+     * sessions opened for a read-your-writes request do not read from it: they query the primary and put what they find
+     * back in the cache.
+     */
+    @Bean
+    public static BeanPostProcessor readYourWritesSkipsSecondLevelCache() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof AbstractEntityManagerFactoryBean factory) {
+                    factory.setEntityManagerInitializer(entityManager -> {
+                        if (ReplicaRoutingDataSource.isPrimaryRequired()) {
+                            entityManager.unwrap(Session.class).setCacheMode(CacheMode.REFRESH);
+                        }
+                    });
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(
+            @Value("${record-shop.read-replicas.read-your-writes:5s}") Duration readYourWrites) {
+        FilterRegistrationBean<ReadYourWritesFilter> registration =
+                new FilterRegistrationBean<>(new ReadYourWritesFilter(readYourWrites));
+        registration.setEnabled(!readYourWrites.isZero());
+        return registration;
+    }
+}
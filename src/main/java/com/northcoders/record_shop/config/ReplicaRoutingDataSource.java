@@ -0,0 +1,137 @@
+package com.northcoders.record_shop.config;
+
+import com.northcoders.record_shop.event.AlbumChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Routes each connection to the primary or a read replica (see {@link ReadReplicaConfig}). Read-only transactions get
+ * a connection from the replicas in turn; a replica that fails to give one is skipped until its retry delay has passed,
+ * and when no replica is available the read falls back to the primary. Everything else uses the primary.
+ * <p>
+ * Reads also go to the primary inside a read-your-writes window: for the current request when its client wrote
+ * recently (see {@link ReadYourWritesFilter}), and for every request within the expected replication lag after this
+ * instance changed an album, so the album cache is not refilled from a replica that has not caught up yet.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+    private static final ThreadLocal<Boolean> PRIMARY_REQUIRED = new ThreadLocal<>();
+
+    private static final class Replica {
+        final String name;
+        final DataSource dataSource;
+        final Counter reads;
+        volatile boolean failed;
+        volatile long failedAt;
+
+        Replica(String name, DataSource dataSource, Counter reads) {
+            this.name = name;
+            this.dataSource = dataSource;
+            this.reads = reads;
+        }
+    }
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final long retryAfterNanos;
+    private final long replicationLagNanos;
+    private final Counter primaryReads;
+    private final AtomicInteger next = new AtomicInteger();
+    private volatile boolean written;
+    private volatile long writtenAt;
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, ? extends DataSource> replicas, Duration retryAfter,
+                                    Duration replicationLag, MeterRegistry meterRegistry) {
+        if (replicas.isEmpty()) throw new IllegalArgumentException("At least one read replica is required");
+        this.primary = primary;
+        replicas.forEach((name, dataSource) -> this.replicas.add(new Replica(name, dataSource,
+                meterRegistry.counter("datasource.reads", "target", name))));
+        this.retryAfterNanos = retryAfter.toNanos();
+        this.replicationLagNanos = replicationLag.toNanos();
+        this.primaryReads = meterRegistry.counter("datasource.reads", "target", "primary");
+    }
+
+    /**
+     * Sends the current thread's reads to the primary until {@link #clearPrimaryRequired()} is called.
+     */
+    static void requirePrimary() {
+        PRIMARY_REQUIRED.set(Boolean.TRUE);
+    }
+
+    static void clearPrimaryRequired() {
+        PRIMARY_REQUIRED.remove();
+    }
+
+    static boolean isPrimaryRequired() {
+        return PRIMARY_REQUIRED.get() != null;
+    }
+
+    // After commit, so the replication-lag window starts once the write can reach the replicas, not before.
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAlbumChanged(AlbumChangedEvent event) {
+        writtenAt = System.nanoTime();
+        written = true;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) return primary.getConnection();
+        long now = System.nanoTime();
+        if (isPrimaryRequired() || (written && now - writtenAt < replicationLagNanos)) {
+            primaryReads.increment();
+            return primary.getConnection();
+        }
+
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (replica.failed && now - replica.failedAt < retryAfterNanos) continue;
+            try {
+                Connection connection = replica.dataSource.getConnection();
+                if (replica.failed) {
+                    replica.failed = false;
+                    log.info("Read replica {} is available again", replica.name);
+                }
+                replica.reads.increment();
+                return connection;
+            } catch (SQLException | RuntimeException e) {
+                if (!replica.failed) {
+                    log.warn("Read replica {} is unavailable, retrying it in {} ms: {}", replica.name,
+                            retryAfterNanos / 1_000_000, e.toString());
+                }
+                replica.failedAt = System.nanoTime();
+                replica.failed = true;
+            }
+        }
+        primaryReads.increment();
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLException("Routed connections use the configured credentials");
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof Closeable closeable) closeable.close();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.northcoders.record_shop.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.cache.jcache.internal.JCacheRegionFactory;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import java.util.List;
+
+/**
+ * Hibernate's second-level cache for {@code Album}, held in Caffeine through JCache. {@code findById} is answered from
+ * the {@value #ALBUM_REGION} region, and the finders marked cacheable in {@code AlbumRepository} keep the ids they
+ * returned in {@value #QUERY_REGION}. Hibernate drops the albums and query results a write touches, including the bulk
+ * updates and deletes; anything writing the table through JDBC has to evict them itself.
+ * <p>
+ * The regions are created by {@link SecondLevelCacheRegionFactory}, configured by {@link SecondLevelCacheEnvironment};
+ * this only publishes their hits and misses as {@code cache.gets} and the ratio as {@code cache.hit.ratio}, tagged
+ * with the region name.
+ */
+@Configuration
+public class SecondLevelCacheConfig {
+    public static final String ALBUM_REGION = "album";
+    public static final String QUERY_REGION = "album-queries";
+    // Hibernate's own regions: its fallback for cacheable queries without a region, and the last write to each table,
+    // which must never be evicted or a stale query result could be served.
+    static final String DEFAULT_QUERY_REGION = "default-query-results-region";
+    static final String TIMESTAMPS_REGION = "default-update-timestamps-region";
+
+    @Bean
+    public MeterBinder secondLevelCacheMetrics(EntityManagerFactory entityManagerFactory) {
+        return meterRegistry -> {
+            RegionFactory regionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getCache()
+                    .getRegionFactory();
+            // Not a JCache region factory when record-shop.second-level-cache.enabled is false.
+            if (!(regionFactory instanceof JCacheRegionFactory jcacheRegionFactory)) return;
+            CacheManager cacheManager = jcacheRegionFactory.getCacheManager();
+            for (String name : cacheManager.getCacheNames()) {
+                monitor(meterRegistry, cacheManager.getCache(name), name);
+            }
+        };
+    }
+
+    private static void monitor(MeterRegistry meterRegistry, Cache<Object, Object> cache, String name) {
+        JCacheMetrics.monitor(meterRegistry, cache, List.of());
+        Gauge.builder("cache.hit.ratio", meterRegistry, registry -> {
+                    double hits = count(registry, name, "hit");
+                    double total = hits + count(registry, name, "miss");
+                    return total == 0 ? Double.NaN : hits / total;
+                })
+                .tag("cache", name)
+                .description("The share of lookups in this second-level cache region that were hits")
+                .register(meterRegistry);
+    }
+
+    private static double count(MeterRegistry registry, String cache, String result) {
+        FunctionCounter counter = registry.find("cache.gets").tags("cache", cache, "result", result).functionCounter();
+        return counter == null ? 0 : counter.count();
+    }
+}
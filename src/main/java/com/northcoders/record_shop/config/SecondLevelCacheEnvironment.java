@@ -0,0 +1,45 @@
+package com.northcoders.record_shop.config;
+
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.jcache.MissingCacheStrategy;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Defaults the second-level cache settings into {@code spring.jpa.properties}, from
+ * {@code record-shop.second-level-cache.*}, for every application context: the web application, the CLI and test
+ * slices such as {@code @DataJpaTest} that do not load {@link SecondLevelCacheConfig}. Added last, so anything set in
+ * the application's own configuration wins.
+ * <p>
+ * With the missing-cache strategy FAIL, an entity or query given a region that {@link SecondLevelCacheRegionFactory}
+ * does not create stops startup instead of getting an unbounded cache.
+ */
+public class SecondLevelCacheEnvironment implements EnvironmentPostProcessor {
+    private static final String PROPERTY_SOURCE = "recordShopSecondLevelCache";
+    private static final String JPA_PROPERTIES = "spring.jpa.properties.";
+    private static final String ENABLED = "${record-shop.second-level-cache.enabled:true}";
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        // With hibernate-jcache on the classpath Hibernate would otherwise pick JCache's default manager by itself.
+        properties.put(JPA_PROPERTIES + AvailableSettings.USE_SECOND_LEVEL_CACHE, ENABLED);
+        properties.put(JPA_PROPERTIES + AvailableSettings.USE_QUERY_CACHE, ENABLED);
+        properties.put(JPA_PROPERTIES + AvailableSettings.CACHE_REGION_FACTORY,
+                SecondLevelCacheRegionFactory.class.getName());
+        properties.put(JPA_PROPERTIES + ConfigSettings.MISSING_CACHE_STRATEGY,
+                MissingCacheStrategy.FAIL.getExternalRepresentation());
+        properties.put(JPA_PROPERTIES + SecondLevelCacheRegionFactory.MAXIMUM_SIZE,
+                "${record-shop.second-level-cache.maximum-size:10000}");
+        properties.put(JPA_PROPERTIES + SecondLevelCacheRegionFactory.QUERY_MAXIMUM_SIZE,
+                "${record-shop.second-level-cache.query-maximum-size:1000}");
+        properties.put(JPA_PROPERTIES + SecondLevelCacheRegionFactory.TTL, "${record-shop.second-level-cache.ttl:10m}");
+        environment.getPropertySources().addLast(new MapPropertySource(PROPERTY_SOURCE, properties));
+    }
+}
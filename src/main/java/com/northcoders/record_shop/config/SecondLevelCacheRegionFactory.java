@@ -0,0 +1,59 @@
+package com.northcoders.record_shop.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.jcache.internal.JCacheRegionFactory;
+import org.springframework.boot.convert.DurationStyle;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * hibernate-jcache's region factory, given a Caffeine JCache manager of its own for each session factory, so every
+ * application context in a JVM (tests, the CLI) has separate regions. The manager holds exactly the regions named in
+ * {@link SecondLevelCacheConfig}, sized from the Hibernate properties below; Hibernate closes it with the session
+ * factory.
+ * <p>
+ * Selected through {@code spring.jpa.properties} by {@link SecondLevelCacheEnvironment} rather than by a bean, because
+ * a session factory can be built without the application's configuration classes, as in a {@code @DataJpaTest}.
+ */
+public class SecondLevelCacheRegionFactory extends JCacheRegionFactory {
+    public static final String MAXIMUM_SIZE = "record_shop.second_level_cache.maximum_size";
+    public static final String QUERY_MAXIMUM_SIZE = "record_shop.second_level_cache.query_maximum_size";
+    public static final String TTL = "record_shop.second_level_cache.ttl";
+
+    @Override
+    protected CacheManager resolveCacheManager(SessionFactoryOptions settings, Map<String, Object> properties) {
+        long maximumSize = Long.parseLong(property(properties, MAXIMUM_SIZE, "10000"));
+        long queryMaximumSize = Long.parseLong(property(properties, QUERY_MAXIMUM_SIZE, "1000"));
+        Duration ttl = DurationStyle.detectAndParse(property(properties, TTL, "10m"));
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("record-shop-" + UUID.randomUUID()), getClass().getClassLoader());
+        createRegion(cacheManager, SecondLevelCacheConfig.ALBUM_REGION, OptionalLong.of(maximumSize), ttl);
+        createRegion(cacheManager, SecondLevelCacheConfig.QUERY_REGION, OptionalLong.of(queryMaximumSize), ttl);
+        createRegion(cacheManager, SecondLevelCacheConfig.DEFAULT_QUERY_REGION, OptionalLong.of(queryMaximumSize), ttl);
+        createRegion(cacheManager, SecondLevelCacheConfig.TIMESTAMPS_REGION, OptionalLong.empty(), null);
+        return cacheManager;
+    }
+
+    private static String property(Map<String, Object> properties, String name, String defaultValue) {
+        Object value = properties.get(name);
+        return value == null ? defaultValue : value.toString().trim();
+    }
+
+    private static void createRegion(CacheManager cacheManager, String name, OptionalLong maximumSize, Duration ttl) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        // Hibernate stores immutable entries, so copying them on every read and write would only cost time.
+        configuration.setStoreByValue(false);
+        configuration.setStatisticsEnabled(true);
+        configuration.setMaximumSize(maximumSize);
+        if (ttl != null) configuration.setExpireAfterWrite(OptionalLong.of(ttl.toNanos()));
+        cacheManager.createCache(name, configuration);
+    }
+}
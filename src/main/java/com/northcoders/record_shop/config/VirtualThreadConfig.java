@@ -0,0 +1,57 @@
+package com.northcoders.record_shop.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Extras for {@code spring.threads.virtual.enabled=true}, which already switches Tomcat's request threads and the
+ * application task executor (used by {@code @Async} work) to virtual threads.
+ * <p>
+ * With virtual threads the servlet container no longer caps how many requests block on the database at once: the
+ * Hikari pool does. {@code record-shop.virtual-threads.db-pool-size} sizes that pool for this mode, and
+ * {@code record-shop.virtual-threads.db-connection-timeout} bounds how long a request queues for a connection, so a
+ * slow database sheds load instead of parking thousands of virtual threads for the default 30 seconds.
+ */
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadConfig {
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadConfig.class);
+
+    @Bean
+    public static BeanPostProcessor virtualThreadConnectionPoolSizing(
+            @Value("${record-shop.virtual-threads.db-pool-size:0}") int poolSize,
+            @Value("${record-shop.virtual-threads.db-connection-timeout:0ms}") Duration connectionTimeout) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource dataSource) {
+                    if (poolSize > 0) dataSource.setMaximumPoolSize(poolSize);
+                    if (!connectionTimeout.isZero()) dataSource.setConnectionTimeout(connectionTimeout.toMillis());
+                    log.info("Virtual-thread request execution enabled; database concurrency is bounded by the '{}' pool " +
+                                    "(maximumPoolSize={}, connectionTimeout={}ms)", beanName,
+                            dataSource.getMaximumPoolSize(), dataSource.getConnectionTimeout());
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "record-shop.virtual-threads.pinning-diagnostics", havingValue = "true", matchIfMissing = true)
+    public VirtualThreadPinningMonitor virtualThreadPinningMonitor(
+            @Value("${record-shop.virtual-threads.pinning-threshold:20ms}") Duration threshold,
+            MeterRegistry meterRegistry) {
+        return new VirtualThreadPinningMonitor(threshold, meterRegistry);
+    }
+}
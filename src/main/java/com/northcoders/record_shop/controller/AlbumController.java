@@ -1,48 +1,182 @@
 package com.northcoders.record_shop.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.northcoders.record_shop.cache.AlbumResponseCache;
+import com.northcoders.record_shop.dto.AlbumFacets;
+import com.northcoders.record_shop.dto.AlbumFilter;
+import com.northcoders.record_shop.dto.AlbumFilterResult;
+import com.northcoders.record_shop.dto.AlbumSearchCriteria;
+import com.northcoders.record_shop.dto.AlbumView;
+import com.northcoders.record_shop.dto.BatchInsertResult;
+import com.northcoders.record_shop.dto.CatalogVersion;
+import com.northcoders.record_shop.dto.FuzzySearchResult;
+import com.northcoders.record_shop.dto.IngestStatus;
+import com.northcoders.record_shop.exception.BadRequestException;
 import com.northcoders.record_shop.exception.ItemNotFoundException;
+import com.northcoders.record_shop.exception.NotAcceptableException;
+import com.northcoders.record_shop.exception.PreconditionFailedException;
 import com.northcoders.record_shop.model.Album;
 import com.northcoders.record_shop.service.AlbumService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PagedModel;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.Optional;
 
 @RestController
 @RequestMapping("albums")
 public class AlbumController {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final MediaType APPLICATION_SMILE = new MediaType("application", "x-jackson-smile");
+    // A strong ETag must differ between encodings, so the gzip, CBOR and Smile bodies carry the JSON tag plus a suffix.
+    private static final String GZIP_ETAG_SUFFIX = "-gzip";
+    private static final String CBOR_ETAG_SUFFIX = "-cbor";
+    private static final String SMILE_ETAG_SUFFIX = "-smile";
+    private static final List<String> ETAG_SUFFIXES = List.of(GZIP_ETAG_SUFFIX, CBOR_ETAG_SUFFIX, SMILE_ETAG_SUFFIX);
+    private static final List<MediaType> CACHED_MEDIA_TYPES = List.of(MediaType.APPLICATION_JSON, MediaType.APPLICATION_CBOR, APPLICATION_SMILE);
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final Set<String> SORTABLE_FIELDS = Set.of("id", "artist", "name", "releaseYear", "genre");
+
     private final AlbumService albumService;
+    private final ObjectMapper objectMapper;
+    private final AlbumResponseCache albumResponseCache;
 
     @Autowired
-    public AlbumController(AlbumService albumService) {
+    public AlbumController(AlbumService albumService, ObjectMapper objectMapper, AlbumResponseCache albumResponseCache) {
         this.albumService = albumService;
+        this.objectMapper = objectMapper;
+        this.albumResponseCache = albumResponseCache;
     }
 
-    @Operation(summary = "Get all albums", description = "Retrieve all albums from the database")
+    @Operation(summary = "Get all albums", description = "Retrieve all albums from the database. Pass 'limit' (and the " +
+            "'after' cursor from the previous page's X-Next-Cursor header) to page through the catalog by id instead. " +
+            "Pass 'fields', e.g. 'id,name', to read and return only those fields (the id is always included).")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully retrieved all albums"),
+            @ApiResponse(responseCode = "400", description = "Bad request for an unknown field or a limit below 1"),
             @ApiResponse(responseCode = "500", description = "Internal server error")
     })
     @GetMapping("/all")
-    public ResponseEntity<List<Album>> getAllAlums() {
-        return new ResponseEntity<>(albumService.getAllAlbums(), HttpStatus.OK);
+    public ResponseEntity<List<?>> getAllAlums(@RequestParam(required = false) Integer limit,
+                                               @RequestParam(required = false) Long after,
+                                               @RequestParam(required = false) String fields) {
+        if (limit != null && limit < 1) throw new BadRequestException("limit must be at least 1.");
+        Set<String> fieldSet = parseFields(fields);
+        if (limit == null && after == null) {
+            return new ResponseEntity<>(fieldSet == null ? albumService.getAllAlbums() : albumService.getAllAlbumViews(fieldSet),
+                    HttpStatus.OK);
+        }
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        List<?> albums;
+        Long nextCursor = null;
+        if (fieldSet == null) {
+            List<Album> page = albumService.getAlbumsAfter(after, pageSize);
+            if (!page.isEmpty()) nextCursor = page.get(page.size() - 1).getId();
+            albums = page;
+        } else {
+            List<AlbumView> page = albumService.getAlbumViewsAfter(after, pageSize, fieldSet);
+            if (!page.isEmpty()) nextCursor = page.get(page.size() - 1).id();
+            albums = page;
+        }
+        HttpHeaders headers = new HttpHeaders();
+        if (nextCursor != null && albums.size() >= Math.min(pageSize, AlbumService.MAX_PAGE_SIZE)) {
+            headers.add(NEXT_CURSOR_HEADER, String.valueOf(nextCursor));
+            headers.add(HttpHeaders.LINK, String.format("</albums/all?limit=%d&after=%d%s>; rel=\"next\"", albums.size(),
+                    nextCursor, fields == null ? "" : "&fields=" + String.join(",", fieldSet)));
+        }
+        return new ResponseEntity<>(albums, headers, HttpStatus.OK);
+    }
+
+    @Operation(summary = "Stream all albums", description = "Stream every album as newline-delimited JSON, in id order, straight from a database cursor")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully streamed all albums"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @GetMapping(value = "/all/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void streamAllAlbums(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        OutputStream out = response.getOutputStream();
+        albumService.streamAllAlbums(album -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(album));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        out.flush();
+    }
+
+    @Operation(summary = "Export a catalog snapshot", description = "Download the whole catalog as a compact binary " +
+            "snapshot with sorted artist, name, release year and genre indexes, for offline search with the CLI")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully exported the catalog"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @GetMapping(value = "/snapshot", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public void exportSnapshot(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"albums.snapshot\"");
+        OutputStream out = response.getOutputStream();
+        albumService.writeSnapshot(out);
+        out.flush();
     }
 
-    @Operation(summary = "Get album by ID", description = "Retrieve an album by its ID")
+    @Operation(summary = "Get album by ID", description = "Retrieve an album by its ID. The ETag is the album's version; " +
+            "send it back in If-None-Match to get a 304 while the album is unchanged")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Successfully retrieved album"),
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved album",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = Album.class))),
+            @ApiResponse(responseCode = "304", description = "Album unchanged since the ETag in If-None-Match"),
+            @ApiResponse(responseCode = "406", description = "Accept allows none of JSON, CBOR and Smile"),
             @ApiResponse(responseCode = "404", description = "Album not found"),
             @ApiResponse(responseCode = "500", description = "Internal server error")
     })
     @GetMapping("/{id}")
-    public ResponseEntity<Album> getAlbumById(@PathVariable("id") Long id) {
-        return new ResponseEntity<>(albumService.getAlbumById(id), HttpStatus.OK);
+    public ResponseEntity<byte[]> getAlbumById(@PathVariable("id") Long id,
+                                               @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                               @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                               WebRequest request) {
+        // Read before the album so a change landing in between can only make Last-Modified older, never newer.
+        CatalogVersion catalogVersion = albumService.getCatalogVersion();
+        Album album = albumService.getAlbumById(id);
+        String tag = album.getVersion() == null ? null : String.valueOf(album.getVersion());
+        long lastModified = stableLastModified(catalogVersion);
+        if (isNotModified(request, tag, lastModified)) return notModified(tag, accept, acceptEncoding, lastModified);
+        return encoded(albumResponseCache.album(album), accept, acceptEncoding, tag, lastModified);
     }
 
     @Operation(summary = "Add a new album", description = "Add a new album to the database")
@@ -57,76 +191,527 @@ public class AlbumController {
         return new ResponseEntity<>(addedAlbum, HttpStatus.CREATED);
     }
 
-    @Operation(summary = "Update album by ID", description = "Update an existing album by its ID")
+    @Operation(summary = "Add albums in bulk", description = "Insert a JSON array of albums in chunked, JDBC-batched transactions and report the outcome of each item")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "All albums created successfully"),
+            @ApiResponse(responseCode = "207", description = "Some albums could not be created; see the per-item results"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BatchInsertResult> addAlbums(@RequestBody List<Album> albums) {
+        return batchResponse(albumService.addAlbums(albums.iterator()));
+    }
+
+    @Operation(summary = "Add albums in bulk from NDJSON", description = "Insert albums streamed as newline-delimited JSON, one album per line, without buffering the whole request")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "All albums created successfully"),
+            @ApiResponse(responseCode = "207", description = "Some albums could not be created; see the per-item results"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<BatchInsertResult> addAlbumsFromNdjson(HttpServletRequest request) throws IOException {
+        try (BufferedReader reader = request.getReader()) {
+            return batchResponse(albumService.addAlbums(new NdjsonAlbumIterator(reader)));
+        }
+    }
+
+    @Operation(summary = "Queue an album for creation", description = "Write the album to a durable local queue and " +
+            "return at once with a tracking id; a background writer inserts queued albums in batches. Follow the " +
+            "Location header to see whether it has been created")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Album queued; the body and Location header give its tracking id"),
+            @ApiResponse(responseCode = "400", description = "Bad request"),
+            @ApiResponse(responseCode = "503", description = "The queue is full, or ingestion is not enabled; see Retry-After"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @PostMapping("/ingest")
+    public ResponseEntity<IngestStatus> ingestAlbum(@RequestBody Album album) {
+        IngestStatus status = albumService.ingestAlbum(album);
+        return ResponseEntity.accepted()
+                .location(URI.create("/albums/ingest/" + status.trackingId()))
+                .body(status);
+    }
+
+    @Operation(summary = "Get the status of a queued album", description = "Report whether an album sent to " +
+            "POST /albums/ingest is still queued, has been created (with its id) or has failed (with the reason)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved the status"),
+            @ApiResponse(responseCode = "404", description = "Unknown tracking id, or processed too long ago to report on"),
+            @ApiResponse(responseCode = "503", description = "Ingestion is not enabled"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @GetMapping("/ingest/{trackingId}")
+    public ResponseEntity<IngestStatus> getIngestStatus(@PathVariable long trackingId) {
+        return new ResponseEntity<>(albumService.getIngestStatus(trackingId), HttpStatus.OK);
+    }
+
+    private static ResponseEntity<BatchInsertResult> batchResponse(BatchInsertResult result) {
+        HttpStatus status = result.failed() == 0 ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS;
+        return new ResponseEntity<>(result, status);
+    }
+
+    @Operation(summary = "Update album by ID", description = "Update an existing album by its ID. Send the album's " +
+            "ETag (its version) in If-Match to have the update rejected if someone else changed the album first; only " +
+            "such a conditional update returns the new version and ETag")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Album updated successfully"),
             @ApiResponse(responseCode = "404", description = "Album not found"),
             @ApiResponse(responseCode = "400", description = "Bad request"),
+            @ApiResponse(responseCode = "412", description = "Album was modified since the version in If-Match"),
             @ApiResponse(responseCode = "500", description = "Internal server error")
     })
     @PutMapping("/{id}")
-    public ResponseEntity<Album> updateAlbumById(@PathVariable("id") Long id, @RequestBody Album album) {
-        return new ResponseEntity<>(albumService.updateAlbumById(id, album), HttpStatus.OK);
+    public ResponseEntity<Album> updateAlbumById(@PathVariable("id") Long id, @RequestBody Album album,
+                                                 @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long expectedVersion = parseIfMatch(ifMatch);
+        Album updatedAlbum = expectedVersion == null
+                ? albumService.updateAlbumById(id, album)
+                : albumService.updateAlbumById(id, album, expectedVersion);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (updatedAlbum.getVersion() != null) response.eTag(String.valueOf(updatedAlbum.getVersion()));
+        return response.body(updatedAlbum);
     }
 
-    @Operation(summary = "Delete album by ID", description = "Delete an album by its ID")
+    @Operation(summary = "Delete album by ID", description = "Delete an album by its ID, optionally only if it is " +
+            "still at the version given in If-Match")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Album deleted successfully"),
             @ApiResponse(responseCode = "404", description = "Album not found"),
+            @ApiResponse(responseCode = "412", description = "Album was modified since the version in If-Match"),
             @ApiResponse(responseCode = "500", description = "Internal server error")
     })
     @DeleteMapping("/{id}")
-    public ResponseEntity<String> deleteAlbumById(@PathVariable("id") Long id) {
-        return new ResponseEntity<>(albumService.deleteAlbumById(id), HttpStatus.OK);
+    public ResponseEntity<String> deleteAlbumById(@PathVariable("id") Long id,
+                                                  @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long expectedVersion = parseIfMatch(ifMatch);
+        String message = expectedVersion == null
+                ? albumService.deleteAlbumById(id)
+                : albumService.deleteAlbumById(id, expectedVersion);
+        return new ResponseEntity<>(message, HttpStatus.OK);
     }
 
-    @Operation(summary = "Get albums by artist", description = "Retrieve albums by artist name")
+    @Operation(summary = "Get albums by artist", description = "Retrieve albums by artist name. The ETag is the catalog " +
+            "version; send it back in If-None-Match to get a 304 while no album has changed")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Successfully retrieved albums by artist"),
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved albums by artist",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, array = @ArraySchema(schema = @Schema(implementation = Album.class)))),
+            @ApiResponse(responseCode = "304", description = "Catalog unchanged since the ETag in If-None-Match"),
+            @ApiResponse(responseCode = "406", description = "Accept allows none of JSON, CBOR and Smile"),
             @ApiResponse(responseCode = "500", description = "Internal server error")
     })
     @GetMapping("/by-artist")
-    public ResponseEntity<List<Album>> getAlbumsByArtist(@RequestParam String artist) {
+    public ResponseEntity<byte[]> getAlbumsByArtist(@RequestParam String artist,
+                                                    @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                                    @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                                    WebRequest request) {
+        CatalogVersion catalogVersion = albumService.getCatalogVersion();
+        String tag = catalogVersion == null ? null : catalogVersion.tag();
+        long lastModified = stableLastModified(catalogVersion);
+        if (isNotModified(request, tag, lastModified)) return notModified(tag, accept, acceptEncoding, lastModified);
         List<Album> albums = albumService.getAlbumsByArtist(artist);
-        return new ResponseEntity<>(albums, HttpStatus.OK);
+        return encoded(albumResponseCache.albumList(albums), accept, acceptEncoding, tag, lastModified);
     }
 
-    @Operation(summary = "Get albums by release year", description = "Retrieve albums by release year")
+    @Operation(summary = "Get albums by release year", description = "Retrieve albums by release year. The ETag is " +
+            "the catalog version; send it back in If-None-Match to get a 304 while no album has changed")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Successfully retrieved albums by release year"),
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved albums by release year",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, array = @ArraySchema(schema = @Schema(implementation = Album.class)))),
+            @ApiResponse(responseCode = "304", description = "Catalog unchanged since the ETag in If-None-Match"),
+            @ApiResponse(responseCode = "406", description = "Accept allows none of JSON, CBOR and Smile"),
             @ApiResponse(responseCode = "500", description = "Internal server error")
     })
     @GetMapping("/by-release-year")
-    public ResponseEntity<List<Album>> getAlbumsByReleaseYear(@RequestParam int releaseYear) {
+    public ResponseEntity<byte[]> getAlbumsByReleaseYear(@RequestParam int releaseYear,
+                                                         @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                                         @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                                         WebRequest request) {
+        CatalogVersion catalogVersion = albumService.getCatalogVersion();
+        String tag = catalogVersion == null ? null : catalogVersion.tag();
+        long lastModified = stableLastModified(catalogVersion);
+        if (isNotModified(request, tag, lastModified)) return notModified(tag, accept, acceptEncoding, lastModified);
         List<Album> albums = albumService.getAlbumsByReleaseYear(releaseYear);
-        return new ResponseEntity<>(albums, HttpStatus.OK);
+        return encoded(albumResponseCache.albumList(albums), accept, acceptEncoding, tag, lastModified);
     }
 
-    @Operation(summary = "Get albums by genre", description = "Retrieve albums by genre")
+    @Operation(summary = "Get albums by release-year range", description = "Retrieve one page of the albums released " +
+            "from 'from' to 'to' inclusive in a single range query, sorted by e.g. 'releaseYear,desc' (ties by id). " +
+            "Pass 'fields', e.g. 'id,name', to read and return only those fields (the id is always included).")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Successfully retrieved albums by genre"),
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved the page of albums, possibly empty"),
+            @ApiResponse(responseCode = "400", description = "Bad request for a reversed range, an invalid sort or page, or an unknown field"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @GetMapping("/by-release-year-range")
+    public ResponseEntity<PagedModel<?>> getAlbumsByReleaseYearRange(@RequestParam int from, @RequestParam int to,
+                                                                     @RequestParam(defaultValue = "0") int page,
+                                                                     @RequestParam(defaultValue = "20") int size,
+                                                                     @RequestParam(defaultValue = "releaseYear,asc") String sort,
+                                                                     @RequestParam(required = false) String fields) {
+        if (from > to) throw new BadRequestException(String.format("'from' (%d) must not be after 'to' (%d).", from, to));
+        if (page < 0 || size < 1 || size > AlbumService.MAX_PAGE_SIZE) {
+            throw new BadRequestException(String.format("Page must be >= 0 and size between 1 and %d.", AlbumService.MAX_PAGE_SIZE));
+        }
+        // Ties go the same way as the sort, so a descending page is a backward scan of (release_year, id).
+        PageRequest pageRequest = PageRequest.of(page, size, parseSort(sort, true));
+        Set<String> fieldSet = parseFields(fields);
+        if (fieldSet != null) {
+            return new ResponseEntity<>(new PagedModel<>(
+                    albumService.getAlbumViewsByReleaseYearRange(from, to, pageRequest, fieldSet)), HttpStatus.OK);
+        }
+        return new ResponseEntity<>(new PagedModel<>(albumService.getAlbumsByReleaseYearRange(from, to, pageRequest)),
+                HttpStatus.OK);
+    }
+
+    @Operation(summary = "Get albums by genre", description = "Retrieve albums by genre. The ETag is the catalog " +
+            "version; send it back in If-None-Match to get a 304 while no album has changed")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved albums by genre",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, array = @ArraySchema(schema = @Schema(implementation = Album.class)))),
+            @ApiResponse(responseCode = "304", description = "Catalog unchanged since the ETag in If-None-Match"),
+            @ApiResponse(responseCode = "406", description = "Accept allows none of JSON, CBOR and Smile"),
             @ApiResponse(responseCode = "400", description = "Bad request for invalid genre"),
             @ApiResponse(responseCode = "500", description = "Internal server error")
     })
     @GetMapping("/by-genre")
-    public ResponseEntity<List<Album>> getAlbumsByGenre(@RequestParam String genre) {
+    public ResponseEntity<byte[]> getAlbumsByGenre(@RequestParam String genre,
+                                                   @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                                   @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                                   WebRequest request) {
+        Album.AlbumGenres albumGenre = parseGenre(genre);
+        CatalogVersion catalogVersion = albumService.getCatalogVersion();
+        String tag = catalogVersion == null ? null : catalogVersion.tag();
+        long lastModified = stableLastModified(catalogVersion);
+        if (isNotModified(request, tag, lastModified)) return notModified(tag, accept, acceptEncoding, lastModified);
+        List<Album> albums = albumService.getAlbumsByGenre(albumGenre);
+        return encoded(albumResponseCache.albumList(albums), accept, acceptEncoding, tag, lastModified);
+    }
+
+    @Operation(summary = "Get album facet counts", description = "Album counts per genre, per release year and for " +
+            "the 'topArtists' artists with the most albums, from counters kept in memory rather than the database")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved facet counts"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @GetMapping("/facets")
+    public ResponseEntity<AlbumFacets> getFacets(@RequestParam(defaultValue = "10") int topArtists) {
+        return new ResponseEntity<>(albumService.getFacets(topArtists), HttpStatus.OK);
+    }
+
+    @Operation(summary = "Suggest albums as you type", description = "Up to 'limit' albums whose artist or name " +
+            "contains every word of 'q', ignoring case and accents, from an index kept in memory rather than the database")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved suggestions, possibly none"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @GetMapping("/suggest")
+    public ResponseEntity<List<Album>> suggestAlbums(@RequestParam String q, @RequestParam(defaultValue = "10") int limit) {
+        return new ResponseEntity<>(albumService.suggestAlbums(q, limit), HttpStatus.OK);
+    }
+
+    @Operation(summary = "Fuzzy search albums", description = "Albums whose artist and/or name are within a few typos " +
+            "of 'artist' and 'name', ranked by the number of edits; searching stops after 'budgetMs' milliseconds, " +
+            "and 'complete' is false when it did")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved the ranked matches, possibly none"),
+            @ApiResponse(responseCode = "400", description = "Bad request when neither artist nor name is given"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @GetMapping("/fuzzy")
+    public ResponseEntity<FuzzySearchResult> fuzzySearchAlbums(@RequestParam(required = false) String artist,
+                                                               @RequestParam(required = false) String name,
+                                                               @RequestParam(defaultValue = "10") int limit,
+                                                               @RequestParam(defaultValue = "50") long budgetMs) {
+        if ((artist == null || artist.isBlank()) && (name == null || name.isBlank())) {
+            throw new BadRequestException("Give an artist, a name or both.");
+        }
+        if (budgetMs < 1) throw new BadRequestException("budgetMs must be at least 1.");
+        return new ResponseEntity<>(albumService.fuzzySearchAlbums(artist, name, limit, Duration.ofMillis(budgetMs)),
+                HttpStatus.OK);
+    }
+
+    @Operation(summary = "Filter albums", description = "Count the albums matching a filter expression such as " +
+            "'genre:ROCK AND year:1990..1999 AND NOT artist:\"Blur\",\"Oasis\"' and list the ids of up to 'limit' " +
+            "of them after the 'after' cursor, from bitmaps kept in memory rather than the database; limit=0 only counts")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully counted the matching albums and listed a page of their ids"),
+            @ApiResponse(responseCode = "400", description = "Bad request for a malformed filter or a negative limit"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @GetMapping("/filter")
+    public ResponseEntity<AlbumFilterResult> filterAlbums(@RequestParam String q,
+                                                          @RequestParam(required = false) Long after,
+                                                          @RequestParam(defaultValue = "100") int limit) {
+        if (limit < 0) throw new BadRequestException("limit must not be negative.");
+        AlbumFilter filter;
         try {
-            Album.AlbumGenres albumGenre = Album.AlbumGenres.valueOf(genre.toUpperCase());
-            List<Album> albums = albumService.getAlbumsByGenre(albumGenre);
-            return new ResponseEntity<>(albums, HttpStatus.OK);
+            filter = AlbumFilter.parse(q);
         } catch (IllegalArgumentException e) {
-            throw new ItemNotFoundException(String.format("Genre '%s' is not recognized.", genre));
+            throw new BadRequestException(e.getMessage());
         }
+        return new ResponseEntity<>(albumService.filterAlbums(filter, after, limit), HttpStatus.OK);
     }
 
-    @Operation(summary = "Get albums by name", description = "Retrieve albums by name")
+    @Operation(summary = "Get albums by name", description = "Retrieve albums by name. The ETag is the catalog " +
+            "version; send it back in If-None-Match to get a 304 while no album has changed")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Successfully retrieved albums by name"),
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved albums by name",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, array = @ArraySchema(schema = @Schema(implementation = Album.class)))),
+            @ApiResponse(responseCode = "304", description = "Catalog unchanged since the ETag in If-None-Match"),
+            @ApiResponse(responseCode = "406", description = "Accept allows none of JSON, CBOR and Smile"),
             @ApiResponse(responseCode = "500", description = "Internal server error")
     })
     @GetMapping("/by-name")
-    public ResponseEntity<List<Album>> getAlbumsByName(@RequestParam String name) {
+    public ResponseEntity<byte[]> getAlbumsByName(@RequestParam String name,
+                                                  @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                                  @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                                  WebRequest request) {
+        CatalogVersion catalogVersion = albumService.getCatalogVersion();
+        String tag = catalogVersion == null ? null : catalogVersion.tag();
+        long lastModified = stableLastModified(catalogVersion);
+        if (isNotModified(request, tag, lastModified)) return notModified(tag, accept, acceptEncoding, lastModified);
         List<Album> albums = albumService.getAlbumsByName(name);
-        return new ResponseEntity<>(albums, HttpStatus.OK);
+        return encoded(albumResponseCache.albumList(albums), accept, acceptEncoding, tag, lastModified);
+    }
+
+    @Operation(summary = "Search albums", description = "Filter albums by any combination of artist, name, genre and " +
+            "release-year range in a single query, returning one page sorted by e.g. 'releaseYear,desc'. " +
+            "Pass 'fields', e.g. 'id,name', to read and return only those fields (the id is always included).")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved the page of matching albums"),
+            @ApiResponse(responseCode = "400", description = "Bad request for an invalid sort or page, or an unknown field"),
+            @ApiResponse(responseCode = "404", description = "Genre not recognized"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @GetMapping("/search")
+    public ResponseEntity<PagedModel<?>> searchAlbums(@RequestParam(required = false) String artist,
+                                                      @RequestParam(required = false) String name,
+                                                      @RequestParam(required = false) String genre,
+                                                      @RequestParam(required = false) Integer fromYear,
+                                                      @RequestParam(required = false) Integer toYear,
+                                                      @RequestParam(defaultValue = "0") int page,
+                                                      @RequestParam(defaultValue = "20") int size,
+                                                      @RequestParam(defaultValue = "id,asc") String sort,
+                                                      @RequestParam(required = false) String fields) {
+        if (page < 0 || size < 1 || size > AlbumService.MAX_PAGE_SIZE) {
+            throw new BadRequestException(String.format("Page must be >= 0 and size between 1 and %d.", AlbumService.MAX_PAGE_SIZE));
+        }
+        AlbumSearchCriteria criteria = new AlbumSearchCriteria(artist, name,
+                genre == null ? null : parseGenre(genre), fromYear, toYear);
+        PageRequest pageRequest = PageRequest.of(page, size, parseSort(sort));
+        Set<String> fieldSet = parseFields(fields);
+        if (fieldSet != null) {
+            return new ResponseEntity<>(new PagedModel<>(albumService.searchAlbumViews(criteria, pageRequest, fieldSet)),
+                    HttpStatus.OK);
+        }
+        return new ResponseEntity<>(new PagedModel<>(albumService.searchAlbums(criteria, pageRequest)), HttpStatus.OK);
+    }
+
+    private static Album.AlbumGenres parseGenre(String genre) {
+        Album.AlbumGenres parsed = Album.AlbumGenres.fromName(genre);
+        if (parsed == null) {
+            throw new ItemNotFoundException(String.format("Genre '%s' is not recognized.", genre));
+        }
+        return parsed;
+    }
+
+    // Writes the cached body in the format the client asked for in Accept (JSON by default), and gzips JSON when the
+    // client accepts it and the body is large enough. CBOR and Smile are compact already and are sent as they are.
+    private static ResponseEntity<byte[]> encoded(AlbumResponseCache.EncodedResponse body, String accept,
+                                                  String acceptEncoding, String tag, long lastModified) {
+        MediaType mediaType = negotiate(accept);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(mediaType)
+                .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING)
+                .cacheControl(CacheControl.noCache());
+        if (lastModified > 0) response.lastModified(lastModified);
+        String etag = representationTag(tag, mediaType, acceptEncoding);
+        if (etag != null) response.eTag(etag);
+        if (mediaType.equals(MediaType.APPLICATION_CBOR)) return response.body(body.cbor());
+        if (mediaType.equals(APPLICATION_SMILE)) return response.body(body.smile());
+        byte[] gzip = acceptsGzip(acceptEncoding) ? body.gzip() : null;
+        if (gzip != null) return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(gzip);
+        return response.body(body.json());
+    }
+
+    /**
+     * The ETag of the representation the request negotiates, from its headers alone, so a 304 carries the same tag as
+     * the 200 would. A gzip-accepting JSON client gets the gzip tag even for a body too small to compress: that body
+     * is then identical to the plain one, which a strong ETag allows.
+     */
+    private static String representationTag(String tag, MediaType mediaType, String acceptEncoding) {
+        if (tag == null) return null;
+        if (mediaType.equals(MediaType.APPLICATION_CBOR)) return tag + CBOR_ETAG_SUFFIX;
+        if (mediaType.equals(APPLICATION_SMILE)) return tag + SMILE_ETAG_SUFFIX;
+        return acceptsGzip(acceptEncoding) ? tag + GZIP_ETAG_SUFFIX : tag;
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        return acceptEncoding != null && acceptEncoding.contains("gzip");
+    }
+
+    /**
+     * The first of JSON, CBOR and Smile that the Accept header allows, preferring higher quality and then a type named
+     * outright over a wildcard. JSON when there is no Accept header, or one that cannot be parsed; a header that allows
+     * none of them is answered with 406 Not Acceptable.
+     */
+    private static MediaType negotiate(String accept) {
+        if (accept == null || accept.isBlank()) return MediaType.APPLICATION_JSON;
+        List<MediaType> accepted;
+        try {
+            accepted = new ArrayList<>(MediaType.parseMediaTypes(accept));
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_JSON;
+        }
+        accepted.sort(Comparator.comparingDouble(MediaType::getQualityValue).reversed()
+                .thenComparing(type -> type.isWildcardType() || type.isWildcardSubtype()));
+        for (MediaType type : accepted) {
+            if (type.getQualityValue() == 0) break;
+            for (MediaType cached : CACHED_MEDIA_TYPES) {
+                if (type.includes(cached)) return cached;
+            }
+        }
+        throw new NotAcceptableException(String.format("Cannot produce '%s'; choose from %s.", accept,
+                MediaType.toString(CACHED_MEDIA_TYPES)));
+    }
+
+    private static ResponseEntity<byte[]> notModified(String tag, String accept, String acceptEncoding,
+                                                      long lastModified) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING)
+                .cacheControl(CacheControl.noCache());
+        String etag = representationTag(tag, negotiate(accept), acceptEncoding);
+        if (etag != null) response.eTag(etag);
+        if (lastModified > 0) response.lastModified(lastModified);
+        return response.build();
+    }
+
+    /**
+     * If-None-Match takes precedence: the request is not modified when any of its tags (weak or strong, either encoding)
+     * is the current one. Without it, If-Modified-Since is compared to the second, as the header is.
+     */
+    private static boolean isNotModified(WebRequest request, String tag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            if (tag == null) return false;
+            for (String candidate : ifNoneMatch.split(",")) {
+                String value = candidate.trim();
+                if (value.equals("*") || tag.equals(unquoteETag(value))) return true;
+            }
+            return false;
+        }
+        String ifModifiedSince = request.getHeader(HttpHeaders.IF_MODIFIED_SINCE);
+        if (ifModifiedSince == null || lastModified <= 0) return false;
+        try {
+            long since = ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return lastModified / 1000 <= since / 1000;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Last-Modified only has second precision: one sent during the second of the latest change could be followed by
+     * another change in that same second, which If-Modified-Since would then miss. So it is withheld (0) until the
+     * second has passed.
+     */
+    private static long stableLastModified(CatalogVersion catalogVersion) {
+        if (catalogVersion == null) return 0;
+        return catalogVersion.lastModified() / 1000 < System.currentTimeMillis() / 1000 ? catalogVersion.lastModified() : 0;
+    }
+
+    private static String unquoteETag(String etag) {
+        String tag = etag.startsWith("W/") ? etag.substring(2) : etag;
+        tag = tag.replace("\"", "");
+        for (String suffix : ETAG_SUFFIXES) {
+            if (tag.endsWith(suffix)) return tag.substring(0, tag.length() - suffix.length());
+        }
+        return tag;
+    }
+
+    // Album ETags are the quoted version number; "*" (or no header) means the update is unconditional.
+    private static Long parseIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) return null;
+        String tag = unquoteETag(ifMatch.trim());
+        try {
+            return Long.parseLong(tag);
+        } catch (NumberFormatException e) {
+            throw new PreconditionFailedException(String.format("If-Match '%s' does not match any album version.", ifMatch));
+        }
+    }
+
+    // A sparse fieldset such as "id,name", or null when the whole album was asked for.
+    private static Set<String> parseFields(String fields) {
+        if (fields == null) return null;
+        Set<String> parsed = new LinkedHashSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (!AlbumView.FIELDS.contains(name)) {
+                throw new BadRequestException(String.format("Unknown field '%s'; choose from %s.", name,
+                        String.join(", ", AlbumView.FIELDS)));
+            }
+            parsed.add(name);
+        }
+        return parsed;
+    }
+
+    private static Sort parseSort(String sort) {
+        return parseSort(sort, false);
+    }
+
+    private static Sort parseSort(String sort, boolean tiesInSortDirection) {
+        String[] parts = sort.split(",");
+        String property = parts[0].trim();
+        if (!SORTABLE_FIELDS.contains(property) || parts.length > 2) {
+            throw new BadRequestException(String.format("Cannot sort by '%s'.", sort));
+        }
+        Sort.Direction direction = Sort.Direction.ASC;
+        if (parts.length == 2) {
+            direction = Sort.Direction.fromOptionalString(parts[1].trim())
+                    .orElseThrow(() -> new BadRequestException(String.format("Cannot sort by '%s'.", sort)));
+        }
+        Sort order = Sort.by(direction, property);
+        // Break ties on id so pages stay stable when many albums share the sort value.
+        Sort.Direction tieDirection = tiesInSortDirection ? direction : Sort.Direction.ASC;
+        return property.equals("id") ? order : order.and(Sort.by(tieDirection, "id"));
+    }
+
+    /**
+     * Reads one album per non-blank line. A line that is not a valid album yields {@code null}, which the batch
+     * insert reports as a failed item instead of aborting the whole upload.
+     */
+    private class NdjsonAlbumIterator implements Iterator<Album> {
+        private final BufferedReader reader;
+        private String nextLine;
+
+        NdjsonAlbumIterator(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while (nextLine == null) {
+                    String line = reader.readLine();
+                    if (line == null) return false;
+                    if (!line.isBlank()) nextLine = line;
+                }
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public Album next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            String line = nextLine;
+            nextLine = null;
+            try {
+                return objectMapper.readValue(line, Album.class);
+            } catch (IOException e) {
+                return null;
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,22 @@
+package com.northcoders.record_shop.dto;
+
+import com.northcoders.record_shop.model.Album;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Album counts for GET /albums/facets: per genre (every genre, including empty ones), per release year in ascending
+ * order, and the artists with the most albums.
+ */
+public record AlbumFacets(long total, Map<Album.AlbumGenres, Long> genres, Map<Integer, Long> releaseYears,
+                          List<ArtistCount> topArtists) {
+
+    public record ArtistCount(String artist, long count) {
+    }
+
+    public AlbumFacets withTopArtists(int limit) {
+        if (limit >= topArtists.size()) return this;
+        return new AlbumFacets(total, genres, releaseYears, topArtists.subList(0, Math.max(0, limit)));
+    }
+}
@@ -0,0 +1,47 @@
+package com.northcoders.record_shop.dto;
+
+import com.northcoders.record_shop.model.Album;
+
+import java.util.List;
+
+/**
+ * A filter expression for GET /albums/filter, such as
+ * {@code genre:ROCK AND year:1990..1999 AND NOT artist:"Blur","Oasis"}.
+ * <p>
+ * A term is {@code genre:}, {@code year:} or {@code artist:} followed by one or more comma-separated values, any of
+ * which may match. Genres are matched ignoring case and artists exactly, as the facet counts list them; a value with
+ * spaces is written in double quotes. A year is a single year or a range {@code from..to}, where either end may be left
+ * out. Terms combine with {@code NOT}, {@code AND} and {@code OR}, binding in that order and written in any case, and
+ * with parentheses.
+ */
+public sealed interface AlbumFilter {
+
+    record And(List<AlbumFilter> filters) implements AlbumFilter {
+    }
+
+    record Or(List<AlbumFilter> filters) implements AlbumFilter {
+    }
+
+    record Not(AlbumFilter filter) implements AlbumFilter {
+    }
+
+    record Genre(Album.AlbumGenres genre) implements AlbumFilter {
+    }
+
+    /**
+     * Albums released from {@code from} to {@code to}, both inclusive; a null end is open.
+     */
+    record ReleaseYears(Integer from, Integer to) implements AlbumFilter {
+    }
+
+    record Artist(String artist) implements AlbumFilter {
+    }
+
+    /**
+     * Parses an expression, throwing IllegalArgumentException with the position of the first problem.
+     */
+    static AlbumFilter parse(String expression) {
+        if (expression == null || expression.isBlank()) throw new IllegalArgumentException("The filter is empty.");
+        return new AlbumFilterParser(expression).parse();
+    }
+}
@@ -0,0 +1,156 @@
+package com.northcoders.record_shop.dto;
+
+import com.northcoders.record_shop.model.Album;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recursive-descent parser for {@link AlbumFilter} expressions.
+ */
+final class AlbumFilterParser {
+    private static final int MAX_DEPTH = 32;
+
+    private final String text;
+    private int position;
+    private int depth;
+
+    AlbumFilterParser(String text) {
+        this.text = text;
+    }
+
+    AlbumFilter parse() {
+        AlbumFilter filter = or();
+        if (peek() != null) throw error("Expected AND, OR or the end of the filter");
+        return filter;
+    }
+
+    private AlbumFilter or() {
+        List<AlbumFilter> filters = new ArrayList<>(List.of(and()));
+        while (keyword("OR")) filters.add(and());
+        return filters.size() == 1 ? filters.get(0) : new AlbumFilter.Or(List.copyOf(filters));
+    }
+
+    private AlbumFilter and() {
+        List<AlbumFilter> filters = new ArrayList<>(List.of(unary()));
+        while (keyword("AND")) filters.add(unary());
+        return filters.size() == 1 ? filters.get(0) : new AlbumFilter.And(List.copyOf(filters));
+    }
+
+    private AlbumFilter unary() {
+        if (++depth > MAX_DEPTH) throw error("The filter is nested too deeply");
+        try {
+            if (keyword("NOT")) return new AlbumFilter.Not(unary());
+            if (symbol('(')) {
+                AlbumFilter filter = or();
+                if (!symbol(')')) throw error("Expected ')'");
+                return filter;
+            }
+            return term();
+        } finally {
+            depth--;
+        }
+    }
+
+    private AlbumFilter term() {
+        int start = position;
+        String field = word();
+        if (field == null || !symbol(':')) throw error("Expected genre:, year: or artist:");
+        List<AlbumFilter> values = new ArrayList<>();
+        do {
+            int valueStart = skipSpaces();
+            String value = peek() != null && peek() == '"' ? quoted() : word();
+            if (value == null) throw error("Expected a value");
+            values.add(switch (field.toLowerCase()) {
+                case "genre" -> genre(value, valueStart);
+                case "year" -> releaseYears(value, valueStart);
+                case "artist" -> new AlbumFilter.Artist(value);
+                default -> {
+                    position = start;
+                    throw error("Unknown field '" + field + "'; expected genre, year or artist");
+                }
+            });
+        } while (symbol(','));
+        return values.size() == 1 ? values.get(0) : new AlbumFilter.Or(List.copyOf(values));
+    }
+
+    private AlbumFilter.Genre genre(String value, int at) {
+        Album.AlbumGenres genre = Album.AlbumGenres.fromName(value);
+        if (genre == null) {
+            position = at;
+            throw error("Genre '" + value + "' is not recognized");
+        }
+        return new AlbumFilter.Genre(genre);
+    }
+
+    private AlbumFilter.ReleaseYears releaseYears(String value, int at) {
+        try {
+            int range = value.indexOf("..");
+            if (range < 0) {
+                int year = Integer.parseInt(value);
+                return new AlbumFilter.ReleaseYears(year, year);
+            }
+            String from = value.substring(0, range);
+            String to = value.substring(range + 2);
+            if (from.isEmpty() && to.isEmpty()) throw new NumberFormatException();
+            return new AlbumFilter.ReleaseYears(from.isEmpty() ? null : Integer.valueOf(from),
+                    to.isEmpty() ? null : Integer.valueOf(to));
+        } catch (NumberFormatException e) {
+            position = at;
+            throw error("Expected a year or a range like 1990..1999, got '" + value + "'");
+        }
+    }
+
+    private boolean keyword(String keyword) {
+        int start = skipSpaces();
+        String word = word();
+        if (keyword.equalsIgnoreCase(word)) return true;
+        position = start;
+        return false;
+    }
+
+    private boolean symbol(char symbol) {
+        Character next = peek();
+        if (next == null || next != symbol) return false;
+        position++;
+        return true;
+    }
+
+    // A bare value or keyword: letters, digits and the characters of year ranges and genre names.
+    private String word() {
+        int start = skipSpaces();
+        while (position < text.length()) {
+            char c = text.charAt(position);
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '.' && c != '-') break;
+            position++;
+        }
+        return position > start ? text.substring(start, position) : null;
+    }
+
+    private String quoted() {
+        StringBuilder value = new StringBuilder();
+        int start = position++;
+        while (position < text.length()) {
+            char c = text.charAt(position++);
+            if (c == '"') return value.toString();
+            if (c == '\\' && position < text.length()) c = text.charAt(position++);
+            value.append(c);
+        }
+        position = start;
+        throw error("Unterminated quoted value");
+    }
+
+    private Character peek() {
+        skipSpaces();
+        return position < text.length() ? text.charAt(position) : null;
+    }
+
+    private int skipSpaces() {
+        while (position < text.length() && Character.isWhitespace(text.charAt(position))) position++;
+        return position;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + position + ".");
+    }
+}
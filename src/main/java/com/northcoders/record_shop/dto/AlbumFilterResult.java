@@ -0,0 +1,10 @@
+package com.northcoders.record_shop.dto;
+
+import java.util.List;
+
+/**
+ * The number of albums matching a filter, and one page of their ids in ascending order. {@code next} is the cursor for
+ * the following page, or null on the last one.
+ */
+public record AlbumFilterResult(long count, List<Long> ids, Long next) {
+}
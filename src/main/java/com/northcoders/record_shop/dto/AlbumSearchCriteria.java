@@ -0,0 +1,9 @@
+package com.northcoders.record_shop.dto;
+
+import com.northcoders.record_shop.model.Album;
+
+/**
+ * Optional filters for GET /albums/search; a null field places no restriction.
+ */
+public record AlbumSearchCriteria(String artist, String name, Album.AlbumGenres genre, Integer fromYear, Integer toYear) {
+}
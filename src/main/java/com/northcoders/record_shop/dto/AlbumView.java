@@ -0,0 +1,16 @@
+package com.northcoders.record_shop.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.northcoders.record_shop.model.Album;
+
+import java.util.List;
+
+/**
+ * The fields of an album a list request asked for with {@code fields=}, read as plain column values rather than a
+ * managed entity. The id is always read, for paging; fields that were not asked for (or are null) are left out of
+ * the JSON.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record AlbumView(Long id, String artist, Integer releaseYear, Album.AlbumGenres genre, String name, Long version) {
+    public static final List<String> FIELDS = List.of("id", "artist", "releaseYear", "genre", "name", "version");
+}
@@ -0,0 +1,7 @@
+package com.northcoders.record_shop.dto;
+
+import java.util.List;
+
+public record BatchInsertResult(int received, int created, int failed, long elapsedMillis, double albumsPerSecond,
+                                List<BatchItemResult> items) {
+}
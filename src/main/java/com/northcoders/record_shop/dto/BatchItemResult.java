@@ -0,0 +1,17 @@
+package com.northcoders.record_shop.dto;
+
+public record BatchItemResult(int index, Status status, Long id, String error) {
+
+    public enum Status {
+        CREATED,
+        FAILED
+    }
+
+    public static BatchItemResult created(int index, Long id) {
+        return new BatchItemResult(index, Status.CREATED, id, null);
+    }
+
+    public static BatchItemResult failed(int index, String error) {
+        return new BatchItemResult(index, Status.FAILED, null, error);
+    }
+}
@@ -0,0 +1,8 @@
+package com.northcoders.record_shop.dto;
+
+/**
+ * Changes whenever any album is added, updated or deleted. {@code tag} is the persisted catalog stamp, the same on
+ * every instance and across restarts, and {@code lastModified} is the epoch millis of the change that produced it.
+ */
+public record CatalogVersion(String tag, long lastModified) {
+}
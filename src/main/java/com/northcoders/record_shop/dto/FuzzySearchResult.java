@@ -0,0 +1,16 @@
+package com.northcoders.record_shop.dto;
+
+import com.northcoders.record_shop.model.Album;
+
+import java.util.List;
+
+/**
+ * Albums for GET /albums/fuzzy, best first, each with the number of single-character edits between the query and the
+ * words it matched. {@code complete} is false when the latency budget ran out before every candidate was looked at, in
+ * which case better matches may exist.
+ */
+public record FuzzySearchResult(List<Match> matches, boolean complete) {
+
+    public record Match(Album album, int distance) {
+    }
+}
@@ -0,0 +1,26 @@
+package com.northcoders.record_shop.dto;
+
+/**
+ * Where an album sent to POST /albums/ingest has got to. {@code albumId} is set once it is CREATED and {@code error}
+ * once it has FAILED.
+ */
+public record IngestStatus(long trackingId, State state, Long albumId, String error) {
+
+    public enum State {
+        QUEUED,
+        CREATED,
+        FAILED
+    }
+
+    public static IngestStatus queued(long trackingId) {
+        return new IngestStatus(trackingId, State.QUEUED, null, null);
+    }
+
+    public static IngestStatus created(long trackingId, long albumId) {
+        return new IngestStatus(trackingId, State.CREATED, albumId, null);
+    }
+
+    public static IngestStatus failed(long trackingId, String error) {
+        return new IngestStatus(trackingId, State.FAILED, null, error);
+    }
+}
@@ -0,0 +1,22 @@
+package com.northcoders.record_shop.event;
+
+import com.northcoders.record_shop.model.Album;
+
+/**
+ * Published by the service after an album is created, updated or deleted. {@code album} holds the album as it is now,
+ * or is null when it was deleted.
+ */
+public record AlbumChangedEvent(Long albumId, Album album) {
+
+    public static AlbumChangedEvent saved(Album album) {
+        return new AlbumChangedEvent(album.getId(), album);
+    }
+
+    public static AlbumChangedEvent deleted(Long albumId) {
+        return new AlbumChangedEvent(albumId, null);
+    }
+
+    public boolean isDeletion() {
+        return album == null;
+    }
+}
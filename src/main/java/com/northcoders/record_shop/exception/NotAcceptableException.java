@@ -0,0 +1,10 @@
+package com.northcoders.record_shop.exception;
+
+public class NotAcceptableException extends RuntimeException{
+    public NotAcceptableException() {
+    }
+
+    public NotAcceptableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,21 @@
+package com.northcoders.record_shop.exception;
+
+import java.time.Duration;
+
+public class ServiceUnavailableException extends RuntimeException{
+    // Sent back in Retry-After when known.
+    private final Duration retryAfter;
+
+    public ServiceUnavailableException(String message) {
+        this(message, null);
+    }
+
+    public ServiceUnavailableException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
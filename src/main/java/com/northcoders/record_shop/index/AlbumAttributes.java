@@ -0,0 +1,18 @@
+package com.northcoders.record_shop.index;
+
+import com.northcoders.record_shop.model.Album;
+
+/**
+ * The values an index files an album under. Indexes keep them per id, so an update or delete can take the album out of
+ * the buckets it was in without reading the row before writing it.
+ */
+record AlbumAttributes(String artist, Album.AlbumGenres genre, int releaseYear, Long version) {
+
+    static AlbumAttributes of(Album album) {
+        return new AlbumAttributes(album.getArtist(), album.getGenre(), album.getReleaseYear(), album.getVersion());
+    }
+
+    boolean isNewerThan(AlbumAttributes other) {
+        return version != null && other.version() != null && version > other.version();
+    }
+}
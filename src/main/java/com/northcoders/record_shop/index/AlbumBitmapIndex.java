@@ -0,0 +1,313 @@
+package com.northcoders.record_shop.index;
+
+import com.northcoders.record_shop.dto.AlbumFilter;
+import com.northcoders.record_shop.dto.AlbumFilterResult;
+import com.northcoders.record_shop.event.AlbumChangedEvent;
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.repository.AlbumRepository;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * In-memory compressed bitmaps of album ids, one per genre, per release year and per artist, plus one of every album,
+ * for counting and paging through {@link AlbumFilter} expressions without the database. An album's position in the
+ * bitmaps is its id: ids come from a sequence, so they are dense enough for Roaring bitmaps to store compactly, and a
+ * page in id order is just the next set bits after the cursor.
+ * <p>
+ * {@code AND}, {@code OR} and {@code NOT} become bitmap intersections, unions and differences ({@code NOT} is taken
+ * away from the rest of an {@code AND} rather than computed against every album), and a year range is the union of
+ * the years in it.
+ * <p>
+ * Loaded from the database once the application is ready, then kept current from {@link AlbumChangedEvent}s. Like
+ * {@link AlbumSuggestIndex}, only created while {@code record-shop.indexes.enabled} is true. A rebuild reads just the
+ * filed attributes, without holding the lock, and then swaps them in and replays the events buffered meanwhile, as
+ * {@link AlbumFacetIndex} does.
+ */
+@Component
+@ConditionalOnProperty(name = "record-shop.indexes.enabled", havingValue = "true", matchIfMissing = true)
+public class AlbumBitmapIndex {
+    private static final Logger log = LoggerFactory.getLogger(AlbumBitmapIndex.class);
+    private static final RoaringBitmap EMPTY = new RoaringBitmap();
+
+    private final AlbumRepository albumRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object rebuildLock = new Object();
+
+    private final RoaringBitmap all = new RoaringBitmap();
+    private final Map<Album.AlbumGenres, RoaringBitmap> genres = new EnumMap<>(Album.AlbumGenres.class);
+    private final NavigableMap<Integer, RoaringBitmap> releaseYears = new TreeMap<>();
+    private final Map<String, RoaringBitmap> artists = new HashMap<>();
+    // Where each album is filed, so a change can clear its old bits without being told what the album was.
+    private final Map<Long, AlbumAttributes> attributesById = new HashMap<>();
+    private List<AlbumChangedEvent> pending;
+    private volatile boolean loaded;
+
+    @Autowired
+    public AlbumBitmapIndex(AlbumRepository albumRepository, PlatformTransactionManager transactionManager) {
+        this.albumRepository = albumRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        synchronized (rebuildLock) {
+            if (!loaded) rebuild();
+        }
+    }
+
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            long start = System.nanoTime();
+            lock.writeLock().lock();
+            try {
+                pending = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            Map<Long, AlbumAttributes> scanned = new HashMap<>();
+            try {
+                readOnlyTransaction.executeWithoutResult(status -> {
+                    try (Stream<Object[]> rows = albumRepository.streamAttributesOrderedById()) {
+                        rows.forEach(row -> scanned.put((Long) row[0], new AlbumAttributes((String) row[1],
+                                (Album.AlbumGenres) row[2], (Integer) row[3], (Long) row[4])));
+                    }
+                });
+            } catch (RuntimeException e) {
+                lock.writeLock().lock();
+                try {
+                    pending = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                throw e;
+            }
+            lock.writeLock().lock();
+            try {
+                clear();
+                scanned.forEach(this::add);
+                replay(pending);
+                pending = null;
+                compress();
+                loaded = true;
+                log.info("Bitmap index loaded {} albums into {} KB in {} ms", all.getLongCardinality(),
+                        sizeInBytes() / 1024, (System.nanoTime() - start) / 1_000_000);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Replaces the index contents with the given albums, without reading the database.
+     */
+    public void load(Collection<Album> catalog) {
+        lock.writeLock().lock();
+        try {
+            clear();
+            catalog.forEach(album -> add(album.getId(), AlbumAttributes.of(album)));
+            compress();
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAlbumChanged(AlbumChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (pending != null) pending.add(event);
+            apply(event);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public long size() {
+        lock.readLock().lock();
+        try {
+            return all.getLongCardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * How many albums match {@code filter}, and the ids of the first {@code limit} of them after {@code after} (all of
+     * them from the start when null).
+     */
+    public AlbumFilterResult filter(AlbumFilter filter, Long after, int limit) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap matches = evaluate(filter);
+            long count = matches.getLongCardinality();
+            if (limit <= 0) return new AlbumFilterResult(count, List.of(), null);
+
+            List<Long> ids = new ArrayList<>((int) Math.min(limit, count));
+            PeekableIntIterator iterator = matches.getIntIterator();
+            if (after != null && after >= 0) {
+                if (after >= 0xFFFFFFFFL) return new AlbumFilterResult(count, List.of(), null);
+                iterator.advanceIfNeeded((int) (after + 1));
+            }
+            while (ids.size() < limit && iterator.hasNext()) ids.add(Integer.toUnsignedLong(iterator.next()));
+            Long next = iterator.hasNext() && !ids.isEmpty() ? ids.get(ids.size() - 1) : null;
+            return new AlbumFilterResult(count, ids, next);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The result may be one of the index's own bitmaps, so callers only read it, under the read lock.
+    private RoaringBitmap evaluate(AlbumFilter filter) {
+        return switch (filter) {
+            case AlbumFilter.Genre genre -> genres.getOrDefault(genre.genre(), EMPTY);
+            case AlbumFilter.Artist artist -> artists.getOrDefault(artist.artist(), EMPTY);
+            case AlbumFilter.ReleaseYears years -> FastAggregation.or(yearRange(years).values().iterator());
+            case AlbumFilter.Or or -> FastAggregation.or(or.filters().stream().map(this::evaluate).iterator());
+            case AlbumFilter.Not not -> RoaringBitmap.andNot(all, evaluate(not.filter()));
+            case AlbumFilter.And and -> intersect(and.filters());
+        };
+    }
+
+    private RoaringBitmap intersect(List<AlbumFilter> filters) {
+        List<RoaringBitmap> included = new ArrayList<>();
+        List<AlbumFilter> excluded = new ArrayList<>();
+        for (AlbumFilter filter : filters) {
+            if (filter instanceof AlbumFilter.Not not) excluded.add(not.filter());
+            else included.add(evaluate(filter));
+        }
+        RoaringBitmap result = switch (included.size()) {
+            case 0 -> all.clone();
+            case 1 -> included.get(0).clone();
+            default -> FastAggregation.and(included.iterator());
+        };
+        for (AlbumFilter filter : excluded) {
+            if (result.isEmpty()) break;
+            result.andNot(evaluate(filter));
+        }
+        return result;
+    }
+
+    private NavigableMap<Integer, RoaringBitmap> yearRange(AlbumFilter.ReleaseYears years) {
+        Integer from = years.from();
+        Integer to = years.to();
+        if (from != null && to != null) {
+            return from <= to ? releaseYears.subMap(from, true, to, true) : new TreeMap<>();
+        }
+        if (from != null) return releaseYears.tailMap(from, true);
+        if (to != null) return releaseYears.headMap(to, true);
+        return releaseYears;
+    }
+
+    // A buffered save older than the version the scan read is skipped, and a buffered delete wins over any save.
+    private void replay(List<AlbumChangedEvent> events) {
+        Set<Long> deleted = new HashSet<>();
+        for (AlbumChangedEvent event : events) {
+            if (event.isDeletion()) deleted.add(event.albumId());
+        }
+        for (AlbumChangedEvent event : events) {
+            if (!deleted.contains(event.albumId())) apply(event);
+        }
+        deleted.forEach(this::remove);
+    }
+
+    private void apply(AlbumChangedEvent event) {
+        if (event.isDeletion()) {
+            remove(event.albumId());
+            return;
+        }
+        AlbumAttributes attributes = AlbumAttributes.of(event.album());
+        AlbumAttributes current = attributesById.get(event.albumId());
+        if (current != null && current.isNewerThan(attributes)) return;
+        remove(event.albumId());
+        add(event.albumId(), attributes);
+    }
+
+    private void add(Long id, AlbumAttributes attributes) {
+        int ordinal = ordinal(id);
+        attributesById.put(id, attributes);
+        all.add(ordinal);
+        releaseYears.computeIfAbsent(attributes.releaseYear(), year -> new RoaringBitmap()).add(ordinal);
+        if (attributes.genre() != null) {
+            genres.computeIfAbsent(attributes.genre(), genre -> new RoaringBitmap()).add(ordinal);
+        }
+        if (attributes.artist() != null) {
+            artists.computeIfAbsent(attributes.artist(), artist -> new RoaringBitmap()).add(ordinal);
+        }
+    }
+
+    private void remove(Long id) {
+        AlbumAttributes previous = attributesById.remove(id);
+        if (previous == null) return;
+        int ordinal = ordinal(id);
+        all.remove(ordinal);
+        remove(releaseYears, previous.releaseYear(), ordinal);
+        if (previous.genre() != null) remove(genres, previous.genre(), ordinal);
+        if (previous.artist() != null) remove(artists, previous.artist(), ordinal);
+    }
+
+    private static <K> void remove(Map<K, RoaringBitmap> bitmaps, K key, int ordinal) {
+        RoaringBitmap bitmap = bitmaps.get(key);
+        if (bitmap == null) return;
+        bitmap.remove(ordinal);
+        if (bitmap.isEmpty()) bitmaps.remove(key);
+    }
+
+    // Ids are used unsigned, so any id the album sequence hands out below 2^32 fits.
+    private static int ordinal(Long id) {
+        if (id == null || id < 0 || id > 0xFFFFFFFFL) {
+            throw new IllegalArgumentException("Album id " + id + " cannot be stored in the bitmap index");
+        }
+        return (int) (long) id;
+    }
+
+    // Turns long runs of consecutive ids, typical of a freshly loaded catalog, into run-length containers.
+    private void compress() {
+        all.runOptimize();
+        genres.values().forEach(RoaringBitmap::runOptimize);
+        releaseYears.values().forEach(RoaringBitmap::runOptimize);
+        artists.values().forEach(RoaringBitmap::runOptimize);
+    }
+
+    private long sizeInBytes() {
+        long size = all.getLongSizeInBytes();
+        for (Map<?, RoaringBitmap> bitmaps : List.of(genres, releaseYears, artists)) {
+            for (RoaringBitmap bitmap : bitmaps.values()) size += bitmap.getLongSizeInBytes();
+        }
+        return size;
+    }
+
+    private void clear() {
+        all.clear();
+        genres.clear();
+        releaseYears.clear();
+        artists.clear();
+        attributesById.clear();
+    }
+}
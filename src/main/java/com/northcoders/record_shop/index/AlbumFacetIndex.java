@@ -0,0 +1,204 @@
+package com.northcoders.record_shop.index;
+
+import com.northcoders.record_shop.dto.AlbumFacets;
+import com.northcoders.record_shop.event.AlbumChangedEvent;
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.repository.AlbumRepository;
+import com.northcoders.record_shop.service.AlbumService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+/**
+ * In-memory album counts per genre, release year and artist. They are counted from one scan of the catalog once the
+ * application is ready, then kept current from {@link AlbumChangedEvent}s. The index remembers the genre, year, artist
+ * and version it counted each album under, so an update or delete takes the album out of its old buckets without the
+ * database having to read the row before writing it. Like the other indexes, only created while
+ * {@code record-shop.indexes.enabled} is true.
+ * <p>
+ * A rebuild scans without holding the index, so writes are not held up behind it. Events arriving meanwhile are
+ * applied to the old counts and buffered, then replayed over the scanned ones; a buffered save older than the version
+ * the scan read is skipped, and a buffered delete wins over any save of the same id.
+ * <p>
+ * Artists are kept ranked by count as they change, and reads return an immutable snapshot of the top
+ * {@link AlbumService#MAX_TOP_ARTISTS} that is only rebuilt after a change, so the facets endpoint never touches the
+ * database and, while the catalog is unchanged, does no work at all.
+ */
+@Component
+@ConditionalOnProperty(name = "record-shop.indexes.enabled", havingValue = "true", matchIfMissing = true)
+public class AlbumFacetIndex {
+    private static final Comparator<AlbumFacets.ArtistCount> BY_COUNT =
+            Comparator.comparingLong(AlbumFacets.ArtistCount::count).reversed()
+                    .thenComparing(AlbumFacets.ArtistCount::artist);
+
+    private final AlbumRepository albumRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Object rebuildLock = new Object();
+    private final Map<Album.AlbumGenres, Long> genreCounts = new EnumMap<>(Album.AlbumGenres.class);
+    private final Map<Integer, Long> releaseYearCounts = new HashMap<>();
+    private final Map<String, Long> artistCounts = new HashMap<>();
+    private final NavigableSet<AlbumFacets.ArtistCount> artistsByCount = new TreeSet<>(BY_COUNT);
+    private final Map<Long, AlbumAttributes> attributesById = new HashMap<>();
+    private List<AlbumChangedEvent> pending;
+    private volatile boolean loaded;
+    private volatile AlbumFacets snapshot;
+
+    @Autowired
+    public AlbumFacetIndex(AlbumRepository albumRepository, PlatformTransactionManager transactionManager) {
+        this.albumRepository = albumRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        synchronized (rebuildLock) {
+            if (!loaded) rebuild();
+        }
+    }
+
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            synchronized (this) {
+                pending = new ArrayList<>();
+            }
+            Map<Long, AlbumAttributes> scanned = new HashMap<>();
+            try {
+                readOnlyTransaction.executeWithoutResult(status -> {
+                    try (Stream<Object[]> rows = albumRepository.streamAttributesOrderedById()) {
+                        rows.forEach(row -> scanned.put((Long) row[0], new AlbumAttributes((String) row[1],
+                                (Album.AlbumGenres) row[2], (Integer) row[3], (Long) row[4])));
+                    }
+                });
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    pending = null;
+                }
+                throw e;
+            }
+            synchronized (this) {
+                clear();
+                scanned.forEach(this::add);
+                replay(pending);
+                pending = null;
+                loaded = true;
+                snapshot = null;
+            }
+        }
+    }
+
+    /**
+     * Replaces the counts with those of the given albums, without reading the database.
+     */
+    public synchronized void load(Collection<Album> catalog) {
+        clear();
+        catalog.forEach(album -> add(album.getId(), AlbumAttributes.of(album)));
+        loaded = true;
+        snapshot = null;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onAlbumChanged(AlbumChangedEvent event) {
+        if (pending != null) pending.add(event);
+        apply(event);
+        snapshot = null;
+    }
+
+    public AlbumFacets getFacets(int topArtists) {
+        AlbumFacets facets = snapshot;
+        if (facets == null) facets = buildSnapshot();
+        return facets.withTopArtists(topArtists);
+    }
+
+    private synchronized AlbumFacets buildSnapshot() {
+        if (snapshot != null) return snapshot;
+        Map<Album.AlbumGenres, Long> genres = new EnumMap<>(Album.AlbumGenres.class);
+        for (Album.AlbumGenres genre : Album.AlbumGenres.values()) {
+            genres.put(genre, genreCounts.getOrDefault(genre, 0L));
+        }
+        List<AlbumFacets.ArtistCount> artists = artistsByCount.stream().limit(AlbumService.MAX_TOP_ARTISTS).toList();
+        snapshot = new AlbumFacets(attributesById.size(), Collections.unmodifiableMap(genres),
+                Collections.unmodifiableMap(new TreeMap<>(releaseYearCounts)), artists);
+        return snapshot;
+    }
+
+    private void replay(List<AlbumChangedEvent> events) {
+        Set<Long> deleted = new HashSet<>();
+        for (AlbumChangedEvent event : events) {
+            if (event.isDeletion()) deleted.add(event.albumId());
+        }
+        for (AlbumChangedEvent event : events) {
+            if (!deleted.contains(event.albumId())) apply(event);
+        }
+        deleted.forEach(this::remove);
+    }
+
+    private void apply(AlbumChangedEvent event) {
+        if (event.isDeletion()) {
+            remove(event.albumId());
+            return;
+        }
+        AlbumAttributes attributes = AlbumAttributes.of(event.album());
+        AlbumAttributes current = attributesById.get(event.albumId());
+        if (current != null && current.isNewerThan(attributes)) return;
+        remove(event.albumId());
+        add(event.albumId(), attributes);
+    }
+
+    private void add(Long id, AlbumAttributes attributes) {
+        attributesById.put(id, attributes);
+        count(attributes, 1);
+    }
+
+    private void remove(Long id) {
+        AlbumAttributes previous = attributesById.remove(id);
+        if (previous != null) count(previous, -1);
+    }
+
+    private void count(AlbumAttributes attributes, long delta) {
+        adjust(releaseYearCounts, attributes.releaseYear(), delta);
+        if (attributes.genre() != null) adjust(genreCounts, attributes.genre(), delta);
+        if (attributes.artist() != null) {
+            long before = artistCounts.getOrDefault(attributes.artist(), 0L);
+            long after = before + delta;
+            adjust(artistCounts, attributes.artist(), delta);
+            if (before > 0) artistsByCount.remove(new AlbumFacets.ArtistCount(attributes.artist(), before));
+            if (after > 0) artistsByCount.add(new AlbumFacets.ArtistCount(attributes.artist(), after));
+        }
+    }
+
+    private void clear() {
+        genreCounts.clear();
+        releaseYearCounts.clear();
+        artistCounts.clear();
+        artistsByCount.clear();
+        attributesById.clear();
+    }
+
+    private static <K> void adjust(Map<K, Long> counts, K key, long delta) {
+        counts.compute(key, (k, count) -> {
+            long updated = (count == null ? 0 : count) + delta;
+            return updated > 0 ? updated : null;
+        });
+    }
+}
@@ -0,0 +1,617 @@
+package com.northcoders.record_shop.index;
+
+import com.northcoders.record_shop.dto.FuzzySearchResult;
+import com.northcoders.record_shop.event.AlbumChangedEvent;
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.repository.AlbumRepository;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * In-memory search-as-you-type index over album artists and names. Both are normalized (lower case, accents and
+ * apostrophes dropped, anything else that is not a letter or digit treated as a space) and split into words. Each
+ * distinct word keeps a posting list of the albums using it, the words are sorted so a prefix is one range of them, and
+ * every word is also listed under each of its trigrams so a query can match inside words.
+ * <p>
+ * Every query word must occur in the album's artist or name: words of at least {@value #MIN_INFIX_LENGTH} characters
+ * anywhere inside a word, shorter ones at the start of a word. The longest query word drives the lookup, and albums are
+ * ranked by how it matched (a whole word, then the start of a word, then inside one) and then by the length of their
+ * artist and name, shortest first. Posting lists are kept in that length order, so the top N are usually found after
+ * looking at the head of a few lists, however many albums match.
+ * <p>
+ * The same dictionary answers typo-tolerant searches ({@link #fuzzy}): the trigrams are padded at the word boundaries,
+ * so a word within k edits of a query word shares all but at most 3k of its trigrams and can be found from the query
+ * word's rarest trigrams, without comparing it to the whole dictionary.
+ * <p>
+ * Loaded from the database once the application is ready, then kept current from {@link AlbumChangedEvent}s. Only
+ * created while {@code record-shop.indexes.enabled} is true (the default), which the CLI turns off so its imports stay
+ * in bounded memory. As in {@link AlbumFacetIndex}, a rebuild reads the catalog without holding the lock, buffering
+ * the events that arrive meanwhile, and only takes it to swap the albums in and replay them.
+ */
+@Component
+@ConditionalOnProperty(name = "record-shop.indexes.enabled", havingValue = "true", matchIfMissing = true)
+public class AlbumSuggestIndex {
+    private static final Logger log = LoggerFactory.getLogger(AlbumSuggestIndex.class);
+    static final int MIN_INFIX_LENGTH = 3;
+
+    private final AlbumRepository albumRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object rebuildLock = new Object();
+
+    // Albums by slot; slots of removed albums are reused. A posting is (text length << 32 | slot).
+    private Album[] albums = new Album[1024];
+    private String[] texts = new String[1024];
+    private int[] artistLengths = new int[1024];
+    private int slotCount;
+    private int[] freeSlots = new int[64];
+    private int freeCount;
+    private final Map<Long, Integer> slotsById = new HashMap<>();
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+    private final Map<String, List<Postings>> termsByTrigram = new HashMap<>();
+    private List<AlbumChangedEvent> pending;
+    private volatile boolean loaded;
+
+    private static final class Postings {
+        final String term;
+        long[] keys = new long[2];
+        int size;
+
+        Postings(String term) {
+            this.term = term;
+        }
+
+        void add(long key) {
+            int at = Arrays.binarySearch(keys, 0, size, key);
+            if (at >= 0) return;
+            at = -at - 1;
+            if (size == keys.length) keys = Arrays.copyOf(keys, size * 2);
+            System.arraycopy(keys, at, keys, at + 1, size - at);
+            keys[at] = key;
+            size++;
+        }
+
+        void remove(long key) {
+            int at = Arrays.binarySearch(keys, 0, size, key);
+            if (at < 0) return;
+            System.arraycopy(keys, at + 1, keys, at, size - at - 1);
+            size--;
+        }
+    }
+
+    private record QueryWord(String word, boolean artist, List<TermMatch> terms) {
+    }
+
+    private record TermMatch(Postings postings, int distance) {
+    }
+
+    private record Candidate(long key, int distance) {
+    }
+
+    // Fewest edits first, then like suggestions: shortest artist and name first.
+    private static final Comparator<Candidate> FUZZY_RANKING = Comparator.comparingInt(Candidate::distance)
+            .thenComparingLong(Candidate::key);
+
+    @Autowired
+    public AlbumSuggestIndex(AlbumRepository albumRepository, EntityManager entityManager,
+                             PlatformTransactionManager transactionManager) {
+        this.albumRepository = albumRepository;
+        this.entityManager = entityManager;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        synchronized (rebuildLock) {
+            if (!loaded) rebuild();
+        }
+    }
+
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            long start = System.nanoTime();
+            lock.writeLock().lock();
+            try {
+                pending = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            List<Album> scanned = new ArrayList<>();
+            try {
+                readOnlyTransaction.executeWithoutResult(status -> {
+                    try (Stream<Album> stored = albumRepository.streamAllOrderedById()) {
+                        stored.forEach(album -> {
+                            scanned.add(album);
+                            entityManager.detach(album);
+                        });
+                    }
+                });
+            } catch (RuntimeException e) {
+                lock.writeLock().lock();
+                try {
+                    pending = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                throw e;
+            }
+            lock.writeLock().lock();
+            try {
+                clear();
+                scanned.forEach(this::add);
+                replay(pending);
+                pending = null;
+                loaded = true;
+                log.info("Suggest index loaded {} albums and {} words in {} ms", slotsById.size(), terms.size(),
+                        (System.nanoTime() - start) / 1_000_000);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Replaces the index contents with the given albums, without reading the database.
+     */
+    public void load(Collection<Album> catalog) {
+        lock.writeLock().lock();
+        try {
+            clear();
+            catalog.forEach(this::add);
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAlbumChanged(AlbumChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (pending != null) pending.add(event);
+            apply(event);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slotsById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Every album in the index, in no particular order, for saving it across a restart and {@link #load}ing it back.
+     */
+    public List<Album> albums() {
+        lock.readLock().lock();
+        try {
+            List<Album> catalog = new ArrayList<>(slotsById.size());
+            for (int slot : slotsById.values()) catalog.add(albums[slot]);
+            return catalog;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The best {@code limit} albums whose artist or name contains every word of {@code query}, best first.
+     */
+    public List<Album> suggest(String query, int limit) {
+        List<String> words = words(normalize(query));
+        if (words.isEmpty() || limit <= 0) return List.of();
+        String driving = words.get(0);
+        for (String word : words) {
+            if (word.length() > driving.length()) driving = word;
+        }
+
+        lock.readLock().lock();
+        try {
+            List<Album> suggestions = new ArrayList<>(limit);
+            Set<Integer> taken = new HashSet<>();
+            Postings exact = terms.get(driving);
+            if (exact != null) collect(List.of(exact), words, driving, limit, suggestions, taken);
+            if (suggestions.size() < limit) {
+                NavigableMap<String, Postings> prefixed =
+                        terms.subMap(driving, false, driving + Character.MAX_VALUE, false);
+                collect(prefixed.values(), words, driving, limit, suggestions, taken);
+            }
+            if (suggestions.size() < limit && driving.length() >= MIN_INFIX_LENGTH) {
+                collect(infixTerms(driving), words, driving, limit, suggestions, taken);
+            }
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The best {@code limit} albums whose artist has a word within a few edits of each word of {@code artist}, and whose
+     * name likewise for {@code name} (either may be null). Words of up to 2 characters must match exactly, up to 5 within
+     * 1 edit and longer ones within 2. Albums are ranked by their total number of edits, then shortest first. Stops
+     * looking, and reports the result as incomplete, once {@code budget} has passed.
+     */
+    public FuzzySearchResult fuzzy(String artist, String name, int limit, Duration budget) {
+        long deadline = System.nanoTime() + budget.toNanos();
+        List<QueryWord> query = new ArrayList<>();
+        for (String word : words(normalize(artist))) query.add(new QueryWord(word, true, new ArrayList<>()));
+        for (String word : words(normalize(name))) query.add(new QueryWord(word, false, new ArrayList<>()));
+        if (query.isEmpty() || limit <= 0) return new FuzzySearchResult(List.of(), true);
+
+        lock.readLock().lock();
+        try {
+            boolean complete = true;
+            QueryWord driving = null;
+            long drivingPostings = Long.MAX_VALUE;
+            for (QueryWord word : query) {
+                complete &= findSimilarTerms(word, deadline);
+                if (word.terms().isEmpty()) return new FuzzySearchResult(List.of(), complete);
+                long postings = 0;
+                for (TermMatch term : word.terms()) postings += term.postings().size;
+                if (postings < drivingPostings) {
+                    driving = word;
+                    drivingPostings = postings;
+                }
+            }
+
+            // The driving word's terms come closest first, and an album's total is at least the distance of the term
+            // it was found by, so once the kept albums all beat that distance no later album can displace them. Within
+            // a term the albums come shortest first, so the rest of its list is skipped once it cannot make the cut.
+            PriorityQueue<Candidate> best = new PriorityQueue<>(FUZZY_RANKING.reversed());
+            Set<Integer> seen = new HashSet<>();
+            int checked = 0;
+            search:
+            for (TermMatch term : driving.terms()) {
+                if (best.size() == limit && best.peek().distance() < term.distance()) break;
+                Postings postings = term.postings();
+                for (int i = 0; i < postings.size; i++) {
+                    if ((++checked & 255) == 0 && System.nanoTime() - deadline > 0) {
+                        complete = false;
+                        break search;
+                    }
+                    long key = postings.keys[i];
+                    if (best.size() == limit
+                            && FUZZY_RANKING.compare(best.peek(), new Candidate(key, term.distance())) < 0) break;
+                    if (!seen.add((int) key)) continue;
+                    Candidate candidate = score(key, query);
+                    if (candidate == null) continue;
+                    best.add(candidate);
+                    if (best.size() > limit) best.poll();
+                }
+            }
+            List<Candidate> ranked = new ArrayList<>(best);
+            ranked.sort(FUZZY_RANKING);
+            List<FuzzySearchResult.Match> matches = new ArrayList<>(ranked.size());
+            for (Candidate candidate : ranked) {
+                matches.add(new FuzzySearchResult.Match(albums[(int) candidate.key()], candidate.distance()));
+            }
+            return new FuzzySearchResult(matches, complete);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static int maxEdits(String word) {
+        return word.length() <= 2 ? 0 : word.length() <= 5 ? 1 : 2;
+    }
+
+    /**
+     * Fills in the dictionary words within {@link #maxEdits} of the query word, closest first. Returns false if the
+     * deadline passed first.
+     */
+    private boolean findSimilarTerms(QueryWord query, long deadline) {
+        String word = query.word();
+        int maxEdits = maxEdits(word);
+        List<TermMatch> found = query.terms();
+        if (maxEdits == 0) {
+            Postings exact = terms.get(word);
+            if (exact != null) found.add(new TermMatch(exact, 0));
+            return true;
+        }
+
+        // Each edit changes at most 3 padded trigrams, so a close enough word shares `required` of the query word's
+        // trigrams, and therefore appears in at least one of any (count - required + 1) of their lists: the shortest.
+        Set<String> trigrams = trigrams(word);
+        int required = trigrams.size() - 3 * maxEdits;
+        Collection<Postings> candidates;
+        if (required <= 0) {
+            candidates = terms.values();
+        } else {
+            List<List<Postings>> lists = new ArrayList<>(trigrams.size());
+            for (String trigram : trigrams) lists.add(termsByTrigram.getOrDefault(trigram, List.of()));
+            lists.sort(Comparator.comparingInt(List::size));
+            candidates = new HashSet<>();
+            for (List<Postings> list : lists.subList(0, lists.size() - required + 1)) candidates.addAll(list);
+        }
+
+        boolean complete = true;
+        int checked = 0;
+        for (Postings postings : candidates) {
+            if ((++checked & 255) == 0 && System.nanoTime() - deadline > 0) {
+                complete = false;
+                break;
+            }
+            String term = postings.term;
+            int distance = editDistance(term, 0, term.length(), word, maxEdits);
+            if (distance <= maxEdits) found.add(new TermMatch(postings, distance));
+        }
+        found.sort(Comparator.comparingInt(TermMatch::distance));
+        return complete;
+    }
+
+    /**
+     * Scores the album against every query word, or returns null if one of them has no close enough word in its field.
+     */
+    private Candidate score(long key, List<QueryWord> query) {
+        int slot = (int) key;
+        String text = texts[slot];
+        int artistEnd = artistLengths[slot];
+        int nameStart = artistEnd == 0 ? 0 : Math.min(artistEnd + 1, text.length());
+        int distance = 0;
+        for (QueryWord word : query) {
+            int closest = word.artist()
+                    ? closestWord(text, 0, artistEnd, word.word())
+                    : closestWord(text, nameStart, text.length(), word.word());
+            if (closest > maxEdits(word.word())) return null;
+            distance += closest;
+        }
+        return new Candidate(key, distance);
+    }
+
+    private static int closestWord(String text, int from, int to, String word) {
+        int maxEdits = maxEdits(word);
+        int closest = maxEdits + 1;
+        for (int start = from; start < to && closest > 0; ) {
+            int end = text.indexOf(' ', start);
+            if (end < 0 || end > to) end = to;
+            closest = Math.min(closest, editDistance(text, start, end, word, maxEdits));
+            start = end + 1;
+        }
+        return closest;
+    }
+
+    /**
+     * Levenshtein distance between {@code text[from, to)} and {@code word}, or {@code max + 1} once it must exceed max.
+     */
+    static int editDistance(String text, int from, int to, String word, int max) {
+        int length = to - from;
+        int wordLength = word.length();
+        if (Math.abs(length - wordLength) > max) return max + 1;
+        int[] previous = new int[wordLength + 1];
+        int[] current = new int[wordLength + 1];
+        for (int j = 0; j <= wordLength; j++) previous[j] = j;
+        for (int i = 1; i <= length; i++) {
+            char c = text.charAt(from + i - 1);
+            current[0] = i;
+            int rowMinimum = i;
+            for (int j = 1; j <= wordLength; j++) {
+                int substitution = previous[j - 1] + (c == word.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+                rowMinimum = Math.min(rowMinimum, current[j]);
+            }
+            if (rowMinimum > max) return max + 1;
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[wordLength], max + 1);
+    }
+
+    /**
+     * Adds the best albums found in {@code postingLists} until {@code suggestions} holds {@code limit}. Each list is
+     * sorted best first, so a list is left as soon as its next album could not make the cut.
+     */
+    private void collect(Iterable<Postings> postingLists, List<String> words, String driving, int limit,
+                         List<Album> suggestions, Set<Integer> taken) {
+        int wanted = limit - suggestions.size();
+        long[] best = new long[wanted];
+        int count = 0;
+        for (Postings postings : postingLists) {
+            for (int i = 0; i < postings.size; i++) {
+                long key = postings.keys[i];
+                if (count == wanted && key >= best[count - 1]) break;
+                int slot = (int) key;
+                if (taken.contains(slot) || !matches(texts[slot], words, driving)) continue;
+                int at = Arrays.binarySearch(best, 0, count, key);
+                if (at >= 0) continue;
+                at = -at - 1;
+                if (count < wanted) count++;
+                System.arraycopy(best, at, best, at + 1, count - 1 - at);
+                best[at] = key;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            int slot = (int) best[i];
+            taken.add(slot);
+            suggestions.add(albums[slot]);
+        }
+    }
+
+    private List<Postings> infixTerms(String word) {
+        // The rarest trigram of the word narrows the candidates; each one is then checked for the whole word.
+        List<Postings> candidates = null;
+        for (int i = 0; i + 3 <= word.length(); i++) {
+            List<Postings> withTrigram = termsByTrigram.get(word.substring(i, i + 3));
+            if (withTrigram == null) return List.of();
+            if (candidates == null || withTrigram.size() < candidates.size()) candidates = withTrigram;
+        }
+        List<Postings> found = new ArrayList<>();
+        for (Postings postings : candidates) {
+            if (postings.term.contains(word) && !postings.term.startsWith(word)) found.add(postings);
+        }
+        return found;
+    }
+
+    private static boolean matches(String text, List<String> words, String driving) {
+        for (String word : words) {
+            if (word.equals(driving)) continue;
+            if (word.length() >= MIN_INFIX_LENGTH ? !text.contains(word) : !hasWordStartingWith(text, word)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasWordStartingWith(String text, String prefix) {
+        for (int from = text.indexOf(prefix); from >= 0; from = text.indexOf(prefix, from + 1)) {
+            if (from == 0 || text.charAt(from - 1) == ' ') return true;
+        }
+        return false;
+    }
+
+    // A buffered save older than the version the scan read is skipped, and a buffered delete wins over any save.
+    private void replay(List<AlbumChangedEvent> events) {
+        Set<Long> deleted = new HashSet<>();
+        for (AlbumChangedEvent event : events) {
+            if (event.isDeletion()) deleted.add(event.albumId());
+        }
+        for (AlbumChangedEvent event : events) {
+            if (!deleted.contains(event.albumId())) apply(event);
+        }
+        deleted.forEach(this::remove);
+    }
+
+    private void apply(AlbumChangedEvent event) {
+        if (event.isDeletion()) {
+            remove(event.albumId());
+            return;
+        }
+        Integer slot = slotsById.get(event.albumId());
+        if (slot != null && AlbumAttributes.of(albums[slot]).isNewerThan(AlbumAttributes.of(event.album()))) return;
+        add(event.album());
+    }
+
+    private void add(Album album) {
+        if (album.getId() == null) return;
+        remove(album.getId());
+        String artist = normalize(album.getArtist());
+        String text = (artist + ' ' + normalize(album.getName())).trim();
+        if (slotCount == albums.length && freeCount == 0) {
+            albums = Arrays.copyOf(albums, albums.length * 2);
+            texts = Arrays.copyOf(texts, texts.length * 2);
+            artistLengths = Arrays.copyOf(artistLengths, artistLengths.length * 2);
+        }
+        int slot = freeCount > 0 ? freeSlots[--freeCount] : slotCount++;
+        albums[slot] = album;
+        texts[slot] = text;
+        artistLengths[slot] = artist.length();
+        slotsById.put(album.getId(), slot);
+
+        long key = (long) text.length() << 32 | slot;
+        for (String term : words(text)) {
+            Postings postings = terms.get(term);
+            if (postings == null) {
+                postings = new Postings(term);
+                terms.put(term, postings);
+                for (String trigram : trigrams(term)) {
+                    termsByTrigram.computeIfAbsent(trigram, t -> new ArrayList<>(2)).add(postings);
+                }
+            }
+            postings.add(key);
+        }
+    }
+
+    private void remove(Long id) {
+        Integer slot = slotsById.remove(id);
+        if (slot == null) return;
+        String text = texts[slot];
+        long key = (long) text.length() << 32 | slot;
+        for (String term : words(text)) {
+            Postings postings = terms.get(term);
+            postings.remove(key);
+            if (postings.size > 0) continue;
+            terms.remove(term);
+            for (String trigram : trigrams(term)) {
+                List<Postings> withTrigram = termsByTrigram.get(trigram);
+                withTrigram.remove(postings);
+                if (withTrigram.isEmpty()) termsByTrigram.remove(trigram);
+            }
+        }
+        albums[slot] = null;
+        texts[slot] = null;
+        if (freeCount == freeSlots.length) freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        freeSlots[freeCount++] = slot;
+    }
+
+    private void clear() {
+        albums = new Album[1024];
+        texts = new String[1024];
+        artistLengths = new int[1024];
+        slotCount = 0;
+        freeCount = 0;
+        slotsById.clear();
+        terms.clear();
+        termsByTrigram.clear();
+    }
+
+    static String normalize(String text) {
+        if (text == null) return "";
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFKD);
+        StringBuilder normalized = new StringBuilder(decomposed.length());
+        boolean afterSpace = true;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (c == '\'' || c == '\u2019' || Character.getType(c) == Character.NON_SPACING_MARK) continue;
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(Character.toLowerCase(c));
+                afterSpace = false;
+            } else if (!afterSpace) {
+                normalized.append(' ');
+                afterSpace = true;
+            }
+        }
+        int length = normalized.length();
+        if (length > 0 && normalized.charAt(length - 1) == ' ') normalized.setLength(length - 1);
+        return normalized.toString();
+    }
+
+    private static List<String> words(String normalized) {
+        if (normalized.isEmpty()) return List.of();
+        return List.copyOf(new LinkedHashSet<>(Arrays.asList(normalized.split(" "))));
+    }
+
+    /**
+     * The trigrams of the word padded as {@code $$word$}: every trigram inside it plus three marking its start and end.
+     */
+    private static Set<String> trigrams(String term) {
+        String padded = "$$" + term + "$";
+        Set<String> trigrams = new HashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            trigrams.add(padded.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+}
@@ -0,0 +1,377 @@
+package com.northcoders.record_shop.ingest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.northcoders.record_shop.dto.IngestStatus;
+import com.northcoders.record_shop.exception.BadRequestException;
+import com.northcoders.record_shop.exception.ItemNotFoundException;
+import com.northcoders.record_shop.exception.ServiceUnavailableException;
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.repository.ImportCheckpointStore;
+import com.northcoders.record_shop.repository.ImportCheckpointStore.Checkpoint;
+import com.northcoders.record_shop.service.AlbumBatchInserter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind album creation for POST /albums/ingest, enabled by {@code record-shop.ingest.log-dir}.
+ * <p>
+ * An accepted album is appended to a local log file ({@link IngestLog}) and synced to disk before the request gets
+ * its 202 and tracking id (the record's sequence number). A single writer thread takes up to {@code batch-size} queued
+ * albums at a time and inserts them in one transaction, which also moves this queue's row in
+ * {@code import_checkpoint} (shared with the CLI import) past them. On startup every record after that checkpoint is
+ * queued again, so nothing accepted is lost or inserted twice if the process dies.
+ * <p>
+ * At most {@code capacity} albums wait at once; beyond that requests get a 503 with Retry-After rather than an
+ * ever-growing backlog. A batch that fails because the database is unreachable is retried with backoff; one that
+ * fails for any other reason is retried album by album, so a single bad album only fails itself. The log is emptied
+ * once everything in it has been applied and it has grown past {@code max-log-size}.
+ */
+@Component
+@ConditionalOnProperty(name = "record-shop.ingest.log-dir")
+public class AlbumIngestQueue {
+    private static final Logger log = LoggerFactory.getLogger(AlbumIngestQueue.class);
+    private static final Duration MAX_RETRY_BACKOFF = Duration.ofSeconds(30);
+
+    private record Pending(long sequence, long endOffset, Album album) {
+    }
+
+    private final AlbumBatchInserter albumBatchInserter;
+    private final ImportCheckpointStore checkpointStore;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final IngestLog ingestLog;
+    private final String queueId;
+    private final int capacity;
+    private final int batchSize;
+    private final Duration linger;
+    private final Duration retryBackoff;
+    private final long maxLogBytes;
+    private final Cache<Long, IngestStatus> results;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition queued = lock.newCondition();
+    private final Deque<Pending> pending = new ArrayDeque<>();
+    private long nextSequence;
+    private long appliedSequence;
+    private long created;
+    private long failed;
+    private volatile boolean running;
+    private Thread writer;
+
+    @Autowired
+    public AlbumIngestQueue(AlbumBatchInserter albumBatchInserter, ImportCheckpointStore checkpointStore,
+                            PlatformTransactionManager transactionManager, ObjectMapper objectMapper,
+                            MeterRegistry meterRegistry,
+                            @Value("${record-shop.ingest.log-dir}") Path logDir,
+                            @Value("${record-shop.ingest.capacity:10000}") int capacity,
+                            @Value("${record-shop.ingest.batch-size:500}") int batchSize,
+                            @Value("${record-shop.ingest.linger:20ms}") Duration linger,
+                            @Value("${record-shop.ingest.retry-backoff:1s}") Duration retryBackoff,
+                            @Value("${record-shop.ingest.max-log-size:64MB}") DataSize maxLogSize,
+                            @Value("${record-shop.ingest.results-ttl:1h}") Duration resultsTtl) throws IOException {
+        this(albumBatchInserter, checkpointStore, transactionManager, objectMapper, logDir,
+                capacity, batchSize, linger, retryBackoff, maxLogSize, resultsTtl);
+        Gauge.builder("albums.ingest.pending", this, AlbumIngestQueue::pendingCount)
+                .description("Albums accepted by POST /albums/ingest and not yet written to the database")
+                .register(meterRegistry);
+    }
+
+    AlbumIngestQueue(AlbumBatchInserter albumBatchInserter, ImportCheckpointStore checkpointStore,
+                     PlatformTransactionManager transactionManager, ObjectMapper objectMapper, Path logDir,
+                     int capacity, int batchSize, Duration linger, Duration retryBackoff, DataSize maxLogSize,
+                     Duration resultsTtl) throws IOException {
+        this.albumBatchInserter = albumBatchInserter;
+        this.checkpointStore = checkpointStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.capacity = Math.max(1, capacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.linger = linger;
+        this.retryBackoff = retryBackoff;
+        this.maxLogBytes = maxLogSize.toBytes();
+        this.results = Caffeine.newBuilder().maximumSize(1_000_000).expireAfterWrite(resultsTtl).build();
+        Files.createDirectories(logDir);
+        Path file = logDir.resolve("album-ingest.log").toAbsolutePath();
+        this.queueId = "ingest:" + file;
+        this.ingestLog = new IngestLog(file);
+        recover();
+    }
+
+    /**
+     * Queues what the log holds beyond the checkpoint: albums accepted before the last shutdown or crash.
+     */
+    private void recover() throws IOException {
+        Checkpoint checkpoint = checkpointStore.find(queueId).orElse(null);
+        appliedSequence = checkpoint == null ? 0 : checkpoint.lineNumber();
+        created = checkpoint == null ? 0 : checkpoint.rowsImported();
+        failed = checkpoint == null ? 0 : checkpoint.rowsRejected();
+        long lastSequence = appliedSequence;
+        for (IngestLog.Entry entry : ingestLog.readFrom(checkpoint == null ? 0 : checkpoint.byteOffset())) {
+            lastSequence = Math.max(lastSequence, entry.sequence());
+            // Already in the database: the log was emptied after the checkpoint moved past it, or not yet emptied.
+            if (entry.sequence() <= appliedSequence) continue;
+            pending.add(new Pending(entry.sequence(), entry.endOffset(),
+                    objectMapper.readValue(entry.payload(), Album.class)));
+        }
+        nextSequence = lastSequence + 1;
+        if (!pending.isEmpty()) log.info("Recovered {} queued albums from {}", pending.size(), queueId);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        lock.lock();
+        try {
+            if (running) return;
+            running = true;
+            writer = new Thread(this::drain, "album-ingest-writer");
+            writer.setDaemon(true);
+            writer.start();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the writer after its current batch; whatever is still queued stays in the log for the next start.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        Thread stopping;
+        lock.lock();
+        try {
+            running = false;
+            stopping = writer;
+            queued.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (stopping != null) stopping.join(TimeUnit.SECONDS.toMillis(10));
+        ingestLog.close();
+    }
+
+    /**
+     * Durably queues the album and returns its status, or throws if it is invalid or the queue is full.
+     */
+    public IngestStatus accept(Album album) {
+        String error = AlbumBatchInserter.validate(album);
+        if (error != null) throw new BadRequestException(error);
+        album.setId(null);
+        album.setVersion(null);
+        byte[] payload;
+        try {
+            payload = objectMapper.writeValueAsBytes(album);
+        } catch (IOException e) {
+            throw new BadRequestException("Album cannot be serialized: " + e.getMessage());
+        }
+
+        long sequence;
+        long endOffset;
+        lock.lock();
+        try {
+            if (pending.size() >= capacity) {
+                throw new ServiceUnavailableException(String.format(
+                        "The ingest queue is full (%d albums waiting); retry shortly.", pending.size()), Duration.ofSeconds(1));
+            }
+            sequence = nextSequence++;
+            endOffset = ingestLog.append(sequence, payload);
+            pending.add(new Pending(sequence, endOffset, album));
+            queued.signal();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write to the ingest log", e);
+        } finally {
+            lock.unlock();
+        }
+        // Outside the lock, so requests arriving meanwhile append too and share this fsync.
+        try {
+            ingestLog.force(endOffset);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not sync the ingest log", e);
+        }
+        return IngestStatus.queued(sequence);
+    }
+
+    public IngestStatus getStatus(long trackingId) {
+        lock.lock();
+        try {
+            if (trackingId < 1 || trackingId >= nextSequence) {
+                throw new ItemNotFoundException(String.format("No album was queued with tracking id '%d'.", trackingId));
+            }
+            if (trackingId > appliedSequence) return IngestStatus.queued(trackingId);
+        } finally {
+            lock.unlock();
+        }
+        IngestStatus status = results.getIfPresent(trackingId);
+        if (status == null) {
+            throw new ItemNotFoundException(String.format(
+                    "The album queued with tracking id '%d' was processed too long ago to report on.", trackingId));
+        }
+        return status;
+    }
+
+    public int pendingCount() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void drain() {
+        Duration backoff = retryBackoff;
+        while (true) {
+            List<Pending> batch = nextBatch();
+            if (batch == null) return;
+            try {
+                apply(batch);
+                backoff = retryBackoff;
+            } catch (RuntimeException e) {
+                log.warn("Could not write {} queued albums, retrying in {} ms: {}", batch.size(), backoff.toMillis(),
+                        e.getMessage());
+                if (!pause(backoff)) return;
+                backoff = backoff.multipliedBy(2);
+                if (backoff.compareTo(MAX_RETRY_BACKOFF) > 0) backoff = MAX_RETRY_BACKOFF;
+            }
+        }
+    }
+
+    /**
+     * Waits for at least one queued album, then up to {@code linger} for a full batch. The albums stay queued, and
+     * count towards the capacity, until they are applied. Returns null once stopped.
+     */
+    private List<Pending> nextBatch() {
+        lock.lock();
+        try {
+            while (running && pending.isEmpty()) queued.awaitUninterruptibly();
+            long deadline = System.nanoTime() + linger.toNanos();
+            long remaining;
+            while (running && pending.size() < batchSize && (remaining = deadline - System.nanoTime()) > 0) {
+                queued.awaitNanos(remaining);
+            }
+            if (!running) return null;
+            List<Pending> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+            for (Pending item : pending) {
+                if (batch.size() == batchSize) break;
+                batch.add(item);
+            }
+            return batch;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void apply(List<Pending> batch) {
+        try {
+            insert(batch);
+        } catch (RuntimeException e) {
+            if (isTransient(e)) throw e;
+            if (batch.size() == 1) {
+                reject(batch.get(0), e);
+                return;
+            }
+            // Something in the batch is bad: find it by inserting one at a time.
+            for (Pending item : batch) apply(List.of(item));
+        }
+    }
+
+    private void insert(List<Pending> batch) {
+        List<Album> albums = new ArrayList<>(batch.size());
+        for (Pending item : batch) albums.add(copy(item.album()));
+        Pending last = batch.get(batch.size() - 1);
+        List<Album> saved = albumBatchInserter.insertChunk(albums, () -> checkpointStore.save(
+                new Checkpoint(queueId, last.endOffset(), last.sequence(), created + batch.size(), failed, false)));
+        for (int i = 0; i < batch.size(); i++) {
+            results.put(batch.get(i).sequence(), IngestStatus.created(batch.get(i).sequence(), saved.get(i).getId()));
+        }
+        applied(batch, batch.size(), 0);
+    }
+
+    private void reject(Pending item, RuntimeException cause) {
+        log.warn("Dropping queued album {} after it failed on its own: {}", item.sequence(), cause.getMessage());
+        transactionTemplate.executeWithoutResult(status -> checkpointStore.save(
+                new Checkpoint(queueId, item.endOffset(), item.sequence(), created, failed + 1, false)));
+        results.put(item.sequence(), IngestStatus.failed(item.sequence(), cause.getMessage()));
+        applied(List.of(item), 0, 1);
+    }
+
+    private void applied(List<Pending> batch, int createdCount, int failedCount) {
+        lock.lock();
+        try {
+            for (int i = 0; i < batch.size(); i++) pending.removeFirst();
+            appliedSequence = batch.get(batch.size() - 1).sequence();
+            created += createdCount;
+            failed += failedCount;
+            if (pending.isEmpty() && ingestLog.size() > maxLogBytes) {
+                // The checkpoint goes back to the start first: were it left pointing into the old file, recovery would
+                // read the new one from there, land mid-record and cut off albums accepted since. If the process dies
+                // between the two steps, recovery rereads the old records and skips them by sequence.
+                transactionTemplate.executeWithoutResult(status -> checkpointStore.save(
+                        new Checkpoint(queueId, 0, appliedSequence, created, failed, false)));
+                ingestLog.truncate();
+                log.info("Emptied {} after applying everything in it", queueId);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not empty the ingest log; it will be retried after the next batch", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Inserting assigns the id, and a rolled-back attempt must not leave one on the album for the retry.
+    private static Album copy(Album album) {
+        return new Album(null, album.getArtist(), album.getReleaseYear(), album.getGenre(), album.getName(), null);
+    }
+
+    private static boolean isTransient(RuntimeException e) {
+        return e instanceof CannotCreateTransactionException || e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException || e instanceof DataAccessResourceFailureException;
+    }
+
+    private boolean pause(Duration duration) {
+        lock.lock();
+        try {
+            long remaining = duration.toNanos();
+            while (running && remaining > 0) remaining = queued.awaitNanos(remaining);
+            return running;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.northcoders.record_shop.ingest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only file of records, each {@code [payload length][sequence][CRC32 of sequence and payload][payload]}.
+ * A crash can leave a half-written record at the end; reading stops at the first record that is short or fails its
+ * checksum, and the file is cut back to the last good one.
+ * <p>
+ * Appends are only written to the OS; {@link #force} makes them durable. Concurrent callers share one fsync: whoever
+ * syncs covers every record written so far, and the others return as soon as it has.
+ */
+class IngestLog implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(IngestLog.class);
+    private static final int HEADER_BYTES = Integer.BYTES + Long.BYTES + Integer.BYTES;
+    private static final int MAX_PAYLOAD_BYTES = 1 << 20;
+
+    record Entry(long sequence, long endOffset, byte[] payload) {
+    }
+
+    private final Path file;
+    private final FileChannel channel;
+    private final Object forceLock = new Object();
+    private volatile long writtenOffset;
+    private long forcedOffset;
+
+    IngestLog(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.writtenOffset = channel.size();
+        this.forcedOffset = writtenOffset;
+    }
+
+    /**
+     * Every intact record from {@code offset} on (from the start if the file is now shorter), dropping a torn tail.
+     */
+    List<Entry> readFrom(long offset) throws IOException {
+        long position = offset <= channel.size() ? offset : 0;
+        List<Entry> entries = new ArrayList<>();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(channel.position(position)), 64 * 1024));
+        CRC32 crc = new CRC32();
+        try {
+            while (true) {
+                int length = in.readInt();
+                long sequence = in.readLong();
+                int checksum = in.readInt();
+                if (length < 0 || length > MAX_PAYLOAD_BYTES) break;
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                crc.reset();
+                crc.update(ByteBuffer.allocate(Long.BYTES).putLong(0, sequence));
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) break;
+                position += HEADER_BYTES + length;
+                entries.add(new Entry(sequence, position, payload));
+            }
+        } catch (EOFException e) {
+            // The end of the file, possibly in the middle of a record.
+        }
+        if (position < channel.size()) {
+            log.warn("Dropping {} bytes of an incomplete record at the end of {}", channel.size() - position, file);
+            channel.truncate(position);
+        }
+        writtenOffset = channel.size();
+        forcedOffset = writtenOffset;
+        return entries;
+    }
+
+    /**
+     * Writes one record at the end of the file and returns the offset just after it. Callers append one at a time.
+     */
+    long append(long sequence, byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(Long.BYTES).putLong(0, sequence));
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payload.length)
+                .putInt(payload.length)
+                .putLong(sequence)
+                .putInt((int) crc.getValue())
+                .put(payload)
+                .flip();
+        long offset = writtenOffset;
+        while (record.hasRemaining()) offset += channel.write(record, offset);
+        writtenOffset = offset;
+        return offset;
+    }
+
+    /**
+     * Returns once everything up to {@code offset} is on disk.
+     */
+    void force(long offset) throws IOException {
+        synchronized (forceLock) {
+            if (forcedOffset >= offset) return;
+            long written = writtenOffset;
+            channel.force(false);
+            forcedOffset = written;
+        }
+    }
+
+    /**
+     * Empties the file; only for when every record in it has been applied.
+     */
+    void truncate() throws IOException {
+        synchronized (forceLock) {
+            channel.truncate(0);
+            channel.force(true);
+            writtenOffset = 0;
+            forcedOffset = 0;
+        }
+    }
+
+    long size() {
+        return writtenOffset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
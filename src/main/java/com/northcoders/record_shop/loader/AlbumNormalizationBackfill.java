@@ -0,0 +1,134 @@
+package com.northcoders.record_shop.loader;
+
+import com.northcoders.record_shop.cache.AlbumCache;
+import com.northcoders.record_shop.model.AlbumNormalizer;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fills in the normalized artist and name columns (added by V7) for albums stored before them, while the application
+ * serves requests. It walks the table in id order, {@code batch-size} rows per transaction with a {@code pause} in
+ * between, so no batch holds locks for long. A row updated by a client since it was read (its version moved) is left
+ * alone, since that update already normalized it.
+ * <p>
+ * Until it finishes, the artist and name finders also match rows by their exact value, so albums it has not reached
+ * are still found as before; afterwards the cached finder results are dropped so they are reloaded by normalized value.
+ */
+@Component
+public class AlbumNormalizationBackfill {
+    private static final Logger log = LoggerFactory.getLogger(AlbumNormalizationBackfill.class);
+
+    private record Row(long id, long version, String artist, String name) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AlbumCache albumCache;
+    private final EntityManagerFactory entityManagerFactory;
+    private final int batchSize;
+    private final Duration pause;
+    private volatile boolean complete;
+    private volatile boolean stopped;
+
+    @Autowired
+    public AlbumNormalizationBackfill(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                      AlbumCache albumCache, EntityManagerFactory entityManagerFactory,
+                                      @Value("${record-shop.normalization-backfill.batch-size:1000}") int batchSize,
+                                      @Value("${record-shop.normalization-backfill.pause:10ms}") Duration pause) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.albumCache = albumCache;
+        this.entityManagerFactory = entityManagerFactory;
+        this.batchSize = Math.max(1, batchSize);
+        this.pause = pause;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        Thread thread = new Thread(this::run, "album-normalization-backfill");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Whether every stored album has its normalized columns, so the finders can rely on them alone.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Normalizes every album still missing its normalized columns and returns how many were updated.
+     */
+    public long run() {
+        long start = System.nanoTime();
+        long updated = 0;
+        long afterId = 0;
+        try {
+            while (!stopped) {
+                List<Row> rows = jdbcTemplate.query(
+                        "SELECT id, version, artist, name FROM album WHERE id > ? AND "
+                                + "((artist_normalized IS NULL AND artist IS NOT NULL) OR (name_normalized IS NULL AND name IS NOT NULL)) "
+                                + "ORDER BY id LIMIT ?",
+                        (rs, row) -> new Row(rs.getLong(1), rs.getLong(2), rs.getString(3), rs.getString(4)),
+                        afterId, batchSize);
+                if (rows.isEmpty()) break;
+                updated += update(rows);
+                afterId = rows.get(rows.size() - 1).id();
+                if (rows.size() < batchSize) break;
+                Thread.sleep(pause.toMillis());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return updated;
+        } catch (RuntimeException e) {
+            // Finders keep matching exact values too; the next start picks up where this one stopped.
+            log.warn("Normalizing stored album names stopped after {} albums", updated, e);
+            return updated;
+        }
+        if (stopped) return updated;
+        complete = true;
+        if (updated > 0) {
+            // These JDBC updates bypass Hibernate, so its cached albums and query results are dropped here too.
+            entityManagerFactory.getCache().unwrap(Cache.class).evictAllRegions();
+            albumCache.invalidateAll();
+            log.info("Normalized the artist and name of {} stored albums in {} ms", updated,
+                    (System.nanoTime() - start) / 1_000_000);
+        }
+        return updated;
+    }
+
+    private int update(List<Row> rows) {
+        List<Object[]> arguments = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            arguments.add(new Object[]{AlbumNormalizer.normalize(row.artist()), AlbumNormalizer.normalize(row.name()),
+                    row.id(), row.version()});
+        }
+        int[] counts = transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(
+                "UPDATE album SET artist_normalized = ?, name_normalized = ? WHERE id = ? AND version = ?", arguments));
+        int updated = 0;
+        for (int count : counts) updated += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+        return updated;
+    }
+}
@@ -2,35 +2,64 @@ package com.northcoders.record_shop.loader;
 
 import com.northcoders.record_shop.model.Album;
 import com.northcoders.record_shop.repository.AlbumRepository;
+import com.northcoders.record_shop.service.AlbumBatchInserter;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Adds the demo catalog when running without a profile (or with {@code demo}), never under {@code rds}. It only
+ * inserts the demo albums that are missing, in one batched transaction, so restarts neither wipe real data nor repeat
+ * work; the CLI turns it off altogether.
+ */
 @Configuration
+@Profile({"default", "demo"})
+@ConditionalOnProperty(name = "record-shop.demo-data.enabled", havingValue = "true", matchIfMissing = true)
 public class DemoSeedDataLoader {
 
+    static final List<Album> DEMO_ALBUMS = List.of(
+            new Album(null, "Oasis", 1994, Album.AlbumGenres.BRITPOP, "Definitely Maybe"),
+            new Album(null, "Oasis", 1995, Album.AlbumGenres.BRITPOP, "What's the Story Morning Glory?"),
+            new Album(null, "The Beatles", 1968, Album.AlbumGenres.ROCK, "The White Album"),
+            new Album(null, "The Beatles", 1969, Album.AlbumGenres.ROCK, "Abbey Road"),
+            new Album(null, "Suede", 1996, Album.AlbumGenres.BRITPOP, "Coming Up"),
+            new Album(null, "Suede", 1994, Album.AlbumGenres.BRITPOP, "Dog Man Star"),
+            new Album(null, "Muse", 2006, Album.AlbumGenres.ALTERNATIVE_ROCK, "Black Holes and Revelations"),
+            new Album(null, "Muse", 2003, Album.AlbumGenres.ALTERNATIVE_ROCK, "Absolution"),
+            new Album(null, "Muse", 2001, Album.AlbumGenres.ALTERNATIVE_ROCK, "Origin of Symmetry"),
+
+            new Album(null, "Blur", 1994, Album.AlbumGenres.BRITPOP, "Parklife"),
+            new Album(null, "Pulp", 1994, Album.AlbumGenres.BRITPOP, "His 'n' Hers"),
+            new Album(null, "Oasis", 1998, Album.AlbumGenres.BRITPOP, "The Masterplan"),
+            new Album(null, "Radiohead", 1995, Album.AlbumGenres.ALTERNATIVE_ROCK, "The Bends"),
+            new Album(null, "Oasis", 1997, Album.AlbumGenres.BRITPOP, "Be Here Now"));
+
     @Bean(name = "demoDataLoader")
-    public CommandLineRunner demoDataLoader(AlbumRepository albumRepository) {
+    public CommandLineRunner demoDataLoader(AlbumRepository albumRepository, AlbumBatchInserter albumBatchInserter) {
         return args -> {
-            albumRepository.deleteAll();
-
-            albumRepository.save(new Album(null, "Oasis", 1994, Album.AlbumGenres.BRITPOP, "Definitely Maybe"));
-            albumRepository.save(new Album(null, "Oasis", 1995, Album.AlbumGenres.BRITPOP, "What's the Story Morning Glory?"));
-            albumRepository.save(new Album(null, "The Beatles", 1968, Album.AlbumGenres.ROCK, "The White Album"));
-            albumRepository.save(new Album(null, "The Beatles", 1969, Album.AlbumGenres.ROCK, "Abbey Road"));
-            albumRepository.save(new Album(null, "Suede", 1996, Album.AlbumGenres.BRITPOP, "Coming Up"));
-            albumRepository.save(new Album(null, "Suede", 1994, Album.AlbumGenres.BRITPOP, "Dog Man Star"));
-            albumRepository.save(new Album(null, "Muse", 2006, Album.AlbumGenres.ALTERNATIVE_ROCK, "Black Holes and Revelations"));
-            albumRepository.save(new Album(null, "Muse", 2003, Album.AlbumGenres.ALTERNATIVE_ROCK, "Absolution"));
-            albumRepository.save(new Album(null, "Muse", 2001, Album.AlbumGenres.ALTERNATIVE_ROCK, "Origin of Symmetry"));
-
-            albumRepository.save(new Album(null, "Blur", 1994, Album.AlbumGenres.BRITPOP, "Parklife"));
-            albumRepository.save(new Album(null, "Pulp", 1994, Album.AlbumGenres.BRITPOP, "His 'n' Hers"));
-            albumRepository.save(new Album(null, "Oasis", 1998, Album.AlbumGenres.BRITPOP, "The Masterplan"));
-            albumRepository.save(new Album(null, "Radiohead", 1995, Album.AlbumGenres.ALTERNATIVE_ROCK, "The Bends"));
-            albumRepository.save(new Album(null, "Oasis", 1997, Album.AlbumGenres.BRITPOP, "Be Here Now"));
-
-            System.out.println("Demo data has been loaded.");
+            Set<String> artists = DEMO_ALBUMS.stream().map(Album::getArtist).collect(Collectors.toSet());
+            Set<String> present = albumRepository.findByArtistIn(artists).stream()
+                    .map(DemoSeedDataLoader::key)
+                    .collect(Collectors.toSet());
+            List<Album> missing = DEMO_ALBUMS.stream()
+                    .filter(album -> !present.contains(key(album)))
+                    .map(album -> new Album(null, album.getArtist(), album.getReleaseYear(), album.getGenre(),
+                            album.getName()))
+                    .toList();
+            if (missing.isEmpty()) return;
+
+            albumBatchInserter.insertChunk(missing);
+            System.out.println("Demo data has been loaded (" + missing.size() + " albums added).");
         };
     }
+
+    private static String key(Album album) {
+        return album.getArtist() + '\u0000' + album.getName();
+    }
 }
@@ -1,29 +1,60 @@
 package com.northcoders.record_shop.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
-import lombok.AllArgsConstructor;
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.time.LocalDate;
 
 @Entity
+@Table(name = "album", indexes = {
+        @Index(name = "idx_album_artist_release_year", columnList = "artist, release_year"),
+        @Index(name = "idx_album_name", columnList = "name"),
+        @Index(name = "idx_album_artist_normalized_release_year", columnList = "artist_normalized, release_year"),
+        @Index(name = "idx_album_name_normalized", columnList = "name_normalized"),
+        @Index(name = "idx_album_release_year_id", columnList = "release_year, id"),
+        @Index(name = "idx_album_genre_release_year", columnList = "genre, release_year")
+})
+// Read-mostly, so findById is served from the second-level cache (see SecondLevelCacheConfig); READ_WRITE locks an
+// entry while a transaction changes it, so no other reader caches the old row in between.
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "album")
 @Data
 @NoArgsConstructor
-@AllArgsConstructor
-@Builder
 public class Album {
 
     public enum AlbumGenres {
         BRITPOP,
         ROCK,
         ALTERNATIVE_ROCK,
-        CLASSIC
+        CLASSIC;
+
+        private static final AlbumGenres[] VALUES = values();
+
+        /**
+         * Case-insensitive lookup that returns null for an unknown genre instead of throwing, so bad request parameters
+         * do not pay for an exception and its stack trace.
+         */
+        public static AlbumGenres fromName(String name) {
+            if (name == null) return null;
+            for (AlbumGenres genre : VALUES) {
+                if (genre.name().equalsIgnoreCase(name)) return genre;
+            }
+            return null;
+        }
     }
 
+    // Pooled sequence ids let Hibernate batch inserts; IDENTITY forces one round trip per row to read the key back.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "album_seq")
+    @SequenceGenerator(name = "album_seq", sequenceName = "album_seq", allocationSize = 50)
     @Column(updatable = false, nullable = false)
     Long id;
 
@@ -39,4 +70,46 @@ public class Album {
 
     @Column
     String name;
+
+    // Bumped on every update; exposed so clients can send it back in If-Match for optimistic concurrency.
+    @Version
+    @Column(nullable = false)
+    Long version;
+
+    // AlbumNormalizer forms of artist and name, which the finders look up by. Derived on every insert and update, so
+    // they are not settable, not sent to clients and not part of equality.
+    @Column(name = "artist_normalized")
+    @Setter(AccessLevel.NONE)
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    String artistNormalized;
+
+    @Column(name = "name_normalized")
+    @Setter(AccessLevel.NONE)
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    String nameNormalized;
+
+    @Builder
+    public Album(Long id, String artist, int releaseYear, AlbumGenres genre, String name, Long version) {
+        this.id = id;
+        this.artist = artist;
+        this.releaseYear = releaseYear;
+        this.genre = genre;
+        this.name = name;
+        this.version = version;
+    }
+
+    public Album(Long id, String artist, int releaseYear, AlbumGenres genre, String name) {
+        this(id, artist, releaseYear, genre, name, null);
+    }
+
+    @PrePersist
+    @PreUpdate
+    void normalize() {
+        artistNormalized = AlbumNormalizer.normalize(artist);
+        nameNormalized = AlbumNormalizer.normalize(name);
+    }
 }
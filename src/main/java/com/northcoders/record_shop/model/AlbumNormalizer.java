@@ -0,0 +1,48 @@
+package com.northcoders.record_shop.model;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * The lookup form of an artist or album name, stored alongside it so "OASIS", "oasis" and "Oasis" find the same albums
+ * with a plain indexed equality instead of {@code lower(artist)} on every row. Case is folded, accents are dropped
+ * ("Sigur Rós" becomes "sigur ros"), runs of whitespace become one space, and a leading "The" is dropped so "The
+ * Beatles" and "Beatles" match; punctuation is kept.
+ */
+public final class AlbumNormalizer {
+    // The width of the shadow columns; only reached when folding lengthens a name that was already at the limit.
+    static final int MAX_LENGTH = 255;
+    private static final String THE = "the ";
+
+    private AlbumNormalizer() {
+    }
+
+    /**
+     * Normalizes {@code text}, or returns null for null. Normalizing a normalized value leaves it unchanged.
+     */
+    public static String normalize(String text) {
+        if (text == null) return null;
+        // Upper then lower case folds what lower case alone misses, such as German sharp s to "ss".
+        String decomposed = Normalizer.normalize(text.toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT),
+                Normalizer.Form.NFKD);
+        StringBuilder normalized = new StringBuilder(decomposed.length());
+        boolean space = false;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) continue;
+            if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+                space = !normalized.isEmpty();
+                continue;
+            }
+            if (space) normalized.append(' ');
+            normalized.append(c);
+            space = false;
+        }
+        String result = normalized.toString();
+        int start = 0;
+        // "The The" is still "the": only drop it while something is left after it.
+        while (result.length() - start > THE.length() && result.startsWith(THE, start)) start += THE.length();
+        result = result.substring(start);
+        return result.length() > MAX_LENGTH ? result.substring(0, MAX_LENGTH).stripTrailing() : result;
+    }
+}
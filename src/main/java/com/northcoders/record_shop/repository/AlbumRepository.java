@@ -1,18 +1,130 @@
 package com.northcoders.record_shop.repository;
 
+import com.northcoders.record_shop.config.SecondLevelCacheConfig;
 import com.northcoders.record_shop.model.Album;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
-public interface AlbumRepository extends CrudRepository<Album, Long> {
+public interface AlbumRepository extends CrudRepository<Album, Long>, JpaSpecificationExecutor<Album>, AlbumViewRepository {
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.METHOD)
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = SecondLevelCacheConfig.QUERY_REGION)
+    })
+    @interface CachedQuery {
+    }
+
+    String NORMALIZE_ARTIST_AND_NAME =
+            "a.artistNormalized = :#{T(com.northcoders.record_shop.model.AlbumNormalizer).normalize(#artist)}, " +
+            "a.nameNormalized = :#{T(com.northcoders.record_shop.model.AlbumNormalizer).normalize(#name)}, ";
+
+    // Read-only like the inherited findAll/findById, so they are served by a read replica when one is configured
+    // (see ReadReplicaConfig). Queries without a transaction use the primary.
+    // The finders marked @CachedQuery keep their result ids in the second-level query cache until the table changes.
+    @CachedQuery
+    @Transactional(readOnly = true)
     List<Album> findByArtist(String artist);
 
+    // Lookups by the AlbumNormalizer form, from the normalized shadow columns' indexes; callers pass it normalized.
+    @CachedQuery
+    @Transactional(readOnly = true)
+    List<Album> findByArtistNormalized(String artistNormalized);
+
+    @CachedQuery
+    @Transactional(readOnly = true)
+    List<Album> findByNameNormalized(String nameNormalized);
+
+    // While AlbumNormalizationBackfill is still running: rows it has not reached yet are found by their exact value.
+    @CachedQuery
+    @Transactional(readOnly = true)
+    List<Album> findByArtistNormalizedOrArtist(String artistNormalized, String artist);
+
+    @CachedQuery
+    @Transactional(readOnly = true)
+    List<Album> findByNameNormalizedOrName(String nameNormalized, String name);
+
+    @CachedQuery
+    @Transactional(readOnly = true)
     List<Album> findByReleaseYear(int releaseYear);
 
+    // Inclusive range; sorted by releaseYear and id it is read in order from idx_album_release_year_id.
+    @Transactional(readOnly = true)
+    Page<Album> findByReleaseYearBetween(int fromYear, int toYear, Pageable pageable);
+
+    @CachedQuery
+    @Transactional(readOnly = true)
     List<Album> findByGenre(Album.AlbumGenres genre);
 
+    @CachedQuery
+    @Transactional(readOnly = true)
     List<Album> findByName(String name);
+
+    @Transactional(readOnly = true)
+    List<Album> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    // Read-only, cursor-backed scan in id order; callers must consume it inside a transaction and close it. It skips the
+    // second-level cache, so a snapshot or index rebuild neither reads through it nor evicts the hot albums from it.
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE")
+    })
+    @Query("select a from Album a order by a.id")
+    Stream<Album> streamAllOrderedById();
+
+    // The same scan for the facet counts, reading only what they are kept by: each row is
+    // {id, artist, genre, releaseYear, version}.
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE")
+    })
+    @Query("select a.id, a.artist, a.genre, a.releaseYear, a.version from Album a order by a.id")
+    Stream<Object[]> streamAttributesOrderedById();
+
+    // Single-statement writes: no entity is loaded first, and the returned row count tells whether the album existed.
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    // Bulk updates skip the entity callbacks, so they set the normalized columns themselves.
+    @Query("update Album a set a.artist = :artist, a.releaseYear = :releaseYear, a.genre = :genre, a.name = :name, " +
+            NORMALIZE_ARTIST_AND_NAME + "a.version = a.version + 1 where a.id = :id")
+    int updateById(@Param("id") Long id, @Param("artist") String artist, @Param("releaseYear") int releaseYear,
+                   @Param("genre") Album.AlbumGenres genre, @Param("name") String name);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Album a set a.artist = :artist, a.releaseYear = :releaseYear, a.genre = :genre, a.name = :name, " +
+            NORMALIZE_ARTIST_AND_NAME + "a.version = a.version + 1 where a.id = :id and a.version = :version")
+    int updateByIdAndVersion(@Param("id") Long id, @Param("version") Long version, @Param("artist") String artist,
+                             @Param("releaseYear") int releaseYear, @Param("genre") Album.AlbumGenres genre,
+                             @Param("name") String name);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from Album a where a.id = :id")
+    int removeById(@Param("id") Long id);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from Album a where a.id = :id and a.version = :version")
+    int removeByIdAndVersion(@Param("id") Long id, @Param("version") Long version);
+
+    List<Album> findByArtistIn(Collection<String> artists);
 }
@@ -0,0 +1,61 @@
+package com.northcoders.record_shop.repository;
+
+import com.northcoders.record_shop.dto.AlbumSearchCriteria;
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.model.AlbumNormalizer;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds a single WHERE clause from whichever search criteria are present. Only equality and range predicates are
+ * used so the database can answer from the album indexes (artist_normalized+release_year, genre+release_year,
+ * name_normalized, release_year). Artist and name are matched by their normalized columns, ignoring case and accents
+ * as the finders do.
+ */
+public final class AlbumSpecifications {
+
+    private AlbumSpecifications() {
+    }
+
+    /**
+     * With {@code normalizedOnly} false, as while the normalized columns are still being backfilled, artist and name
+     * also match rows by their exact value.
+     */
+    public static Specification<Album> matching(AlbumSearchCriteria criteria, boolean normalizedOnly) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (criteria.artist() != null) {
+                predicates.add(normalizedEqual(cb, root, "artist", criteria.artist(), normalizedOnly));
+            }
+            if (criteria.name() != null) {
+                predicates.add(normalizedEqual(cb, root, "name", criteria.name(), normalizedOnly));
+            }
+            if (criteria.genre() != null) predicates.add(cb.equal(root.get("genre"), criteria.genre()));
+            if (criteria.fromYear() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("releaseYear"), criteria.fromYear()));
+            }
+            if (criteria.toYear() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("releaseYear"), criteria.toYear()));
+            }
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    /**
+     * Albums after {@code id} in id order, for keyset paging; all albums for null.
+     */
+    public static Specification<Album> idAfter(Long id) {
+        return (root, query, cb) -> id == null ? cb.conjunction() : cb.greaterThan(root.get("id"), id);
+    }
+
+    private static Predicate normalizedEqual(CriteriaBuilder cb, Root<Album> root, String field, String value,
+                                             boolean normalizedOnly) {
+        Predicate normalized = cb.equal(root.get(field + "Normalized"), AlbumNormalizer.normalize(value));
+        return normalizedOnly ? normalized : cb.or(normalized, cb.equal(root.get(field), value));
+    }
+}
@@ -0,0 +1,26 @@
+package com.northcoders.record_shop.repository;
+
+import com.northcoders.record_shop.dto.AlbumView;
+import com.northcoders.record_shop.model.Album;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Sparse-fieldset reads for the list endpoints: only the id and the {@code fields} asked for (names from
+ * {@link AlbumView#FIELDS}) are selected, and rows come back as {@link AlbumView}s, so no entity is built, managed or
+ * snapshotted for dirty checking.
+ */
+public interface AlbumViewRepository {
+
+    /**
+     * Up to {@code limit} albums matching {@code specification} in {@code sort} order; a limit below 1 returns all.
+     */
+    List<AlbumView> findViews(Specification<Album> specification, Collection<String> fields, Sort sort, int limit);
+
+    Page<AlbumView> findViews(Specification<Album> specification, Collection<String> fields, Pageable pageable);
+}
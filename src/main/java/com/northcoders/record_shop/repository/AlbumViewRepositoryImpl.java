@@ -0,0 +1,90 @@
+package com.northcoders.record_shop.repository;
+
+import com.northcoders.record_shop.dto.AlbumView;
+import com.northcoders.record_shop.model.Album;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.springframework.data.jpa.repository.query.QueryUtils.toOrders;
+
+// Read-only like the finders in AlbumRepository, so a read replica serves these too.
+@Transactional(readOnly = true)
+public class AlbumViewRepositoryImpl implements AlbumViewRepository {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<AlbumView> findViews(Specification<Album> specification, Collection<String> fields, Sort sort, int limit) {
+        TypedQuery<Tuple> query = query(specification, fields, sort);
+        if (limit > 0) query.setMaxResults(limit);
+        return toViews(query.getResultList(), fields);
+    }
+
+    @Override
+    public Page<AlbumView> findViews(Specification<Album> specification, Collection<String> fields, Pageable pageable) {
+        TypedQuery<Tuple> query = query(specification, fields, pageable.getSort());
+        if (pageable.isPaged()) {
+            query.setFirstResult((int) pageable.getOffset());
+            query.setMaxResults(pageable.getPageSize());
+        }
+        // The count only runs when this page does not already tell the total.
+        return PageableExecutionUtils.getPage(toViews(query.getResultList(), fields), pageable, () -> count(specification));
+    }
+
+    private TypedQuery<Tuple> query(Specification<Album> specification, Collection<String> fields, Sort sort) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Album> root = query.from(Album.class);
+        List<Selection<?>> selections = new ArrayList<>();
+        selections.add(root.get("id").alias("id"));
+        for (String field : AlbumView.FIELDS) {
+            if (!field.equals("id") && fields.contains(field)) selections.add(root.get(field).alias(field));
+        }
+        query.multiselect(selections);
+        if (specification != null) query.where(specification.toPredicate(root, query, cb));
+        query.orderBy(toOrders(sort, root, cb));
+        return entityManager.createQuery(query);
+    }
+
+    private long count(Specification<Album> specification) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Album> root = query.from(Album.class);
+        query.select(cb.count(root));
+        if (specification != null) query.where(specification.toPredicate(root, query, cb));
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    private static List<AlbumView> toViews(List<Tuple> tuples, Collection<String> fields) {
+        List<AlbumView> views = new ArrayList<>(tuples.size());
+        for (Tuple tuple : tuples) {
+            views.add(new AlbumView(tuple.get("id", Long.class),
+                    value(tuple, fields, "artist", String.class),
+                    value(tuple, fields, "releaseYear", Integer.class),
+                    value(tuple, fields, "genre", Album.AlbumGenres.class),
+                    value(tuple, fields, "name", String.class),
+                    value(tuple, fields, "version", Long.class)));
+        }
+        return views;
+    }
+
+    private static <T> T value(Tuple tuple, Collection<String> fields, String field, Class<T> type) {
+        return fields.contains(field) ? tuple.get(field, type) : null;
+    }
+}
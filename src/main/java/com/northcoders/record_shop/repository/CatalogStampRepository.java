@@ -0,0 +1,46 @@
+package com.northcoders.record_shop.repository;
+
+import com.northcoders.record_shop.dto.CatalogVersion;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Reads and moves the {@code catalog_stamp} counter. Every transaction that inserts, updates or deletes albums calls
+ * {@link #advance()}, so the stamp read later differs from an earlier one exactly when the catalog changed in between.
+ * <p>
+ * Plain JDBC in the caller's transaction, because a Hibernate native update would evict every second-level cache
+ * region. Writers advance it after their own statements, so concurrent writers only wait on its row lock for the end of
+ * each other's transactions.
+ * <p>
+ * {@code last_modified} is taken from the writer's clock when it advances the stamp, and never moves backwards, so a
+ * {@code Last-Modified} date built from it only grows even if instances' clocks disagree a little.
+ */
+@Repository
+public class CatalogStampRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public CatalogStampRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public long find() {
+        Long stamp = jdbcTemplate.queryForObject("SELECT stamp FROM catalog_stamp WHERE id = 1", Long.class);
+        return stamp == null ? 0 : stamp;
+    }
+
+    /**
+     * The stamp as a {@link CatalogVersion}: the tag is the stamp itself, so it is the same on every instance and across
+     * restarts, and changes with any write to the catalog wherever it was made.
+     */
+    public CatalogVersion findVersion() {
+        return jdbcTemplate.queryForObject("SELECT stamp, last_modified FROM catalog_stamp WHERE id = 1",
+                (rs, rowNum) -> new CatalogVersion(Long.toString(rs.getLong("stamp")), rs.getLong("last_modified")));
+    }
+
+    public void advance() {
+        jdbcTemplate.update("UPDATE catalog_stamp SET stamp = stamp + 1, last_modified = GREATEST(last_modified, ?) "
+                + "WHERE id = 1", System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,62 @@
+package com.northcoders.record_shop.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Reads and writes rows of the {@code import_checkpoint} table, shared by the CLI import and the ingest queue. Saves
+ * join the caller's transaction, so a checkpoint written alongside a chunk of inserts commits or rolls back with them.
+ */
+@Repository
+public class ImportCheckpointStore {
+
+    /**
+     * How far an import has got: {@code byteOffset} is where the first line after {@code lineNumber} starts.
+     */
+    public record Checkpoint(String importId, long byteOffset, long lineNumber, long rowsImported, long rowsRejected,
+                             boolean completed) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public ImportCheckpointStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public Optional<Checkpoint> find(String importId) {
+        List<Checkpoint> checkpoints = jdbcTemplate.query(
+                "SELECT import_id, byte_offset, line_number, rows_imported, rows_rejected, completed "
+                        + "FROM import_checkpoint WHERE import_id = ?",
+                (rs, row) -> new Checkpoint(rs.getString(1), rs.getLong(2), rs.getLong(3), rs.getLong(4),
+                        rs.getLong(5), rs.getBoolean(6)),
+                importId);
+        return checkpoints.stream().findFirst();
+    }
+
+    public void save(Checkpoint checkpoint) {
+        Timestamp now = Timestamp.from(Instant.now());
+        int updated = jdbcTemplate.update(
+                "UPDATE import_checkpoint SET byte_offset = ?, line_number = ?, rows_imported = ?, rows_rejected = ?, "
+                        + "completed = ?, updated_at = ? WHERE import_id = ?",
+                checkpoint.byteOffset(), checkpoint.lineNumber(), checkpoint.rowsImported(), checkpoint.rowsRejected(),
+                checkpoint.completed(), now, checkpoint.importId());
+        if (updated == 0) {
+            jdbcTemplate.update(
+                    "INSERT INTO import_checkpoint (import_id, byte_offset, line_number, rows_imported, rows_rejected, "
+                            + "completed, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                    checkpoint.importId(), checkpoint.byteOffset(), checkpoint.lineNumber(),
+                    checkpoint.rowsImported(), checkpoint.rowsRejected(), checkpoint.completed(), now);
+        }
+    }
+
+    public void delete(String importId) {
+        jdbcTemplate.update("DELETE FROM import_checkpoint WHERE import_id = ?", importId);
+    }
+}
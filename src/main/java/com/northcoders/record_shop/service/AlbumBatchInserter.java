@@ -0,0 +1,131 @@
+package com.northcoders.record_shop.service;
+
+import com.northcoders.record_shop.dto.BatchInsertResult;
+import com.northcoders.record_shop.dto.BatchItemResult;
+import com.northcoders.record_shop.event.AlbumChangedEvent;
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.repository.AlbumRepository;
+import com.northcoders.record_shop.repository.CatalogStampRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Inserts albums in chunks, one transaction per chunk, so each chunk is flushed as JDBC batches and a bad chunk
+ * only rolls back its own rows.
+ */
+@Component
+public class AlbumBatchInserter {
+    private final AlbumRepository albumRepository;
+    private final CatalogStampRepository catalogStampRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int chunkSize;
+
+    @Autowired
+    public AlbumBatchInserter(AlbumRepository albumRepository, CatalogStampRepository catalogStampRepository,
+                              PlatformTransactionManager transactionManager, ApplicationEventPublisher eventPublisher,
+                              @Value("${record-shop.batch.chunk-size:1000}") int chunkSize) {
+        this.albumRepository = albumRepository;
+        this.catalogStampRepository = catalogStampRepository;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    public BatchInsertResult insertAll(Iterator<Album> albums) {
+        long start = System.nanoTime();
+        List<BatchItemResult> results = new ArrayList<>();
+        List<Album> chunk = new ArrayList<>(chunkSize);
+        List<Integer> chunkIndexes = new ArrayList<>(chunkSize);
+        int index = 0;
+
+        while (albums.hasNext()) {
+            Album album = albums.next();
+            String error = validate(album);
+            if (error != null) {
+                results.add(BatchItemResult.failed(index++, error));
+                continue;
+            }
+            chunk.add(album);
+            chunkIndexes.add(index++);
+            if (chunk.size() == chunkSize) {
+                flushChunk(chunk, chunkIndexes, results);
+            }
+        }
+        flushChunk(chunk, chunkIndexes, results);
+
+        results.sort((a, b) -> Integer.compare(a.index(), b.index()));
+        int created = (int) results.stream().filter(r -> r.status() == BatchItemResult.Status.CREATED).count();
+        long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        return new BatchInsertResult(index, created, index - created, elapsedMillis,
+                created * 1000.0 / elapsedMillis, results);
+    }
+
+    /**
+     * Inserts one chunk of already validated albums in a single transaction and publishes a saved event for each once
+     * it commits.
+     */
+    public List<Album> insertChunk(List<Album> chunk) {
+        return insertChunk(chunk, () -> {
+        });
+    }
+
+    /**
+     * Like {@link #insertChunk(List)}, for callers with more to write atomically with the chunk, such as an import
+     * checkpoint. {@code alsoInTransaction} runs in that transaction after the inserts, so whatever it writes commits
+     * or rolls back together with them.
+     */
+    public List<Album> insertChunk(List<Album> chunk, Runnable alsoInTransaction) {
+        for (Album album : chunk) {
+            // Bulk loads only insert; a client-supplied id would turn the insert into a merge.
+            album.setId(null);
+            album.setVersion(null);
+        }
+        List<Album> saved = transactionTemplate.execute(status -> {
+            List<Album> inserted = new ArrayList<>(chunk.size());
+            albumRepository.saveAll(chunk).forEach(inserted::add);
+            alsoInTransaction.run();
+            catalogStampRepository.advance();
+            return inserted;
+        });
+        for (Album album : saved) {
+            eventPublisher.publishEvent(AlbumChangedEvent.saved(album));
+        }
+        return saved;
+    }
+
+    private void flushChunk(List<Album> chunk, List<Integer> chunkIndexes, List<BatchItemResult> results) {
+        if (chunk.isEmpty()) return;
+        try {
+            List<Album> saved = insertChunk(chunk);
+            for (int i = 0; i < saved.size(); i++) {
+                results.add(BatchItemResult.created(chunkIndexes.get(i), saved.get(i).getId()));
+            }
+        } catch (RuntimeException e) {
+            for (Integer chunkIndex : chunkIndexes) {
+                results.add(BatchItemResult.failed(chunkIndex, "Chunk rolled back: " + e.getMessage()));
+            }
+        }
+        chunk.clear();
+        chunkIndexes.clear();
+    }
+
+    /**
+     * Returns why the album cannot be inserted, or null when it is valid.
+     */
+    public static String validate(Album album) {
+        if (album == null) return "Album is missing or malformed.";
+        if (album.getArtist() == null || album.getArtist().isBlank()) return "Artist is required.";
+        if (album.getName() == null || album.getName().isBlank()) return "Name is required.";
+        if (album.getGenre() == null) return "Genre is required.";
+        return null;
+    }
+}
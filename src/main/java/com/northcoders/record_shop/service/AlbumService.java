@@ -1,25 +1,92 @@
 package com.northcoders.record_shop.service;
 
+import com.northcoders.record_shop.dto.AlbumFacets;
+import com.northcoders.record_shop.dto.AlbumFilter;
+import com.northcoders.record_shop.dto.AlbumFilterResult;
+import com.northcoders.record_shop.dto.AlbumSearchCriteria;
+import com.northcoders.record_shop.dto.AlbumView;
+import com.northcoders.record_shop.dto.BatchInsertResult;
+import com.northcoders.record_shop.dto.CatalogVersion;
+import com.northcoders.record_shop.dto.FuzzySearchResult;
+import com.northcoders.record_shop.dto.IngestStatus;
 import com.northcoders.record_shop.model.Album;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface AlbumService {
+    int MAX_PAGE_SIZE = 1000;
+    int MAX_TOP_ARTISTS = 100;
+    int MAX_SUGGESTIONS = 50;
+    int MAX_FUZZY_BUDGET_MILLIS = 1000;
+
     List<Album> getAllAlbums();
 
+    List<Album> getAlbumsAfter(Long after, int limit);
+
+    // Sparse-fieldset variants of the list reads: only the id and the given fields (see AlbumView.FIELDS) are read.
+    List<AlbumView> getAllAlbumViews(Collection<String> fields);
+
+    List<AlbumView> getAlbumViewsAfter(Long after, int limit, Collection<String> fields);
+
+    void streamAllAlbums(Consumer<Album> consumer);
+
+    void writeSnapshot(OutputStream out) throws IOException;
+
     Album getAlbumById(Long id);
 
     Album addAlbum(Album album);
 
+    BatchInsertResult addAlbums(Iterator<Album> albums);
+
+    /**
+     * Updates the album whatever its version. The result carries no version, as the update does not read the row.
+     */
     Album updateAlbumById(Long id, Album album);
 
+    /**
+     * Updates the album only if it is still at {@code expectedVersion}; the result carries the new version.
+     */
+    Album updateAlbumById(Long id, Album album, Long expectedVersion);
+
     String deleteAlbumById(Long id);
 
+    String deleteAlbumById(Long id, Long expectedVersion);
+
     List<Album> getAlbumsByArtist(String artist);
 
     List<Album> getAlbumsByReleaseYear(int releaseYear);
 
+    Page<Album> getAlbumsByReleaseYearRange(int fromYear, int toYear, Pageable pageable);
+
+    Page<AlbumView> getAlbumViewsByReleaseYearRange(int fromYear, int toYear, Pageable pageable, Collection<String> fields);
+
     List<Album> getAlbumsByGenre(Album.AlbumGenres genre);
 
     List<Album> getAlbumsByName(String name);
+
+    Page<Album> searchAlbums(AlbumSearchCriteria criteria, Pageable pageable);
+
+    Page<AlbumView> searchAlbumViews(AlbumSearchCriteria criteria, Pageable pageable, Collection<String> fields);
+
+    CatalogVersion getCatalogVersion();
+
+    AlbumFacets getFacets(int topArtists);
+
+    List<Album> suggestAlbums(String query, int limit);
+
+    FuzzySearchResult fuzzySearchAlbums(String artist, String name, int limit, Duration budget);
+
+    AlbumFilterResult filterAlbums(AlbumFilter filter, Long after, int limit);
+
+    IngestStatus ingestAlbum(Album album);
+
+    IngestStatus getIngestStatus(long trackingId);
 }
@@ -1,21 +1,89 @@
 package com.northcoders.record_shop.service;
 
+import com.northcoders.record_shop.cache.AlbumCache;
+import com.northcoders.record_shop.dto.AlbumFacets;
+import com.northcoders.record_shop.dto.AlbumFilter;
+import com.northcoders.record_shop.dto.AlbumFilterResult;
+import com.northcoders.record_shop.dto.AlbumSearchCriteria;
+import com.northcoders.record_shop.dto.AlbumView;
+import com.northcoders.record_shop.dto.BatchInsertResult;
+import com.northcoders.record_shop.dto.CatalogVersion;
+import com.northcoders.record_shop.dto.FuzzySearchResult;
+import com.northcoders.record_shop.dto.IngestStatus;
+import com.northcoders.record_shop.event.AlbumChangedEvent;
 import com.northcoders.record_shop.exception.ItemNotFoundException;
+import com.northcoders.record_shop.exception.PreconditionFailedException;
+import com.northcoders.record_shop.exception.ServiceUnavailableException;
+import com.northcoders.record_shop.index.AlbumBitmapIndex;
+import com.northcoders.record_shop.index.AlbumFacetIndex;
+import com.northcoders.record_shop.index.AlbumSuggestIndex;
+import com.northcoders.record_shop.ingest.AlbumIngestQueue;
+import com.northcoders.record_shop.loader.AlbumNormalizationBackfill;
 import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.model.AlbumNormalizer;
 import com.northcoders.record_shop.repository.AlbumRepository;
+import com.northcoders.record_shop.repository.AlbumSpecifications;
+import com.northcoders.record_shop.repository.CatalogStampRepository;
+import com.northcoders.record_shop.snapshot.AlbumSnapshotWriter;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Cache;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
+@Timed(value = "album.service", description = "Time spent in AlbumService methods")
 public class AlbumServiceImpl implements AlbumService {
     private final AlbumRepository albumRepository;
+    private final CatalogStampRepository catalogStampRepository;
+    private final EntityManager entityManager;
+    private final AlbumBatchInserter albumBatchInserter;
+    private final AlbumCache albumCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectProvider<AlbumFacetIndex> albumFacetIndex;
+    private final ObjectProvider<AlbumSuggestIndex> albumSuggestIndex;
+    private final ObjectProvider<AlbumBitmapIndex> albumBitmapIndex;
+    private final ObjectProvider<AlbumIngestQueue> albumIngestQueue;
+    private final AlbumNormalizationBackfill albumNormalizationBackfill;
 
     @Autowired
-    public AlbumServiceImpl(AlbumRepository albumRepository) {
+    public AlbumServiceImpl(AlbumRepository albumRepository, CatalogStampRepository catalogStampRepository,
+                            EntityManager entityManager,
+                            AlbumBatchInserter albumBatchInserter, AlbumCache albumCache,
+                            ApplicationEventPublisher eventPublisher,
+                            ObjectProvider<AlbumFacetIndex> albumFacetIndex,
+                            ObjectProvider<AlbumSuggestIndex> albumSuggestIndex,
+                            ObjectProvider<AlbumBitmapIndex> albumBitmapIndex,
+                            ObjectProvider<AlbumIngestQueue> albumIngestQueue,
+                            AlbumNormalizationBackfill albumNormalizationBackfill) {
         this.albumRepository = albumRepository;
+        this.catalogStampRepository = catalogStampRepository;
+        this.entityManager = entityManager;
+        this.albumBatchInserter = albumBatchInserter;
+        this.albumCache = albumCache;
+        this.eventPublisher = eventPublisher;
+        this.albumFacetIndex = albumFacetIndex;
+        this.albumSuggestIndex = albumSuggestIndex;
+        this.albumBitmapIndex = albumBitmapIndex;
+        this.albumIngestQueue = albumIngestQueue;
+        this.albumNormalizationBackfill = albumNormalizationBackfill;
     }
 
     @Override
@@ -25,57 +93,153 @@ public class AlbumServiceImpl implements AlbumService {
         return albums;
     }
 
+    @Override
+    public List<Album> getAlbumsAfter(Long after, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        return albumRepository.findByIdGreaterThanOrderByIdAsc(after == null ? 0L : after, Limit.of(pageSize));
+    }
+
+    @Override
+    public List<AlbumView> getAllAlbumViews(Collection<String> fields) {
+        return albumRepository.findViews(null, fields, Sort.by("id"), 0);
+    }
+
+    @Override
+    public List<AlbumView> getAlbumViewsAfter(Long after, int limit, Collection<String> fields) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        return albumRepository.findViews(AlbumSpecifications.idAfter(after), fields, Sort.by("id"), pageSize);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAllAlbums(Consumer<Album> consumer) {
+        try (Stream<Album> albums = albumRepository.streamAllOrderedById()) {
+            albums.forEach(album -> {
+                consumer.accept(album);
+                // Detach each row once written so the persistence context stays empty however large the catalog is.
+                entityManager.detach(album);
+            });
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void writeSnapshot(OutputStream out) throws IOException {
+        // Read first, so the snapshot is at least as new as the version it is stamped with.
+        CatalogVersion catalogVersion = catalogStampRepository.findVersion();
+        AlbumSnapshotWriter writer = new AlbumSnapshotWriter();
+        streamAllAlbums(writer::add);
+        writer.writeTo(out, catalogVersion);
+    }
+
     @Override
     public Album getAlbumById(Long id) {
-        Optional<Album> album = albumRepository.findById(id);
-        if (album.isPresent()){
-            return album.get();
+        Album album = albumCache.getAlbum(id, albumId -> albumRepository.findById(albumId).orElse(null));
+        if (album != null){
+            return album;
         }
         throw new ItemNotFoundException(String.format("The album with id '%s' cannot be found", id));
     }
 
     @Override
+    @Transactional
     public Album addAlbum(Album album) {
-        return albumRepository.save(album);
+        // Adding never overwrites: a client-supplied id would turn the insert into a merge of an existing album.
+        album.setId(null);
+        album.setVersion(null);
+        Album savedAlbum = albumRepository.save(album);
+        catalogStampRepository.advance();
+        eventPublisher.publishEvent(AlbumChangedEvent.saved(savedAlbum));
+        return savedAlbum;
     }
 
     @Override
+    public BatchInsertResult addAlbums(Iterator<Album> albums) {
+        return albumBatchInserter.insertAll(albums);
+    }
+
+    @Override
+    @Transactional
     public Album updateAlbumById(Long id, Album album) {
-        Optional<Album> optionalAlbum = albumRepository.findById(id);
-        if(optionalAlbum.isEmpty()) throw new ItemNotFoundException(String.format("The album with id '%s' cannot be found", id));
-        Album albumFound = optionalAlbum.get();
-        albumFound.setArtist(album.getArtist());
-        albumFound.setGenre(album.getGenre());
-        albumFound.setName(album.getName());
-        albumFound.setReleaseYear(album.getReleaseYear());
-        return albumRepository.save(albumFound);
+        return updateAlbumById(id, album, null);
     }
 
     @Override
+    @Transactional
+    public Album updateAlbumById(Long id, Album album, Long expectedVersion) {
+        int updated = expectedVersion == null
+                ? albumRepository.updateById(id, album.getArtist(), album.getReleaseYear(), album.getGenre(), album.getName())
+                : albumRepository.updateByIdAndVersion(id, expectedVersion, album.getArtist(), album.getReleaseYear(),
+                        album.getGenre(), album.getName());
+        if (updated == 0) throw notFoundOrVersionConflict(id, expectedVersion);
+        catalogStampRepository.advance();
+        // Only a conditional update knows the version it replaced; reading it back for the others would cost another
+        // round trip on every write.
+        Long version = expectedVersion == null ? null : expectedVersion + 1;
+        Album updatedAlbum = new Album(id, album.getArtist(), album.getReleaseYear(), album.getGenre(), album.getName(), version);
+        eventPublisher.publishEvent(AlbumChangedEvent.saved(updatedAlbum));
+        return updatedAlbum;
+    }
+
+    @Override
+    @Transactional
     public String deleteAlbumById(Long id) {
-        Optional<Album> optionalAlbum = albumRepository.findById(id);
-        if(optionalAlbum.isEmpty()) throw new ItemNotFoundException(String.format("The album with id '%s' cannot be found", id));
-        albumRepository.deleteById(id);
+        return deleteAlbumById(id, null);
+    }
+
+    @Override
+    @Transactional
+    public String deleteAlbumById(Long id, Long expectedVersion) {
+        int deleted = expectedVersion == null
+                ? albumRepository.removeById(id)
+                : albumRepository.removeByIdAndVersion(id, expectedVersion);
+        if (deleted == 0) throw notFoundOrVersionConflict(id, expectedVersion);
+        catalogStampRepository.advance();
+        eventPublisher.publishEvent(AlbumChangedEvent.deleted(id));
         return ("Album with ID " + id + " is deleted successfully.");
     }
 
+    // Only reached when a write matched no row, so the extra lookup stays off the happy path.
+    private RuntimeException notFoundOrVersionConflict(Long id, Long expectedVersion) {
+        if (expectedVersion != null && albumRepository.existsById(id)) {
+            return new PreconditionFailedException(String.format(
+                    "The album with id '%s' has been modified since version %s.", id, expectedVersion));
+        }
+        return new ItemNotFoundException(String.format("The album with id '%s' cannot be found", id));
+    }
+
     @Override
     public List<Album> getAlbumsByArtist(String artist) {
-        List<Album> albums = albumRepository.findByArtist(artist);
+        String normalized = AlbumNormalizer.normalize(artist);
+        List<Album> albums = albumCache.getAlbums(AlbumCache.ListKey.artist(artist), () -> albumNormalizationBackfill.isComplete()
+                ? albumRepository.findByArtistNormalized(normalized)
+                : albumRepository.findByArtistNormalizedOrArtist(normalized, artist));
         if(albums.isEmpty()) throw new ItemNotFoundException(String.format("Cannot find albums for artist '%s'.", artist));
         return albums;
     }
 
     @Override
     public List<Album> getAlbumsByReleaseYear(int releaseYear) {
-        List<Album> albums = albumRepository.findByReleaseYear(releaseYear);
+        List<Album> albums = albumCache.getAlbums(AlbumCache.ListKey.releaseYear(releaseYear), () -> albumRepository.findByReleaseYear(releaseYear));
         if(albums.isEmpty()) throw new ItemNotFoundException(String.format("Cannot find albums released in year '%s'.", releaseYear));
         return albums;
     }
 
+    @Override
+    public Page<Album> getAlbumsByReleaseYearRange(int fromYear, int toYear, Pageable pageable) {
+        return albumRepository.findByReleaseYearBetween(fromYear, toYear, pageable);
+    }
+
+    @Override
+    public Page<AlbumView> getAlbumViewsByReleaseYearRange(int fromYear, int toYear, Pageable pageable,
+                                                           Collection<String> fields) {
+        AlbumSearchCriteria range = new AlbumSearchCriteria(null, null, null, fromYear, toYear);
+        return albumRepository.findViews(AlbumSpecifications.matching(range, true), fields, pageable);
+    }
+
     @Override
     public List<Album> getAlbumsByGenre(Album.AlbumGenres genre) {
-        List<Album> albums = albumRepository.findByGenre(genre);
+        List<Album> albums = albumCache.getAlbums(AlbumCache.ListKey.genre(genre), () -> albumRepository.findByGenre(genre));
         if (albums.isEmpty()) {
             throw new ItemNotFoundException(String.format("Cannot find albums in '%s'.", genre));
         }
@@ -84,10 +248,99 @@ public class AlbumServiceImpl implements AlbumService {
 
     @Override
     public List<Album> getAlbumsByName(String name) {
-        List<Album> albums = albumRepository.findByName(name);
+        String normalized = AlbumNormalizer.normalize(name);
+        List<Album> albums = albumCache.getAlbums(AlbumCache.ListKey.name(name), () -> albumNormalizationBackfill.isComplete()
+                ? albumRepository.findByNameNormalized(normalized)
+                : albumRepository.findByNameNormalizedOrName(normalized, name));
         if(albums.isEmpty()) throw new ItemNotFoundException(String.format("Cannot find albums with the name of '%s'.", name));
         return albums;
     }
 
+    @Override
+    public Page<Album> searchAlbums(AlbumSearchCriteria criteria, Pageable pageable) {
+        return albumRepository.findAll(AlbumSpecifications.matching(criteria, albumNormalizationBackfill.isComplete()), pageable);
+    }
 
+    @Override
+    public Page<AlbumView> searchAlbumViews(AlbumSearchCriteria criteria, Pageable pageable, Collection<String> fields) {
+        return albumRepository.findViews(AlbumSpecifications.matching(criteria, albumNormalizationBackfill.isComplete()),
+                fields, pageable);
+    }
+
+    @Override
+    public CatalogVersion getCatalogVersion() {
+        CatalogVersion catalogVersion = catalogStampRepository.findVersion();
+        if (albumCache.observeCatalogVersion(catalogVersion)) {
+            // Hibernate only evicts for writes made through this instance, so its cached finder results and albums may
+            // predate the version; the lists about to be tagged with it must be read from the database.
+            Cache secondLevelCache = entityManager.getEntityManagerFactory().getCache().unwrap(Cache.class);
+            secondLevelCache.evictQueryRegions();
+            secondLevelCache.evictEntityData(Album.class);
+        }
+        return catalogVersion;
+    }
+
+    @Override
+    public AlbumFacets getFacets(int topArtists) {
+        return facetIndex().getFacets(Math.max(0, Math.min(topArtists, MAX_TOP_ARTISTS)));
+    }
+
+    @Override
+    public List<Album> suggestAlbums(String query, int limit) {
+        return suggestIndex().suggest(query, Math.max(0, Math.min(limit, MAX_SUGGESTIONS)));
+    }
+
+    @Override
+    public FuzzySearchResult fuzzySearchAlbums(String artist, String name, int limit, Duration budget) {
+        Duration maxBudget = Duration.ofMillis(MAX_FUZZY_BUDGET_MILLIS);
+        return suggestIndex().fuzzy(artist, name, Math.max(0, Math.min(limit, MAX_SUGGESTIONS)),
+                budget.compareTo(maxBudget) > 0 ? maxBudget : budget);
+    }
+
+    @Override
+    public AlbumFilterResult filterAlbums(AlbumFilter filter, Long after, int limit) {
+        return bitmapIndex().filter(filter, after, Math.max(0, Math.min(limit, MAX_PAGE_SIZE)));
+    }
+
+    @Override
+    public IngestStatus ingestAlbum(Album album) {
+        return ingestQueue().accept(album);
+    }
+
+    @Override
+    public IngestStatus getIngestStatus(long trackingId) {
+        return ingestQueue().getStatus(trackingId);
+    }
+
+    private AlbumFacetIndex facetIndex() {
+        AlbumFacetIndex index = albumFacetIndex.getIfAvailable();
+        if (index == null) {
+            throw new ServiceUnavailableException("Album facets are not enabled; set record-shop.indexes.enabled.");
+        }
+        return index;
+    }
+
+    private AlbumSuggestIndex suggestIndex() {
+        AlbumSuggestIndex index = albumSuggestIndex.getIfAvailable();
+        if (index == null) {
+            throw new ServiceUnavailableException("Album suggestions are not enabled; set record-shop.indexes.enabled.");
+        }
+        return index;
+    }
+
+    private AlbumBitmapIndex bitmapIndex() {
+        AlbumBitmapIndex index = albumBitmapIndex.getIfAvailable();
+        if (index == null) {
+            throw new ServiceUnavailableException("Album filters are not enabled; set record-shop.indexes.enabled.");
+        }
+        return index;
+    }
+
+    private AlbumIngestQueue ingestQueue() {
+        AlbumIngestQueue queue = albumIngestQueue.getIfAvailable();
+        if (queue == null) {
+            throw new ServiceUnavailableException("Asynchronous ingestion is not enabled; set record-shop.ingest.log-dir.");
+        }
+        return queue;
+    }
 }
@@ -0,0 +1,256 @@
+package com.northcoders.record_shop.snapshot;
+
+import com.northcoders.record_shop.dto.AlbumSearchCriteria;
+import com.northcoders.record_shop.dto.CatalogVersion;
+import com.northcoders.record_shop.model.Album;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.IntConsumer;
+import java.util.function.IntUnaryOperator;
+
+import static com.northcoders.record_shop.snapshot.AlbumSnapshotFormat.*;
+
+/**
+ * Read-only view of a snapshot file written by {@link AlbumSnapshotWriter}. Opening maps the file and reads the
+ * header, nothing more, so it takes the same time for ten albums as for ten million; the OS pages in only what lookups
+ * touch. Searches run on the mapped bytes and hand back record numbers, and only turning a record into strings or an
+ * {@link Album} allocates.
+ */
+public class AlbumSnapshot implements Closeable {
+    private static final Album.AlbumGenres[] GENRES = Album.AlbumGenres.values();
+
+    private final FileChannel channel;
+    private final int size;
+    private final int stringCount;
+    private final CatalogVersion catalogVersion;
+    private final ByteBuffer stringOffsets;
+    private final ByteBuffer stringData;
+    private final ByteBuffer records;
+    private final ByteBuffer[] indexes = new ByteBuffer[INDEX_COUNT];
+
+    private AlbumSnapshot(FileChannel channel) throws IOException {
+        this.channel = channel;
+        if (channel.size() < HEADER_SIZE) throw new IOException("Not an album snapshot: file is too short.");
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+        if (header.getLong(0) != MAGIC) throw new IOException("Not an album snapshot, or written by another version.");
+
+        size = header.getInt(ALBUM_COUNT);
+        stringCount = header.getInt(STRING_COUNT);
+        long tagPosition = header.getLong(TAG_POSITION);
+        long stringOffsetsPosition = header.getLong(STRING_OFFSETS_POSITION);
+        long stringDataPosition = header.getLong(STRING_DATA_POSITION);
+        long recordsPosition = header.getLong(RECORDS_POSITION);
+        long indexesPosition = header.getLong(INDEXES_POSITION);
+        long indexSize = 4L * size;
+        if (indexesPosition + INDEX_COUNT * indexSize != channel.size()) {
+            throw new IOException("Album snapshot is truncated or corrupt.");
+        }
+
+        ByteBuffer tag = map(tagPosition, stringOffsetsPosition - tagPosition);
+        byte[] tagBytes = new byte[tag.getInt(0)];
+        tag.get(4, tagBytes);
+        catalogVersion = new CatalogVersion(new String(tagBytes, StandardCharsets.UTF_8),
+                header.getLong(LAST_MODIFIED));
+
+        stringOffsets = map(stringOffsetsPosition, stringDataPosition - stringOffsetsPosition);
+        stringData = map(stringDataPosition, recordsPosition - stringDataPosition);
+        records = map(recordsPosition, indexesPosition - recordsPosition);
+        for (int index = 0; index < INDEX_COUNT; index++) {
+            indexes[index] = map(indexesPosition + index * indexSize, indexSize);
+        }
+    }
+
+    public static AlbumSnapshot open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new AlbumSnapshot(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public CatalogVersion catalogVersion() {
+        return catalogVersion;
+    }
+
+    /**
+     * Passes the matching record numbers from {@code offset} to {@code offset + limit} to {@code consumer} and returns
+     * how many records match in total. Artist and name must match exactly, as in {@code GET /albums/search}. Matches
+     * come in the order of the most selective index used: by id within one artist, name or genre, and by release year
+     * then id for a year range. Without criteria every album matches, in id order.
+     */
+    public int search(AlbumSearchCriteria criteria, int offset, int limit, IntConsumer consumer) {
+        int artist = -1, name = -1;
+        if (criteria.artist() != null && (artist = findString(criteria.artist())) < 0) return 0;
+        if (criteria.name() != null && (name = findString(criteria.name())) < 0) return 0;
+        int genre = criteria.genre() == null ? -1 : criteria.genre().ordinal();
+        int fromYear = criteria.fromYear() == null ? Integer.MIN_VALUE : criteria.fromYear();
+        int toYear = criteria.toYear() == null ? Integer.MAX_VALUE : criteria.toYear();
+
+        // Walk the narrowest index range and check the other criteria on each record.
+        ByteBuffer index = null;
+        int from = 0, to = size;
+        if (artist >= 0) {
+            int artistId = artist;
+            index = indexes[ARTIST_INDEX];
+            from = lowerBound(index, record -> Integer.compare(artistOf(record), artistId));
+            to = lowerBound(index, record -> artistOf(record) <= artistId ? -1 : 1);
+        }
+        if (name >= 0) {
+            int nameId = name;
+            ByteBuffer nameIndex = indexes[NAME_INDEX];
+            int nameFrom = lowerBound(nameIndex, record -> Integer.compare(nameOf(record), nameId));
+            int nameTo = lowerBound(nameIndex, record -> nameOf(record) <= nameId ? -1 : 1);
+            if (nameTo - nameFrom < to - from) {
+                index = nameIndex;
+                from = nameFrom;
+                to = nameTo;
+            }
+        }
+        if (genre >= 0) {
+            int genreOrdinal = genre;
+            ByteBuffer genreIndex = indexes[GENRE_INDEX];
+            int genreFrom = lowerBound(genreIndex, record -> Integer.compare(genreOf(record), genreOrdinal));
+            int genreTo = lowerBound(genreIndex, record -> genreOf(record) <= genreOrdinal ? -1 : 1);
+            if (genreTo - genreFrom < to - from) {
+                index = genreIndex;
+                from = genreFrom;
+                to = genreTo;
+            }
+        }
+        if (criteria.fromYear() != null || criteria.toYear() != null) {
+            ByteBuffer yearIndex = indexes[RELEASE_YEAR_INDEX];
+            int yearFrom = lowerBound(yearIndex, record -> Integer.compare(releaseYear(record), fromYear));
+            int yearTo = lowerBound(yearIndex, record -> releaseYear(record) <= toYear ? -1 : 1);
+            if (yearTo - yearFrom < to - from) {
+                index = yearIndex;
+                from = yearFrom;
+                to = Math.max(yearFrom, yearTo);
+            }
+        }
+
+        int matches = 0;
+        for (int i = from; i < to; i++) {
+            int record = index == null ? i : index.getInt(i * 4);
+            if ((artist >= 0 && artistOf(record) != artist)
+                    || (name >= 0 && nameOf(record) != name)
+                    || (genre >= 0 && genreOf(record) != genre)
+                    || releaseYear(record) < fromYear || releaseYear(record) > toYear) {
+                continue;
+            }
+            if (matches >= offset && matches - offset < limit) consumer.accept(record);
+            matches++;
+        }
+        return matches;
+    }
+
+    public long id(int record) {
+        return records.getLong(record * RECORD_SIZE + ID);
+    }
+
+    public long version(int record) {
+        return records.getLong(record * RECORD_SIZE + VERSION);
+    }
+
+    public int releaseYear(int record) {
+        return records.getInt(record * RECORD_SIZE + RELEASE_YEAR);
+    }
+
+    public Album.AlbumGenres genre(int record) {
+        int genre = genreOf(record);
+        return genre < 0 || genre >= GENRES.length ? null : GENRES[genre];
+    }
+
+    public String artist(int record) {
+        return string(artistOf(record));
+    }
+
+    public String name(int record) {
+        return string(nameOf(record));
+    }
+
+    public Album album(int record) {
+        return new Album(id(record), artist(record), releaseYear(record), genre(record), name(record), version(record));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private ByteBuffer map(long position, long length) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+    }
+
+    private int artistOf(int record) {
+        return records.getInt(record * RECORD_SIZE + ARTIST);
+    }
+
+    private int nameOf(int record) {
+        return records.getInt(record * RECORD_SIZE + NAME);
+    }
+
+    private int genreOf(int record) {
+        return records.getInt(record * RECORD_SIZE + GENRE);
+    }
+
+    private String string(int id) {
+        if (id == NO_STRING) return null;
+        int start = stringOffsets.getInt(id * 4);
+        byte[] bytes = new byte[stringOffsets.getInt(id * 4 + 4) - start];
+        stringData.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Binary search of the sorted string dictionary, comparing the mapped bytes in place; -1 when absent.
+     */
+    private int findString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int low = 0, high = stringCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int start = stringOffsets.getInt(mid * 4);
+            int end = stringOffsets.getInt(mid * 4 + 4);
+            int cmp = compareBytes(start, end, bytes);
+            if (cmp < 0) low = mid + 1;
+            else if (cmp > 0) high = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    private int compareBytes(int start, int end, byte[] bytes) {
+        int length = Math.min(end - start, bytes.length);
+        for (int i = 0; i < length; i++) {
+            int cmp = Byte.compareUnsigned(stringData.get(start + i), bytes[i]);
+            if (cmp != 0) return cmp;
+        }
+        return Integer.compare(end - start, bytes.length);
+    }
+
+    /**
+     * First position in {@code index} whose record does not compare below the target; {@code comparison} returns a
+     * negative number for records before it.
+     */
+    private int lowerBound(ByteBuffer index, IntUnaryOperator comparison) {
+        int low = 0, high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (comparison.applyAsInt(index.getInt(mid * 4)) < 0) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+}
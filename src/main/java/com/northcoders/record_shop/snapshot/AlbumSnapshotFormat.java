@@ -0,0 +1,49 @@
+package com.northcoders.record_shop.snapshot;
+
+/**
+ * Layout of an album snapshot file. All numbers are big-endian.
+ * <pre>
+ * header (64 bytes)  magic, album count, string count, catalog lastModified, then the position of each section
+ * catalog tag        int length + UTF-8 bytes
+ * string offsets     (string count + 1) ints into the string data; string i spans offsets[i] .. offsets[i + 1]
+ * string data        the distinct artists and names as UTF-8, sorted by their bytes, so comparing two string ids
+ *                    compares the strings
+ * records            one 32-byte record per album in id order: id, version (longs), artist and name string ids
+ *                    (ints, -1 for no artist or name, so a missing one is not read back as ""), release year and
+ *                    genre ordinal (ints, -1 for no genre)
+ * indexes            four int arrays of record numbers, sorted by artist, name, release year and genre, each with
+ *                    ties in id order
+ * </pre>
+ * Every section is addressed with int offsets, so each must stay under 2 GB; that is about 67 million albums.
+ */
+final class AlbumSnapshotFormat {
+    static final long MAGIC = 0x5253534E41500002L; // "RSSNAP", format 2
+    static final int NO_STRING = -1;
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_SIZE = 32;
+
+    static final int ALBUM_COUNT = 8;
+    static final int STRING_COUNT = 12;
+    static final int LAST_MODIFIED = 16;
+    static final int TAG_POSITION = 24;
+    static final int STRING_OFFSETS_POSITION = 32;
+    static final int STRING_DATA_POSITION = 40;
+    static final int RECORDS_POSITION = 48;
+    static final int INDEXES_POSITION = 56;
+
+    static final int ID = 0;
+    static final int VERSION = 8;
+    static final int ARTIST = 16;
+    static final int NAME = 20;
+    static final int RELEASE_YEAR = 24;
+    static final int GENRE = 28;
+
+    static final int ARTIST_INDEX = 0;
+    static final int NAME_INDEX = 1;
+    static final int RELEASE_YEAR_INDEX = 2;
+    static final int GENRE_INDEX = 3;
+    static final int INDEX_COUNT = 4;
+
+    private AlbumSnapshotFormat() {
+    }
+}
@@ -0,0 +1,185 @@
+package com.northcoders.record_shop.snapshot;
+
+import com.northcoders.record_shop.dto.CatalogVersion;
+import com.northcoders.record_shop.model.Album;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.northcoders.record_shop.snapshot.AlbumSnapshotFormat.*;
+
+/**
+ * Collects albums column by column and writes them as an {@link AlbumSnapshot} file. The albums are held in primitive
+ * arrays plus one copy of each distinct string, so a catalog of millions fits in a modest heap; everything is sorted in
+ * {@link #writeTo}, which needs no seeking and can write straight to a response stream.
+ */
+public class AlbumSnapshotWriter {
+    private long[] ids = new long[1024];
+    private long[] versions = new long[1024];
+    private int[] artists = new int[1024];
+    private int[] names = new int[1024];
+    private int[] releaseYears = new int[1024];
+    private int[] genres = new int[1024];
+    private int size;
+
+    private final Map<String, Integer> stringIds = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+
+    public void add(Album album) {
+        if (size == ids.length) grow();
+        ids[size] = album.getId();
+        versions[size] = album.getVersion() == null ? 0 : album.getVersion();
+        artists[size] = stringId(album.getArtist());
+        names[size] = stringId(album.getName());
+        releaseYears[size] = album.getReleaseYear();
+        genres[size] = album.getGenre() == null ? -1 : album.getGenre().ordinal();
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void writeTo(OutputStream outputStream, CatalogVersion catalogVersion) throws IOException {
+        // Rank the strings by their UTF-8 bytes and renumber artists and names by rank.
+        byte[][] encoded = new byte[strings.size()][];
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = strings.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+        Integer[] byBytes = new Integer[encoded.length];
+        for (int i = 0; i < byBytes.length; i++) byBytes[i] = i;
+        Arrays.sort(byBytes, (a, b) -> Arrays.compareUnsigned(encoded[a], encoded[b]));
+        int[] rank = new int[encoded.length];
+        for (int i = 0; i < byBytes.length; i++) rank[byBytes[i]] = i;
+
+        int[] recordOrder = idOrder();
+        int[] artistKeys = new int[size], nameKeys = new int[size], yearKeys = new int[size], genreKeys = new int[size];
+        for (int record = 0; record < size; record++) {
+            int row = recordOrder[record];
+            artistKeys[record] = rankOf(rank, artists[row]);
+            nameKeys[record] = rankOf(rank, names[row]);
+            yearKeys[record] = releaseYears[row];
+            genreKeys[record] = genres[row];
+        }
+
+        byte[] tag = catalogVersion.tag().getBytes(StandardCharsets.UTF_8);
+        long stringBytes = 0;
+        for (byte[] bytes : encoded) stringBytes += bytes.length;
+        long tagPosition = HEADER_SIZE;
+        long stringOffsetsPosition = tagPosition + 4 + tag.length;
+        long stringDataPosition = stringOffsetsPosition + 4L * (encoded.length + 1);
+        long recordsPosition = stringDataPosition + stringBytes;
+        long indexesPosition = recordsPosition + (long) RECORD_SIZE * size;
+        if (stringBytes > Integer.MAX_VALUE || (long) RECORD_SIZE * size > Integer.MAX_VALUE) {
+            throw new IOException("Catalog of " + size + " albums is too large for a snapshot file.");
+        }
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream, 64 * 1024));
+        out.writeLong(MAGIC);
+        out.writeInt(size);
+        out.writeInt(encoded.length);
+        out.writeLong(catalogVersion.lastModified());
+        out.writeLong(tagPosition);
+        out.writeLong(stringOffsetsPosition);
+        out.writeLong(stringDataPosition);
+        out.writeLong(recordsPosition);
+        out.writeLong(indexesPosition);
+
+        out.writeInt(tag.length);
+        out.write(tag);
+
+        int offset = 0;
+        out.writeInt(offset);
+        for (Integer string : byBytes) {
+            offset += encoded[string].length;
+            out.writeInt(offset);
+        }
+        for (Integer string : byBytes) {
+            out.write(encoded[string]);
+        }
+
+        for (int record = 0; record < size; record++) {
+            int row = recordOrder[record];
+            out.writeLong(ids[row]);
+            out.writeLong(versions[row]);
+            out.writeInt(artistKeys[record]);
+            out.writeInt(nameKeys[record]);
+            out.writeInt(yearKeys[record]);
+            out.writeInt(genreKeys[record]);
+        }
+
+        for (int[] keys : List.of(artistKeys, nameKeys, yearKeys, genreKeys)) {
+            for (int record : sortedByKey(keys)) {
+                out.writeInt(record);
+            }
+        }
+        out.flush();
+    }
+
+    private int stringId(String string) {
+        if (string == null) return NO_STRING;
+        Integer id = stringIds.get(string);
+        if (id == null) {
+            id = strings.size();
+            stringIds.put(string, id);
+            strings.add(string);
+        }
+        return id;
+    }
+
+    private static int rankOf(int[] rank, int stringId) {
+        return stringId == NO_STRING ? NO_STRING : rank[stringId];
+    }
+
+    /**
+     * Row numbers in id order. Albums streamed from the database already arrive in id order, which is checked first.
+     */
+    private int[] idOrder() {
+        boolean sorted = true;
+        for (int i = 1; i < size && sorted; i++) {
+            sorted = ids[i - 1] < ids[i];
+        }
+        if (sorted) {
+            int[] order = new int[size];
+            for (int i = 0; i < size; i++) order[i] = i;
+            return order;
+        }
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Long.compare(ids[a], ids[b]));
+        return Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Record numbers sorted by key, ties in record (so id) order, by sorting key and record packed into one long.
+     */
+    private static int[] sortedByKey(int[] keys) {
+        long[] packed = new long[keys.length];
+        for (int record = 0; record < keys.length; record++) {
+            // Flipping the sign bit makes the unsigned high half order like the signed key.
+            packed[record] = ((keys[record] ^ 0x80000000L) & 0xFFFFFFFFL) << 32 | record;
+        }
+        Arrays.sort(packed);
+        int[] records = new int[keys.length];
+        for (int i = 0; i < packed.length; i++) records[i] = (int) packed[i];
+        return records;
+    }
+
+    private void grow() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        versions = Arrays.copyOf(versions, capacity);
+        artists = Arrays.copyOf(artists, capacity);
+        names = Arrays.copyOf(names, capacity);
+        releaseYears = Arrays.copyOf(releaseYears, capacity);
+        genres = Arrays.copyOf(genres, capacity);
+    }
+}
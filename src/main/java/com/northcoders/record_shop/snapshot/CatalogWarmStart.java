@@ -0,0 +1,205 @@
+package com.northcoders.record_shop.snapshot;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.northcoders.record_shop.cache.AlbumCache;
+import com.northcoders.record_shop.dto.CatalogVersion;
+import com.northcoders.record_shop.index.AlbumBitmapIndex;
+import com.northcoders.record_shop.index.AlbumFacetIndex;
+import com.northcoders.record_shop.index.AlbumSuggestIndex;
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.repository.CatalogStampRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Saves the album cache and the in-memory indexes to local files on graceful shutdown and restores them on the next
+ * start, so a restarted instance serves its hot albums, facets, suggestions and filters without first reloading them
+ * from the database. The cache goes to {@code file} as JSON; the indexes are rebuilt from the whole catalog, which is
+ * taken from the suggest index and written next to it as an {@link AlbumSnapshot} ({@code file} + {@code .catalog}).
+ * <p>
+ * Both files are stamped with the {@link CatalogStampRepository catalog stamp} read at shutdown and only restored if
+ * the database still has the same stamp; any change made in between, by any instance, means a normal cold start.
+ * Startup and shutdown run outside the web server's lifecycle phase, so the cache is filled before the first request
+ * and saved after the last one.
+ */
+@Component
+@ConditionalOnProperty(name = "record-shop.warm-start.enabled", havingValue = "true")
+public class CatalogWarmStart implements SmartLifecycle {
+    private static final Logger log = LoggerFactory.getLogger(CatalogWarmStart.class);
+    private static final int FORMAT_VERSION = 3;
+
+    record CachedList(String field, String value, List<Long> albumIds) {
+    }
+
+    record State(int formatVersion, long stamp, List<Album> albums, List<Long> cachedIds, List<CachedList> lists) {
+    }
+
+    private interface Writer {
+        void writeTo(OutputStream outputStream) throws IOException;
+    }
+
+    private final CatalogStampRepository catalogStampRepository;
+    private final AlbumCache albumCache;
+    private final ObjectProvider<AlbumFacetIndex> albumFacetIndex;
+    private final ObjectProvider<AlbumSuggestIndex> albumSuggestIndex;
+    private final ObjectProvider<AlbumBitmapIndex> albumBitmapIndex;
+    private final ObjectMapper objectMapper;
+    private final Path file;
+    private final Path catalogFile;
+    private volatile boolean running;
+
+    @Autowired
+    public CatalogWarmStart(CatalogStampRepository catalogStampRepository, AlbumCache albumCache,
+                            ObjectProvider<AlbumFacetIndex> albumFacetIndex,
+                            ObjectProvider<AlbumSuggestIndex> albumSuggestIndex,
+                            ObjectProvider<AlbumBitmapIndex> albumBitmapIndex, ObjectMapper objectMapper,
+                            @Value("${record-shop.warm-start.file:record-shop-warm-start.json}") Path file) {
+        this.catalogStampRepository = catalogStampRepository;
+        this.albumCache = albumCache;
+        this.albumFacetIndex = albumFacetIndex;
+        this.albumSuggestIndex = albumSuggestIndex;
+        this.albumBitmapIndex = albumBitmapIndex;
+        this.objectMapper = objectMapper;
+        this.file = file;
+        this.catalogFile = file.resolveSibling(file.getFileName() + ".catalog");
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        if (!Files.isRegularFile(file)) return;
+        long start = System.nanoTime();
+        try {
+            State state = objectMapper.readValue(file.toFile(), State.class);
+            long current = catalogStampRepository.find();
+            if (state.formatVersion() != FORMAT_VERSION || current != state.stamp()) {
+                log.info("Warm-start file {} does not match the catalog (stamp {} now, {} saved); starting cold",
+                        file, current, state.stamp());
+                return;
+            }
+            restore(state);
+            int indexed = restoreIndexes(state.stamp());
+            log.info("Warm start restored {} cached albums, {} cached lists and {} indexed albums from {} in {} ms",
+                    state.cachedIds().size(), state.lists().size(), indexed, file, (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not restore warm-start file {}; starting cold", file, e);
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        try {
+            save();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not save warm-start file {}", file, e);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Lower than the web server's phases: started before it accepts requests, stopped after it has drained them.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    void save() throws IOException {
+        // Read before the state is copied, so a write landing in between can only make the saved stamp too old.
+        long stamp = catalogStampRepository.find();
+        Map<Long, Album> albums = new LinkedHashMap<>();
+        List<Long> cachedIds = new ArrayList<>();
+        for (Album album : albumCache.cachedAlbums()) {
+            albums.put(album.getId(), album);
+            cachedIds.add(album.getId());
+        }
+        List<CachedList> lists = new ArrayList<>();
+        albumCache.cachedLists().forEach((key, members) -> {
+            List<Long> ids = new ArrayList<>(members.size());
+            for (Album album : members) {
+                albums.putIfAbsent(album.getId(), album);
+                ids.add(album.getId());
+            }
+            lists.add(new CachedList(key.field(), String.valueOf(key.value()), ids));
+        });
+
+        AlbumSuggestIndex suggestIndex = albumSuggestIndex.getIfAvailable();
+        if (suggestIndex != null) {
+            AlbumSnapshotWriter catalog = new AlbumSnapshotWriter();
+            suggestIndex.albums().forEach(catalog::add);
+            write(catalogFile, outputStream -> catalog.writeTo(outputStream,
+                    new CatalogVersion(Long.toString(stamp), System.currentTimeMillis())));
+        } else {
+            Files.deleteIfExists(catalogFile);
+        }
+        State state = new State(FORMAT_VERSION, stamp, List.copyOf(albums.values()), cachedIds, lists);
+        write(file, outputStream -> objectMapper.writeValue(outputStream, state));
+        log.info("Saved {} cached albums, {} cached lists and {} indexed albums to {}", cachedIds.size(), lists.size(),
+                suggestIndex == null ? 0 : suggestIndex.size(), file);
+    }
+
+    // Written next to the target and moved into place, so a crash mid-write never leaves a truncated file.
+    private static void write(Path target, Writer writer) throws IOException {
+        Path absolute = target.toAbsolutePath();
+        Path temporary = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream outputStream = Files.newOutputStream(temporary)) {
+                writer.writeTo(outputStream);
+            }
+            Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private void restore(State state) {
+        Map<Long, Album> albums = new HashMap<>();
+        for (Album album : state.albums()) {
+            albums.put(album.getId(), album);
+        }
+        List<Album> cached = state.cachedIds().stream().map(albums::get).toList();
+        Map<AlbumCache.ListKey, List<Album>> lists = new HashMap<>();
+        for (CachedList list : state.lists()) {
+            lists.put(AlbumCache.ListKey.of(list.field(), list.value()),
+                    list.albumIds().stream().map(albums::get).toList());
+        }
+        albumCache.preload(cached, lists);
+    }
+
+    // Indexes left unloaded here (no catalog file, or one from another stamp) load from the database when ready.
+    private int restoreIndexes(long stamp) throws IOException {
+        if (!Files.isRegularFile(catalogFile)) return 0;
+        List<Album> catalog;
+        try (AlbumSnapshot snapshot = AlbumSnapshot.open(catalogFile)) {
+            if (!snapshot.catalogVersion().tag().equals(Long.toString(stamp))) return 0;
+            catalog = new ArrayList<>(snapshot.size());
+            for (int record = 0; record < snapshot.size(); record++) catalog.add(snapshot.album(record));
+        }
+        albumFacetIndex.ifAvailable(index -> index.load(catalog));
+        albumSuggestIndex.ifAvailable(index -> index.load(catalog));
+        albumBitmapIndex.ifAvailable(index -> index.load(catalog));
+        return catalog.size();
+    }
+}
@@ -0,0 +1,30 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Moves album_seq past the ids already in the table. Databases created before the switch from IDENTITY ids start
+ * the sequence at 1, which would collide with existing rows. Written in Java because H2 and PostgreSQL have no
+ * common syntax for restarting a sequence from a query.
+ */
+public class V2__Align_album_sequence extends BaseJavaMigration {
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        try (Statement statement = context.getConnection().createStatement()) {
+            long maxId;
+            try (ResultSet rs = statement.executeQuery("SELECT COALESCE(MAX(id), 0) FROM album")) {
+                rs.next();
+                maxId = rs.getLong(1);
+            }
+            if (maxId > 0) {
+                // Leave a whole allocation block of headroom for Hibernate's pooled optimizer.
+                statement.execute("ALTER SEQUENCE album_seq RESTART WITH " + (maxId + 51));
+            }
+        }
+    }
+}
@@ -0,0 +1,10 @@
+-- Matches the schema Hibernate's ddl-auto used to create, so existing databases can be baselined onto it.
+CREATE SEQUENCE IF NOT EXISTS album_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS album (
+    id           BIGINT       NOT NULL PRIMARY KEY,
+    artist       VARCHAR(255),
+    release_year INTEGER      NOT NULL,
+    genre        VARCHAR(255),
+    name         VARCHAR(255)
+);
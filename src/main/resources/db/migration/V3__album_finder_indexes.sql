@@ -0,0 +1,6 @@
+-- One index per AlbumRepository finder. The composite indexes also serve their leading column on its own,
+-- so findByArtist uses (artist, release_year) and findByGenre uses (genre, release_year).
+CREATE INDEX IF NOT EXISTS idx_album_artist_release_year ON album (artist, release_year);
+CREATE INDEX IF NOT EXISTS idx_album_name ON album (name);
+CREATE INDEX IF NOT EXISTS idx_album_release_year ON album (release_year);
+CREATE INDEX IF NOT EXISTS idx_album_genre_release_year ON album (genre, release_year);
@@ -0,0 +1 @@
+ALTER TABLE album ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL;
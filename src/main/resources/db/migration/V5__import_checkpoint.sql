@@ -0,0 +1,11 @@
+-- One row per CLI import, updated in the same transaction as each chunk it inserts, so an interrupted import can
+-- resume from the last committed line.
+CREATE TABLE IF NOT EXISTS import_checkpoint (
+    import_id     VARCHAR(1024) NOT NULL PRIMARY KEY,
+    byte_offset   BIGINT        NOT NULL,
+    line_number   BIGINT        NOT NULL,
+    rows_imported BIGINT        NOT NULL,
+    rows_rejected BIGINT        NOT NULL,
+    completed     BOOLEAN       NOT NULL,
+    updated_at    TIMESTAMP     NOT NULL
+);
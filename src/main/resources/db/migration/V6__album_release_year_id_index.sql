@@ -0,0 +1,4 @@
+-- Year-range pages are ordered by release year and then id. With id in the index a page is read off it in order,
+-- forwards or backwards, instead of sorting every album in the range; it still serves single-year lookups.
+DROP INDEX IF EXISTS idx_album_release_year;
+CREATE INDEX IF NOT EXISTS idx_album_release_year_id ON album (release_year, id);
@@ -0,0 +1,8 @@
+-- Case-folded, accent-stripped copies of artist and name (see AlbumNormalizer) for the artist and name finders, so a
+-- case-insensitive lookup is an index seek rather than lower(artist) on every row. Nullable and without a default,
+-- so adding them does not rewrite the table; the application fills in existing rows in batches after startup
+-- (AlbumNormalizationBackfill) and keeps new and updated rows current itself.
+ALTER TABLE album ADD COLUMN IF NOT EXISTS artist_normalized VARCHAR(255);
+ALTER TABLE album ADD COLUMN IF NOT EXISTS name_normalized VARCHAR(255);
+CREATE INDEX IF NOT EXISTS idx_album_artist_normalized_release_year ON album (artist_normalized, release_year);
+CREATE INDEX IF NOT EXISTS idx_album_name_normalized ON album (name_normalized);
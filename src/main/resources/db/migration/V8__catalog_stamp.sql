@@ -0,0 +1,8 @@
+-- A single counter moved forward in the same transaction as every album insert, update and delete, whichever instance
+-- or process makes it, so whether the catalog changed since a given moment is one primary-key read instead of an
+-- aggregate over the album table.
+CREATE TABLE IF NOT EXISTS catalog_stamp (
+    id    INT    NOT NULL PRIMARY KEY,
+    stamp BIGINT NOT NULL
+);
+INSERT INTO catalog_stamp (id, stamp) VALUES (1, 0);
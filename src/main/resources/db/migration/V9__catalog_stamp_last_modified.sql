@@ -0,0 +1,3 @@
+-- When catalog_stamp last moved, in epoch millis, so the list endpoints can send Last-Modified for the persisted stamp
+-- rather than for a version held in one instance's memory. 0 until the first write after this migration.
+ALTER TABLE catalog_stamp ADD COLUMN IF NOT EXISTS last_modified BIGINT NOT NULL DEFAULT 0;
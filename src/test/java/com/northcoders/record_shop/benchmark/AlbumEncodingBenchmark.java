@@ -0,0 +1,89 @@
+package com.northcoders.record_shop.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.northcoders.record_shop.model.Album;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encoding and decoding a list of {@code listSize} albums in each format the album endpoints can send: JSON, gzipped
+ * JSON, CBOR and Smile, with the ObjectMappers Spring MVC builds for them. The payload size of each is printed when the
+ * trial starts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AlbumEncodingBenchmark {
+
+    public enum Format {
+        JSON, JSON_GZIP, CBOR, SMILE
+    }
+
+    @Param({"100", "10000"})
+    public int listSize;
+
+    @Param({"JSON", "JSON_GZIP", "CBOR", "SMILE"})
+    public Format format;
+
+    private ObjectMapper objectMapper;
+    private List<Album> albums;
+    private byte[] payload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        objectMapper = switch (format) {
+            case JSON, JSON_GZIP -> Jackson2ObjectMapperBuilder.json().build();
+            case CBOR -> Jackson2ObjectMapperBuilder.cbor().build();
+            case SMILE -> Jackson2ObjectMapperBuilder.smile().build();
+        };
+        Album.AlbumGenres[] genres = Album.AlbumGenres.values();
+        albums = IntStream.range(0, listSize)
+                .mapToObj(i -> new Album((long) i + 1, "Artist " + i % 500, 1950 + i % 75, genres[i % genres.length],
+                        "Album " + i, 0L))
+                .toList();
+        payload = encode();
+        System.out.printf("%n%s, %d albums: %d bytes%n", format, listSize, payload.length);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        byte[] encoded = objectMapper.writeValueAsBytes(albums);
+        if (format != Format.JSON_GZIP) return encoded;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(encoded.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(encoded);
+        }
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public Album[] decode() throws IOException {
+        if (format != Format.JSON_GZIP) return objectMapper.readValue(payload, Album[].class);
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(payload))) {
+            return objectMapper.readValue(gzip, Album[].class);
+        }
+    }
+}
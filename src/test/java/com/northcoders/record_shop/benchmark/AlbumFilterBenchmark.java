@@ -0,0 +1,84 @@
+package com.northcoders.record_shop.benchmark;
+
+import com.northcoders.record_shop.dto.AlbumFilter;
+import com.northcoders.record_shop.dto.AlbumFilterResult;
+import com.northcoders.record_shop.index.AlbumBitmapIndex;
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.repository.AlbumRepository;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code GET /albums/filter} expressions against a catalog of {@code catalogSize} albums spread over 75 release years
+ * and 50,000 artists, a few of which have most of the albums.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class AlbumFilterBenchmark {
+    private static final int ARTISTS = 50_000;
+
+    @Param({"100000", "1000000"})
+    public int catalogSize;
+
+    private AlbumBitmapIndex index;
+    private final AlbumFilter genreAndDecade = AlbumFilter.parse("genre:ROCK AND year:1990..1999");
+    private final AlbumFilter artistSetExcludingYears =
+            AlbumFilter.parse("artist:\"Artist 1\",\"Artist 2\",\"Artist 3\" AND NOT year:2000..");
+    private final AlbumFilter compound = AlbumFilter.parse(
+            "(genre:ROCK,ALTERNATIVE_ROCK AND year:1970..1989) OR (genre:BRITPOP AND NOT artist:\"Artist 1\")");
+
+    @Setup(Level.Trial)
+    public void buildIndex() {
+        Random random = new Random(42);
+        List<Album> albums = new ArrayList<>(catalogSize);
+        Album.AlbumGenres[] genres = Album.AlbumGenres.values();
+        for (int i = 0; i < catalogSize; i++) {
+            int artist = (int) (Math.pow(random.nextDouble(), 3) * ARTISTS);
+            albums.add(new Album((long) i + 1, "Artist " + artist, 1950 + random.nextInt(75),
+                    genres[random.nextInt(genres.length)], "Album " + i, 0L));
+        }
+        index = new AlbumBitmapIndex(Mockito.mock(AlbumRepository.class), Mockito.mock(PlatformTransactionManager.class));
+        index.load(albums);
+    }
+
+    @Benchmark
+    public AlbumFilterResult countGenreAndDecade() {
+        return index.filter(genreAndDecade, null, 0);
+    }
+
+    @Benchmark
+    public AlbumFilterResult pageGenreAndDecade() {
+        return index.filter(genreAndDecade, (long) catalogSize / 2, 100);
+    }
+
+    @Benchmark
+    public AlbumFilterResult pageArtistSetExcludingYears() {
+        return index.filter(artistSetExcludingYears, null, 100);
+    }
+
+    @Benchmark
+    public AlbumFilterResult pageCompound() {
+        return index.filter(compound, null, 100);
+    }
+}
@@ -0,0 +1,85 @@
+package com.northcoders.record_shop.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.northcoders.record_shop.cache.AlbumResponseCache;
+import com.northcoders.record_shop.model.Album;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Album JSON serialization and deserialization with the same ObjectMapper defaults Spring MVC uses, next to the
+ * pre-serialized bytes served from {@link AlbumResponseCache}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AlbumJsonBenchmark {
+    private ObjectMapper objectMapper;
+    private AlbumResponseCache responseCache;
+    private Album album;
+    private List<Album> albums;
+    private byte[] albumJson;
+    private byte[] albumsJson;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        responseCache = new AlbumResponseCache(objectMapper, 10_000, 1024, new SimpleMeterRegistry());
+        album = new Album(1L, "Oasis", 1994, Album.AlbumGenres.BRITPOP, "Definitely Maybe", 3L);
+        albums = List.copyOf(IntStream.range(0, 100)
+                .mapToObj(i -> new Album((long) i, "Artist " + i, 1990 + i % 30, Album.AlbumGenres.ROCK, "Album " + i, 0L))
+                .toList());
+        albumJson = objectMapper.writeValueAsBytes(album);
+        albumsJson = objectMapper.writeValueAsBytes(albums);
+        responseCache.album(album);
+        responseCache.albumList(albums);
+    }
+
+    @Benchmark
+    public byte[] serializeAlbum() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(album);
+    }
+
+    @Benchmark
+    public Album deserializeAlbum() throws Exception {
+        return objectMapper.readValue(albumJson, Album.class);
+    }
+
+    @Benchmark
+    public byte[] serializeListOf100() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(albums);
+    }
+
+    @Benchmark
+    public Album[] deserializeListOf100() throws Exception {
+        return objectMapper.readValue(albumsJson, Album[].class);
+    }
+
+    @Benchmark
+    public byte[] cachedAlbumBytes() {
+        return responseCache.album(album).json();
+    }
+
+    @Benchmark
+    public byte[] cachedListOf100Bytes() {
+        return responseCache.albumList(albums).json();
+    }
+}
@@ -0,0 +1,151 @@
+package com.northcoders.record_shop.benchmark;
+
+import com.northcoders.record_shop.RecordShopApplication;
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.repository.AlbumRepository;
+import com.northcoders.record_shop.service.AlbumService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Service and repository hot paths against an in-memory H2 catalog of {@code catalogSize} albums. The service finders
+ * measure the cached path; the repository finders measure the query the cache falls back to.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AlbumServiceBenchmark {
+    private static final int ARTISTS = 500;
+    private static final int DECADE_PAGE_SIZE = 20;
+    private static final Sort BY_YEAR_THEN_ID_SORT = Sort.by("releaseYear", "id");
+    private static final Comparator<Album> BY_YEAR_THEN_ID =
+            Comparator.comparingInt(Album::getReleaseYear).thenComparing(Album::getId);
+
+    @Param({"1000", "10000", "100000"})
+    public int catalogSize;
+
+    private ConfigurableApplicationContext context;
+    private AlbumService albumService;
+    private AlbumRepository albumRepository;
+    private Long firstId;
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        context = new SpringApplicationBuilder(RecordShopApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.main.banner-mode=off",
+                        "spring.jpa.show-sql=false",
+                        "logging.level.root=WARN")
+                .run();
+        albumService = context.getBean(AlbumService.class);
+        albumRepository = context.getBean(AlbumRepository.class);
+
+        albumRepository.deleteAll();
+        albumService.addAlbums(IntStream.range(0, catalogSize).mapToObj(AlbumServiceBenchmark::album).iterator());
+        firstId = albumService.getAlbumsAfter(null, 1).get(0).getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Album> getAllAlbums() {
+        return albumService.getAllAlbums();
+    }
+
+    @Benchmark
+    public List<Album> getAlbumsAfterPageOf100() {
+        return albumService.getAlbumsAfter(firstId + catalogSize / 2, 100);
+    }
+
+    @Benchmark
+    public Album getAlbumByIdCached() {
+        return albumService.getAlbumById(firstId);
+    }
+
+    @Benchmark
+    public List<Album> getAlbumsByArtistCached() {
+        return albumService.getAlbumsByArtist("Artist 42");
+    }
+
+    @Benchmark
+    public List<Album> getAlbumsByGenreCached() {
+        return albumService.getAlbumsByGenre(Album.AlbumGenres.CLASSIC);
+    }
+
+    @Benchmark
+    public List<Album> findByArtist() {
+        return albumRepository.findByArtist("Artist 42");
+    }
+
+    @Benchmark
+    public List<Album> findByReleaseYear() {
+        return albumRepository.findByReleaseYear(1994);
+    }
+
+    // A 1990s page the old way: one findByReleaseYear call per year, merged and sorted in memory.
+    @Benchmark
+    public List<Album> decadeFirstPageFromTenYearCalls() {
+        List<Album> decade = new ArrayList<>();
+        for (int year = 1990; year <= 1999; year++) decade.addAll(albumRepository.findByReleaseYear(year));
+        decade.sort(BY_YEAR_THEN_ID);
+        return decade.subList(0, Math.min(DECADE_PAGE_SIZE, decade.size()));
+    }
+
+    @Benchmark
+    public Page<Album> decadeFirstPageFromRangeQuery() {
+        return albumService.getAlbumsByReleaseYearRange(1990, 1999, PageRequest.of(0, DECADE_PAGE_SIZE, BY_YEAR_THEN_ID_SORT));
+    }
+
+    @Benchmark
+    public List<Album> decadeFromTenYearCalls() {
+        List<Album> decade = new ArrayList<>();
+        for (int year = 1990; year <= 1999; year++) decade.addAll(albumRepository.findByReleaseYear(year));
+        decade.sort(BY_YEAR_THEN_ID);
+        return decade;
+    }
+
+    @Benchmark
+    public Page<Album> decadeFromRangeQuery() {
+        return albumService.getAlbumsByReleaseYearRange(1990, 1999, Pageable.unpaged(BY_YEAR_THEN_ID_SORT));
+    }
+
+    @Benchmark
+    public List<Album> findByName() {
+        return albumRepository.findByName("Album 4242");
+    }
+
+    private static Album album(int i) {
+        Album.AlbumGenres[] genres = Album.AlbumGenres.values();
+        return new Album(null, "Artist " + (i % ARTISTS), 1950 + i % 75, genres[i % genres.length], "Album " + i);
+    }
+}
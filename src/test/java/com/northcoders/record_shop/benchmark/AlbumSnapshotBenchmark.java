@@ -0,0 +1,99 @@
+package com.northcoders.record_shop.benchmark;
+
+import com.northcoders.record_shop.dto.AlbumSearchCriteria;
+import com.northcoders.record_shop.dto.CatalogVersion;
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.snapshot.AlbumSnapshot;
+import com.northcoders.record_shop.snapshot.AlbumSnapshotWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opening and searching a snapshot file of {@code catalogSize} albums, as the CLI does with {@code search --snapshot}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class AlbumSnapshotBenchmark {
+    private static final int ARTISTS = 50_000;
+
+    @Param({"100000", "1000000"})
+    public int catalogSize;
+
+    private Path file;
+    private AlbumSnapshot snapshot;
+    private final AlbumSearchCriteria byArtist = new AlbumSearchCriteria("Artist 4242", null, null, null, null);
+    private final AlbumSearchCriteria byName = new AlbumSearchCriteria(null, "Album 424242", null, null, null);
+    private final AlbumSearchCriteria byArtistAndYears = new AlbumSearchCriteria("Artist 4242", null, null, 1990, 1999);
+    private final AlbumSearchCriteria byGenreAndYear =
+            new AlbumSearchCriteria(null, null, Album.AlbumGenres.ROCK, 1994, 1994);
+
+    @Setup(Level.Trial)
+    public void writeSnapshot() throws IOException {
+        AlbumSnapshotWriter writer = new AlbumSnapshotWriter();
+        Album.AlbumGenres[] genres = Album.AlbumGenres.values();
+        for (int i = 0; i < catalogSize; i++) {
+            writer.add(new Album((long) i + 1, "Artist " + (i % ARTISTS), 1950 + i % 75, genres[i % genres.length],
+                    "Album " + i, 0L));
+        }
+        file = Files.createTempFile("albums", ".snapshot");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            writer.writeTo(out, new CatalogVersion("benchmark", 0L));
+        }
+        snapshot = AlbumSnapshot.open(file);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteSnapshot() throws IOException {
+        snapshot.close();
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public int open() throws IOException {
+        try (AlbumSnapshot opened = AlbumSnapshot.open(file)) {
+            return opened.size();
+        }
+    }
+
+    @Benchmark
+    public int searchByArtist(Blackhole blackhole) {
+        return snapshot.search(byArtist, 0, 20, blackhole::consume);
+    }
+
+    @Benchmark
+    public int searchByName(Blackhole blackhole) {
+        return snapshot.search(byName, 0, 20, blackhole::consume);
+    }
+
+    @Benchmark
+    public int searchByArtistAndYears(Blackhole blackhole) {
+        return snapshot.search(byArtistAndYears, 0, 20, blackhole::consume);
+    }
+
+    @Benchmark
+    public int searchByGenreAndYear(Blackhole blackhole) {
+        return snapshot.search(byGenreAndYear, 0, 20, blackhole::consume);
+    }
+}
@@ -0,0 +1,143 @@
+package com.northcoders.record_shop.benchmark;
+
+import com.northcoders.record_shop.dto.FuzzySearchResult;
+import com.northcoders.record_shop.index.AlbumSuggestIndex;
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.repository.AlbumRepository;
+import jakarta.persistence.EntityManager;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code GET /albums/suggest} and {@code GET /albums/fuzzy} lookups against a catalog of {@code catalogSize} albums whose names and artists are drawn
+ * from a skewed vocabulary of made-up words, so common words match a large share of the catalog.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class AlbumSuggestBenchmark {
+    private static final String[] SYLLABLES = {"ka", "lo", "mi", "ne", "ra", "so", "tu", "vi", "ze", "an", "el", "or",
+            "ight", "ing", "er", "ow", "sh", "th", "ar", "en"};
+    private static final int VOCABULARY = 20_000;
+    private static final int ARTISTS = 50_000;
+    private static final int LIMIT = 10;
+    private static final Duration FUZZY_BUDGET = Duration.ofSeconds(1);
+
+    @Param({"100000", "1000000"})
+    public int catalogSize;
+
+    private AlbumSuggestIndex index;
+    private String[] words;
+
+    @Setup(Level.Trial)
+    public void buildIndex() {
+        Random random = new Random(42);
+        words = new String[VOCABULARY];
+        for (int i = 0; i < VOCABULARY; i++) {
+            StringBuilder word = new StringBuilder();
+            for (int syllables = 2 + random.nextInt(3); syllables > 0; syllables--) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            words[i] = word.toString();
+        }
+        String[] artists = new String[ARTISTS];
+        for (int i = 0; i < ARTISTS; i++) {
+            artists[i] = random.nextBoolean() ? capitalize(word(random)) : capitalize(word(random)) + " " + capitalize(word(random));
+        }
+        List<Album> albums = new ArrayList<>(catalogSize);
+        Album.AlbumGenres[] genres = Album.AlbumGenres.values();
+        for (int i = 0; i < catalogSize; i++) {
+            StringBuilder name = new StringBuilder(capitalize(word(random)));
+            for (int extra = random.nextInt(4); extra > 0; extra--) {
+                name.append(' ').append(word(random));
+            }
+            albums.add(new Album((long) i + 1, artists[random.nextInt(ARTISTS)], 1950 + i % 75,
+                    genres[i % genres.length], name.toString(), 0L));
+        }
+        index = new AlbumSuggestIndex(Mockito.mock(AlbumRepository.class), Mockito.mock(EntityManager.class),
+                Mockito.mock(PlatformTransactionManager.class));
+        index.load(albums);
+    }
+
+    // Most albums use the first few hundred words.
+    private String word(Random random) {
+        double skewed = Math.pow(random.nextDouble(), 3);
+        return words[(int) (skewed * VOCABULARY)];
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    @Benchmark
+    public List<Album> twoLetterPrefix() {
+        return index.suggest(words[0].substring(0, 2), LIMIT);
+    }
+
+    @Benchmark
+    public List<Album> commonWord() {
+        return index.suggest(words[0], LIMIT);
+    }
+
+    @Benchmark
+    public List<Album> rareWord() {
+        return index.suggest(words[VOCABULARY - 1], LIMIT);
+    }
+
+    @Benchmark
+    public List<Album> insideWords() {
+        return index.suggest("ightsh", LIMIT);
+    }
+
+    @Benchmark
+    public List<Album> twoWordsTyping() {
+        return index.suggest(words[3] + " " + words[250].substring(0, 3), LIMIT);
+    }
+
+    @Benchmark
+    public List<Album> noMatch() {
+        return index.suggest("qqqx", LIMIT);
+    }
+
+    // GET /albums/fuzzy: one typo, swapping two letters in the middle of the word.
+    @Benchmark
+    public FuzzySearchResult fuzzyCommonWord() {
+        return index.fuzzy(null, misspell(words[0]), LIMIT, FUZZY_BUDGET);
+    }
+
+    @Benchmark
+    public FuzzySearchResult fuzzyRareWord() {
+        return index.fuzzy(null, misspell(words[VOCABULARY - 1]), LIMIT, FUZZY_BUDGET);
+    }
+
+    @Benchmark
+    public FuzzySearchResult fuzzyArtistAndName() {
+        return index.fuzzy(misspell(words[40]), misspell(words[250]), LIMIT, FUZZY_BUDGET);
+    }
+
+    private static String misspell(String word) {
+        int middle = word.length() / 2;
+        return word.substring(0, middle - 1) + word.charAt(middle) + word.charAt(middle - 1) + word.substring(middle + 1);
+    }
+}
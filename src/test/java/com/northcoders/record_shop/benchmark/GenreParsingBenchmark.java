@@ -0,0 +1,45 @@
+package com.northcoders.record_shop.benchmark;
+
+import com.northcoders.record_shop.model.Album;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The genre parameter parsing behind {@code GET /albums/by-genre} and {@code /albums/search}, against the
+ * {@code valueOf(toUpperCase())} lookup it replaced, for known, lower-case and unknown genres.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GenreParsingBenchmark {
+
+    @Param({"BRITPOP", "alternative_rock", "jazz"})
+    public String genre;
+
+    @Benchmark
+    public Album.AlbumGenres fromName() {
+        return Album.AlbumGenres.fromName(genre);
+    }
+
+    @Benchmark
+    public Album.AlbumGenres valueOfUpperCase() {
+        try {
+            return Album.AlbumGenres.valueOf(genre.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.northcoders.record_shop.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares two JMH JSON result files (e.g. from the previous and the current commit) benchmark by benchmark and exits
+ * with status 1 when any score got worse by more than the threshold (10% unless given as a third argument).
+ * <p>
+ * {@code mvn exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.northcoders.record_shop.benchmark.JmhResultComparison
+ * -Dexec.args="baseline.json target/jmh-result.json 10"}
+ */
+public class JmhResultComparison {
+
+    record Score(String mode, double score, String unit) {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: JmhResultComparison <baseline.json> <current.json> [threshold-percent]");
+            System.exit(2);
+        }
+        Map<String, Score> baseline = read(new File(args[0]));
+        Map<String, Score> current = read(new File(args[1]));
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10.0;
+
+        int regressions = 0;
+        System.out.printf("%-90s %14s %14s %9s  %s%n", "benchmark", "baseline", "current", "change", "unit");
+        for (Map.Entry<String, Score> entry : current.entrySet()) {
+            Score before = baseline.get(entry.getKey());
+            Score after = entry.getValue();
+            if (before == null) {
+                System.out.printf("%-90s %14s %14.3f %9s  %s%n", entry.getKey(), "-", after.score(), "new", after.unit());
+                continue;
+            }
+            double change = (after.score() - before.score()) / before.score() * 100;
+            // Throughput modes improve upwards; time-per-operation modes improve downwards.
+            double worse = after.mode().equals("thrpt") ? -change : change;
+            boolean regressed = worse > threshold;
+            if (regressed) regressions++;
+            System.out.printf("%-90s %14.3f %14.3f %+8.1f%%  %s%s%n", entry.getKey(), before.score(), after.score(),
+                    change, after.unit(), regressed ? "  REGRESSION" : "");
+        }
+        System.out.printf("%d regression(s) beyond %.1f%%%n", regressions, threshold);
+        if (regressions > 0) System.exit(1);
+    }
+
+    private static Map<String, Score> read(File file) throws IOException {
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            StringBuilder key = new StringBuilder(result.path("benchmark").asText());
+            result.path("params").fields().forEachRemaining(param ->
+                    key.append(' ').append(param.getKey()).append('=').append(param.getValue().asText()));
+            JsonNode metric = result.path("primaryMetric");
+            scores.put(key.toString(), new Score(result.path("mode").asText(), metric.path("score").asDouble(),
+                    metric.path("scoreUnit").asText()));
+        }
+        return scores;
+    }
+}
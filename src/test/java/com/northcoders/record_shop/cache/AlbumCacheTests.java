@@ -0,0 +1,117 @@
+package com.northcoders.record_shop.cache;
+
+import com.northcoders.record_shop.dto.CatalogVersion;
+import com.northcoders.record_shop.event.AlbumChangedEvent;
+import com.northcoders.record_shop.model.Album;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AlbumCacheTests {
+    private final Album definitelyMaybe = new Album(1L, "Oasis", 1994, Album.AlbumGenres.BRITPOP, "Definitely Maybe");
+    private final Album parklife = new Album(2L, "Blur", 1994, Album.AlbumGenres.BRITPOP, "Parklife");
+
+    private AlbumCache albumCache;
+    private SimpleMeterRegistry meterRegistry;
+    private List<AlbumChangedEvent> broadcast;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    public void setup(){
+        meterRegistry = new SimpleMeterRegistry();
+        broadcast = new ArrayList<>();
+        albumCache = new AlbumCache(100, 100, Duration.ofMinutes(1), meterRegistry, broadcast::add);
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void testUpdate_EvictsOnlyListsContainingOrNowMatchingTheAlbum(){
+        albumCache.getAlbums(AlbumCache.ListKey.releaseYear(1994), () -> load(definitelyMaybe, parklife));
+        albumCache.getAlbums(AlbumCache.ListKey.artist("Blur"), () -> load(parklife));
+        albumCache.getAlbums(AlbumCache.ListKey.artist("Suede"), () -> load(new Album(3L, "Suede", 1996, Album.AlbumGenres.BRITPOP, "Coming Up")));
+        assertThat(loads).hasValue(3);
+
+        Album movedToSuede = new Album(1L, "Suede", 1995, Album.AlbumGenres.BRITPOP, "Definitely Maybe");
+        albumCache.onAlbumChanged(AlbumChangedEvent.saved(movedToSuede));
+
+        albumCache.getAlbums(AlbumCache.ListKey.artist("Blur"), () -> load(parklife));
+        assertThat(loads).as("list without the album stays cached").hasValue(3);
+        albumCache.getAlbums(AlbumCache.ListKey.releaseYear(1994), () -> load(parklife));
+        albumCache.getAlbums(AlbumCache.ListKey.artist("Suede"), () -> load(movedToSuede));
+        assertThat(loads).as("old and new lists are reloaded").hasValue(5);
+        assertThat(broadcast).containsExactly(AlbumChangedEvent.saved(movedToSuede));
+    }
+
+    @Test
+    void testObserveCatalogVersion_DropsListsOnlyWhenTheVersionChanged(){
+        albumCache.observeCatalogVersion(new CatalogVersion("7", 1_000L));
+        albumCache.getAlbum(1L, id -> definitelyMaybe);
+        albumCache.getAlbums(AlbumCache.ListKey.artist("Blur"), () -> load(parklife));
+
+        albumCache.observeCatalogVersion(new CatalogVersion("7", 1_000L));
+        albumCache.getAlbums(AlbumCache.ListKey.artist("Blur"), () -> load(parklife));
+        assertThat(loads).as("same version keeps the list").hasValue(1);
+
+        // Moved by a write this instance never saw an event for.
+        albumCache.observeCatalogVersion(new CatalogVersion("8", 2_000L));
+        albumCache.getAlbums(AlbumCache.ListKey.artist("Blur"), () -> load(parklife));
+        assertThat(loads).as("new version reloads the list").hasValue(2);
+        assertThat(albumCache.getAlbum(1L, id -> null)).isEqualTo(definitelyMaybe);
+    }
+
+    @Test
+    void testDelete_EvictsIdEntryAndContainingLists(){
+        albumCache.getAlbum(1L, id -> definitelyMaybe);
+        albumCache.getAlbums(AlbumCache.ListKey.genre(Album.AlbumGenres.BRITPOP), () -> load(definitelyMaybe, parklife));
+
+        albumCache.onAlbumChanged(AlbumChangedEvent.deleted(1L));
+
+        assertThat(albumCache.getAlbum(1L, id -> null)).isNull();
+        assertThat(albumCache.getAlbums(AlbumCache.ListKey.genre(Album.AlbumGenres.BRITPOP), () -> load(parklife)))
+                .containsExactly(parklife);
+    }
+
+    @Test
+    void testRemoteInvalidation_IsAppliedWithoutRebroadcasting(){
+        albumCache.getAlbum(2L, id -> parklife);
+
+        albumCache.applyRemoteInvalidation(AlbumChangedEvent.deleted(2L));
+
+        assertThat(albumCache.getAlbum(2L, id -> null)).isNull();
+        assertThat(broadcast).isEmpty();
+    }
+
+    @Test
+    void testListLoadedDuringInvalidation_IsNotCached(){
+        albumCache.getAlbums(AlbumCache.ListKey.artist("Oasis"), () -> {
+            albumCache.onAlbumChanged(AlbumChangedEvent.deleted(1L));
+            return load(definitelyMaybe);
+        });
+
+        albumCache.getAlbums(AlbumCache.ListKey.artist("Oasis"), () -> load(definitelyMaybe));
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void testHitsAndMisses_ArePublishedAsMetrics(){
+        albumCache.getAlbum(1L, id -> definitelyMaybe);
+        albumCache.getAlbum(1L, id -> definitelyMaybe);
+
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "albums.by-id").tag("result", "hit")
+                .functionCounter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "albums.by-id").tag("result", "miss")
+                .functionCounter().count()).isEqualTo(1.0);
+    }
+
+    private List<Album> load(Album... albums){
+        loads.incrementAndGet();
+        return List.of(albums);
+    }
+}
@@ -0,0 +1,120 @@
+package com.northcoders.record_shop.cli;
+
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.repository.AlbumRepository;
+import com.northcoders.record_shop.repository.ImportCheckpointStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+public class ImportCommandTests {
+    @Autowired
+    private ApplicationContext context;
+
+    @Autowired
+    private AlbumRepository albumRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testImportCsv_InsertsValidRowsAndRejectsTheRest() throws Exception {
+        Path file = Files.writeString(tempDir.resolve("supplier.csv"), String.join("\n",
+                "name,genre,artist,year",
+                "Parklife,britpop,CSV Import Artist,1994",
+                "\"Hello, Goodbye\",ROCK,CSV Import Artist,1967",
+                "",
+                "Unknown,jazz,CSV Import Artist,2001",
+                ",ROCK,CSV Import Artist,2001",
+                "Bad Year,ROCK,CSV Import Artist,nineteen",
+                "\"He said \"\"hi\"\"\",CLASSIC,CSV Import Artist,1800",
+                ""));
+        Path rejects = tempDir.resolve("supplier.rejects");
+
+        int exitCode = MainCLI.run(context, "import", file.toString(), "--rejects=" + rejects, "--threads=2",
+                "--batch-size=2");
+
+        assertThat(exitCode).isEqualTo(Command.EXIT_OK);
+        assertThat(albumRepository.findByArtist("CSV Import Artist"))
+                .extracting(Album::getName)
+                .containsExactlyInAnyOrder("Parklife", "Hello, Goodbye", "He said \"hi\"");
+        assertThat(Files.readAllLines(rejects, StandardCharsets.UTF_8))
+                .hasSize(3)
+                .satisfiesExactly(
+                        line -> assertThat(line).startsWith("5\tGenre 'jazz' is not recognized."),
+                        line -> assertThat(line).startsWith("6\tName is required."),
+                        line -> assertThat(line).startsWith("7\tRelease year 'nineteen' is not a number."));
+
+        assertThat(MainCLI.run(context, "import", file.toString(), "--rejects=" + rejects))
+                .as("a completed import is not repeated without --restart")
+                .isEqualTo(Command.EXIT_FAILED);
+        assertThat(albumRepository.findByArtist("CSV Import Artist")).hasSize(3);
+    }
+
+    @Test
+    void testImportNdjson_ResumesAfterTheLastCheckpoint() throws Exception {
+        List<String> lines = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            lines.add("{\"artist\":\"Resumed Import Artist\",\"releaseYear\":" + (1990 + i)
+                    + ",\"genre\":\"rock\",\"name\":\"Album " + i + "\"}");
+        }
+        Path file = Files.write(tempDir.resolve("supplier.ndjson"), lines);
+        long afterLine2 = (lines.get(0) + "\n" + lines.get(1) + "\n").getBytes(StandardCharsets.UTF_8).length;
+        String importId = "resume-test";
+        new ImportCheckpointStore(jdbcTemplate).save(
+                new ImportCheckpointStore.Checkpoint(importId, afterLine2, 2, 2, 0, false));
+
+        assertThat(MainCLI.run(context, "import", file.toString(), "--import-id=" + importId))
+                .as("an interrupted import needs --resume or --restart")
+                .isEqualTo(Command.EXIT_FAILED);
+
+        int exitCode = MainCLI.run(context, "import", file.toString(), "--import-id=" + importId, "--resume",
+                "--rejects=" + tempDir.resolve("rejects"));
+
+        assertThat(exitCode).isEqualTo(Command.EXIT_OK);
+        assertThat(albumRepository.findByArtist("Resumed Import Artist"))
+                .extracting(Album::getName)
+                .containsExactlyInAnyOrder("Album 3", "Album 4", "Album 5");
+        long fileSize = Files.size(file);
+        assertThat(new ImportCheckpointStore(jdbcTemplate).find(importId)).hasValueSatisfying(checkpoint -> {
+            assertThat(checkpoint.completed()).isTrue();
+            assertThat(checkpoint.lineNumber()).isEqualTo(5);
+            assertThat(checkpoint.rowsImported()).isEqualTo(5);
+            assertThat(checkpoint.byteOffset()).isEqualTo(fileSize);
+        });
+    }
+
+    @Test
+    void testImport_KeepsFileOrderWhenParsingInParallel() throws Exception {
+        StringBuilder csv = new StringBuilder("artist,releaseYear,genre,name\n");
+        for (int i = 0; i < 2000; i++) {
+            csv.append("Parallel Import Artist,2000,CLASSIC,").append(i).append('\n');
+        }
+        Path file = Files.writeString(tempDir.resolve("parallel.csv"), csv);
+
+        int exitCode = MainCLI.run(context, "import", file.toString(), "--threads=4", "--batch-size=64",
+                "--rejects=" + tempDir.resolve("rejects"));
+
+        assertThat(exitCode).isEqualTo(Command.EXIT_OK);
+        List<Album> albums = new ArrayList<>(albumRepository.findByArtist("Parallel Import Artist"));
+        albums.sort(Comparator.comparing(Album::getId));
+        assertThat(albums).hasSize(2000);
+        assertThat(albums).extracting(album -> Integer.parseInt(album.getName())).isSorted();
+    }
+}
@@ -0,0 +1,51 @@
+package com.northcoders.record_shop.cli;
+
+import com.northcoders.record_shop.dto.CatalogVersion;
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.snapshot.AlbumSnapshotWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SearchCommandTests {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testSearchSnapshot_AnswersWithoutStartingTheApplication() throws Exception {
+        AlbumSnapshotWriter writer = new AlbumSnapshotWriter();
+        writer.add(new Album(1L, "Oasis", 1994, Album.AlbumGenres.BRITPOP, "Definitely Maybe", 0L));
+        writer.add(new Album(2L, "Blur", 1994, Album.AlbumGenres.BRITPOP, "Parklife", 0L));
+        writer.add(new Album(3L, "Oasis", 1995, Album.AlbumGenres.BRITPOP, "What's the Story Morning Glory?", 0L));
+        Path file = tempDir.resolve("albums.snapshot");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            writer.writeTo(out, new CatalogVersion("v1", 0L));
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream originalOut = System.out;
+        int exitCode;
+        System.setOut(new PrintStream(output, true, StandardCharsets.UTF_8));
+        try {
+            exitCode = MainCLI.run(() -> {
+                throw new AssertionError("the application must not be started for a snapshot search");
+            }, "search", "--snapshot=" + file, "--artist=Oasis", "--to-year=1994");
+        } finally {
+            System.setOut(originalOut);
+        }
+
+        assertThat(exitCode).isEqualTo(Command.EXIT_OK);
+        assertThat(output.toString(StandardCharsets.UTF_8))
+                .contains("Definitely Maybe")
+                .doesNotContain("Parklife", "Morning Glory")
+                .contains("1 album(s) in total");
+    }
+}
@@ -0,0 +1,92 @@
+package com.northcoders.record_shop.config;
+
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.repository.AlbumRepository;
+import com.northcoders.record_shop.service.AlbumService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.Cookie;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.cookie;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + ReadReplicaRoutingTests.PRIMARY_URL,
+        // The first replica never answers, so every read has to fail over to the second one.
+        "record-shop.read-replicas.urls=jdbc:h2:tcp://127.0.0.1:1/unreachable," + ReadReplicaRoutingTests.REPLICA_URL,
+        "record-shop.read-replicas.connection-timeout=250ms",
+        "record-shop.read-replicas.replication-lag=0s",
+        "record-shop.read-replicas.read-your-writes=5s"
+})
+@AutoConfigureMockMvc
+public class ReadReplicaRoutingTests {
+    static final String PRIMARY_URL = "jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1";
+
+    private static final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+
+    @Autowired
+    private AlbumService albumService;
+
+    @Autowired
+    private AlbumRepository albumRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @BeforeAll
+    public static void createReplicaSchema() {
+        Flyway.configure().dataSource(REPLICA_URL, "sa", "").load().migrate();
+    }
+
+    @Test
+    void testRouting_ReadsFromAHealthyReplicaAndWritesToThePrimary() {
+        albumService.addAlbum(new Album(null, "Primary Only", 2001, Album.AlbumGenres.ROCK, "Written Here"));
+        replica.update("insert into album (id, artist, release_year, genre, name, version, artist_normalized, name_normalized) " +
+                "values (900001, 'Replica Only', 1999, 'ROCK', 'Replicated', 0, 'replica only', 'replicated')");
+
+        assertThat(jdbcTemplate.queryForObject("select count(*) from album where artist = 'Primary Only'", Long.class))
+                .isEqualTo(1);
+        assertThat(albumRepository.findByArtist("Primary Only")).isEmpty();
+        assertThat(albumService.getAlbumsByArtist("Replica Only"))
+                .extracting(Album::getName)
+                .containsExactly("Replicated");
+        assertThat(meterRegistry.counter("datasource.reads", "target", "replica-1").count()).isPositive();
+        assertThat(meterRegistry.counter("datasource.reads", "target", "replica-0").count()).isZero();
+    }
+
+    @Test
+    void testReadYourWrites_SendsTheWritingClientsReadsToThePrimary() throws Exception {
+        MvcResult created = mockMvc.perform(post("/albums")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"artist\":\"Read Your Writes\",\"releaseYear\":2024,\"genre\":\"ROCK\",\"name\":\"Fresh\"}"))
+                .andExpect(status().isCreated())
+                .andExpect(cookie().exists(ReadYourWritesFilter.COOKIE))
+                .andReturn();
+        Cookie window = created.getResponse().getCookie(ReadYourWritesFilter.COOKIE);
+
+        mockMvc.perform(get("/albums/by-artist").param("artist", "Read Your Writes"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/albums/by-artist").param("artist", "Read Your Writes").cookie(window))
+                .andExpect(status().isOk());
+    }
+}
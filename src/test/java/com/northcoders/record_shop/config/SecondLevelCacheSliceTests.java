@@ -0,0 +1,32 @@
+package com.northcoders.record_shop.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.cache.jcache.internal.JCacheRegionFactory;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// A JPA slice loads no @Configuration of ours, so the bounded regions have to come from spring.jpa.properties.
+@DataJpaTest
+public class SecondLevelCacheSliceTests {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void testDataJpaTest_GetsTheSameBoundedRegionsAsTheApplication() {
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        RegionFactory regionFactory = sessionFactory.getCache().getRegionFactory();
+
+        assertThat(regionFactory).isInstanceOf(SecondLevelCacheRegionFactory.class);
+        assertThat(((JCacheRegionFactory) regionFactory).getCacheManager().getCacheNames())
+                .containsExactlyInAnyOrder(SecondLevelCacheConfig.ALBUM_REGION, SecondLevelCacheConfig.QUERY_REGION,
+                        SecondLevelCacheConfig.DEFAULT_QUERY_REGION, SecondLevelCacheConfig.TIMESTAMPS_REGION);
+        assertThat(sessionFactory.getProperties())
+                .containsEntry("hibernate.javax.cache.missing_cache_strategy", "fail");
+    }
+}
@@ -1,29 +1,63 @@
 package com.northcoders.record_shop.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.northcoders.record_shop.cache.AlbumResponseCache;
+import com.northcoders.record_shop.dto.AlbumFacets;
+import com.northcoders.record_shop.dto.AlbumSearchCriteria;
+import com.northcoders.record_shop.dto.AlbumView;
+import com.northcoders.record_shop.dto.BatchInsertResult;
+import com.northcoders.record_shop.dto.BatchItemResult;
+import com.northcoders.record_shop.dto.AlbumFilter;
+import com.northcoders.record_shop.dto.AlbumFilterResult;
+import com.northcoders.record_shop.dto.CatalogVersion;
+import com.northcoders.record_shop.dto.FuzzySearchResult;
+import com.northcoders.record_shop.dto.IngestStatus;
 import com.northcoders.record_shop.exception.GlobalExceptionHandler;
 import com.northcoders.record_shop.exception.ItemNotFoundException;
+import com.northcoders.record_shop.exception.PreconditionFailedException;
+import com.northcoders.record_shop.exception.ServiceUnavailableException;
 import com.northcoders.record_shop.model.Album;
 import com.northcoders.record_shop.service.AlbumServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
@@ -34,6 +68,14 @@ public class AlbumControllerTests {
     @Mock
     private AlbumServiceImpl mockAlbumServiceImpl;
 
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    private final ObjectMapper responseCacheMapper = Mockito.spy(new ObjectMapper());
+
+    @Spy
+    private AlbumResponseCache albumResponseCache = new AlbumResponseCache(responseCacheMapper, 100, 256, new SimpleMeterRegistry());
+
     @InjectMocks
     private AlbumController albumController;
 
@@ -42,10 +84,13 @@ public class AlbumControllerTests {
 
     private ObjectMapper mapper;
 
+    private SimpleMeterRegistry meterRegistry;
+
     @BeforeEach
     public void setup(){
+        meterRegistry = new SimpleMeterRegistry();
         mockMvcController = MockMvcBuilders.standaloneSetup(albumController)
-                .setControllerAdvice(new GlobalExceptionHandler())
+                .setControllerAdvice(new GlobalExceptionHandler(meterRegistry))
                 .build();
         mapper = new ObjectMapper();
     }
@@ -72,6 +117,84 @@ public class AlbumControllerTests {
                 .andExpect(MockMvcResultMatchers.jsonPath("$[1].releaseYear").value(1995));
     }
 
+    @Test
+    void testGetAllAlbums_WithLimit_ReturnsPageAndNextCursor() throws Exception{
+        List<Album> albums = new ArrayList<>();
+        albums.add(new Album(3L, "Oasis", 1994, Album.AlbumGenres.BRITPOP, "Definitely Maybe"));
+        albums.add(new Album(4L, "Oasis", 1995, Album.AlbumGenres.BRITPOP, "What's the Story Morning Glory?"));
+
+        when(mockAlbumServiceImpl.getAlbumsAfter(2L, 2)).thenReturn(albums);
+        this.mockMvcController.perform(
+                        MockMvcRequestBuilders.get("/albums/all?limit=2&after=2"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(AlbumController.NEXT_CURSOR_HEADER, "4"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value(3))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[1].id").value(4));
+    }
+
+    @Test
+    void testGetAllAlbums_LastPage_HasNoNextCursor() throws Exception{
+        List<Album> albums = new ArrayList<>();
+        albums.add(new Album(5L, "Oasis", 1997, Album.AlbumGenres.BRITPOP, "Be Here Now"));
+
+        when(mockAlbumServiceImpl.getAlbumsAfter(4L, 2)).thenReturn(albums);
+        this.mockMvcController.perform(
+                        MockMvcRequestBuilders.get("/albums/all?limit=2&after=4"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.header().doesNotExist(AlbumController.NEXT_CURSOR_HEADER))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value(5));
+    }
+
+    @Test
+    void testGetAllAlbums_LimitBelowOne_ReturnsBadRequest() throws Exception{
+        this.mockMvcController.perform(
+                        MockMvcRequestBuilders.get("/albums/all?limit=0"))
+                .andExpect(status().isBadRequest());
+        this.mockMvcController.perform(
+                        MockMvcRequestBuilders.get("/albums/all?limit=-5&after=2"))
+                .andExpect(status().isBadRequest());
+        verify(mockAlbumServiceImpl, never()).getAlbumsAfter(any(), anyInt());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testStreamAllAlbums_WritesNewlineDelimitedJson() throws Exception{
+        Album album1 = new Album(1L, "Oasis", 1994, Album.AlbumGenres.BRITPOP, "Definitely Maybe");
+        Album album2 = new Album(2L, "Blur", 1994, Album.AlbumGenres.BRITPOP, "Parklife");
+
+        doAnswer(invocation -> {
+            Consumer<Album> consumer = invocation.getArgument(0);
+            consumer.accept(album1);
+            consumer.accept(album2);
+            return null;
+        }).when(mockAlbumServiceImpl).streamAllAlbums(any(Consumer.class));
+
+        String body = this.mockMvcController.perform(MockMvcRequestBuilders.get("/albums/all/stream"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(mapper.readValue(lines[0], Album.class)).isEqualTo(album1);
+        assertThat(mapper.readValue(lines[1], Album.class)).isEqualTo(album2);
+    }
+
+    @Test
+    void testExportSnapshot_StreamsTheSnapshotAsAnAttachment() throws Exception{
+        byte[] snapshot = {0x52, 0x53, 0x53, 0x4E, 0x41, 0x50, 0x00, 0x01};
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(0).write(snapshot);
+            return null;
+        }).when(mockAlbumServiceImpl).writeSnapshot(any(OutputStream.class));
+
+        this.mockMvcController.perform(MockMvcRequestBuilders.get("/albums/snapshot"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_OCTET_STREAM))
+                .andExpect(MockMvcResultMatchers.header().string("Content-Disposition", "attachment; filename=\"albums.snapshot\""))
+                .andExpect(content().bytes(snapshot));
+    }
+
     @Test
     void testGetAlbumById_IdExists() throws Exception{
         Album album1 = new Album(1L, "Oasis", 1994, Album.AlbumGenres.BRITPOP, "Definitely Maybe");
@@ -88,6 +211,192 @@ public class AlbumControllerTests {
 
     }
 
+    @Test
+    void testGetAlbumById_SameVersionIsSerializedOnce() throws Exception{
+        Album album1 = new Album(1L, "Oasis", 1994, Album.AlbumGenres.BRITPOP, "Definitely Maybe", 0L);
+        Album album1Updated = new Album(1L, "Oasis", 1994, Album.AlbumGenres.BRITPOP, "Definitely Maybe (Remastered)", 1L);
+
+        when(mockAlbumServiceImpl.getAlbumById(1L)).thenReturn(album1, new Album(1L, "Oasis", 1994, Album.AlbumGenres.BRITPOP, "Definitely Maybe", 0L), album1Updated);
+        this.mockMvcController.perform(MockMvcRequestBuilders.get("/albums/1")).andExpect(status().isOk());
+        this.mockMvcController.perform(MockMvcRequestBuilders.get("/albums/1"))
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.name").value("Definitely Maybe"));
+        verify(responseCacheMapper, times(1)).writeValueAsBytes(any());
+
+        this.mockMvcController.perform(MockMvcRequestBuilders.get("/albums/1"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.name").value("Definitely Maybe (Remastered)"));
+        verify(responseCacheMapper, times(2)).writeValueAsBytes(any());
+    }
+
+    @Test
+    void testGetAlbumsByGenre_GzipIsServedWhenAccepted() throws Exception{
+        List<Album> albums = new ArrayList<>();
+        for (long i = 1; i <= 20; i++) {
+            albums.add(new Album(i, "Oasis", 1994, Album.AlbumGenres.BRITPOP, "Definitely Maybe " + i));
+        }
+        when(mockAlbumServiceImpl.getAlbumsByGenre(Album.AlbumGenres.BRITPOP)).thenReturn(albums);
+
+        byte[] body = this.mockMvcController.perform(MockMvcRequestBuilders.get("/albums/by-genre?genre=BRITPOP")
+                        .header("Accept-Encoding", "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string("Content-Encoding", "gzip"))
+                .andExpect(MockMvcResultMatchers.header().string("Vary", "Accept, Accept-Encoding"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            Album[] decoded = mapper.readValue(gzip.readAllBytes(), Album[].class);
+            assertThat(decoded).containsExactlyElementsOf(albums);
+        }
+    }
+
+    @Test
+    void testGetAlbumsByGenre_UnacceptableAccept_ReturnsNotAcceptable() throws Exception{
+        List<Album> albums = List.of(new Album(1L, "Oasis", 1994, Album.AlbumGenres.BRITPOP, "Definitely Maybe", 2L));
+        when(mockAlbumServiceImpl.getAlbumsByGenre(Album.AlbumGenres.BRITPOP)).thenReturn(albums);
+        when(mockAlbumServiceImpl.getCatalogVersion()).thenReturn(new CatalogVersion("7", 1_000L));
+
+        this.mockMvcController.perform(MockMvcRequestBuilders.get("/albums/by-genre?genre=BRITPOP")
+                        .header("Accept", "application/xml"))
+                .andExpect(status().isNotAcceptable());
+        this.mockMvcController.perform(MockMvcRequestBuilders.get("/albums/by-genre?genre=BRITPOP")
+                        .header("Accept", "application/json;q=0, application/xml"))
+                .andExpect(status().isNotAcceptable());
+        this.mockMvcController.perform(MockMvcRequestBuilders.get("/albums/by-genre?genre=BRITPOP")
+                        .header("Accept", "*/*"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON));
+        this.mockMvcController.perform(MockMvcRequestBuilders.get("/albums/by-genre?genre=BRITPOP"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    void testGetAlbumsByGenre_CborAndSmileAreServedWhenAccepted() throws Exception{
+        List<Album> albums = List.of(new Album(1L, "Oasis", 1994, Album.AlbumGenres.BRITPOP, "Definitely Maybe", 2L),
+                new Album(2L, "Blur", 1994, Album.AlbumGenres.BRITPOP, "Parklife", 0L));
+        when(mockAlbumServiceImpl.getAlbumsByGenre(Album.AlbumGenres.BRITPOP)).thenReturn(albums);
+        when(mockAlbumServiceImpl.getCatalogVersion()).thenReturn(new CatalogVersion("7", 1_000L));
+
+        byte[] cbor = this.mockMvcController.perform(MockMvcRequestBuilders.get("/albums/by-genre?genre=BRITPOP")
+                        .header("Accept", "application/cbor, */*;q=0.8").header("Accept-Encoding", "gzip"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andExpect(MockMvcResultMatchers.header().string("ETag", "\"7-cbor\""))
+                .andExpect(MockMvcResultMatchers.header().doesNotExist("Content-Encoding"))
+                .andReturn().getResponse().getContentAsByteArray();
+        byte[] smile = this.mockMvcController.perform(MockMvcRequestBuilders.get("/albums/by-genre?genre=BRITPOP")
+                        .header("Accept", "application/json;q=0.5, application/x-jackson-smile"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(AlbumController.APPLICATION_SMILE))
+                .andReturn().getResponse().getContentAsByteArray();
+        this.mockMvcController.perform(MockMvcRequestBuilders.get("/albums/by-genre?genre=BRITPOP")
+                        .header("Accept", "application/cbor").header("If-None-Match", "\"7-cbor\""))
+                .andExpect(status().isNotModified())
+                .andExpect(MockMvcResultMatchers.header().string("ETag", "\"7-cbor\""));
+        this.mockMvcController.perform(MockMvcRequestBuilders.get("/albums/by-genre?genre=BRITPOP")
+                        .header("Accept", "application/x-jackson-smile").header("If-None-Match", "\"7-smile\""))
+                .andExpect(status().isNotModified())
+                .andExpect(MockMvcResultMatchers.header().string("ETag", "\"7-smile\""));
+
+        assertThat(new CBORMapper().readValue(cbor, Album[].class)).containsExactlyElementsOf(albums);
+        assertThat(new SmileMapper().readValue(smile, Album[].class)).containsExactlyElementsOf(albums);
+        assertThat(cbor.length).isLessThan(mapper.writeValueAsBytes(albums).length);
+    }
+
+    @Test
+    void testGetAllAlbums_CborIsNegotiated() throws Exception{
+        List<Album> albums = List.of(new Album(1L, "Oasis", 1994, Album.AlbumGenres.BRITPOP, "Definitely Maybe"));
+        when(mockAlbumServiceImpl.getAllAlbums()).thenReturn(albums);
+
+        byte[] cbor = this.mockMvcController.perform(MockMvcRequestBuilders.get("/albums/all")
+                        .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertThat(new CBORMapper().readValue(cbor, Album[].class)).containsExactlyElementsOf(albums);
+    }
+
+    @Test
+    void testGetAlbumById_UnchangedVersionReturns304WithoutSerializing() throws Exception{
+        Album album = new Album(1L, "Oasis", 1994, Album.AlbumGenres.BRITPOP, "Definitely Maybe", 3L);
+        when(mockAlbumServiceImpl.getAlbumById(1L)).thenReturn(album);
+
+        this.mockMvcController.perform(MockMvcRequestBuilders.get("/albums/1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string("ETag", "\"3\""));
+        this.mockMvcController.perform(MockMvcRequestBuilders.get("/albums/1").header("If-None-Match", "\"3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(MockMvcResultMatchers.header().string("ETag", "\"3\""))
+                .andExpect(content().bytes(new byte[0]));
+        this.mockMvcController.perform(MockMvcRequestBuilders.get("/albums/1").header("If-None-Match", "\"2\""))
+                .andExpect(status().isOk());
+
+        verify(albumResponseCache, times(2)).album(album);
+    }
+
+    @Test
+    void testGetAlbumsByGenre_UnchangedCatalogReturns304WithoutQuerying() throws Exception{
+        long lastModified = 1_700_000_000_000L;
+        when(mockAlbumServiceImpl.getCatalogVersion()).thenReturn(new CatalogVersion("k3f.7", lastModified));
+        when(mockAlbumServiceImpl.getAlbumsByGenre(Album.AlbumGenres.BRITPOP))
+                .thenReturn(List.of(new Album(1L, "Oasis", 1994, Album.AlbumGenres.BRITPOP, "Definitely Maybe")));
+
+        String lastModifiedHeader = this.mockMvcController.perform(MockMvcRequestBuilders.get("/albums/by-genre?genre=BRITPOP"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string("ETag", "\"k3f.7\""))
+                .andExpect(MockMvcResultMatchers.header().string("Cache-Control", "no-cache"))
+                .andReturn().getResponse().getHeader("Last-Modified");
+        this.mockMvcController.perform(MockMvcRequestBuilders.get("/albums/by-genre?genre=BRITPOP")
+                        .header("If-None-Match", "W/\"k3f.6\", \"k3f.7-gzip\""))
+                .andExpect(status().isNotModified())
+                .andExpect(MockMvcResultMatchers.header().string("ETag", "\"k3f.7\""));
+        this.mockMvcController.perform(MockMvcRequestBuilders.get("/albums/by-genre?genre=BRITPOP")
+                        .header("Accept-Encoding", "gzip").header("If-None-Match", "\"k3f.7-gzip\""))
+                .andExpect(status().isNotModified())
+                .andExpect(MockMvcResultMatchers.header().string("ETag", "\"k3f.7-gzip\""));
+        this.mockMvcController.perform(MockMvcRequestBuilders.get("/albums/by-genre?genre=BRITPOP")
+                        .header("If-Modified-Since", lastModifiedHeader))
+                .andExpect(status().isNotModified());
+
+        verify(mockAlbumServiceImpl, times(1)).getAlbumsByGenre(Album.AlbumGenres.BRITPOP);
+    }
+
+    @Test
+    void testGetAlbumsByReleaseYearAndName_UnchangedCatalogReturns304WithoutQuerying() throws Exception{
+        Album album = new Album(1L, "Oasis", 1994, Album.AlbumGenres.BRITPOP, "Definitely Maybe");
+        when(mockAlbumServiceImpl.getCatalogVersion()).thenReturn(new CatalogVersion("k3f.7", 1_700_000_000_000L));
+        when(mockAlbumServiceImpl.getAlbumsByReleaseYear(1994)).thenReturn(List.of(album));
+        when(mockAlbumServiceImpl.getAlbumsByName("Definitely Maybe")).thenReturn(List.of(album));
+
+        for (String url : List.of("/albums/by-release-year?releaseYear=1994", "/albums/by-name?name=Definitely Maybe")) {
+            this.mockMvcController.perform(MockMvcRequestBuilders.get(url))
+                    .andExpect(status().isOk())
+                    .andExpect(MockMvcResultMatchers.header().string("ETag", "\"k3f.7\""))
+                    .andExpect(MockMvcResultMatchers.header().exists("Last-Modified"))
+                    .andExpect(MockMvcResultMatchers.jsonPath("$[0].name").value("Definitely Maybe"));
+            this.mockMvcController.perform(MockMvcRequestBuilders.get(url).header("If-None-Match", "\"k3f.7\""))
+                    .andExpect(status().isNotModified())
+                    .andExpect(MockMvcResultMatchers.header().string("ETag", "\"k3f.7\""));
+        }
+
+        verify(mockAlbumServiceImpl, times(1)).getAlbumsByReleaseYear(1994);
+        verify(mockAlbumServiceImpl, times(1)).getAlbumsByName("Definitely Maybe");
+    }
+
+    @Test
+    void testGetAlbumsByArtist_CatalogChangedReturnsFreshList() throws Exception{
+        when(mockAlbumServiceImpl.getCatalogVersion()).thenReturn(new CatalogVersion("k3f.8", 1_700_000_000_000L));
+        when(mockAlbumServiceImpl.getAlbumsByArtist("Oasis"))
+                .thenReturn(List.of(new Album(1L, "Oasis", 1994, Album.AlbumGenres.BRITPOP, "Definitely Maybe")));
+
+        this.mockMvcController.perform(MockMvcRequestBuilders.get("/albums/by-artist?artist=Oasis")
+                        .header("If-None-Match", "\"k3f.7\""))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string("ETag", "\"k3f.8\""))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].name").value("Definitely Maybe"));
+    }
+
     @Test
     void testGetAlbumById_IdNotExists() throws Exception{
         Long idNotExists = 100L;
@@ -100,6 +409,19 @@ public class AlbumControllerTests {
                 .andExpect(MockMvcResultMatchers.jsonPath("$").value(errorMessage));
     }
 
+    @Test
+    void testNotFoundResponsesAreCountedPerEndpoint() throws Exception{
+        when(mockAlbumServiceImpl.getAlbumById(100L)).thenThrow(new ItemNotFoundException("not found"));
+
+        this.mockMvcController.perform(MockMvcRequestBuilders.get("/albums/100")).andExpect(status().isNotFound());
+        this.mockMvcController.perform(MockMvcRequestBuilders.get("/albums/100")).andExpect(status().isNotFound());
+        this.mockMvcController.perform(MockMvcRequestBuilders.get("/albums/by-genre").param("genre", "jazz"))
+                .andExpect(status().isNotFound());
+
+        assertThat(meterRegistry.get("albums.not-found").tag("uri", "/albums/{id}").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("albums.not-found").tag("uri", "/albums/by-genre").counter().count()).isEqualTo(1);
+    }
+
     @Test
     void testAddAlbum() throws Exception{
         Album album = new Album(null,"The Beatles" , 1969, Album.AlbumGenres.ROCK,"Abbey Road");
@@ -117,6 +439,77 @@ public class AlbumControllerTests {
 
     }
 
+    @Test
+    void testIngestAlbum_ReturnsAcceptedWithTheTrackingLocation() throws Exception{
+        Album album = new Album(null,"The Beatles" , 1969, Album.AlbumGenres.ROCK,"Abbey Road");
+
+        when(mockAlbumServiceImpl.ingestAlbum(album)).thenReturn(IngestStatus.queued(42));
+        when(mockAlbumServiceImpl.getIngestStatus(42)).thenReturn(IngestStatus.created(42, 7));
+        this.mockMvcController.perform(MockMvcRequestBuilders.post("/albums/ingest")
+                        .contentType("application/json")
+                        .content(mapper.writeValueAsString(album)))
+                .andExpect(status().isAccepted())
+                .andExpect(MockMvcResultMatchers.header().string("Location", "/albums/ingest/42"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.state").value("QUEUED"));
+        this.mockMvcController.perform(MockMvcRequestBuilders.get("/albums/ingest/42"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.state").value("CREATED"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.albumId").value(7));
+    }
+
+    @Test
+    void testIngestAlbum_QueueFullReturns503WithRetryAfter() throws Exception{
+        when(mockAlbumServiceImpl.ingestAlbum(any())).thenThrow(
+                new ServiceUnavailableException("The ingest queue is full (10000 albums waiting); retry shortly.", Duration.ofSeconds(1)));
+
+        this.mockMvcController.perform(MockMvcRequestBuilders.post("/albums/ingest")
+                        .contentType("application/json")
+                        .content(mapper.writeValueAsString(new Album(null, "Blur", 1994, Album.AlbumGenres.BRITPOP, "Parklife"))))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(MockMvcResultMatchers.header().string("Retry-After", "1"))
+                .andExpect(content().string("The ingest queue is full (10000 albums waiting); retry shortly."));
+    }
+
+    @Test
+    void testAddAlbums_JsonArray_AllCreated() throws Exception{
+        List<Album> albums = List.of(
+                new Album(null, "Blur", 1994, Album.AlbumGenres.BRITPOP, "Parklife"),
+                new Album(null, "Pulp", 1994, Album.AlbumGenres.BRITPOP, "His 'n' Hers"));
+        BatchInsertResult result = new BatchInsertResult(2, 2, 0, 5, 400.0,
+                List.of(BatchItemResult.created(0, 10L), BatchItemResult.created(1, 11L)));
+        when(mockAlbumServiceImpl.addAlbums(any())).thenReturn(result);
+
+        this.mockMvcController.perform(MockMvcRequestBuilders.post("/albums/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(albums)))
+                .andExpect(status().isCreated())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.created").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.items[1].id").value(11));
+    }
+
+    @Test
+    void testAddAlbums_Ndjson_MalformedLineIsPassedOnAsFailedItem() throws Exception{
+        String body = mapper.writeValueAsString(new Album(null, "Blur", 1994, Album.AlbumGenres.BRITPOP, "Parklife"))
+                + "\n\n{not json}\n";
+        List<Album> received = new ArrayList<>();
+        when(mockAlbumServiceImpl.addAlbums(any())).thenAnswer(invocation -> {
+            Iterator<Album> iterator = invocation.getArgument(0);
+            iterator.forEachRemaining(received::add);
+            return new BatchInsertResult(2, 1, 1, 5, 200.0,
+                    List.of(BatchItemResult.created(0, 10L), BatchItemResult.failed(1, "Album is missing or malformed.")));
+        });
+
+        this.mockMvcController.perform(MockMvcRequestBuilders.post("/albums/batch")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(body))
+                .andExpect(status().isMultiStatus())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.failed").value(1));
+
+        assertThat(received).hasSize(2);
+        assertThat(received.get(0).getName()).isEqualTo("Parklife");
+        assertThat(received.get(1)).isNull();
+    }
+
     @Test
     void testUpdateAlbumById_AlbumIdNotFound() throws Exception{
         Long idNotExists = 100L;
@@ -147,6 +540,45 @@ public class AlbumControllerTests {
                 .andExpect(MockMvcResultMatchers.jsonPath("$.genre").value(Album.AlbumGenres.ROCK.toString()));
     }
 
+    @Test
+    void testUpdateAlbumById_IfMatchPassesExpectedVersionAndReturnsETag() throws Exception{
+        Album albumUpdated = new Album(1L,"The Beatles" , 1969, Album.AlbumGenres.ROCK,"Abbey Road", 4L);
+
+        when(mockAlbumServiceImpl.updateAlbumById(eq(1L), any(Album.class), eq(3L))).thenReturn(albumUpdated);
+        this.mockMvcController.perform(MockMvcRequestBuilders.put("/albums/1")
+                        .header("If-Match", "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(albumUpdated)))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string("ETag", "\"4\""))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.version").value(4));
+    }
+
+    @Test
+    void testUpdateAlbumById_IfMatchStale() throws Exception{
+        Album album = new Album(1L,"The Beatles" , 1969, Album.AlbumGenres.ROCK,"Abbey Road");
+        String errorMessage = "The album with id '1' has been modified since version 2.";
+
+        when(mockAlbumServiceImpl.updateAlbumById(eq(1L), any(Album.class), eq(2L)))
+                .thenThrow(new PreconditionFailedException(errorMessage));
+        this.mockMvcController.perform(MockMvcRequestBuilders.put("/albums/1")
+                        .header("If-Match", "\"2\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(album)))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(content().string(errorMessage));
+    }
+
+    @Test
+    void testDeleteAlbumById_IfMatchPassesExpectedVersion() throws Exception{
+        String expectedMessage = "Album with ID 1 is deleted successfully.";
+        when(mockAlbumServiceImpl.deleteAlbumById(1L, 5L)).thenReturn(expectedMessage);
+
+        this.mockMvcController.perform(MockMvcRequestBuilders.delete("/albums/1").header("If-Match", "\"5\""))
+                .andExpect(status().isOk())
+                .andExpect(content().string(expectedMessage));
+    }
+
     @Test
     void testDeleteAlbumById_AlbumFound() throws Exception{
         Long albumId = 1L;
@@ -293,6 +725,72 @@ public class AlbumControllerTests {
                 .andExpect(MockMvcResultMatchers.content().string(errorMessage));
     }
 
+    @Test
+    void testGetFacets_ReturnsCountsAndTopArtists() throws Exception {
+        AlbumFacets facets = new AlbumFacets(3, Map.of(Album.AlbumGenres.BRITPOP, 3L), Map.of(1994, 2L, 1995, 1L),
+                List.of(new AlbumFacets.ArtistCount("Oasis", 2)));
+        when(mockAlbumServiceImpl.getFacets(1)).thenReturn(facets);
+
+        this.mockMvcController.perform(MockMvcRequestBuilders.get("/albums/facets").param("topArtists", "1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.total").value(3))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.genres.BRITPOP").value(3))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.releaseYears.1994").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.topArtists[0].artist").value("Oasis"));
+    }
+
+    @Test
+    void testSuggestAlbums_ReturnsMatchesFromTheService() throws Exception {
+        when(mockAlbumServiceImpl.suggestAlbums("oas", 5)).thenReturn(List.of(
+                new Album(1L, "Oasis", 1994, Album.AlbumGenres.BRITPOP, "Definitely Maybe", 0L)));
+
+        this.mockMvcController.perform(MockMvcRequestBuilders.get("/albums/suggest").param("q", "oas").param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].name").value("Definitely Maybe"));
+    }
+
+    @Test
+    void testFuzzySearchAlbums_ReturnsRankedMatchesWithTheirDistance() throws Exception {
+        Album theBends = new Album(13L, "Radiohead", 1995, Album.AlbumGenres.ALTERNATIVE_ROCK, "The Bends", 0L);
+        when(mockAlbumServiceImpl.fuzzySearchAlbums("Radiohed", null, 10, Duration.ofMillis(20)))
+                .thenReturn(new FuzzySearchResult(List.of(new FuzzySearchResult.Match(theBends, 1)), true));
+
+        this.mockMvcController.perform(MockMvcRequestBuilders.get("/albums/fuzzy").param("artist", "Radiohed")
+                        .param("budgetMs", "20"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.complete").value(true))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.matches[0].album.artist").value("Radiohead"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.matches[0].distance").value(1));
+    }
+
+    @Test
+    void testFuzzySearchAlbums_RequiresAnArtistOrAName() throws Exception {
+        this.mockMvcController.perform(MockMvcRequestBuilders.get("/albums/fuzzy").param("name", " "))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testFilterAlbums_ReturnsTheCountAndAPageOfIds() throws Exception {
+        AlbumFilter filter = new AlbumFilter.And(List.of(new AlbumFilter.Genre(Album.AlbumGenres.BRITPOP),
+                new AlbumFilter.ReleaseYears(1990, 1999)));
+        when(mockAlbumServiceImpl.filterAlbums(filter, 10L, 2)).thenReturn(new AlbumFilterResult(5, List.of(12L, 14L), 14L));
+
+        this.mockMvcController.perform(MockMvcRequestBuilders.get("/albums/filter")
+                        .param("q", "genre:BRITPOP AND year:1990..1999").param("after", "10").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.count").value(5))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.ids[1]").value(14))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.next").value(14));
+    }
+
+    @Test
+    void testFilterAlbums_RejectsAMalformedFilter() throws Exception {
+        this.mockMvcController.perform(MockMvcRequestBuilders.get("/albums/filter").param("q", "genre:ROCK AND"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Expected genre:, year: or artist: at position 14."));
+    }
+
     @Test
     void testGetAlbumsByName_NameNotFound() throws Exception {
         String nameNotExists = "Not";
@@ -331,5 +829,97 @@ public class AlbumControllerTests {
 
     }
 
+    @Test
+    void testSearchAlbums_CombinesCriteriaIntoOneQuery() throws Exception {
+        List<Album> albums = new ArrayList<>();
+        albums.add(new Album(14L, "Oasis", 1997, Album.AlbumGenres.BRITPOP, "Be Here Now"));
+        albums.add(new Album(2L, "Oasis", 1995, Album.AlbumGenres.BRITPOP, "What's the Story Morning Glory?"));
+        AlbumSearchCriteria criteria = new AlbumSearchCriteria("Oasis", null, Album.AlbumGenres.BRITPOP, 1994, 1997);
+        PageRequest pageRequest = PageRequest.of(0, 2, Sort.by(Sort.Direction.DESC, "releaseYear").and(Sort.by("id")));
+        when(mockAlbumServiceImpl.searchAlbums(criteria, pageRequest)).thenReturn(new PageImpl<>(albums, pageRequest, 3));
+
+        this.mockMvcController.perform(MockMvcRequestBuilders.get(
+                        "/albums/search?artist=Oasis&genre=britpop&fromYear=1994&toYear=1997&size=2&sort=releaseYear,desc"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.content[0].name").value("Be Here Now"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.content[1].releaseYear").value(1995))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.page.totalElements").value(3))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.page.totalPages").value(2));
+    }
+
+    @Test
+    void testSearchAlbums_FieldsReturnOnlyThoseFields() throws Exception {
+        List<AlbumView> views = List.of(new AlbumView(14L, null, null, null, "Be Here Now", null));
+        AlbumSearchCriteria criteria = new AlbumSearchCriteria("Oasis", null, null, null, null);
+        PageRequest pageRequest = PageRequest.of(0, 20, Sort.by("id"));
+        when(mockAlbumServiceImpl.searchAlbumViews(criteria, pageRequest, Set.of("name")))
+                .thenReturn(new PageImpl<>(views, pageRequest, 1));
+
+        this.mockMvcController.perform(MockMvcRequestBuilders.get("/albums/search?artist=Oasis&fields=name"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.content[0].id").value(14))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.content[0].name").value("Be Here Now"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.content[0].artist").doesNotExist())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.content[0].releaseYear").doesNotExist())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.page.totalElements").value(1));
+        verify(mockAlbumServiceImpl, times(0)).searchAlbums(any(), any());
+    }
+
+    @Test
+    void testGetAllAlbums_FieldsPageKeepsTheCursorAndFields() throws Exception {
+        List<AlbumView> views = List.of(new AlbumView(3L, null, null, null, "Definitely Maybe", null),
+                new AlbumView(4L, null, null, null, "What's the Story Morning Glory?", null));
+        when(mockAlbumServiceImpl.getAlbumViewsAfter(2L, 2, Set.of("id", "name"))).thenReturn(views);
+
+        this.mockMvcController.perform(MockMvcRequestBuilders.get("/albums/all?limit=2&after=2&fields=id,name"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(AlbumController.NEXT_CURSOR_HEADER, "4"))
+                .andExpect(MockMvcResultMatchers.header().string("Link",
+                        "</albums/all?limit=2&after=4&fields=id,name>; rel=\"next\""))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[1].name").value("What's the Story Morning Glory?"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[1].genre").doesNotExist());
+    }
+
+    @Test
+    void testGetAlbumsByReleaseYearRange_RejectsAnUnknownField() throws Exception {
+        this.mockMvcController.perform(MockMvcRequestBuilders.get("/albums/by-release-year-range?from=1990&to=1999&fields=id,title"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Unknown field 'title'; choose from id, artist, releaseYear, genre, name, version."));
+    }
 
+    @Test
+    void testGetAlbumsByReleaseYearRange_SortsAndBreaksTiesTheSameWay() throws Exception {
+        List<Album> albums = List.of(new Album(13L, "Radiohead", 1995, Album.AlbumGenres.ALTERNATIVE_ROCK, "The Bends"),
+                new Album(2L, "Oasis", 1995, Album.AlbumGenres.BRITPOP, "What's the Story Morning Glory?"));
+        PageRequest pageRequest = PageRequest.of(0, 2, Sort.by(Sort.Direction.DESC, "releaseYear").and(Sort.by(Sort.Direction.DESC, "id")));
+        when(mockAlbumServiceImpl.getAlbumsByReleaseYearRange(1990, 1999, pageRequest)).thenReturn(new PageImpl<>(albums, pageRequest, 9));
+
+        this.mockMvcController.perform(MockMvcRequestBuilders.get(
+                        "/albums/by-release-year-range?from=1990&to=1999&size=2&sort=releaseYear,desc"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.content[0].name").value("The Bends"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.page.totalElements").value(9))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.page.totalPages").value(5));
+    }
+
+    @Test
+    void testGetAlbumsByReleaseYearRange_RejectsAReversedRange() throws Exception {
+        this.mockMvcController.perform(MockMvcRequestBuilders.get("/albums/by-release-year-range?from=1999&to=1990"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("'from' (1999) must not be after 'to' (1990)."));
+    }
+
+    @Test
+    void testSearchAlbums_UnknownSortField() throws Exception {
+        this.mockMvcController.perform(MockMvcRequestBuilders.get("/albums/search?sort=price,desc"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Cannot sort by 'price,desc'."));
+    }
+
+    @Test
+    void testSearchAlbums_GenreNotRecognised() throws Exception {
+        this.mockMvcController.perform(MockMvcRequestBuilders.get("/albums/search?genre=HIPPOP"))
+                .andExpect(status().isNotFound())
+                .andExpect(content().string("Genre 'HIPPOP' is not recognized."));
+    }
 }
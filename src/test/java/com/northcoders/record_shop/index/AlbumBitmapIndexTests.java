@@ -0,0 +1,142 @@
+package com.northcoders.record_shop.index;
+
+import com.northcoders.record_shop.dto.AlbumFilter;
+import com.northcoders.record_shop.dto.AlbumFilterResult;
+import com.northcoders.record_shop.event.AlbumChangedEvent;
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.repository.AlbumRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AlbumBitmapIndexTests {
+    private final Album parklife = new Album(1L, "Blur", 1994, Album.AlbumGenres.BRITPOP, "Parklife", 0L);
+    private final Album definitelyMaybe = new Album(2L, "Oasis", 1994, Album.AlbumGenres.BRITPOP, "Definitely Maybe", 0L);
+    private final Album okComputer = new Album(3L, "Radiohead", 1997, Album.AlbumGenres.ALTERNATIVE_ROCK, "OK Computer", 0L);
+    private final Album theBends = new Album(4L, "Radiohead", 1995, Album.AlbumGenres.ALTERNATIVE_ROCK, "The Bends", 0L);
+    private final Album abbeyRoad = new Album(5L, "The Beatles", 1969, Album.AlbumGenres.ROCK, "Abbey Road", 0L);
+    private final Album planets = new Album(6L, "Gustav Holst", 1918, Album.AlbumGenres.CLASSIC, "The Planets", 0L);
+
+    private AlbumRepository albumRepository;
+    private AlbumBitmapIndex albumBitmapIndex;
+
+    @BeforeEach
+    public void setup() {
+        albumRepository = mock(AlbumRepository.class);
+        albumBitmapIndex = new AlbumBitmapIndex(albumRepository, mock(PlatformTransactionManager.class));
+        albumBitmapIndex.load(List.of(parklife, definitelyMaybe, okComputer, theBends, abbeyRoad, planets));
+    }
+
+    private List<Long> ids(String filter) {
+        return albumBitmapIndex.filter(AlbumFilter.parse(filter), null, 100).ids();
+    }
+
+    @Test
+    void testFilter_CombinesGenresYearRangesAndArtistsWithAndOrNot() {
+        assertThat(ids("genre:britpop")).containsExactly(1L, 2L);
+        assertThat(ids("year:1994..1997 AND NOT genre:BRITPOP")).containsExactly(3L, 4L);
+        assertThat(ids("year:..1969 or artist:\"Radiohead\"")).containsExactly(3L, 4L, 5L, 6L);
+        assertThat(ids("genre:ROCK,CLASSIC OR (year:1995.. AND NOT artist:Oasis,Radiohead)")).containsExactly(5L, 6L);
+        assertThat(ids("NOT year:1990..1999")).containsExactly(5L, 6L);
+        assertThat(ids("artist:\"The Beatles\" AND year:1970..")).isEmpty();
+        assertThat(ids("artist:radiohead")).isEmpty();
+    }
+
+    @Test
+    void testFilter_CountsEveryMatchAndPagesThroughTheirIds() {
+        List<Album> catalog = new ArrayList<>();
+        for (long id = 1; id <= 10_000; id++) {
+            catalog.add(new Album(id, "Artist " + id % 7, 1950 + (int) (id % 70), Album.AlbumGenres.ROCK, "Album " + id, 0L));
+        }
+        albumBitmapIndex.load(catalog);
+        AlbumFilter filter = AlbumFilter.parse("artist:\"Artist 3\" AND year:2000..2009");
+
+        AlbumFilterResult first = albumBitmapIndex.filter(filter, null, 2);
+        AlbumFilterResult second = albumBitmapIndex.filter(filter, first.next(), 2);
+        AlbumFilterResult countOnly = albumBitmapIndex.filter(filter, null, 0);
+
+        long expected = catalog.stream().filter(album -> album.getArtist().equals("Artist 3")
+                && album.getReleaseYear() >= 2000 && album.getReleaseYear() <= 2009).count();
+        assertThat(first.count()).isEqualTo(expected);
+        assertThat(first.ids()).containsExactly(52L, 59L);
+        assertThat(first.next()).isEqualTo(59L);
+        assertThat(second.ids()).containsExactly(122L, 129L);
+        assertThat(countOnly.count()).isEqualTo(expected);
+        assertThat(countOnly.ids()).isEmpty();
+        assertThat(albumBitmapIndex.filter(filter, 9_999L, 2)).isEqualTo(new AlbumFilterResult(expected, List.of(), null));
+    }
+
+    @Test
+    void testChanges_MoveAlbumsBetweenBitmaps() {
+        Album renamed = new Album(1L, "Blur", 1997, Album.AlbumGenres.ALTERNATIVE_ROCK, "Blur", 1L);
+
+        albumBitmapIndex.onAlbumChanged(AlbumChangedEvent.saved(
+                new Album(7L, "Pulp", 1995, Album.AlbumGenres.BRITPOP, "Different Class", 0L)));
+        albumBitmapIndex.onAlbumChanged(AlbumChangedEvent.saved(renamed));
+        albumBitmapIndex.onAlbumChanged(AlbumChangedEvent.deleted(2L));
+        albumBitmapIndex.onAlbumChanged(AlbumChangedEvent.deleted(6L));
+        albumBitmapIndex.onAlbumChanged(AlbumChangedEvent.deleted(8L));
+
+        assertThat(ids("genre:BRITPOP")).containsExactly(7L);
+        assertThat(ids("year:1997 AND artist:Blur")).containsExactly(1L);
+        assertThat(ids("year:1994")).isEmpty();
+        assertThat(ids("NOT genre:ALTERNATIVE_ROCK")).containsExactly(5L, 7L);
+        assertThat(ids("genre:CLASSIC OR artist:Oasis")).isEmpty();
+        assertThat(albumBitmapIndex.size()).isEqualTo(5);
+    }
+
+    @Test
+    void testParse_RejectsMalformedFiltersWithThePosition() {
+        assertThat(AlbumFilter.parse("NOT genre:rock AND (year:1990 OR artist:\"Sigur R\\\"os\")")).isEqualTo(
+                new AlbumFilter.And(List.of(
+                        new AlbumFilter.Not(new AlbumFilter.Genre(Album.AlbumGenres.ROCK)),
+                        new AlbumFilter.Or(List.of(new AlbumFilter.ReleaseYears(1990, 1990),
+                                new AlbumFilter.Artist("Sigur R\"os"))))));
+        assertThatThrownBy(() -> AlbumFilter.parse("genre:POP")).hasMessage("Genre 'POP' is not recognized at position 6.");
+        assertThatThrownBy(() -> AlbumFilter.parse("label:EMI")).hasMessageStartingWith("Unknown field 'label'");
+        assertThatThrownBy(() -> AlbumFilter.parse("year:199x")).hasMessageStartingWith("Expected a year");
+        assertThatThrownBy(() -> AlbumFilter.parse("(genre:ROCK")).hasMessage("Expected ')' at position 11.");
+        assertThatThrownBy(() -> AlbumFilter.parse("genre:ROCK year:1990")).hasMessageStartingWith("Expected AND, OR");
+        assertThatThrownBy(() -> AlbumFilter.parse("artist:\"Blur")).hasMessageStartingWith("Unterminated");
+        assertThatThrownBy(() -> AlbumFilter.parse(" ")).hasMessage("The filter is empty.");
+    }
+
+    @Test
+    void testRebuild_ServesTheOldBitmapsDuringTheScanAndReplaysChangesByVersion() {
+        List<Long> filteredDuringScan = new ArrayList<>();
+        when(albumRepository.streamAttributesOrderedById()).thenAnswer(invocation -> {
+            // Another thread can still filter while the scan runs.
+            filteredDuringScan.addAll(CompletableFuture.supplyAsync(() -> ids("genre:BRITPOP")).get(5, TimeUnit.SECONDS));
+            // Committed while the scan runs: one it read stale, one it already read, a delete and an insert.
+            albumBitmapIndex.onAlbumChanged(AlbumChangedEvent.saved(
+                    new Album(1L, "Blur", 1994, Album.AlbumGenres.ROCK, "Parklife", 1L)));
+            albumBitmapIndex.onAlbumChanged(AlbumChangedEvent.saved(
+                    new Album(3L, "Radiohead", 1997, Album.AlbumGenres.BRITPOP, "OK Computer", 1L)));
+            albumBitmapIndex.onAlbumChanged(AlbumChangedEvent.deleted(2L));
+            albumBitmapIndex.onAlbumChanged(AlbumChangedEvent.saved(
+                    new Album(7L, "Pulp", 1995, Album.AlbumGenres.BRITPOP, "Different Class", 0L)));
+            return Stream.of(
+                    new Object[]{1L, "Blur", Album.AlbumGenres.BRITPOP, 1994, 2L},
+                    new Object[]{2L, "Oasis", Album.AlbumGenres.BRITPOP, 1994, 0L},
+                    new Object[]{3L, "Radiohead", Album.AlbumGenres.ALTERNATIVE_ROCK, 1997, 0L});
+        });
+
+        albumBitmapIndex.rebuild();
+
+        assertThat(filteredDuringScan).containsExactly(1L, 2L);
+        assertThat(ids("genre:BRITPOP")).containsExactly(1L, 3L, 7L);
+        assertThat(ids("artist:Oasis")).isEmpty();
+        assertThat(albumBitmapIndex.size()).isEqualTo(3);
+    }
+}
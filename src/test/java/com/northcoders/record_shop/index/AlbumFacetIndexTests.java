@@ -0,0 +1,102 @@
+package com.northcoders.record_shop.index;
+
+import com.northcoders.record_shop.dto.AlbumFacets;
+import com.northcoders.record_shop.event.AlbumChangedEvent;
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.repository.AlbumRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AlbumFacetIndexTests {
+    private AlbumRepository albumRepository;
+    private AlbumFacetIndex albumFacetIndex;
+
+    @BeforeEach
+    public void setup(){
+        albumRepository = mock(AlbumRepository.class);
+        when(albumRepository.streamAttributesOrderedById()).thenAnswer(invocation -> Stream.of(
+                new Object[]{1L, "Oasis", Album.AlbumGenres.BRITPOP, 1994, 0L},
+                new Object[]{2L, "Blur", Album.AlbumGenres.BRITPOP, 1994, 0L},
+                new Object[]{3L, "Oasis", Album.AlbumGenres.BRITPOP, 1995, 2L},
+                new Object[]{4L, "The Beatles", Album.AlbumGenres.ROCK, 1969, 0L}));
+        albumFacetIndex = new AlbumFacetIndex(albumRepository, mock(PlatformTransactionManager.class));
+        albumFacetIndex.rebuild();
+    }
+
+    @Test
+    void testRebuild_CountsEveryAlbumFromOneScan(){
+        AlbumFacets facets = albumFacetIndex.getFacets(10);
+
+        assertThat(facets.total()).isEqualTo(4);
+        assertThat(facets.genres()).containsEntry(Album.AlbumGenres.BRITPOP, 3L)
+                .containsEntry(Album.AlbumGenres.ROCK, 1L)
+                .containsEntry(Album.AlbumGenres.CLASSIC, 0L);
+        assertThat(facets.releaseYears().keySet()).containsExactly(1969, 1994, 1995);
+        assertThat(facets.topArtists()).containsExactly(new AlbumFacets.ArtistCount("Oasis", 2),
+                new AlbumFacets.ArtistCount("Blur", 1), new AlbumFacets.ArtistCount("The Beatles", 1));
+        assertThat(albumFacetIndex.getFacets(1).topArtists()).extracting(AlbumFacets.ArtistCount::artist).containsExactly("Oasis");
+    }
+
+    @Test
+    void testChanges_MoveAlbumsBetweenBucketsWithoutQuerying(){
+        Album movedToRock = new Album(1L, "Suede", 1996, Album.AlbumGenres.ROCK, "Definitely Maybe", 1L);
+
+        albumFacetIndex.onAlbumChanged(AlbumChangedEvent.saved(new Album(5L, "Suede", 1996, Album.AlbumGenres.BRITPOP, "Coming Up", 0L)));
+        albumFacetIndex.onAlbumChanged(AlbumChangedEvent.saved(movedToRock));
+        albumFacetIndex.onAlbumChanged(AlbumChangedEvent.deleted(5L));
+        albumFacetIndex.onAlbumChanged(AlbumChangedEvent.deleted(6L));
+
+        AlbumFacets facets = albumFacetIndex.getFacets(10);
+        assertThat(facets.total()).isEqualTo(4);
+        assertThat(facets.genres()).containsEntry(Album.AlbumGenres.BRITPOP, 2L).containsEntry(Album.AlbumGenres.ROCK, 2L);
+        assertThat(facets.releaseYears()).containsEntry(1994, 1L).containsEntry(1996, 1L);
+        assertThat(facets.topArtists()).extracting(AlbumFacets.ArtistCount::artist)
+                .containsExactly("Blur", "Oasis", "Suede", "The Beatles");
+        verify(albumRepository, times(1)).streamAttributesOrderedById();
+    }
+
+    @Test
+    void testReads_ReuseTheSnapshotUntilSomethingChanges(){
+        AlbumFacets first = albumFacetIndex.getFacets(10);
+
+        assertThat(albumFacetIndex.getFacets(10)).isSameAs(first);
+        albumFacetIndex.onAlbumChanged(AlbumChangedEvent.deleted(1L));
+        assertThat(albumFacetIndex.getFacets(10)).isNotSameAs(first);
+        assertThat(albumFacetIndex.getFacets(10).topArtists()).contains(new AlbumFacets.ArtistCount("Oasis", 1));
+    }
+
+    @Test
+    void testRebuild_ReplaysChangesThatArriveDuringTheScanByVersion(){
+        when(albumRepository.streamAttributesOrderedById()).thenAnswer(invocation -> {
+            // Committed while the scan runs: one it already read, one it read stale, a delete and an insert.
+            albumFacetIndex.onAlbumChanged(AlbumChangedEvent.saved(new Album(3L, "Blur", 1995, Album.AlbumGenres.ROCK, "Stale", 1L)));
+            albumFacetIndex.onAlbumChanged(AlbumChangedEvent.saved(new Album(1L, "Suede", 1994, Album.AlbumGenres.ROCK, "Moved", 1L)));
+            albumFacetIndex.onAlbumChanged(AlbumChangedEvent.deleted(2L));
+            albumFacetIndex.onAlbumChanged(AlbumChangedEvent.saved(new Album(2L, "Blur", 1994, Album.AlbumGenres.ROCK, "Gone", 1L)));
+            albumFacetIndex.onAlbumChanged(AlbumChangedEvent.saved(new Album(5L, "Pulp", 1995, Album.AlbumGenres.BRITPOP, "New", 0L)));
+            return Stream.of(
+                    new Object[]{1L, "Oasis", Album.AlbumGenres.BRITPOP, 1994, 0L},
+                    new Object[]{2L, "Blur", Album.AlbumGenres.BRITPOP, 1994, 0L},
+                    new Object[]{3L, "Oasis", Album.AlbumGenres.BRITPOP, 1995, 2L},
+                    new Object[]{4L, "The Beatles", Album.AlbumGenres.ROCK, 1969, 0L});
+        });
+
+        albumFacetIndex.rebuild();
+
+        AlbumFacets facets = albumFacetIndex.getFacets(10);
+        assertThat(facets.total()).isEqualTo(4);
+        assertThat(facets.genres()).containsEntry(Album.AlbumGenres.BRITPOP, 2L).containsEntry(Album.AlbumGenres.ROCK, 2L);
+        assertThat(facets.topArtists()).containsExactly(new AlbumFacets.ArtistCount("Oasis", 1),
+                new AlbumFacets.ArtistCount("Pulp", 1), new AlbumFacets.ArtistCount("Suede", 1),
+                new AlbumFacets.ArtistCount("The Beatles", 1));
+    }
+}
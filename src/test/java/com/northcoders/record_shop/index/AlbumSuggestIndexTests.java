@@ -0,0 +1,164 @@
+package com.northcoders.record_shop.index;
+
+import com.northcoders.record_shop.dto.FuzzySearchResult;
+import com.northcoders.record_shop.event.AlbumChangedEvent;
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.repository.AlbumRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AlbumSuggestIndexTests {
+    private final Album parklife = new Album(1L, "Blur", 1994, Album.AlbumGenres.BRITPOP, "Parklife", 0L);
+    private final Album hydePark = new Album(2L, "Park", 2001, Album.AlbumGenres.ROCK, "Hyde", 0L);
+    private final Album jurassicPark = new Album(3L, "John Williams", 1993, Album.AlbumGenres.CLASSIC, "Jurassic Park", 0L);
+    private final Album skyline = new Album(4L, "Skypark", 2010, Album.AlbumGenres.ROCK, "Skyline", 0L);
+    private final Album homogenic = new Album(5L, "Björk", 1997, Album.AlbumGenres.ALTERNATIVE_ROCK, "Homogenic", 0L);
+    private final Album whatsTheStory = new Album(6L, "Oasis", 1995, Album.AlbumGenres.BRITPOP,
+            "(What's the Story) Morning Glory?", 0L);
+
+    private AlbumRepository albumRepository;
+    private AlbumSuggestIndex albumSuggestIndex;
+
+    @BeforeEach
+    public void setup() {
+        albumRepository = mock(AlbumRepository.class);
+        albumSuggestIndex = new AlbumSuggestIndex(albumRepository, mock(EntityManager.class),
+                mock(PlatformTransactionManager.class));
+        albumSuggestIndex.load(List.of(parklife, hydePark, jurassicPark, skyline, homogenic, whatsTheStory));
+    }
+
+    @Test
+    void testSuggest_RanksWholeWordsThenWordStartsThenInsideWords() {
+        assertThat(albumSuggestIndex.suggest("park", 10))
+                .containsExactly(hydePark, jurassicPark, parklife, skyline);
+        assertThat(albumSuggestIndex.suggest("park", 2)).containsExactly(hydePark, jurassicPark);
+    }
+
+    @Test
+    void testSuggest_IgnoresCaseAccentsAndPunctuation() {
+        assertThat(albumSuggestIndex.suggest("BJO", 10)).containsExactly(homogenic);
+        assertThat(albumSuggestIndex.suggest("whats the story", 10)).containsExactly(whatsTheStory);
+        assertThat(albumSuggestIndex.suggest("  glory?! ", 10)).containsExactly(whatsTheStory);
+        assertThat(albumSuggestIndex.suggest("?!", 10)).isEmpty();
+    }
+
+    @Test
+    void testSuggest_RequiresEveryWordAndOnlyMatchesShortWordsAtWordStarts() {
+        assertThat(albumSuggestIndex.suggest("oasis morn", 10)).containsExactly(whatsTheStory);
+        assertThat(albumSuggestIndex.suggest("blur morn", 10)).isEmpty();
+        assertThat(albumSuggestIndex.suggest("ife", 10)).containsExactly(parklife);
+        assertThat(albumSuggestIndex.suggest("if", 10)).isEmpty();
+        assertThat(albumSuggestIndex.suggest("park j", 10)).containsExactly(jurassicPark);
+    }
+
+    @Test
+    void testChanges_AreVisibleToTheNextSuggestion() {
+        Album renamed = new Album(1L, "Blur", 1994, Album.AlbumGenres.BRITPOP, "Modern Life Is Rubbish", 1L);
+
+        albumSuggestIndex.onAlbumChanged(AlbumChangedEvent.saved(
+                new Album(7L, "Pulp", 1995, Album.AlbumGenres.BRITPOP, "Different Class", 0L)));
+        albumSuggestIndex.onAlbumChanged(AlbumChangedEvent.saved(renamed));
+        albumSuggestIndex.onAlbumChanged(AlbumChangedEvent.deleted(2L));
+
+        assertThat(albumSuggestIndex.suggest("class", 10)).extracting(Album::getId).containsExactly(7L);
+        assertThat(albumSuggestIndex.suggest("rubb", 10)).containsExactly(renamed);
+        assertThat(albumSuggestIndex.suggest("park", 10)).containsExactly(jurassicPark, skyline);
+        assertThat(albumSuggestIndex.size()).isEqualTo(6);
+    }
+
+    @Test
+    void testRebuild_ServesTheOldAlbumsDuringTheScanAndReplaysChangesByVersion() {
+        List<List<Album>> suggestedDuringScan = new ArrayList<>();
+        when(albumRepository.streamAllOrderedById()).thenAnswer(invocation -> {
+            // Another thread can still read while the scan runs.
+            suggestedDuringScan.add(CompletableFuture.supplyAsync(() -> albumSuggestIndex.suggest("park", 10))
+                    .get(5, TimeUnit.SECONDS));
+            // Committed while the scan runs: one it read stale, one it already read, a delete and an insert.
+            albumSuggestIndex.onAlbumChanged(AlbumChangedEvent.saved(
+                    new Album(1L, "Blur", 1994, Album.AlbumGenres.BRITPOP, "Stale", 1L)));
+            albumSuggestIndex.onAlbumChanged(AlbumChangedEvent.saved(
+                    new Album(4L, "Skypark", 2010, Album.AlbumGenres.ROCK, "Renamed", 1L)));
+            albumSuggestIndex.onAlbumChanged(AlbumChangedEvent.deleted(2L));
+            albumSuggestIndex.onAlbumChanged(AlbumChangedEvent.saved(
+                    new Album(7L, "Pulp", 1995, Album.AlbumGenres.BRITPOP, "Different Class", 0L)));
+            return Stream.of(new Album(1L, "Blur", 1994, Album.AlbumGenres.BRITPOP, "Parklife", 2L), hydePark,
+                    jurassicPark, skyline);
+        });
+
+        albumSuggestIndex.rebuild();
+
+        assertThat(suggestedDuringScan).containsExactly(List.of(hydePark, jurassicPark, parklife, skyline));
+        assertThat(albumSuggestIndex.suggest("stale", 10)).isEmpty();
+        assertThat(albumSuggestIndex.suggest("parklife", 10)).extracting(Album::getVersion).containsExactly(2L);
+        assertThat(albumSuggestIndex.suggest("renamed", 10)).extracting(Album::getId).containsExactly(4L);
+        assertThat(albumSuggestIndex.suggest("hyde", 10)).isEmpty();
+        assertThat(albumSuggestIndex.suggest("class", 10)).extracting(Album::getId).containsExactly(7L);
+        assertThat(albumSuggestIndex.size()).isEqualTo(4);
+    }
+
+    @Test
+    void testFuzzy_FindsMisspelledArtistsAndNamesRankedByEdits() {
+        Album theBends = new Album(11L, "Radiohead", 1995, Album.AlbumGenres.ALTERNATIVE_ROCK, "The Bends", 0L);
+        Album abbeyRoad = new Album(12L, "The Beatles", 1969, Album.AlbumGenres.ROCK, "Abbey Road", 0L);
+        Album abbeyRoadLive = new Album(13L, "The Beatles", 1970, Album.AlbumGenres.ROCK, "Abbey Road Live", 0L);
+        Album arrival = new Album(14L, "ABBA", 1976, Album.AlbumGenres.ROCK, "Arrival", 0L);
+        albumSuggestIndex.load(List.of(theBends, abbeyRoad, abbeyRoadLive, arrival));
+
+        FuzzySearchResult radiohead = albumSuggestIndex.fuzzy("Radiohed", null, 10, Duration.ofSeconds(1));
+        assertThat(radiohead.complete()).isTrue();
+        assertThat(radiohead.matches()).containsExactly(new FuzzySearchResult.Match(theBends, 1));
+
+        assertThat(albumSuggestIndex.fuzzy(null, "Abby Road", 10, Duration.ofSeconds(1)).matches())
+                .containsExactly(new FuzzySearchResult.Match(abbeyRoad, 1), new FuzzySearchResult.Match(abbeyRoadLive, 1));
+        assertThat(albumSuggestIndex.fuzzy("beatls", "abey road", 1, Duration.ofSeconds(1)).matches())
+                .containsExactly(new FuzzySearchResult.Match(abbeyRoad, 2));
+        assertThat(albumSuggestIndex.fuzzy("Abbe", null, 10, Duration.ofSeconds(1)).matches())
+                .extracting(FuzzySearchResult.Match::album)
+                .containsExactly(arrival);
+    }
+
+    @Test
+    void testFuzzy_LimitsEditsByWordLength() {
+        albumSuggestIndex.load(List.of(parklife, hydePark, skyline));
+
+        assertThat(albumSuggestIndex.fuzzy(null, "hide", 10, Duration.ofSeconds(1)).matches()).hasSize(1);
+        assertThat(albumSuggestIndex.fuzzy(null, "hid", 10, Duration.ofSeconds(1)).matches()).isEmpty();
+        assertThat(albumSuggestIndex.fuzzy(null, "pakrlief", 10, Duration.ofSeconds(1)).matches()).isEmpty();
+        assertThat(albumSuggestIndex.fuzzy(null, "parkleif", 10, Duration.ofSeconds(1)).matches()).hasSize(1);
+        assertThat(albumSuggestIndex.fuzzy("Blur", "Skyline", 10, Duration.ofSeconds(1)).matches()).isEmpty();
+        assertThat(AlbumSuggestIndex.editDistance("kitten", 0, 6, "sitting", 3)).isEqualTo(3);
+        assertThat(AlbumSuggestIndex.editDistance("kitten", 0, 6, "sitting", 2)).isEqualTo(3);
+    }
+
+    @Test
+    void testFuzzy_ReportsAnIncompleteResultWhenTheBudgetRunsOut() {
+        // Thousands of albums match one of the two words, and only the last three match both.
+        List<Album> catalog = new ArrayList<>();
+        for (long id = 1; id <= 5000; id++) {
+            if (id > 4997) catalog.add(new Album(id, "Artist", 2000, Album.AlbumGenres.ROCK, "Album Live", 0L));
+            else if (id % 2 == 0) catalog.add(new Album(id, "Artist", 2000, Album.AlbumGenres.ROCK, "Record", 0L));
+            else catalog.add(new Album(id, "Other", 2000, Album.AlbumGenres.ROCK, "Album", 0L));
+        }
+        albumSuggestIndex.load(catalog);
+
+        FuzzySearchResult unhurried = albumSuggestIndex.fuzzy("artst", "albun", 3, Duration.ofSeconds(10));
+        FuzzySearchResult hurried = albumSuggestIndex.fuzzy("artst", "albun", 3, Duration.ofNanos(1));
+
+        assertThat(unhurried.complete()).isTrue();
+        assertThat(unhurried.matches()).extracting(match -> match.album().getId()).containsExactly(4998L, 4999L, 5000L);
+        assertThat(hurried.complete()).isFalse();
+    }
+}
@@ -0,0 +1,218 @@
+package com.northcoders.record_shop.ingest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.northcoders.record_shop.dto.IngestStatus;
+import com.northcoders.record_shop.exception.BadRequestException;
+import com.northcoders.record_shop.exception.ServiceUnavailableException;
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.repository.ImportCheckpointStore;
+import com.northcoders.record_shop.repository.ImportCheckpointStore.Checkpoint;
+import com.northcoders.record_shop.service.AlbumBatchInserter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AlbumIngestQueueTests {
+    @TempDir
+    Path logDir;
+
+    private final Map<String, Checkpoint> checkpoints = new ConcurrentHashMap<>();
+    private final ImportCheckpointStore checkpointStore = new ImportCheckpointStore(null) {
+        @Override
+        public Optional<Checkpoint> find(String importId) {
+            return Optional.ofNullable(checkpoints.get(importId));
+        }
+
+        @Override
+        public void save(Checkpoint checkpoint) {
+            checkpoints.put(checkpoint.importId(), checkpoint);
+        }
+    };
+    private final List<List<String>> insertedChunks = new CopyOnWriteArrayList<>();
+    private final AtomicLong nextAlbumId = new AtomicLong(100);
+    private final AtomicInteger unavailableCalls = new AtomicInteger();
+    private final List<AlbumIngestQueue> queues = new ArrayList<>();
+    private AlbumBatchInserter albumBatchInserter;
+
+    @BeforeEach
+    public void setup() {
+        albumBatchInserter = mock(AlbumBatchInserter.class);
+        when(albumBatchInserter.insertChunk(any(), any())).thenAnswer(invocation -> {
+            if (unavailableCalls.getAndDecrement() > 0) throw new CannotCreateTransactionException("Database is down");
+            List<Album> chunk = invocation.getArgument(0);
+            if (chunk.stream().anyMatch(album -> album.getName().equals("Broken"))) {
+                throw new DataIntegrityViolationException("value too long for column \"name\"");
+            }
+            chunk.forEach(album -> album.setId(nextAlbumId.getAndIncrement()));
+            ((Runnable) invocation.getArgument(1)).run();
+            insertedChunks.add(chunk.stream().map(Album::getName).toList());
+            return chunk;
+        });
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        for (AlbumIngestQueue queue : queues) queue.stop();
+    }
+
+    private AlbumIngestQueue queue(int capacity) throws IOException {
+        return queue(capacity, DataSize.ofMegabytes(1));
+    }
+
+    private AlbumIngestQueue queue(int capacity, DataSize maxLogSize) throws IOException {
+        AlbumIngestQueue queue = new AlbumIngestQueue(albumBatchInserter, checkpointStore,
+                mock(PlatformTransactionManager.class), new ObjectMapper(), logDir, capacity, 10,
+                Duration.ofMillis(5), Duration.ofMillis(10), maxLogSize, Duration.ofHours(1));
+        queues.add(queue);
+        return queue;
+    }
+
+    private static Album album(String name) {
+        return new Album(7L, "Blur", 1994, Album.AlbumGenres.BRITPOP, name, 3L);
+    }
+
+    private static IngestStatus awaitProcessed(AlbumIngestQueue queue, long trackingId) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        IngestStatus status = queue.getStatus(trackingId);
+        while (status.state() == IngestStatus.State.QUEUED && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+            status = queue.getStatus(trackingId);
+        }
+        return status;
+    }
+
+    @Test
+    void testAccept_QueuesTheAlbumAndTheWriterCreatesIt() throws Exception {
+        AlbumIngestQueue queue = queue(100);
+
+        IngestStatus accepted = queue.accept(album("Parklife"));
+        assertThat(accepted).isEqualTo(IngestStatus.queued(1));
+        assertThat(queue.getStatus(1)).isEqualTo(IngestStatus.queued(1));
+        queue.start();
+
+        assertThat(awaitProcessed(queue, 1)).isEqualTo(IngestStatus.created(1, 100));
+        assertThat(queue.pendingCount()).isZero();
+        assertThat(checkpoints.values()).singleElement().satisfies(checkpoint -> {
+            assertThat(checkpoint.lineNumber()).isEqualTo(1);
+            assertThat(checkpoint.rowsImported()).isEqualTo(1);
+            assertThat(checkpoint.byteOffset()).isEqualTo(Files.size(logDir.resolve("album-ingest.log")));
+        });
+        assertThatThrownBy(() -> queue.getStatus(2)).hasMessage("No album was queued with tracking id '2'.");
+    }
+
+    @Test
+    void testRecover_RequeuesOnlyUnappliedAlbumsAndDropsATornRecord() throws Exception {
+        AlbumIngestQueue first = queue(100);
+        first.start();
+        awaitProcessed(first, first.accept(album("Parklife")).trackingId());
+        first.stop();
+
+        // Accepted but never written before the "crash", which also left half a record behind.
+        AlbumIngestQueue second = queue(100);
+        second.accept(album("The Great Escape"));
+        second.accept(album("Blur"));
+        second.stop();
+        Files.write(logDir.resolve("album-ingest.log"), new byte[]{0, 0, 0, 40, 0, 0, 0}, StandardOpenOption.APPEND);
+
+        AlbumIngestQueue restarted = queue(100);
+        assertThat(restarted.pendingCount()).isEqualTo(2);
+        assertThat(restarted.getStatus(2)).isEqualTo(IngestStatus.queued(2));
+        assertThat(restarted.accept(album("13")).trackingId()).isEqualTo(4);
+        restarted.start();
+
+        assertThat(awaitProcessed(restarted, 4).state()).isEqualTo(IngestStatus.State.CREATED);
+        assertThat(restarted.getStatus(2).state()).isEqualTo(IngestStatus.State.CREATED);
+        assertThat(insertedChunks.stream().flatMap(List::stream))
+                .containsExactly("Parklife", "The Great Escape", "Blur", "13");
+    }
+
+    @Test
+    void testRecover_AfterTheLogWasEmptiedReadsTheNewLogFromTheStart() throws Exception {
+        AlbumIngestQueue first = queue(100, DataSize.ofBytes(1));
+        first.start();
+        awaitProcessed(first, first.accept(album("Parklife")).trackingId());
+        first.stop();
+        assertThat(Files.size(logDir.resolve("album-ingest.log"))).isZero();
+        assertThat(checkpoints.values()).singleElement().satisfies(checkpoint -> {
+            assertThat(checkpoint.byteOffset()).isZero();
+            assertThat(checkpoint.lineNumber()).isEqualTo(1);
+        });
+
+        // Accepted into the emptied log, past where the old checkpoint pointed, and never written before the "crash".
+        AlbumIngestQueue second = queue(100);
+        second.accept(album("The Great Escape"));
+        second.accept(album("13"));
+        second.accept(album("Think Tank"));
+        second.stop();
+
+        AlbumIngestQueue restarted = queue(100);
+        assertThat(restarted.pendingCount()).isEqualTo(3);
+        restarted.start();
+
+        assertThat(awaitProcessed(restarted, 4).state()).isEqualTo(IngestStatus.State.CREATED);
+        assertThat(insertedChunks.stream().flatMap(List::stream))
+                .containsExactly("Parklife", "The Great Escape", "13", "Think Tank");
+    }
+
+    @Test
+    void testAccept_RejectsInvalidAlbumsAndPushesBackWhenFull() throws Exception {
+        AlbumIngestQueue queue = queue(2);
+
+        queue.accept(album("Parklife"));
+        queue.accept(album("Blur"));
+
+        assertThatThrownBy(() -> queue.accept(album("13")))
+                .isInstanceOfSatisfying(ServiceUnavailableException.class,
+                        e -> assertThat(e.getRetryAfter()).isEqualTo(Duration.ofSeconds(1)));
+        assertThatThrownBy(() -> queue.accept(new Album(null, "Blur", 1994, null, "Parklife", null)))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessage("Genre is required.");
+        assertThat(queue.pendingCount()).isEqualTo(2);
+    }
+
+    @Test
+    void testWriter_RetriesWhileTheDatabaseIsDownAndFailsOnlyTheBadAlbum() throws Exception {
+        AlbumIngestQueue queue = queue(100);
+        queue.accept(album("Parklife"));
+        queue.accept(album("Broken"));
+        queue.accept(album("Modern Life Is Rubbish"));
+        unavailableCalls.set(2);
+        queue.start();
+
+        assertThat(awaitProcessed(queue, 3)).isEqualTo(IngestStatus.created(3, 101));
+        assertThat(queue.getStatus(1)).isEqualTo(IngestStatus.created(1, 100));
+        assertThat(queue.getStatus(2).state()).isEqualTo(IngestStatus.State.FAILED);
+        assertThat(queue.getStatus(2).error()).contains("value too long");
+        assertThat(insertedChunks).containsExactly(List.of("Parklife"), List.of("Modern Life Is Rubbish"));
+        assertThat(checkpoints.values()).singleElement().satisfies(checkpoint -> {
+            assertThat(checkpoint.lineNumber()).isEqualTo(3);
+            assertThat(checkpoint.rowsImported()).isEqualTo(2);
+            assertThat(checkpoint.rowsRejected()).isEqualTo(1);
+        });
+    }
+}
@@ -0,0 +1,177 @@
+package com.northcoders.record_shop.loadtest;
+
+import com.northcoders.record_shop.RecordShopApplication;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares platform-thread and virtual-thread request execution against an H2 database made artificially slow: every
+ * query sleeps for {@code load.db-latency-ms} before it runs, standing in for a remote database under load.
+ * <p>
+ * Run with {@code mvn test -Pload-test}; tune with {@code -Dload.clients}, {@code -Dload.requests-per-client} and
+ * {@code -Dload.db-latency-ms}. Both modes get the same 200 Tomcat threads and the same connection pool, so the only
+ * difference is whether a request blocked on the database holds a platform thread.
+ */
+@Tag("load")
+class VirtualThreadLoadTest {
+    private static final int CLIENTS = Integer.getInteger("load.clients", 1000);
+    private static final int REQUESTS_PER_CLIENT = Integer.getInteger("load.requests-per-client", 20);
+    private static final long DB_LATENCY_MILLIS = Long.getLong("load.db-latency-ms", 200);
+    private static final int POOL_SIZE = CLIENTS;
+
+    record Result(String mode, int requests, int errors, double throughput, double p50Millis, double p99Millis) {
+    }
+
+    @Test
+    void compareThroughputAndP99Latency() throws Exception {
+        Result platform = run(false);
+        Result virtual = run(true);
+
+        System.out.printf("%nSlow H2 (%d ms per query), %d clients x %d requests%n",
+                DB_LATENCY_MILLIS, CLIENTS, REQUESTS_PER_CLIENT);
+        System.out.printf("%-10s %10s %8s %12s %10s %10s%n", "mode", "requests", "errors", "req/s", "p50 ms", "p99 ms");
+        for (Result result : List.of(platform, virtual)) {
+            System.out.printf("%-10s %10d %8d %12.1f %10.1f %10.1f%n", result.mode(), result.requests(),
+                    result.errors(), result.throughput(), result.p50Millis(), result.p99Millis());
+        }
+
+        assertEquals(0, platform.errors());
+        assertEquals(0, virtual.errors());
+    }
+
+    private Result run(boolean virtualThreads) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(RecordShopApplication.class)
+                .properties("server.port=0",
+                        "server.tomcat.threads.max=200",
+                        "spring.threads.virtual.enabled=" + virtualThreads,
+                        "spring.datasource.hikari.maximum-pool-size=" + POOL_SIZE,
+                        "spring.datasource.hikari.minimum-idle=" + POOL_SIZE,
+                        "spring.jpa.show-sql=false",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN")
+                .initializers(ctx -> ctx.getBeanFactory().addBeanPostProcessor(slowDataSource()))
+                .run()) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            URI uri = URI.create("http://localhost:" + port + "/albums/all?limit=10");
+            return load(virtualThreads ? "virtual" : "platform", uri);
+        }
+    }
+
+    private static Result load(String mode, URI uri) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri).GET().build();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(clients).build()) {
+            // Warm up the JIT, the pool and the HTTP connections before measuring.
+            runClients(clients, http, request, Math.min(CLIENTS, 100), 5);
+
+            long start = System.nanoTime();
+            List<long[]> latencies = runClients(clients, http, request, CLIENTS, REQUESTS_PER_CLIENT);
+            double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+            long[] all = latencies.stream().flatMapToLong(Arrays::stream).filter(nanos -> nanos >= 0).sorted().toArray();
+            int requests = CLIENTS * REQUESTS_PER_CLIENT;
+            return new Result(mode, requests, requests - all.length, all.length / elapsedSeconds,
+                    percentile(all, 0.50), percentile(all, 0.99));
+        }
+    }
+
+    /**
+     * Each client sends its requests one after another; a failed request is recorded as a negative latency.
+     */
+    private static List<long[]> runClients(ExecutorService executor, HttpClient http, HttpRequest request,
+                                           int clients, int requestsPerClient) throws Exception {
+        List<Future<long[]>> futures = new ArrayList<>(clients);
+        for (int c = 0; c < clients; c++) {
+            futures.add(executor.submit(() -> {
+                long[] latencies = new long[requestsPerClient];
+                for (int i = 0; i < requestsPerClient; i++) {
+                    long sent = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                        latencies[i] = response.statusCode() == 200 ? System.nanoTime() - sent : -1;
+                    } catch (Exception e) {
+                        latencies[i] = -1;
+                    }
+                }
+                return latencies;
+            }));
+        }
+        List<long[]> results = new ArrayList<>(clients);
+        for (Future<long[]> future : futures) {
+            results.add(future.get());
+        }
+        return results;
+    }
+
+    private static double percentile(long[] sortedNanos, double percentile) {
+        if (sortedNanos.length == 0) return Double.NaN;
+        int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, index)] / 1e6;
+    }
+
+    private static BeanPostProcessor slowDataSource() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource dataSource)) return bean;
+                return proxy(DataSource.class, dataSource, (target, method, args) -> {
+                    Object result = method.invoke(target, args);
+                    return result instanceof Connection connection ? slowConnection(connection) : result;
+                });
+            }
+        };
+    }
+
+    private static Connection slowConnection(Connection connection) {
+        return proxy(Connection.class, connection, (target, method, args) -> {
+            Object result = method.invoke(target, args);
+            return result instanceof Statement statement ? slowStatement(statement, method.getReturnType()) : result;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Statement slowStatement(Statement statement, Class<?> statementType) {
+        return proxy((Class<Statement>) statementType, statement, (target, method, args) -> {
+            if (method.getName().startsWith("execute")) Thread.sleep(DB_LATENCY_MILLIS);
+            return method.invoke(target, args);
+        });
+    }
+
+    private interface Delegating {
+        Object invoke(Object target, java.lang.reflect.Method method, Object[] args) throws Throwable;
+    }
+
+    private static <T> T proxy(Class<T> type, T target, Delegating handler) {
+        InvocationHandler invocationHandler = (proxy, method, args) -> {
+            try {
+                return handler.invoke(target, method, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        };
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, invocationHandler));
+    }
+}
@@ -0,0 +1,143 @@
+package com.northcoders.record_shop.repository;
+
+import com.northcoders.record_shop.dto.AlbumSearchCriteria;
+import com.northcoders.record_shop.model.Album;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks, via EXPLAIN, that every AlbumRepository finder is answered from an index rather than a table scan. Each test
+ * calls the finder, so the statement explained is the one Hibernate generated for it, as recorded by
+ * {@link SqlRecorder}. The schema comes from the Flyway migrations, so this also covers the versioned DDL.
+ * <p>
+ * H2 picks indexes from the statistics ANALYZE gathers, so a modest table is enough to tell an index lookup from a
+ * scan. Set -Dalbum.explain.rows to change the table size (default 50,000 rows).
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:album-explain;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=" +
+                "com.northcoders.record_shop.repository.AlbumRepositoryIndexTests$SqlRecorder"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class AlbumRepositoryIndexTests {
+    private static final long ROWS = Long.getLong("album.explain.rows", 50_000L);
+
+    /**
+     * Keeps every statement Hibernate prepares, in order.
+     */
+    public static class SqlRecorder implements StatementInspector {
+        static final List<String> statements = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            statements.add(sql);
+            return sql;
+        }
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private AlbumRepository albumRepository;
+
+    @BeforeAll
+    void seedLargeCatalog() {
+        jdbcTemplate.update("DELETE FROM album");
+        jdbcTemplate.update("INSERT INTO album (id, artist, release_year, genre, name, artist_normalized, name_normalized) " +
+                "SELECT x, CONCAT('Artist ', MOD(x, 5000)), 1950 + MOD(x, 75), " +
+                "CASE MOD(x, 4) WHEN 0 THEN 'BRITPOP' WHEN 1 THEN 'ROCK' WHEN 2 THEN 'ALTERNATIVE_ROCK' " +
+                "ELSE 'CLASSIC' END, CONCAT('Album ', x), CONCAT('artist ', MOD(x, 5000)), CONCAT('album ', x) " +
+                "FROM (SELECT \"X\" AS x FROM SYSTEM_RANGE(1, ?)) r", ROWS);
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @Test
+    void testFindByArtist_UsesArtistIndex() {
+        assertThat(plan(() -> albumRepository.findByArtist("Artist 42"), "Artist 42"))
+                .contains("idx_album_artist_release_year");
+    }
+
+    @Test
+    void testFindByName_UsesNameIndex() {
+        assertThat(plan(() -> albumRepository.findByName("Album 4242"), "Album 4242"))
+                .contains("idx_album_name");
+    }
+
+    @Test
+    void testFindByReleaseYear_UsesReleaseYearIndex() {
+        assertThat(plan(() -> albumRepository.findByReleaseYear(1994), 1994))
+                .containsAnyOf("idx_album_release_year_id", "idx_album_genre_release_year");
+    }
+
+    @Test
+    void testReleaseYearRangePage_ReadsTheReleaseYearIdIndexInOrder() {
+        // H2 only reads indexes forwards; Postgres also serves the descending page with a backward scan.
+        PageRequest page = PageRequest.of(0, 20, Sort.by("releaseYear", "id"));
+        assertThat(plan(() -> albumRepository.findByReleaseYearBetween(1990, 1999, page), 1990, 1999, 20))
+                .contains("idx_album_release_year_id")
+                .contains("index sorted");
+    }
+
+    @Test
+    void testFindByGenre_UsesGenreIndex() {
+        assertThat(plan(() -> albumRepository.findByGenre(Album.AlbumGenres.CLASSIC), "CLASSIC"))
+                .contains("idx_album_genre_release_year");
+    }
+
+    @Test
+    void testSearchByGenreAndReleaseYear_UsesCompositeIndex() {
+        AlbumSearchCriteria criteria = new AlbumSearchCriteria(null, null, Album.AlbumGenres.BRITPOP, 1994, 1994);
+        assertThat(plan(() -> albumRepository.findAll(AlbumSpecifications.matching(criteria, true), PageRequest.of(0, 20)),
+                "BRITPOP", 1994, 1994, 0, 20))
+                .contains("idx_album_genre_release_year");
+    }
+
+    @Test
+    void testSearchByArtistAndReleaseYear_UsesCompositeIndex() {
+        AlbumSearchCriteria criteria = new AlbumSearchCriteria("Artist 42", null, null, 1994, 1994);
+        assertThat(plan(() -> albumRepository.findAll(AlbumSpecifications.matching(criteria, true), PageRequest.of(0, 20)),
+                "artist 42", 1994, 1994, 0, 20))
+                .contains("idx_album_artist_normalized_release_year");
+    }
+
+    @Test
+    void testFindByArtistNormalized_UsesNormalizedArtistIndex() {
+        assertThat(plan(() -> albumRepository.findByArtistNormalized("artist 42"), "artist 42"))
+                .contains("idx_album_artist_normalized_release_year");
+    }
+
+    @Test
+    void testFindByNameNormalized_UsesNormalizedNameIndex() {
+        assertThat(plan(() -> albumRepository.findByNameNormalized("album 4242"), "album 4242"))
+                .contains("idx_album_name_normalized");
+    }
+
+    // Explains the first statement the finder prepared, with its parameters bound to the given values in order.
+    private String plan(Runnable finder, Object... parameters) {
+        SqlRecorder.statements.clear();
+        finder.run();
+        assertThat(SqlRecorder.statements).isNotEmpty();
+        String sql = SqlRecorder.statements.get(0);
+        return jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class, parameters).toLowerCase();
+    }
+}
@@ -1,20 +1,50 @@
 package com.northcoders.record_shop.service;
 
+import com.northcoders.record_shop.cache.AlbumCache;
+import com.northcoders.record_shop.config.SecondLevelCacheConfig;
+import com.northcoders.record_shop.dto.AlbumFacets;
+import com.northcoders.record_shop.dto.AlbumFilter;
+import com.northcoders.record_shop.dto.AlbumSearchCriteria;
+import com.northcoders.record_shop.dto.AlbumView;
+import com.northcoders.record_shop.dto.BatchInsertResult;
+import com.northcoders.record_shop.dto.BatchItemResult;
+import com.northcoders.record_shop.dto.CatalogVersion;
+import com.northcoders.record_shop.event.AlbumChangedEvent;
 import com.northcoders.record_shop.exception.ItemNotFoundException;
+import com.northcoders.record_shop.exception.PreconditionFailedException;
+import com.northcoders.record_shop.index.AlbumFacetIndex;
+import com.northcoders.record_shop.loader.AlbumNormalizationBackfill;
 import com.northcoders.record_shop.model.Album;
 import com.northcoders.record_shop.repository.AlbumRepository;
+import com.northcoders.record_shop.repository.CatalogStampRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.time.Duration;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
@@ -23,12 +53,51 @@ public class AlbumServiceTests {
     @Mock
     private AlbumRepository mockAlbumRepository;
 
+    @Mock
+    private CatalogStampRepository mockCatalogStampRepository;
+
+    @Mock
+    private EntityManager mockEntityManager;
+
+    @Mock
+    private AlbumBatchInserter mockAlbumBatchInserter;
+
+    @Mock
+    private ApplicationEventPublisher mockEventPublisher;
+
+    @Mock
+    private AlbumNormalizationBackfill mockNormalizationBackfill;
+
+    @Spy
+    private AlbumCache albumCache = new AlbumCache(100, 100, Duration.ofMinutes(1), new SimpleMeterRegistry(), event -> {});
+
     @InjectMocks
     private AlbumServiceImpl albumServiceImpl;
 
     @Autowired
     private AlbumRepository albumRepository;
 
+    @Autowired
+    private AlbumService albumService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private AlbumFacetIndex albumFacetIndex;
+
+    @Autowired
+    private AlbumNormalizationBackfill albumNormalizationBackfill;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CatalogStampRepository catalogStampRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
     @Test
     void testGetAllAlbums_ReturnsListOfAlbums(){
         List<Album> albums = new ArrayList<>();
@@ -44,6 +113,33 @@ public class AlbumServiceTests {
 
     }
 
+    @Test
+    void testGetAlbumsAfter_ClampsLimitAndStartsFromCursor(){
+        List<Album> albums = new ArrayList<>();
+        albums.add(new Album(3L, "Oasis", 1994, Album.AlbumGenres.BRITPOP, "Definitely Maybe"));
+
+        when(mockAlbumRepository.findByIdGreaterThanOrderByIdAsc(2L, Limit.of(AlbumService.MAX_PAGE_SIZE))).thenReturn(albums);
+        List<Album> actualResult = albumServiceImpl.getAlbumsAfter(2L, 1_000_000);
+        assertThat(actualResult).isEqualTo(albums);
+
+        when(mockAlbumRepository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(1))).thenReturn(albums);
+        assertThat(albumServiceImpl.getAlbumsAfter(null, 0)).isEqualTo(albums);
+    }
+
+    @Test
+    void testStreamAllAlbums_DetachesEachAlbumAfterConsuming(){
+        Album album1 = new Album(1L, "Oasis", 1994, Album.AlbumGenres.BRITPOP, "Definitely Maybe");
+        Album album2 = new Album(2L, "Blur", 1994, Album.AlbumGenres.BRITPOP, "Parklife");
+        when(mockAlbumRepository.streamAllOrderedById()).thenReturn(Stream.of(album1, album2));
+
+        List<Album> consumed = new ArrayList<>();
+        albumServiceImpl.streamAllAlbums(consumed::add);
+
+        assertThat(consumed).containsExactly(album1, album2);
+        verify(mockEntityManager).detach(album1);
+        verify(mockEntityManager).detach(album2);
+    }
+
     @Test
     void testGetAlbumById_IdNotExists(){
         Long idNotExists = 100L;
@@ -69,6 +165,60 @@ public class AlbumServiceTests {
 
     }
 
+    @Test
+    void testGetAlbumById_SecondLookupIsServedFromCache(){
+        Album album1 = new Album(1L, "Oasis", 1994, Album.AlbumGenres.BRITPOP, "Definitely Maybe");
+        when(mockAlbumRepository.findById(1L)).thenReturn(Optional.of(album1));
+
+        albumServiceImpl.getAlbumById(1L);
+        Album actualResult = albumServiceImpl.getAlbumById(1L);
+
+        assertThat(actualResult).isEqualTo(album1);
+        verify(mockAlbumRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    void testGetAlbumsByGenre_SecondLookupIsServedFromCache(){
+        List<Album> albums = List.of(new Album(1L, "Oasis", 1994, Album.AlbumGenres.BRITPOP, "Definitely Maybe"));
+        when(mockAlbumRepository.findByGenre(Album.AlbumGenres.BRITPOP)).thenReturn(albums);
+
+        albumServiceImpl.getAlbumsByGenre(Album.AlbumGenres.BRITPOP);
+        assertThat(albumServiceImpl.getAlbumsByGenre(Album.AlbumGenres.BRITPOP)).isEqualTo(albums);
+
+        verify(mockAlbumRepository, times(1)).findByGenre(Album.AlbumGenres.BRITPOP);
+    }
+
+    @Test
+    void testUpdateAndDelete_PublishAlbumChangedEvents(){
+        Album album = new Album(100L,"The Beatles" , 1969, Album.AlbumGenres.ROCK,"Abbey Road");
+        when(mockAlbumRepository.updateByIdAndVersion(100L, 1L, "The Beatles", 1969, Album.AlbumGenres.ROCK, "Abbey Road")).thenReturn(1);
+        when(mockAlbumRepository.removeById(100L)).thenReturn(1);
+
+        Album updated = albumServiceImpl.updateAlbumById(100L, album, 1L);
+        albumServiceImpl.deleteAlbumById(100L);
+
+        verify(mockEventPublisher).publishEvent(AlbumChangedEvent.saved(updated));
+        verify(mockEventPublisher).publishEvent(AlbumChangedEvent.deleted(100L));
+    }
+
+    @Test
+    void testGetAlbumById_CacheIsInvalidatedByUpdateAndDelete(){
+        Album saved = albumService.addAlbum(new Album(null, "Doves", 2002, Album.AlbumGenres.ALTERNATIVE_ROCK, "The Last Broadcast"));
+        assertThat(albumService.getAlbumById(saved.getId()).getReleaseYear()).isEqualTo(2002);
+        assertThat(albumService.getAlbumsByArtist("Doves")).hasSize(1);
+
+        albumService.updateAlbumById(saved.getId(), new Album(null, "Doves", 2000, Album.AlbumGenres.ALTERNATIVE_ROCK, "Lost Souls"));
+
+        assertThat(albumService.getAlbumById(saved.getId()).getName()).isEqualTo("Lost Souls");
+        assertThat(albumService.getAlbumsByArtist("Doves")).extracting(Album::getName).containsExactly("Lost Souls");
+        assertThat(albumService.getAlbumsByName("Lost Souls")).hasSize(1);
+
+        albumService.deleteAlbumById(saved.getId());
+
+        assertThatThrownBy(() -> albumService.getAlbumById(saved.getId())).isInstanceOf(ItemNotFoundException.class);
+        assertThatThrownBy(() -> albumService.getAlbumsByArtist("Doves")).isInstanceOf(ItemNotFoundException.class);
+    }
+
     @Test
     void testAddAlbum(){
         Album album = new Album(null,"The Beatles" , 1969, Album.AlbumGenres.ROCK,"Abbey Road");
@@ -85,67 +235,148 @@ public class AlbumServiceTests {
         assertThat(actualResult.getGenre().equals(Album.AlbumGenres.ROCK));
     }
 
+    @Test
+    void testAddAlbums_DelegatesToBatchInserter(){
+        List<Album> albums = List.of(new Album(null, "Blur", 1994, Album.AlbumGenres.BRITPOP, "Parklife"));
+        BatchInsertResult result = new BatchInsertResult(1, 1, 0, 1, 1000.0, List.of(BatchItemResult.created(0, 1L)));
+        when(mockAlbumBatchInserter.insertAll(any())).thenReturn(result);
+
+        assertThat(albumServiceImpl.addAlbums(albums.iterator())).isEqualTo(result);
+    }
+
+    @Test
+    void testAddAlbums_InsertsAcrossChunksAndReportsInvalidItems(){
+        List<Album> albums = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            albums.add(new Album(999L, "Batch Artist", 2000 + i % 10, Album.AlbumGenres.ROCK, "Batch Album " + i));
+        }
+        albums.set(5, null);
+        albums.set(6, new Album(null, " ", 2000, Album.AlbumGenres.ROCK, "No Artist"));
+
+        BatchInsertResult result = albumService.addAlbums(albums.iterator());
+
+        assertThat(result.received()).isEqualTo(120);
+        assertThat(result.created()).isEqualTo(118);
+        assertThat(result.failed()).isEqualTo(2);
+        assertThat(result.items()).hasSize(120);
+        assertThat(result.items().get(5).status()).isEqualTo(BatchItemResult.Status.FAILED);
+        assertThat(result.items().get(6).error()).isEqualTo("Artist is required.");
+        assertThat(result.items().get(7).status()).isEqualTo(BatchItemResult.Status.CREATED);
+        List<Long> ids = result.items().stream().map(BatchItemResult::id).filter(id -> id != null).toList();
+        assertThat(ids).doesNotHaveDuplicates().doesNotContain(999L);
+        assertThat(albumRepository.findAllById(ids)).hasSize(118);
+
+        albumRepository.deleteAllById(ids);
+    }
+
     @Test
     void testUpdateAlbumById_AlbumIdNotExists(){
         Album album = new Album(100L,"The Beatles" , 1969, Album.AlbumGenres.ROCK,"Abbey Road");
 
-        when(mockAlbumRepository.findById(100L)).thenReturn(Optional.empty());
+        when(mockAlbumRepository.updateById(100L, "The Beatles", 1969, Album.AlbumGenres.ROCK, "Abbey Road")).thenReturn(0);
 
         assertThatThrownBy(() -> albumServiceImpl.updateAlbumById(100L, album))
                 .isInstanceOf(ItemNotFoundException.class)
                 .hasMessage("The album with id '100' cannot be found");
+        verify(mockAlbumRepository, never()).findById(any());
         verify(mockAlbumRepository, never()).save(any(Album.class));
     }
 
     @Test
     void testUpdateAlbumById_AlbumFound(){
-        Album albumFound = new Album(100L,"The Beatles" , 1969, Album.AlbumGenres.ROCK,"Abbey Road");
         Album albumUpdated = new Album(100L,"The Beatles!" , 1968, Album.AlbumGenres.BRITPOP,"Abbey Road?");
 
-        when(mockAlbumRepository.findById(100L)).thenReturn(Optional.of(albumFound));
-        when(mockAlbumRepository.save(any(Album.class))).thenReturn(albumUpdated);
+        when(mockAlbumRepository.updateById(100L, "The Beatles!", 1968, Album.AlbumGenres.BRITPOP, "Abbey Road?")).thenReturn(1);
 
         Album actualResult = albumServiceImpl.updateAlbumById(100L, albumUpdated);
 
-        assertThat(actualResult.getId() == 100L);
-        assertThat(actualResult.getArtist().equals("The Beatles!"));
-        assertThat(actualResult.getName().equals("Abbey Road?"));
-        assertThat(actualResult.getReleaseYear() == 1968);
-        assertThat(actualResult.getGenre().equals(Album.AlbumGenres.BRITPOP));
-        verify(mockAlbumRepository).save(albumUpdated);
+        assertThat(actualResult).isEqualTo(new Album(100L, "The Beatles!", 1968, Album.AlbumGenres.BRITPOP, "Abbey Road?", null));
+        verify(mockAlbumRepository).updateById(100L, "The Beatles!", 1968, Album.AlbumGenres.BRITPOP, "Abbey Road?");
+        verifyNoMoreInteractions(mockAlbumRepository);
     }
 
     @Test
-    void testDeleteAlbumById_AlbumIdNotExists(){
-        Album album = new Album(100L,"The Beatles" , 1969, Album.AlbumGenres.ROCK,"Abbey Road");
+    void testUpdateAlbumById_ExpectedVersionMatches(){
+        Album albumUpdated = new Album(100L,"The Beatles" , 1969, Album.AlbumGenres.ROCK,"Abbey Road");
+
+        when(mockAlbumRepository.updateByIdAndVersion(100L, 2L, "The Beatles", 1969, Album.AlbumGenres.ROCK, "Abbey Road")).thenReturn(1);
+
+        Album actualResult = albumServiceImpl.updateAlbumById(100L, albumUpdated, 2L);
+
+        assertThat(actualResult.getVersion()).isEqualTo(3L);
+    }
+
+    @Test
+    void testUpdateAlbumById_ExpectedVersionStale(){
+        Album albumUpdated = new Album(100L,"The Beatles" , 1969, Album.AlbumGenres.ROCK,"Abbey Road");
 
-        when(mockAlbumRepository.findById(100L)).thenReturn(Optional.empty());
+        when(mockAlbumRepository.updateByIdAndVersion(100L, 2L, "The Beatles", 1969, Album.AlbumGenres.ROCK, "Abbey Road")).thenReturn(0);
+        when(mockAlbumRepository.existsById(100L)).thenReturn(true);
+
+        assertThatThrownBy(() -> albumServiceImpl.updateAlbumById(100L, albumUpdated, 2L))
+                .isInstanceOf(PreconditionFailedException.class)
+                .hasMessage("The album with id '100' has been modified since version 2.");
+    }
+
+    @Test
+    void testDeleteAlbumById_AlbumIdNotExists(){
+        when(mockAlbumRepository.removeById(100L)).thenReturn(0);
 
         assertThatThrownBy(() -> albumServiceImpl.deleteAlbumById(100L))
                 .isInstanceOf(ItemNotFoundException.class)
                 .hasMessage("The album with id '100' cannot be found");
-        verify(mockAlbumRepository, never()).delete(any(Album.class));
+        verify(mockAlbumRepository, never()).findById(any());
     }
 
     @Test
     void testDeleteAlbumById_AlbumFound(){
 
         Long albumId = 1L;
-        Album album = new Album(albumId,"The Beatles" , 1969, Album.AlbumGenres.ROCK,"Abbey Road");
         String expectedMessage = "Album with ID " + albumId + " is deleted successfully.";
-        when(mockAlbumRepository.findById(albumId)).thenReturn(Optional.of(album));
-        doNothing().when(mockAlbumRepository).deleteById(albumId);
+        when(mockAlbumRepository.removeById(albumId)).thenReturn(1);
 
         String actualResult = albumServiceImpl.deleteAlbumById(albumId);
 
-        assertThat(actualResult.equals(expectedMessage ));
-        verify(mockAlbumRepository).deleteById(albumId);
+        assertThat(actualResult).isEqualTo(expectedMessage);
+        verify(mockAlbumRepository).removeById(albumId);
+        verify(mockAlbumRepository, never()).findById(any());
+    }
+
+    @Test
+    void testDeleteAlbumById_ExpectedVersionStale(){
+        when(mockAlbumRepository.removeByIdAndVersion(1L, 7L)).thenReturn(0);
+        when(mockAlbumRepository.existsById(1L)).thenReturn(true);
+
+        assertThatThrownBy(() -> albumServiceImpl.deleteAlbumById(1L, 7L))
+                .isInstanceOf(PreconditionFailedException.class);
+    }
+
+    @Test
+    void testUpdateAlbumById_ConcurrentEditWithStaleVersionIsRejected(){
+        Album saved = albumRepository.save(new Album(null, "Elbow", 2008, Album.AlbumGenres.ALTERNATIVE_ROCK, "The Seldom Seen Kid"));
+        Long version = saved.getVersion();
+
+        Album first = albumService.updateAlbumById(saved.getId(),
+                new Album(null, "Elbow", 2008, Album.AlbumGenres.ROCK, "The Seldom Seen Kid"), version);
+        assertThat(first.getVersion()).isEqualTo(version + 1);
+        assertThatThrownBy(() -> albumService.updateAlbumById(saved.getId(),
+                new Album(null, "Elbow", 2009, Album.AlbumGenres.ROCK, "The Seldom Seen Kid"), version))
+                .isInstanceOf(PreconditionFailedException.class);
+
+        Album stored = albumRepository.findById(saved.getId()).orElseThrow();
+        assertThat(stored.getGenre()).isEqualTo(Album.AlbumGenres.ROCK);
+        assertThat(stored.getReleaseYear()).isEqualTo(2008);
+        assertThat(stored.getVersion()).isEqualTo(version + 1);
+
+        albumService.deleteAlbumById(saved.getId(), version + 1);
+        assertThat(albumRepository.existsById(saved.getId())).isFalse();
     }
 
     @Test
     void testGetAlbumsByArtist_ArtistNotFound(){
         String artistNotExists = "John Doe";
-        when(mockAlbumRepository.findByArtist(artistNotExists)).thenReturn(new ArrayList<>());
+        when(mockNormalizationBackfill.isComplete()).thenReturn(true);
+        when(mockAlbumRepository.findByArtistNormalized("john doe")).thenReturn(new ArrayList<>());
 
         assertThatThrownBy(()-> albumServiceImpl.getAlbumsByArtist(artistNotExists))
                 .isInstanceOf(ItemNotFoundException.class)
@@ -160,7 +391,8 @@ public class AlbumServiceTests {
         Album album2 = new Album(null, "Oasis", 1995, Album.AlbumGenres.BRITPOP, "What's the Story Morning Glory?");
         albums.add(album1);
         albums.add(album2);
-        when(mockAlbumRepository.findByArtist("Oasis")).thenReturn(albums);
+        when(mockNormalizationBackfill.isComplete()).thenReturn(true);
+        when(mockAlbumRepository.findByArtistNormalized("oasis")).thenReturn(albums);
         List<Album> actualResult = albumServiceImpl.getAlbumsByArtist("Oasis");
         assertThat(actualResult).isEqualTo(albums);
         assertThat(actualResult).hasSize(2);
@@ -244,7 +476,8 @@ public class AlbumServiceTests {
     @Test
     void testGetAlbumsByName_NameNotFound(){
         String nameNotExists = "Not a name";
-        when(mockAlbumRepository.findByName(nameNotExists)).thenReturn(new ArrayList<>());
+        when(mockNormalizationBackfill.isComplete()).thenReturn(true);
+        when(mockAlbumRepository.findByNameNormalized("not a name")).thenReturn(new ArrayList<>());
 
         assertThatThrownBy(()-> albumServiceImpl.getAlbumsByName(nameNotExists))
                 .isInstanceOf(ItemNotFoundException.class)
@@ -259,7 +492,8 @@ public class AlbumServiceTests {
         Album album2 = new Album(2L, "Oasis", 1995, Album.AlbumGenres.BRITPOP, "Definitely Maybe");
         albums.add(album1);
         albums.add(album2);
-        when(mockAlbumRepository.findByName("Definitely Maybe")).thenReturn(albums);
+        when(mockNormalizationBackfill.isComplete()).thenReturn(true);
+        when(mockAlbumRepository.findByNameNormalized("definitely maybe")).thenReturn(albums);
         List<Album> actualResult = albumServiceImpl.getAlbumsByName("Definitely Maybe");
         assertThat(actualResult).isEqualTo(albums);
         assertThat(actualResult).hasSize(2);
@@ -274,12 +508,261 @@ public class AlbumServiceTests {
 
     }
 
+    @Test
+    void testSearchAlbums_FiltersByAllCriteriaInOneQuery(){
+        AlbumSearchCriteria criteria = new AlbumSearchCriteria("Oasis", null, Album.AlbumGenres.BRITPOP, 1994, 1997);
 
+        Page<Album> page = albumService.searchAlbums(criteria, PageRequest.of(0, 2, Sort.by("releaseYear")));
 
-}
+        assertThat(page.getTotalElements()).isEqualTo(3);
+        assertThat(page.getContent()).extracting(Album::getName)
+                .containsExactly("Definitely Maybe", "What's the Story Morning Glory?");
+        assertThat(albumService.searchAlbums(criteria, PageRequest.of(1, 2, Sort.by("releaseYear"))).getContent())
+                .extracting(Album::getName).containsExactly("Be Here Now");
+    }
+
+    @Test
+    void testSearchAlbumViews_ReadsOnlyTheRequestedFields(){
+        AlbumSearchCriteria criteria = new AlbumSearchCriteria("Oasis", null, Album.AlbumGenres.BRITPOP, 1994, 1997);
+
+        Page<AlbumView> page = albumService.searchAlbumViews(criteria, PageRequest.of(0, 2, Sort.by("releaseYear")),
+                Set.of("name", "releaseYear"));
+
+        assertThat(page.getTotalElements()).isEqualTo(3);
+        assertThat(page.getContent()).extracting(AlbumView::name, AlbumView::releaseYear)
+                .containsExactly(tuple("Definitely Maybe", 1994), tuple("What's the Story Morning Glory?", 1995));
+        assertThat(page.getContent()).allSatisfy(view -> {
+            assertThat(view.id()).isNotNull();
+            assertThat(view.artist()).isNull();
+            assertThat(view.genre()).isNull();
+            assertThat(view.version()).isNull();
+        });
+    }
 
+    @Test
+    void testGetAlbumViewsAfter_PagesByIdLikeGetAlbumsAfter(){
+        List<Album> albums = albumService.getAlbumsAfter(null, 3);
 
+        List<AlbumView> views = albumService.getAlbumViewsAfter(null, 3, Set.of("artist"));
+        List<AlbumView> range = albumService.getAlbumViewsByReleaseYearRange(1994, 1994,
+                PageRequest.of(0, 10, Sort.by("id")), Set.of("name")).getContent();
 
+        assertThat(views).extracting(AlbumView::id, AlbumView::artist)
+                .containsExactlyElementsOf(albums.stream().map(album -> tuple(album.getId(), album.getArtist())).toList());
+        assertThat(range).extracting(AlbumView::name).contains("Definitely Maybe");
+    }
 
+    @Test
+    void testGetAlbumsByReleaseYearRange_PagesThroughEveryYearInOneQuery(){
+        List<Album> added = new ArrayList<>();
+        for (String name : List.of("Cylinder 1", "Cylinder 2", "Cylinder 3", "Cylinder 4", "Cylinder 5")) {
+            int year = 1890 + added.size() % 3;
+            added.add(albumService.addAlbum(new Album(null, "Edison", year, Album.AlbumGenres.CLASSIC, name)));
+        }
+        PageRequest newestFirst = PageRequest.of(0, 2, Sort.by(Sort.Direction.DESC, "releaseYear", "id"));
+
+        Page<Album> first = albumService.getAlbumsByReleaseYearRange(1889, 1891, newestFirst);
+        Page<Album> last = albumService.getAlbumsByReleaseYearRange(1889, 1891, newestFirst.withPage(1));
+        added.forEach(album -> albumService.deleteAlbumById(album.getId()));
+
+        assertThat(first.getTotalElements()).isEqualTo(4);
+        assertThat(first.getContent()).extracting(Album::getName).containsExactly("Cylinder 5", "Cylinder 2");
+        assertThat(last.getContent()).extracting(Album::getName).containsExactly("Cylinder 4", "Cylinder 1");
+    }
 
+    @Test
+    void testGetAlbumsByArtistAndName_MatchIgnoringCaseAccentsAndLeadingThe(){
+        Album added = albumService.addAlbum(new Album(null, "The Édison  Quartet", 1893, Album.AlbumGenres.CLASSIC, "Phonograph Waltz"));
+
+        List<Album> byArtist = albumService.getAlbumsByArtist("EDISON QUARTET");
+        List<Album> byName = albumService.getAlbumsByName("phonograph waltz");
+        albumService.updateAlbumById(added.getId(),
+                new Album(null, "The Édison  Quartet", 1893, Album.AlbumGenres.CLASSIC, "Gramophone Waltz"));
+        List<Album> renamed = albumService.getAlbumsByName("GRAMOPHONE WALTZ");
+        Page<Album> searched = albumService.searchAlbums(
+                new AlbumSearchCriteria("edison quartet", "gramophone waltz", null, null, null), PageRequest.of(0, 5));
+        albumService.deleteAlbumById(added.getId());
+
+        assertThat(byArtist).extracting(Album::getId).containsExactly(added.getId());
+        assertThat(byName).extracting(Album::getArtist).containsExactly("The Édison  Quartet");
+        assertThat(renamed).extracting(Album::getId).containsExactly(added.getId());
+        assertThat(searched.getContent()).extracting(Album::getName).containsExactly("Gramophone Waltz");
+    }
+
+    @Test
+    void testNormalizationBackfill_FillsAlbumsStoredBeforeTheColumnsExisted(){
+        jdbcTemplate.update("INSERT INTO album (id, artist, release_year, genre, name, version) VALUES "
+                + "(990000001, 'Sigur Rós', 1999, 'ROCK', 'Ágætis byrjun', 0), "
+                + "(990000002, 'The Beatles', 1888, 'ROCK', 'Wax Cylinder', 0)");
+
+        albumNormalizationBackfill.run();
+        List<Album> byArtist = albumService.getAlbumsByArtist("SIGUR ROS");
+        List<Album> byName = albumService.getAlbumsByName("ÁGÆTIS BYRJUN");
+        List<String> stored = jdbcTemplate.queryForList(
+                "SELECT artist_normalized FROM album WHERE id >= 990000001 ORDER BY id", String.class);
+        albumRepository.deleteAllById(List.of(990000001L, 990000002L));
+
+        assertThat(albumNormalizationBackfill.isComplete()).isTrue();
+        assertThat(stored).containsExactly("sigur ros", "beatles");
+        assertThat(byArtist).extracting(Album::getId).containsExactly(990000001L);
+        assertThat(byName).extracting(Album::getArtist).containsExactly("Sigur Rós");
+    }
 
+    @Test
+    void testSecondLevelCache_ServesFindByIdAndFindersUntilUpdateAlbumById(){
+        Album added = albumService.addAlbum(new Album(null, "Berliner", 1894, Album.AlbumGenres.CLASSIC, "Gramophone Disc"));
+        albumRepository.findById(added.getId());
+        albumRepository.findByArtistNormalized("berliner");
+        double queryHits = queryCacheHits();
+
+        assertThat(entityManagerFactory.getCache().contains(Album.class, added.getId())).isTrue();
+        assertThat(albumRepository.findByArtistNormalized("berliner")).extracting(Album::getName)
+                .containsExactly("Gramophone Disc");
+        assertThat(queryCacheHits()).isEqualTo(queryHits + 1);
+        assertThat(meterRegistry.get("cache.hit.ratio").tags("cache", SecondLevelCacheConfig.QUERY_REGION).gauge().value())
+                .isBetween(0.0, 1.0);
+
+        albumService.updateAlbumById(added.getId(),
+                new Album(null, "Berliner", 1895, Album.AlbumGenres.CLASSIC, "Shellac Disc"));
+
+        assertThat(entityManagerFactory.getCache().contains(Album.class, added.getId())).isFalse();
+        assertThat(albumRepository.findById(added.getId())).get()
+                .satisfies(album -> assertThat(album.getName()).isEqualTo("Shellac Disc"))
+                .satisfies(album -> assertThat(album.getReleaseYear()).isEqualTo(1895));
+        assertThat(albumRepository.findByArtistNormalized("berliner")).extracting(Album::getName)
+                .containsExactly("Shellac Disc");
+        albumService.deleteAlbumById(added.getId());
+    }
+
+    @Test
+    void testSecondLevelCache_ForgetsAlbumsRemovedByDeleteAlbumById(){
+        Album added = albumService.addAlbum(new Album(null, "Pathé Frères", 1896, Album.AlbumGenres.CLASSIC, "Cylinder Waltz"));
+        albumRepository.findById(added.getId());
+        assertThat(albumRepository.findByArtistNormalized("pathe freres")).hasSize(1);
+        assertThat(albumRepository.findByReleaseYear(1896)).extracting(Album::getId).contains(added.getId());
+
+        albumService.deleteAlbumById(added.getId());
+
+        assertThat(entityManagerFactory.getCache().contains(Album.class, added.getId())).isFalse();
+        assertThat(albumRepository.findById(added.getId())).isEmpty();
+        assertThat(albumRepository.findByArtistNormalized("pathe freres")).isEmpty();
+        assertThat(albumRepository.findByReleaseYear(1896)).extracting(Album::getId).doesNotContain(added.getId());
+    }
+
+    private double queryCacheHits() {
+        return meterRegistry.get("cache.gets")
+                .tags("cache", SecondLevelCacheConfig.QUERY_REGION, "result", "hit").functionCounter().count();
+    }
+
+    @Test
+    void testSearchAlbums_NoCriteriaReturnsWholeCatalogPage(){
+        Page<Album> page = albumService.searchAlbums(new AlbumSearchCriteria(null, null, null, null, null),
+                PageRequest.of(0, 5));
+
+        assertThat(page.getContent()).hasSize(5);
+        assertThat(page.getTotalElements()).isEqualTo(albumRepository.count());
+    }
+
+    @Test
+    void testServiceAndRepositoryCallsAreTimedWithHistograms(){
+        albumService.searchAlbums(new AlbumSearchCriteria("Oasis", null, null, null, null), PageRequest.of(0, 5));
+
+        Timer serviceTimer = meterRegistry.get("album.service").tag("method", "searchAlbums").timer();
+        Timer repositoryTimer = meterRegistry.get("spring.data.repository.invocations")
+                .tag("repository", "AlbumRepository").tag("method", "findAll").timer();
+        assertThat(serviceTimer.count()).isPositive();
+        assertThat(repositoryTimer.count()).isPositive();
+        assertThat(serviceTimer.takeSnapshot().histogramCounts()).isNotEmpty();
+        assertThat(serviceTimer.takeSnapshot().percentileValues()).hasSize(3);
+    }
+
+    @Test
+    void testFacets_FollowAddUpdateAndDeleteWithoutRequerying(){
+        albumFacetIndex.rebuild();
+        AlbumFacets before = albumService.getFacets(AlbumService.MAX_TOP_ARTISTS);
+
+        Album added = albumService.addAlbum(new Album(null, "Elbow", 2008, Album.AlbumGenres.ALTERNATIVE_ROCK, "The Seldom Seen Kid"));
+        albumService.updateAlbumById(added.getId(), new Album(null, "Elbow", 2008, Album.AlbumGenres.CLASSIC, "The Seldom Seen Kid"));
+        AlbumFacets afterUpdate = albumService.getFacets(AlbumService.MAX_TOP_ARTISTS);
+        albumService.deleteAlbumById(added.getId());
+        AlbumFacets afterDelete = albumService.getFacets(AlbumService.MAX_TOP_ARTISTS);
+
+        assertThat(afterUpdate.total()).isEqualTo(before.total() + 1);
+        assertThat(afterUpdate.genres().get(Album.AlbumGenres.CLASSIC)).isEqualTo(before.genres().get(Album.AlbumGenres.CLASSIC) + 1);
+        assertThat(afterUpdate.genres().get(Album.AlbumGenres.ALTERNATIVE_ROCK)).isEqualTo(before.genres().get(Album.AlbumGenres.ALTERNATIVE_ROCK));
+        assertThat(afterUpdate.topArtists()).contains(new AlbumFacets.ArtistCount("Elbow", 1));
+        assertThat(afterDelete).isEqualTo(before);
+    }
+
+    @Test
+    void testCatalogStamp_AdvancesWithEveryAddUpdateDeleteAndBatch(){
+        long initial = catalogStampRepository.find();
+
+        Album added = albumService.addAlbum(new Album(null, "Elbow", 2011, Album.AlbumGenres.ALTERNATIVE_ROCK, "Build a Rocket Boys!"));
+        long afterAdd = catalogStampRepository.find();
+        albumService.updateAlbumById(added.getId(), new Album(null, "Elbow", 2011, Album.AlbumGenres.ROCK, "Build a Rocket Boys!"));
+        long afterUpdate = catalogStampRepository.find();
+        assertThatThrownBy(() -> albumService.updateAlbumById(added.getId(),
+                new Album(null, "Elbow", 2011, Album.AlbumGenres.ROCK, "Build a Rocket Boys!"), 0L))
+                .isInstanceOf(PreconditionFailedException.class);
+        long afterConflict = catalogStampRepository.find();
+        albumService.deleteAlbumById(added.getId());
+        long afterDelete = catalogStampRepository.find();
+        albumService.addAlbums(List.of(
+                new Album(null, "Elbow", 2003, Album.AlbumGenres.ALTERNATIVE_ROCK, "Cast of Thousands"),
+                new Album(null, "Elbow", 2005, Album.AlbumGenres.ALTERNATIVE_ROCK, "Leaders of the Free World")).iterator());
+        long afterBatch = catalogStampRepository.find();
+
+        assertThat(List.of(initial, afterAdd, afterUpdate, afterDelete, afterBatch)).isSorted().doesNotHaveDuplicates();
+        // A write that changed nothing leaves it alone, and a batch moves it once per transaction.
+        assertThat(afterConflict).isEqualTo(afterUpdate);
+        assertThat(afterBatch).isEqualTo(afterDelete + 1);
+    }
+
+    @Test
+    void testGetCatalogVersion_FollowsWritesMadeOutsideThisInstance(){
+        Album added = albumService.addAlbum(new Album(null, "Doves", 2000, Album.AlbumGenres.ALTERNATIVE_ROCK, "Lost Souls"));
+        CatalogVersion before = albumService.getCatalogVersion();
+        assertThat(albumService.getAlbumsByArtist("Doves")).extracting(Album::getName).containsExactly("Lost Souls");
+
+        // Another instance renames the album: no event reaches this one, only the stamp moves.
+        jdbcTemplate.update("UPDATE album SET name = ? WHERE id = ?", "The Last Broadcast", added.getId());
+        catalogStampRepository.advance();
+        CatalogVersion after = albumService.getCatalogVersion();
+
+        assertThat(after.tag()).isNotEqualTo(before.tag());
+        assertThat(after.lastModified()).isGreaterThanOrEqualTo(before.lastModified());
+        assertThat(albumService.getAlbumsByArtist("Doves")).extracting(Album::getName).containsExactly("The Last Broadcast");
+        albumService.deleteAlbumById(added.getId());
+    }
+
+    @Test
+    void testSuggestAlbums_FollowsAddsUpdatesAndDeletes(){
+        assertThat(albumService.suggestAlbums("definitely", 10)).extracting(Album::getName).contains("Definitely Maybe");
+
+        Album added = albumService.addAlbum(new Album(null, "Sigur Rós", 2002, Album.AlbumGenres.ALTERNATIVE_ROCK, "Ágætis byrjun"));
+        assertThat(albumService.suggestAlbums("sigur ros byrj", 10)).extracting(Album::getId).containsExactly(added.getId());
+
+        albumService.updateAlbumById(added.getId(), new Album(null, "Sigur Rós", 2005, Album.AlbumGenres.ALTERNATIVE_ROCK, "Takk..."));
+        assertThat(albumService.suggestAlbums("byrjun", 10)).isEmpty();
+        assertThat(albumService.suggestAlbums("takk", 10)).extracting(Album::getReleaseYear).containsExactly(2005);
+
+        albumService.deleteAlbumById(added.getId());
+        assertThat(albumService.suggestAlbums("sigur", 10)).isEmpty();
+    }
+
+    @Test
+    void testFilterAlbums_FollowsAddsUpdatesAndDeletes(){
+        AlbumFilter icelandic = AlbumFilter.parse("artist:\"Sigur Rós\" AND year:2000..2004");
+        assertThat(albumService.filterAlbums(icelandic, null, 10).count()).isZero();
+
+        Album added = albumService.addAlbum(new Album(null, "Sigur Rós", 2002, Album.AlbumGenres.ALTERNATIVE_ROCK, "( )"));
+        assertThat(albumService.filterAlbums(icelandic, null, 10).ids()).containsExactly(added.getId());
+
+        albumService.updateAlbumById(added.getId(), new Album(null, "Sigur Rós", 2005, Album.AlbumGenres.ALTERNATIVE_ROCK, "Takk..."));
+        assertThat(albumService.filterAlbums(icelandic, null, 10).count()).isZero();
+
+        albumService.deleteAlbumById(added.getId());
+        assertThat(albumService.filterAlbums(AlbumFilter.parse("artist:\"Sigur Rós\""), null, 10).count()).isZero();
+    }
+}
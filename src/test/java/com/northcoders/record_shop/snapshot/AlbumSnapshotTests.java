@@ -0,0 +1,137 @@
+package com.northcoders.record_shop.snapshot;
+
+import com.northcoders.record_shop.dto.AlbumSearchCriteria;
+import com.northcoders.record_shop.dto.CatalogVersion;
+import com.northcoders.record_shop.model.Album;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class AlbumSnapshotTests {
+    private final List<Album> albums = List.of(
+            new Album(7L, "Oasis", 1995, Album.AlbumGenres.BRITPOP, "What's the Story Morning Glory?", 2L),
+            new Album(3L, "Oasis", 1994, Album.AlbumGenres.BRITPOP, "Definitely Maybe", 0L),
+            new Album(4L, "The Beatles", 1969, Album.AlbumGenres.ROCK, "Abbey Road", 0L),
+            new Album(9L, "Björk", 1997, Album.AlbumGenres.ALTERNATIVE_ROCK, "Homogenic", 1L),
+            new Album(12L, "Blur", 1994, Album.AlbumGenres.BRITPOP, "Parklife", 0L),
+            new Album(15L, "Muse", 2003, Album.AlbumGenres.ALTERNATIVE_ROCK, "Absolution", 0L));
+
+    @TempDir
+    Path tempDir;
+
+    private AlbumSnapshot snapshot;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        AlbumSnapshotWriter writer = new AlbumSnapshotWriter();
+        albums.forEach(writer::add);
+        Path file = tempDir.resolve("albums.snapshot");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            writer.writeTo(out, new CatalogVersion("abc-42", 1_700_000_000_000L));
+        }
+        snapshot = AlbumSnapshot.open(file);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        snapshot.close();
+    }
+
+    @Test
+    void testOpen_ReadsCountAndCatalogVersionAndRecordsInIdOrder() {
+        assertThat(snapshot.size()).isEqualTo(6);
+        assertThat(snapshot.catalogVersion()).isEqualTo(new CatalogVersion("abc-42", 1_700_000_000_000L));
+        assertThat(search(new AlbumSearchCriteria(null, null, null, null, null), 0, 100))
+                .extracting(Album::getId)
+                .containsExactly(3L, 4L, 7L, 9L, 12L, 15L);
+        assertThat(snapshot.album(3)).isEqualTo(albums.get(3));
+    }
+
+    @Test
+    void testSearch_ByExactArtistNameAndGenre() {
+        assertThat(search(new AlbumSearchCriteria("Oasis", null, null, null, null), 0, 100))
+                .extracting(Album::getName)
+                .containsExactly("Definitely Maybe", "What's the Story Morning Glory?");
+        assertThat(search(new AlbumSearchCriteria("Björk", null, null, null, null), 0, 100))
+                .containsExactly(albums.get(3));
+        assertThat(search(new AlbumSearchCriteria(null, "Abbey Road", null, null, null), 0, 100))
+                .containsExactly(albums.get(2));
+        assertThat(search(new AlbumSearchCriteria(null, null, Album.AlbumGenres.ALTERNATIVE_ROCK, null, null), 0, 100))
+                .extracting(Album::getId)
+                .containsExactly(9L, 15L);
+        assertThat(search(new AlbumSearchCriteria("oasis", null, null, null, null), 0, 100)).isEmpty();
+        assertThat(search(new AlbumSearchCriteria(null, null, Album.AlbumGenres.CLASSIC, null, null), 0, 100)).isEmpty();
+    }
+
+    @Test
+    void testSearch_ByYearRangeCombinedWithOtherCriteria() {
+        assertThat(search(new AlbumSearchCriteria(null, null, null, 1994, 1995), 0, 100))
+                .extracting(Album::getId)
+                .containsExactly(3L, 12L, 7L);
+        assertThat(search(new AlbumSearchCriteria("Oasis", null, Album.AlbumGenres.BRITPOP, 1995, null), 0, 100))
+                .extracting(Album::getId)
+                .containsExactly(7L);
+        assertThat(search(new AlbumSearchCriteria(null, null, null, 2000, 1990), 0, 100)).isEmpty();
+    }
+
+    @Test
+    void testSearch_PagesThroughMatchesAndCountsThemAll() {
+        List<Album> page = new ArrayList<>();
+        int total = snapshot.search(new AlbumSearchCriteria(null, null, Album.AlbumGenres.BRITPOP, null, null), 1, 1,
+                record -> page.add(snapshot.album(record)));
+
+        assertThat(total).isEqualTo(3);
+        assertThat(page).extracting(Album::getId).containsExactly(7L);
+    }
+
+    @Test
+    void testWriteTo_KeepsAMissingArtistOrNameApartFromAnEmptyOne() throws IOException {
+        List<Album> withGaps = List.of(
+                new Album(1L, null, 1994, Album.AlbumGenres.BRITPOP, "Definitely Maybe", 0L),
+                new Album(2L, "", 1995, null, null, 0L),
+                new Album(3L, "Blur", 1994, Album.AlbumGenres.BRITPOP, "", 0L));
+        AlbumSnapshotWriter writer = new AlbumSnapshotWriter();
+        withGaps.forEach(writer::add);
+        Path file = tempDir.resolve("gaps.snapshot");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            writer.writeTo(out, new CatalogVersion("7", 0L));
+        }
+
+        try (AlbumSnapshot gaps = AlbumSnapshot.open(file)) {
+            List<Album> read = new ArrayList<>();
+            for (int record = 0; record < gaps.size(); record++) read.add(gaps.album(record));
+            assertThat(read).isEqualTo(withGaps);
+            List<Long> emptyArtist = new ArrayList<>();
+            gaps.search(new AlbumSearchCriteria("", null, null, null, null), 0, 10,
+                    record -> emptyArtist.add(gaps.id(record)));
+            assertThat(emptyArtist).containsExactly(2L);
+        }
+    }
+
+    @Test
+    void testOpen_RejectsOtherFiles() throws IOException {
+        Path notASnapshot = Files.writeString(tempDir.resolve("albums.csv"),
+                "artist,releaseYear,genre,name\nOasis,1994,BRITPOP,Definitely Maybe\nBlur,1994,BRITPOP,Parklife\n");
+
+        assertThatThrownBy(() -> AlbumSnapshot.open(notASnapshot))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Not an album snapshot");
+    }
+
+    private List<Album> search(AlbumSearchCriteria criteria, int offset, int limit) {
+        List<Album> found = new ArrayList<>();
+        snapshot.search(criteria, offset, limit, record -> found.add(snapshot.album(record)));
+        return found;
+    }
+}
@@ -0,0 +1,113 @@
+package com.northcoders.record_shop.snapshot;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.northcoders.record_shop.cache.AlbumCache;
+import com.northcoders.record_shop.dto.AlbumFacets;
+import com.northcoders.record_shop.dto.AlbumFilter;
+import com.northcoders.record_shop.index.AlbumBitmapIndex;
+import com.northcoders.record_shop.index.AlbumFacetIndex;
+import com.northcoders.record_shop.index.AlbumSuggestIndex;
+import com.northcoders.record_shop.model.Album;
+import com.northcoders.record_shop.repository.AlbumRepository;
+import com.northcoders.record_shop.repository.CatalogStampRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+public class CatalogWarmStartTests {
+    private final Album definitelyMaybe = new Album(1L, "Oasis", 1994, Album.AlbumGenres.BRITPOP, "Definitely Maybe", 0L);
+    private final Album parklife = new Album(2L, "Blur", 1994, Album.AlbumGenres.BRITPOP, "Parklife", 3L);
+
+    @TempDir
+    Path tempDir;
+
+    private Path file;
+    private AlbumRepository albumRepository;
+    private AlbumFacetIndex facetIndex;
+    private AlbumSuggestIndex suggestIndex;
+    private AlbumBitmapIndex bitmapIndex;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        file = tempDir.resolve("warm-start.json");
+
+        // The previous run: one album cached by id, one artist list cached, the indexes loaded.
+        AlbumCache previousCache = newCache();
+        previousCache.getAlbum(1L, id -> definitelyMaybe);
+        previousCache.getAlbums(AlbumCache.ListKey.artist("Blur"), () -> List.of(parklife));
+        newIndexes();
+        suggestIndex.load(List.of(definitelyMaybe, parklife));
+        warmStart(7L, previousCache).save();
+
+        albumRepository = mock(AlbumRepository.class);
+        newIndexes();
+    }
+
+    @Test
+    void testStart_RestoresCacheAndIndexesWhenTheStampStillMatches() {
+        AlbumCache cache = newCache();
+
+        warmStart(7L, cache).start();
+        facetIndex.onApplicationReady();
+        suggestIndex.onApplicationReady();
+        bitmapIndex.onApplicationReady();
+
+        assertThat(cache.getAlbum(1L, id -> null)).isEqualTo(definitelyMaybe);
+        assertThat(cache.getAlbums(AlbumCache.ListKey.artist("Blur"), List::of)).containsExactly(parklife);
+        AlbumFacets facets = facetIndex.getFacets(10);
+        assertThat(facets.total()).isEqualTo(2);
+        assertThat(facets.genres()).containsEntry(Album.AlbumGenres.BRITPOP, 2L);
+        assertThat(facets.topArtists()).extracting(AlbumFacets.ArtistCount::artist).containsExactly("Blur", "Oasis");
+        assertThat(suggestIndex.suggest("parkl", 10)).containsExactly(parklife);
+        assertThat(bitmapIndex.filter(AlbumFilter.parse("artist:Oasis"), null, 10).ids()).containsExactly(1L);
+        verifyNoInteractions(albumRepository);
+    }
+
+    @Test
+    void testStart_StartsColdWhenTheCatalogChangedSinceShutdown() {
+        AlbumCache cache = newCache();
+
+        warmStart(8L, cache).start();
+
+        assertThat(cache.cachedAlbums()).isEmpty();
+        assertThat(cache.cachedLists()).isEmpty();
+        assertThat(suggestIndex.size()).isZero();
+        assertThat(bitmapIndex.size()).isZero();
+    }
+
+    private CatalogWarmStart warmStart(long stamp, AlbumCache cache) {
+        CatalogStampRepository catalogStampRepository = mock(CatalogStampRepository.class);
+        when(catalogStampRepository.find()).thenReturn(stamp);
+        StaticListableBeanFactory indexes = new StaticListableBeanFactory();
+        indexes.addBean("albumFacetIndex", facetIndex);
+        indexes.addBean("albumSuggestIndex", suggestIndex);
+        indexes.addBean("albumBitmapIndex", bitmapIndex);
+        return new CatalogWarmStart(catalogStampRepository, cache, indexes.getBeanProvider(AlbumFacetIndex.class),
+                indexes.getBeanProvider(AlbumSuggestIndex.class), indexes.getBeanProvider(AlbumBitmapIndex.class),
+                new ObjectMapper(), file);
+    }
+
+    private void newIndexes() {
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        facetIndex = new AlbumFacetIndex(albumRepository, transactionManager);
+        suggestIndex = new AlbumSuggestIndex(albumRepository, mock(EntityManager.class), transactionManager);
+        bitmapIndex = new AlbumBitmapIndex(albumRepository, transactionManager);
+    }
+
+    private static AlbumCache newCache() {
+        return new AlbumCache(100, 100, Duration.ofMinutes(1), new SimpleMeterRegistry(), event -> {});
+    }
+}